@@ -0,0 +1,1946 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.client.transport.HttpRequest;
+import org.eclipse.jetty.client.transport.HttpResponse;
+import org.eclipse.jetty.client.transport.ResponseListeners;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedCSVParser;
+import org.eclipse.jetty.io.ByteBufferAggregator;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.Retainable;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.SerializedInvoker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An HTTP response cache, as defined by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc9111">RFC 9111</a>.</p>
+ * <p>The cache honors the {@code Cache-Control} directives of requests and
+ * responses, stores one variant per combination of the request headers
+ * listed by the {@code Vary} response header, revalidates stale responses
+ * using their {@code ETag} or {@code Last-Modified} validators, and serves
+ * stale responses while revalidating them in the background, as allowed by
+ * the {@code stale-while-revalidate} directive
+ * (<a href="https://datatracker.ietf.org/doc/html/rfc5861">RFC 5861</a>).</p>
+ * <p>Response content is stored in {@link RetainableByteBuffer}s acquired
+ * from the {@link ByteBufferPool}, up to {@link #getMaxMemorySize()}; the
+ * least recently used responses are then either discarded, or moved to the
+ * optional {@link #getStoreDirectory() on-disk store}.
+ * The on-disk store is accessed by the {@link #getExecutor() executor}, one
+ * operation at a time, so that disk latency does not stall the threads that
+ * look up the cache or store responses, typically I/O threads.</p>
+ * <p>Concurrent requests that miss the cache for the same URI are coalesced,
+ * so that only one request is forwarded to the origin server; the others
+ * wait for it to complete, and are then served from the cache.</p>
+ * <p>The cache can be used with {@link HttpClient} via
+ * {@link #send(Request, Response.Listener)}, and by proxies via the
+ * lower level {@link #lookup(String, HttpURI, HttpFields)} API.</p>
+ * <p>By default the cache behaves as a {@link #isShared() shared cache}:
+ * responses marked {@code private} and responses that set cookies are not
+ * stored, and the {@code s-maxage} directive is honored.</p>
+ */
+@ManagedObject("HTTP response cache")
+public class HttpCache extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+    // Status codes that are heuristically cacheable, see RFC 9110 section 15.1.
+    private static final Set<Integer> HEURISTIC_STATUSES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+    // Status codes this cache understands and may store when explicitly allowed.
+    private static final Set<Integer> STORABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 302, 307, 308, 404, 405, 410, 414, 501);
+    // Headers of a 304 response that must not update the stored response, see RFC 9111 section 3.2.
+    private static final EnumSet<HttpHeader> NOT_UPDATED_HEADERS = EnumSet.of(
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.CONTENT_ENCODING,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.CONTENT_RANGE
+    );
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toSeconds(1);
+
+    private final AutoLock lock = new AutoLock();
+    // Access ordered, so that iteration starts from the least recently used.
+    private final Map<String, List<Entry>> entries = new LinkedHashMap<>(16, 0.75F, true);
+    // Evicted entries waiting to be saved to the on-disk store.
+    private final Map<String, List<Entry>> spilling = new HashMap<>();
+    // The names of the files of the on-disk store, so that lookups do not access the disk.
+    private final Set<String> storeFiles = ConcurrentHashMap.newKeySet();
+    private final SerializedInvoker storeInvoker = new SerializedInvoker();
+    private final Map<String, CompletableFuture<Void>> fetches = new ConcurrentHashMap<>();
+    private final AtomicLong storeSize = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final ByteBufferPool bufferPool;
+    private long memorySize;
+    private long maxMemorySize = 64 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private boolean shared = true;
+    private Path storeDirectory;
+    private long maxStoreSize = 1024 * 1024 * 1024;
+    private Executor executor;
+
+    /**
+     * @param bufferPool the pool to acquire the buffers that store the response content,
+     * or {@code null} to allocate non-pooled buffers
+     */
+    public HttpCache(ByteBufferPool bufferPool)
+    {
+        this.bufferPool = Objects.requireNonNullElse(bufferPool, ByteBufferPool.NON_POOLING);
+    }
+
+    public ByteBufferPool getByteBufferPool()
+    {
+        return bufferPool;
+    }
+
+    @ManagedAttribute("The max total size, in bytes, of the responses stored in memory")
+    public long getMaxMemorySize()
+    {
+        return maxMemorySize;
+    }
+
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    @ManagedAttribute("The max size, in bytes, of the content of a stored response")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute("Whether this is a shared cache")
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    /**
+     * @param shared whether this cache is shared among multiple users, as it is the case for proxies,
+     * or {@code false} if it is private to one user, as it is the case for most clients
+     */
+    public void setShared(boolean shared)
+    {
+        this.shared = shared;
+    }
+
+    @ManagedAttribute("The directory of the on-disk store")
+    public Path getStoreDirectory()
+    {
+        return storeDirectory;
+    }
+
+    /**
+     * <p>Sets the directory where the least recently used responses are moved
+     * when they do not fit in memory.</p>
+     * <p>Responses stored on disk are moved back to memory when they are used.</p>
+     *
+     * @param storeDirectory the directory of the on-disk store, or {@code null} to disable the on-disk store
+     */
+    public void setStoreDirectory(Path storeDirectory)
+    {
+        this.storeDirectory = storeDirectory;
+    }
+
+    @ManagedAttribute("The max total size, in bytes, of the on-disk store")
+    public long getMaxStoreSize()
+    {
+        return maxStoreSize;
+    }
+
+    public void setMaxStoreSize(long maxStoreSize)
+    {
+        this.maxStoreSize = maxStoreSize;
+    }
+
+    @ManagedAttribute("The executor that accesses the on-disk store")
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * <p>Sets the executor that accesses the on-disk store.</p>
+     * <p>If no executor is set, one is created when the cache
+     * is started with an {@link #getStoreDirectory() on-disk store}.</p>
+     *
+     * @param executor the executor that accesses the on-disk store
+     */
+    public void setExecutor(Executor executor)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        updateBean(this.executor, executor);
+        this.executor = executor;
+    }
+
+    @ManagedAttribute("The total size, in bytes, of the responses stored in memory")
+    public long getMemorySize()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return memorySize;
+        }
+    }
+
+    @ManagedAttribute("The total size, in bytes, of the on-disk store")
+    public long getStoreSize()
+    {
+        return storeSize.get();
+    }
+
+    @ManagedAttribute("The number of responses stored in memory")
+    public int getEntryCount()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return entries.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("The number of requests forwarded to the origin server")
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("The number of stored responses that have been revalidated")
+    public long getRevalidations()
+    {
+        return revalidations.sum();
+    }
+
+    @ManagedAttribute("The number of requests that waited for a concurrent request for the same URI")
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        Path directory = getStoreDirectory();
+        if (directory != null)
+        {
+            Files.createDirectories(directory);
+            // Responses stored by a previous run are retained.
+            storeFiles.clear();
+            try (Stream<Path> files = Files.list(directory))
+            {
+                storeSize.set(files.peek(file -> storeFiles.add(file.getFileName().toString())).mapToLong(this::sizeOf).sum());
+            }
+            if (getExecutor() == null)
+            {
+                QueuedThreadPool threadPool = new QueuedThreadPool(8, 1);
+                threadPool.setName("httpcache-store-%x".formatted(hashCode()));
+                setExecutor(threadPool);
+            }
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // Save the evicted responses that are still waiting for the executor.
+        List<String> keys;
+        try (AutoLock ignored = lock.lock())
+        {
+            keys = new ArrayList<>(spilling.keySet());
+        }
+        storeInvoker.run(() -> keys.forEach(this::save));
+        super.doStop();
+        clear();
+    }
+
+    /**
+     * <p>Removes all the responses stored in memory.</p>
+     * <p>Responses in the on-disk store are retained.</p>
+     */
+    @ManagedOperation(value = "Removes all the responses stored in memory", impact = "ACTION")
+    public void clear()
+    {
+        List<Entry> removed = new ArrayList<>();
+        try (AutoLock ignored = lock.lock())
+        {
+            entries.values().forEach(removed::addAll);
+            entries.clear();
+            memorySize = 0;
+        }
+        removed.forEach(Entry::release);
+    }
+
+    /**
+     * <p>Removes the responses stored for the given URI, for example after
+     * a request with an unsafe method succeeded, see RFC 9111 section 4.4.</p>
+     *
+     * @param uri the URI of the responses to remove
+     */
+    public void invalidate(HttpURI uri)
+    {
+        String key = key(uri);
+        List<Entry> removed;
+        List<Entry> unspilled;
+        try (AutoLock ignored = lock.lock())
+        {
+            removed = entries.remove(key);
+            if (removed != null)
+                memorySize -= sizeOf(removed);
+            unspilled = spilling.remove(key);
+        }
+        if (removed != null)
+            removed.forEach(Entry::release);
+        if (unspilled != null)
+            unspilled.forEach(Entry::release);
+        Path file = storeFile(key);
+        if (file != null && storeFiles.remove(file.getFileName().toString()) && !executeStoreTask(() -> deleteStoreFile(file)))
+            deleteStoreFile(file);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Invalidated {}", key);
+    }
+
+    /**
+     * <p>Looks up the cache for the given request, coalescing concurrent misses.</p>
+     *
+     * @param method the request method
+     * @param uri the request URI
+     * @param requestHeaders the request headers
+     * @return the result of the lookup
+     * @see #lookup(String, HttpURI, HttpFields, boolean)
+     */
+    public Lookup lookup(String method, HttpURI uri, HttpFields requestHeaders)
+    {
+        return lookup(method, uri, requestHeaders, true);
+    }
+
+    /**
+     * <p>Looks up the cache for the given request.</p>
+     * <p>The caller must act depending on the {@link Lookup#getStatus() status}
+     * of the returned lookup, and must eventually {@link Lookup#complete() complete}
+     * it, see {@link Status}.</p>
+     *
+     * @param method the request method
+     * @param uri the request URI
+     * @param requestHeaders the request headers
+     * @param coalesce whether to wait for a concurrent request for the same URI
+     * @return the result of the lookup
+     */
+    public Lookup lookup(String method, HttpURI uri, HttpFields requestHeaders, boolean coalesce)
+    {
+        boolean get = HttpMethod.GET.is(method);
+        if (!get && !HttpMethod.HEAD.is(method))
+        {
+            // Unsafe methods invalidate the stored responses when they succeed.
+            boolean unsafe = !HttpMethod.OPTIONS.is(method) && !HttpMethod.TRACE.is(method);
+            return new Lookup(Status.BYPASS, null, method, uri, requestHeaders, null, unsafe);
+        }
+
+        CacheControl requestCacheControl = CacheControl.from(requestHeaders);
+        if (requestCacheControl.noStore())
+            return new Lookup(Status.BYPASS, null, method, uri, requestHeaders, null, false);
+
+        String key = key(uri);
+        Entry entry = find(key, requestHeaders);
+        if (entry == null && isStored(key))
+        {
+            // Load the stored responses in background, and wait for them
+            // to be in memory, as reading the disk may block this thread.
+            CompletableFuture<Void> load = new CompletableFuture<>();
+            CompletableFuture<Void> existing = fetches.putIfAbsent(key, load);
+            if (existing == null)
+            {
+                if (executeStoreTask(() -> load(key, load)))
+                    return new Lookup(Status.WAIT, null, method, uri, requestHeaders, load, false);
+                fetches.remove(key, load);
+            }
+            else if (coalesce)
+            {
+                coalesced.increment();
+                return new Lookup(Status.WAIT, null, method, uri, requestHeaders, existing, false);
+            }
+        }
+        if (entry != null)
+        {
+            Status status = evaluate(entry, requestCacheControl, System.currentTimeMillis());
+            if (status == Status.FRESH)
+            {
+                hits.increment();
+                return new Lookup(Status.FRESH, entry, method, uri, requestHeaders, null, false);
+            }
+            if (status == Status.STALE)
+            {
+                hits.increment();
+                // Only one background revalidation at a time.
+                CompletableFuture<Void> fetch = new CompletableFuture<>();
+                boolean revalidate = fetches.putIfAbsent(key, fetch) == null;
+                return new Lookup(Status.STALE, entry, method, uri, requestHeaders, revalidate ? fetch : null, false);
+            }
+            if (!entry.hasValidators())
+            {
+                entry.release();
+                entry = null;
+            }
+        }
+
+        if (requestCacheControl.onlyIfCached())
+        {
+            if (entry != null)
+                entry.release();
+            return new Lookup(Status.UNSATISFIABLE, null, method, uri, requestHeaders, null, false);
+        }
+
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> existing = fetches.putIfAbsent(key, fetch);
+        if (existing != null && coalesce)
+        {
+            if (entry != null)
+                entry.release();
+            coalesced.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Coalesced {}", key);
+            return new Lookup(Status.WAIT, null, method, uri, requestHeaders, existing, false);
+        }
+        // When not coalescing, do not wake up the waiters of the existing fetch.
+        if (existing != null)
+            fetch = null;
+
+        misses.increment();
+        if (entry != null)
+            revalidations.increment();
+        return new Lookup(entry == null ? Status.MISS : Status.REVALIDATE, entry, method, uri, requestHeaders, fetch, false);
+    }
+
+    private Status evaluate(Entry entry, CacheControl requestCacheControl, long now)
+    {
+        CacheControl responseCacheControl = entry.getCacheControl();
+        if (requestCacheControl.noCache() || responseCacheControl.noCache())
+            return Status.REVALIDATE;
+
+        long age = entry.getAge(now);
+        long lifetime = entry.getFreshnessLifetime(isShared());
+        if (requestCacheControl.maxAge() >= 0 && age > requestCacheControl.maxAge())
+            return Status.REVALIDATE;
+
+        long freshness = lifetime - age;
+        if (freshness > 0)
+        {
+            if (requestCacheControl.minFresh() < 0 || freshness >= requestCacheControl.minFresh())
+                return Status.FRESH;
+            return Status.REVALIDATE;
+        }
+
+        // The stored response is stale.
+        boolean mustRevalidate = responseCacheControl.mustRevalidate() || (isShared() && responseCacheControl.proxyRevalidate());
+        if (mustRevalidate)
+            return Status.REVALIDATE;
+        long staleness = -freshness;
+        if (requestCacheControl.maxStale() >= 0 && staleness <= requestCacheControl.maxStale())
+            return Status.FRESH;
+        if (staleness <= responseCacheControl.staleWhileRevalidate())
+            return Status.STALE;
+        return Status.REVALIDATE;
+    }
+
+    private Entry find(String key, HttpFields requestHeaders)
+    {
+        List<Entry> evicted;
+        Entry result;
+        try (AutoLock ignored = lock.lock())
+        {
+            List<Entry> variants = entries.get(key);
+            if (variants != null)
+                return match(variants, requestHeaders);
+            // Move back to memory the entries not yet saved to the on-disk store.
+            variants = spilling.remove(key);
+            if (variants == null)
+                return null;
+            entries.put(key, variants);
+            memorySize += sizeOf(variants);
+            result = match(variants, requestHeaders);
+            evicted = evict();
+        }
+        spill(evicted);
+        return result;
+    }
+
+    private boolean isStored(String key)
+    {
+        Path file = storeFile(key);
+        return file != null && storeFiles.contains(file.getFileName().toString());
+    }
+
+    private boolean executeStoreTask(Runnable task)
+    {
+        Executor executor = getExecutor();
+        if (executor == null)
+            return false;
+        Runnable tasks = storeInvoker.offer(task);
+        if (tasks == null)
+            return true;
+        try
+        {
+            executor.execute(tasks);
+            return true;
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not access the on-disk store", x);
+            // Run the tasks that may have been queued behind this task.
+            tasks.run();
+            return true;
+        }
+    }
+
+    private static Entry match(List<Entry> variants, HttpFields requestHeaders)
+    {
+        for (Entry entry : variants)
+        {
+            if (entry.matches(requestHeaders))
+            {
+                entry.retain();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void store(Entry entry)
+    {
+        String key = entry.getKey();
+        List<Entry> replaced = new ArrayList<>();
+        List<Entry> evicted;
+        try (AutoLock ignored = lock.lock())
+        {
+            List<Entry> variants = entries.get(key);
+            if (variants == null)
+            {
+                variants = new ArrayList<>(1);
+                entries.put(key, variants);
+            }
+            // Replace the variant selected by the same request headers.
+            for (Iterator<Entry> iterator = variants.iterator(); iterator.hasNext();)
+            {
+                Entry variant = iterator.next();
+                if (variant.isSameVariant(entry))
+                {
+                    iterator.remove();
+                    memorySize -= variant.size();
+                    replaced.add(variant);
+                }
+            }
+            variants.add(entry);
+            memorySize += entry.size();
+            evicted = evict();
+        }
+        replaced.forEach(Entry::release);
+        spill(evicted);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stored {}", entry);
+    }
+
+    private List<Entry> evict()
+    {
+        assert lock.isHeldByCurrentThread();
+        List<Entry> evicted = null;
+        Iterator<Map.Entry<String, List<Entry>>> iterator = entries.entrySet().iterator();
+        while (memorySize > getMaxMemorySize() && iterator.hasNext())
+        {
+            List<Entry> variants = iterator.next().getValue();
+            iterator.remove();
+            memorySize -= sizeOf(variants);
+            if (evicted == null)
+                evicted = new ArrayList<>();
+            evicted.addAll(variants);
+        }
+        return evicted;
+    }
+
+    private static long sizeOf(List<Entry> entries)
+    {
+        long size = 0;
+        for (Entry entry : entries)
+        {
+            size += entry.size();
+        }
+        return size;
+    }
+
+    private void spill(List<Entry> evicted)
+    {
+        if (evicted == null)
+            return;
+        if (getStoreDirectory() == null)
+        {
+            evicted.forEach(Entry::release);
+            return;
+        }
+
+        // Group the variants of the same URI in the same file.
+        Set<String> keys = new LinkedHashSet<>();
+        List<Entry> replaced = new ArrayList<>();
+        try (AutoLock ignored = lock.lock())
+        {
+            for (Entry entry : evicted)
+            {
+                List<Entry> variants = spilling.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+                for (Iterator<Entry> iterator = variants.iterator(); iterator.hasNext();)
+                {
+                    Entry variant = iterator.next();
+                    if (variant.isSameVariant(entry))
+                    {
+                        iterator.remove();
+                        replaced.add(variant);
+                    }
+                }
+                variants.add(entry);
+                keys.add(entry.getKey());
+            }
+        }
+        replaced.forEach(Entry::release);
+
+        for (String key : keys)
+        {
+            if (!executeStoreTask(() -> save(key)))
+            {
+                List<Entry> discarded;
+                try (AutoLock ignored = lock.lock())
+                {
+                    discarded = spilling.remove(key);
+                }
+                if (discarded != null)
+                    discarded.forEach(Entry::release);
+            }
+        }
+    }
+
+    private void save(String key)
+    {
+        Path file = storeFile(key);
+        List<Entry> variants;
+        try (AutoLock ignored = lock.lock())
+        {
+            // The entries may have been moved back to memory, or invalidated.
+            variants = spilling.remove(key);
+            if (variants == null)
+                return;
+            // Lookups from now on wait for the file to be written and then loaded.
+            storeFiles.add(file.getFileName().toString());
+        }
+
+        try
+        {
+            if (!write(key, file, variants))
+                storeFiles.remove(file.getFileName().toString());
+        }
+        finally
+        {
+            variants.forEach(Entry::release);
+        }
+    }
+
+    private boolean write(String key, Path file, List<Entry> variants)
+    {
+        long size = 0;
+        for (Entry entry : variants)
+        {
+            size += entry.getContentLength();
+        }
+        if (storeSize.get() + size > getMaxStoreSize())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Discarded {}, on-disk store full", key);
+            deleteStoreFile(file);
+            return false;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+        {
+            output.writeUTF(key);
+            output.writeInt(variants.size());
+            for (Entry entry : variants)
+            {
+                entry.writeTo(output);
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not save {} to {}", key, file, x);
+            IO.delete(temp);
+            deleteStoreFile(file);
+            return false;
+        }
+
+        try
+        {
+            long previous = sizeOf(file);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            storeSize.addAndGet(sizeOf(file) - previous);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Saved {} to {}", key, file);
+            return true;
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not save {} to {}", key, file, x);
+            IO.delete(temp);
+            deleteStoreFile(file);
+            return false;
+        }
+    }
+
+    private void load(String key, CompletableFuture<Void> load)
+    {
+        try
+        {
+            List<Entry> loaded = read(key);
+            if (loaded == null)
+                return;
+            List<Entry> evicted;
+            try (AutoLock ignored = lock.lock())
+            {
+                if (entries.get(key) == null)
+                {
+                    entries.put(key, loaded);
+                    memorySize += sizeOf(loaded);
+                    loaded = null;
+                }
+                evicted = evict();
+            }
+            // A newer response has been stored concurrently.
+            if (loaded != null)
+                loaded.forEach(Entry::release);
+            spill(evicted);
+        }
+        finally
+        {
+            fetches.remove(key, load);
+            load.complete(null);
+        }
+    }
+
+    private List<Entry> read(String key)
+    {
+        Path file = storeFile(key);
+        storeFiles.remove(file.getFileName().toString());
+        if (!Files.isRegularFile(file))
+            return null;
+
+        List<Entry> variants = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            // Guard against hash collisions.
+            if (!key.equals(input.readUTF()))
+                return null;
+            int count = input.readInt();
+            for (int i = 0; i < count; ++i)
+            {
+                variants.add(Entry.readFrom(key, input, bufferPool));
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not load {} from {}", key, file, x);
+            variants.forEach(Entry::release);
+            variants = null;
+        }
+
+        // The entries move back to memory, or the file is corrupted.
+        deleteStoreFile(file);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Loaded {} from {}", key, file);
+        return variants;
+    }
+
+    private Path storeFile(String key)
+    {
+        Path directory = getStoreDirectory();
+        if (directory == null)
+            return null;
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(hash));
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private void deleteStoreFile(Path file)
+    {
+        long size = sizeOf(file);
+        if (size > 0 && IO.delete(file))
+            storeSize.addAndGet(-size);
+    }
+
+    private long sizeOf(Path file)
+    {
+        try
+        {
+            return Files.isRegularFile(file) ? Files.size(file) : 0;
+        }
+        catch (IOException x)
+        {
+            return 0;
+        }
+    }
+
+    private static String key(HttpURI uri)
+    {
+        // The fragment is never sent to servers, so it is not part of the key.
+        HttpURI.Mutable key = HttpURI.build(uri).fragment(null);
+        if (StringUtil.isEmpty(key.getPath()))
+            key.path("/");
+        return key.asString();
+    }
+
+    /**
+     * <p>Sends the given request, serving it from the cache when possible.</p>
+     * <p>When the request is served from the cache, no request is sent to the
+     * server, and the listener is notified with the stored response, which
+     * has an {@code Age} header.</p>
+     * <p>Otherwise, the request is sent to the server, possibly with additional
+     * conditional headers to revalidate a stale stored response; the response
+     * is stored if it is cacheable, and the listener is notified either with
+     * the response, or with the stored response if the server replied
+     * {@code 304 Not Modified} to a revalidation.</p>
+     *
+     * @param request the request to send
+     * @param listener the listener notified of the response events
+     */
+    public void send(Request request, Response.Listener listener)
+    {
+        send(request, listener, true);
+    }
+
+    private void send(Request request, Response.Listener listener, boolean coalesce)
+    {
+        Lookup lookup = lookup(request.getMethod(), HttpURI.from(request.getURI()), request.getHeaders(), coalesce);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Sending {} with {}", request, lookup);
+        switch (lookup.getStatus())
+        {
+            case FRESH -> notifyStored(request, lookup, listener);
+            case STALE ->
+            {
+                // Revalidate in background with a copy of the request,
+                // as the conditional headers must not apply to the stored response.
+                if (lookup.isRevalidating() && request instanceof HttpRequest httpRequest)
+                    revalidate(lookup, httpRequest.copy(request.getURI()).headers(headers -> headers.clear().add(request.getHeaders())));
+                notifyStored(request, lookup, listener);
+            }
+            case WAIT -> lookup.whenComplete(() -> send(request, listener, false));
+            case UNSATISFIABLE ->
+            {
+                HttpResponse response = new HttpResponse(request)
+                    .version(HttpVersion.HTTP_1_1)
+                    .status(HttpStatus.GATEWAY_TIMEOUT_504);
+                ResponseListeners listeners = new ResponseListeners(listener);
+                listeners.notifyBegin(response);
+                listeners.notifyHeaders(response);
+                listeners.notifySuccess(response);
+                listeners.notifyComplete(new Result(request, response));
+            }
+            default ->
+            {
+                request.headers(lookup::addConditionalHeaders);
+                request.send(new CachingResponseListener(lookup, request, listener));
+            }
+        }
+    }
+
+    /**
+     * <p>Revalidates in background the stale stored response of the given lookup.</p>
+     * <p>The given request is sent with the conditional headers to revalidate
+     * the stored response, which is then updated or replaced by the response.</p>
+     * <p>This method must be called before the lookup is {@link Lookup#complete() completed}.</p>
+     *
+     * @param lookup a lookup with status {@link Status#STALE} that {@link Lookup#isRevalidating() revalidates}
+     * @param request the request to send to revalidate the stored response
+     */
+    public void revalidate(Lookup lookup, Request request)
+    {
+        if (!lookup.isRevalidating() || !lookup.revalidated.compareAndSet(false, true))
+            throw new IllegalStateException("Not revalidating " + lookup);
+        lookup.getEntry().retain();
+        Lookup revalidation = new Lookup(Status.REVALIDATE, lookup.getEntry(), lookup.method, lookup.uri, lookup.requestHeaders, lookup.fetch, false);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Revalidating {} with {}", revalidation, request);
+        request.headers(revalidation::addConditionalHeaders);
+        request.send(new CachingResponseListener(revalidation, request, null));
+    }
+
+    private static void notifyStored(Request request, Lookup lookup, Response.Listener listener)
+    {
+        Entry entry = lookup.getEntry();
+        HttpResponse response = new HttpResponse(request).version(HttpVersion.HTTP_1_1);
+        boolean notModified = entry.isNotModified(lookup.requestHeaders);
+        response.status(notModified ? HttpStatus.NOT_MODIFIED_304 : entry.getStatus());
+        response.headers(headers -> entry.writeHeaders(headers, System.currentTimeMillis()));
+
+        ResponseListeners listeners = new ResponseListeners(listener);
+        listeners.notifyBegin(response);
+        listeners.notifyHeaders(response);
+        Runnable success = () ->
+        {
+            listeners.notifySuccess(response);
+            listeners.notifyComplete(new Result(request, response));
+            lookup.complete();
+        };
+        Consumer<Throwable> failure = x ->
+        {
+            listeners.notifyFailure(response, x);
+            listeners.notifyComplete(new Result(request, response, x));
+            lookup.complete();
+        };
+        ByteBuffer content = entry.getContent();
+        if (notModified || HttpMethod.HEAD.is(request.getMethod()) || !content.hasRemaining())
+            success.run();
+        else
+            listeners.notifyContentSource(response, new StoredContentSource(content, success, failure));
+    }
+
+    /**
+     * <p>The status of a cache {@link Lookup}, that tells the caller how to proceed.</p>
+     */
+    public enum Status
+    {
+        /**
+         * <p>A fresh stored response can be served.</p>
+         */
+        FRESH,
+        /**
+         * <p>A stale stored response can be served, while it is revalidated
+         * in background if {@link Lookup#isRevalidating()} returns {@code true}.</p>
+         */
+        STALE,
+        /**
+         * <p>The stored response must be revalidated, by sending the request
+         * with the {@link Lookup#addConditionalHeaders(HttpFields.Mutable)
+         * conditional headers}.</p>
+         */
+        REVALIDATE,
+        /**
+         * <p>No stored response is available, the request must be sent
+         * and the response {@link Lookup#newWriter(int, HttpFields) stored}.</p>
+         */
+        MISS,
+        /**
+         * <p>A concurrent request for the same URI is in progress, or the stored
+         * response is being loaded from the on-disk store; the caller must
+         * {@link Lookup#whenComplete(Runnable) wait} for it to complete
+         * and then look up the cache again without coalescing.</p>
+         */
+        WAIT,
+        /**
+         * <p>The request cannot be satisfied from the cache, as required
+         * by the {@code only-if-cached} request directive; the caller
+         * should respond with {@code 504 Gateway Timeout}.</p>
+         */
+        UNSATISFIABLE,
+        /**
+         * <p>The cache does not apply to the request, that must be sent
+         * without storing the response.</p>
+         */
+        BYPASS
+    }
+
+    /**
+     * <p>The result of a cache lookup.</p>
+     * <p>Lookups must be {@link #complete() completed} once the caller
+     * is done with them, to release the stored response and to wake up
+     * concurrent requests waiting for this one.</p>
+     */
+    public class Lookup
+    {
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean revalidated = new AtomicBoolean();
+        private final Status status;
+        private final Entry entry;
+        private final String method;
+        private final HttpURI uri;
+        private final HttpFields requestHeaders;
+        private final CompletableFuture<Void> fetch;
+        private final boolean invalidating;
+        private final long requestTime = System.currentTimeMillis();
+
+        private Lookup(Status status, Entry entry, String method, HttpURI uri, HttpFields requestHeaders, CompletableFuture<Void> fetch, boolean invalidating)
+        {
+            this.status = status;
+            this.entry = entry;
+            this.method = method;
+            this.uri = uri;
+            this.requestHeaders = requestHeaders.asImmutable();
+            this.fetch = fetch;
+            this.invalidating = invalidating;
+        }
+
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return the stored response, or {@code null} if there is no stored response
+         */
+        public Entry getEntry()
+        {
+            return entry;
+        }
+
+        /**
+         * @return whether this lookup is responsible to revalidate
+         * the stale stored response in background
+         */
+        public boolean isRevalidating()
+        {
+            return status == Status.STALE && fetch != null;
+        }
+
+        /**
+         * @return whether a successful response must {@link #invalidate(HttpURI) invalidate}
+         * the stored responses for the request URI
+         */
+        public boolean isInvalidating()
+        {
+            return invalidating;
+        }
+
+        /**
+         * <p>Adds to the given request headers the conditional headers
+         * to revalidate the stored response.</p>
+         *
+         * @param headers the request headers to modify
+         */
+        public void addConditionalHeaders(HttpFields.Mutable headers)
+        {
+            if (status != Status.REVALIDATE || entry == null)
+                return;
+            // Replace the conditional headers of the client, that
+            // apply to the response that will be served from the cache.
+            headers.remove(HttpHeader.IF_NONE_MATCH);
+            headers.remove(HttpHeader.IF_MODIFIED_SINCE);
+            String etag = entry.getHeaders().get(HttpHeader.ETAG);
+            if (etag != null)
+                headers.put(HttpHeader.IF_NONE_MATCH, etag);
+            String lastModified = entry.getHeaders().get(HttpHeader.LAST_MODIFIED);
+            if (lastModified != null)
+                headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+        }
+
+        /**
+         * <p>Updates the stored response with the headers of a {@code 304 Not Modified}
+         * response to a revalidation, and stores it.</p>
+         *
+         * @param responseHeaders the headers of the {@code 304} response
+         * @return the updated stored response, that must be released by the caller
+         */
+        public Entry freshen(HttpFields responseHeaders)
+        {
+            Entry freshened = entry.freshen(responseHeaders, requestTime, System.currentTimeMillis());
+            freshened.retain();
+            store(freshened);
+            return freshened;
+        }
+
+        /**
+         * <p>Returns a writer that stores the response to this lookup's request,
+         * if the response is cacheable.</p>
+         *
+         * @param status the response status code
+         * @param responseHeaders the response headers
+         * @return a writer for the response content, or {@code null} if the response is not cacheable
+         */
+        public Writer newWriter(int status, HttpFields responseHeaders)
+        {
+            if (getStatus() != Status.MISS && getStatus() != Status.REVALIDATE)
+                return null;
+            // Responses to HEAD have no content, and GET shares
+            // the same key, so they must not be stored.
+            if (HttpMethod.HEAD.is(method))
+                return null;
+            if (!isStorable(status, responseHeaders))
+                return null;
+            long contentLength = responseHeaders.getLongField(HttpHeader.CONTENT_LENGTH);
+            if (contentLength > getMaxEntrySize())
+                return null;
+            return new Writer(this, status, responseHeaders.asImmutable());
+        }
+
+        private boolean isStorable(int status, HttpFields responseHeaders)
+        {
+            if (!STORABLE_STATUSES.contains(status))
+                return false;
+            CacheControl responseCacheControl = CacheControl.from(responseHeaders);
+            if (responseCacheControl.noStore())
+                return false;
+            if (isShared())
+            {
+                if (responseCacheControl.isPrivate())
+                    return false;
+                if (responseHeaders.contains(HttpHeader.SET_COOKIE))
+                    return false;
+                if (requestHeaders.contains(HttpHeader.AUTHORIZATION) &&
+                    !responseCacheControl.isPublic() &&
+                    !responseCacheControl.mustRevalidate() &&
+                    responseCacheControl.sMaxAge() < 0)
+                    return false;
+            }
+            for (String vary : responseHeaders.getCSV(HttpHeader.VARY, false))
+            {
+                if ("*".equals(vary))
+                    return false;
+            }
+            return responseCacheControl.isPublic() ||
+                responseCacheControl.maxAge() >= 0 ||
+                (isShared() && responseCacheControl.sMaxAge() >= 0) ||
+                responseHeaders.contains(HttpHeader.EXPIRES) ||
+                HEURISTIC_STATUSES.contains(status);
+        }
+
+        /**
+         * <p>Invokes the given task when the concurrent request or the load
+         * from the on-disk store this lookup {@link Status#WAIT waits for} completes.</p>
+         *
+         * @param task the task to invoke
+         */
+        public void whenComplete(Runnable task)
+        {
+            if (status != Status.WAIT)
+                throw new IllegalStateException("Not waiting " + this);
+            fetch.whenComplete((r, x) -> task.run());
+        }
+
+        /**
+         * <p>Completes this lookup, releasing the stored response and
+         * waking up the concurrent requests waiting for this one.</p>
+         */
+        public void complete()
+        {
+            if (!completed.compareAndSet(false, true))
+                return;
+            if (entry != null)
+                entry.release();
+            // Stale lookups that revalidate complete the fetch when the revalidation completes.
+            if (fetch != null && status != Status.WAIT && !revalidated.get())
+            {
+                fetches.remove(key(uri), fetch);
+                fetch.complete(null);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,%s %s,entry=%s]", getClass().getSimpleName(), hashCode(), status, method, uri, entry);
+        }
+    }
+
+    /**
+     * <p>Stores the content of a cacheable response.</p>
+     * <p>If the content exceeds {@link #getMaxEntrySize()}, the
+     * response is not stored, but the caller may continue to
+     * write the content, which is then ignored.</p>
+     */
+    public class Writer
+    {
+        private final Lookup lookup;
+        private final int status;
+        private final HttpFields responseHeaders;
+        private final long responseTime = System.currentTimeMillis();
+        private ByteBufferAggregator aggregator;
+        private boolean aborted;
+
+        private Writer(Lookup lookup, int status, HttpFields responseHeaders)
+        {
+            this.lookup = lookup;
+            this.status = status;
+            this.responseHeaders = responseHeaders;
+        }
+
+        /**
+         * @param content the content to store, whose position is not modified
+         * @return whether the content was stored
+         */
+        public boolean write(ByteBuffer content)
+        {
+            if (aborted)
+                return false;
+            int length = content.remaining();
+            if (length == 0)
+                return true;
+            if (aggregator == null)
+                aggregator = new ByteBufferAggregator(bufferPool, false, Math.min(length, getMaxEntrySize()), getMaxEntrySize());
+            if (aggregator.length() + length > getMaxEntrySize())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Not storing response to {}, content too large", lookup.uri);
+                abort();
+                return false;
+            }
+            aggregator.aggregate(content.slice());
+            return true;
+        }
+
+        /**
+         * <p>Stores the response, after all its content has been {@link #write(ByteBuffer) written}.</p>
+         */
+        public void commit()
+        {
+            if (aborted)
+                return;
+            aborted = true;
+            RetainableByteBuffer content = aggregator == null ? null : aggregator.takeRetainableByteBuffer();
+            if (content == null)
+                content = bufferPool.acquire(0, false);
+            Entry entry = new Entry(key(lookup.uri), status, responseHeaders, varyFields(), content, lookup.requestTime, responseTime);
+            store(entry);
+        }
+
+        private HttpFields varyFields()
+        {
+            HttpFields.Mutable varyFields = HttpFields.build();
+            for (String name : responseHeaders.getCSV(HttpHeader.VARY, false))
+            {
+                List<String> values = lookup.requestHeaders.getValuesList(name);
+                if (values.isEmpty())
+                    varyFields.put(name, "");
+                else
+                    values.forEach(value -> varyFields.add(name, value));
+            }
+            return varyFields.asImmutable();
+        }
+
+        /**
+         * <p>Aborts this writer, so that the response is not stored.</p>
+         */
+        public void abort()
+        {
+            if (aborted)
+                return;
+            aborted = true;
+            if (aggregator != null)
+            {
+                RetainableByteBuffer content = aggregator.takeRetainableByteBuffer();
+                if (content != null)
+                    content.release();
+            }
+        }
+    }
+
+    /**
+     * <p>A stored response.</p>
+     * <p>Stored responses are reference counted; the content buffer
+     * is released to the pool when the last reference is released.</p>
+     */
+    public static class Entry implements Retainable
+    {
+        private final String key;
+        private final int status;
+        private final HttpFields headers;
+        private final HttpFields varyFields;
+        private final RetainableByteBuffer content;
+        private final long requestTime;
+        private final long responseTime;
+        private final CacheControl cacheControl;
+
+        private Entry(String key, int status, HttpFields headers, HttpFields varyFields, RetainableByteBuffer content, long requestTime, long responseTime)
+        {
+            this.key = key;
+            this.status = status;
+            this.headers = headers;
+            this.varyFields = varyFields;
+            this.content = content;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+            this.cacheControl = CacheControl.from(headers);
+        }
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return the headers of the stored response
+         */
+        public HttpFields getHeaders()
+        {
+            return headers;
+        }
+
+        public CacheControl getCacheControl()
+        {
+            return cacheControl;
+        }
+
+        /**
+         * @return a read-only view of the content of the stored response
+         */
+        public ByteBuffer getContent()
+        {
+            return content.getByteBuffer().asReadOnlyBuffer();
+        }
+
+        public int getContentLength()
+        {
+            return content.remaining();
+        }
+
+        private long size()
+        {
+            return content.capacity();
+        }
+
+        /**
+         * <p>Returns the current age of the stored response, in seconds,
+         * as defined by RFC 9111 section 4.2.3.</p>
+         *
+         * @param now the current time, in milliseconds since the Unix Epoch
+         * @return the current age, in seconds
+         */
+        public long getAge(long now)
+        {
+            long date = dateField(headers, HttpHeader.DATE);
+            long apparentAge = date < 0 ? 0 : Math.max(0, responseTime - date);
+            long responseDelay = Math.max(0, responseTime - requestTime);
+            long ageValue = TimeUnit.SECONDS.toMillis(Math.max(0, headers.getLongField(HttpHeader.AGE)));
+            long correctedInitialAge = Math.max(apparentAge, ageValue + responseDelay);
+            long residentTime = Math.max(0, now - responseTime);
+            return TimeUnit.MILLISECONDS.toSeconds(correctedInitialAge + residentTime);
+        }
+
+        /**
+         * <p>Returns the freshness lifetime of the stored response, in seconds,
+         * as defined by RFC 9111 section 4.2.1.</p>
+         *
+         * @param shared whether the cache is shared
+         * @return the freshness lifetime, in seconds
+         */
+        public long getFreshnessLifetime(boolean shared)
+        {
+            if (shared && cacheControl.sMaxAge() >= 0)
+                return cacheControl.sMaxAge();
+            if (cacheControl.maxAge() >= 0)
+                return cacheControl.maxAge();
+
+            long date = dateField(headers, HttpHeader.DATE);
+            if (date < 0)
+                date = responseTime;
+            if (headers.contains(HttpHeader.EXPIRES))
+            {
+                // Invalid values, such as "0", mean already expired.
+                long expires = dateField(headers, HttpHeader.EXPIRES);
+                return expires < 0 ? 0 : Math.max(0, TimeUnit.MILLISECONDS.toSeconds(expires - date));
+            }
+
+            // Heuristic freshness, 10% of the time since the last modification.
+            long lastModified = dateField(headers, HttpHeader.LAST_MODIFIED);
+            if (lastModified >= 0 && lastModified < date && HEURISTIC_STATUSES.contains(status))
+                return Math.min(MAX_HEURISTIC_LIFETIME, TimeUnit.MILLISECONDS.toSeconds(date - lastModified) / 10);
+            return 0;
+        }
+
+        private boolean hasValidators()
+        {
+            return headers.contains(HttpHeader.ETAG) || headers.contains(HttpHeader.LAST_MODIFIED);
+        }
+
+        /**
+         * @param requestHeaders the request headers
+         * @return whether this stored response can be served for the given request headers, see RFC 9111 section 4.1
+         */
+        public boolean matches(HttpFields requestHeaders)
+        {
+            for (HttpField field : varyFields)
+            {
+                String name = field.getName();
+                String stored = normalize(varyFields.getValuesList(name));
+                String requested = normalize(requestHeaders.getValuesList(name));
+                if (!stored.equals(requested))
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean isSameVariant(Entry that)
+        {
+            return varyFields.equals(that.varyFields);
+        }
+
+        private static String normalize(List<String> values)
+        {
+            StringBuilder builder = new StringBuilder();
+            for (String value : values)
+            {
+                for (String token : value.split(","))
+                {
+                    String trimmed = token.trim();
+                    if (trimmed.isEmpty())
+                        continue;
+                    if (!builder.isEmpty())
+                        builder.append(',');
+                    builder.append(trimmed);
+                }
+            }
+            return builder.toString();
+        }
+
+        /**
+         * <p>Evaluates the conditional headers of the given request against this stored response.</p>
+         *
+         * @param requestHeaders the request headers
+         * @return whether a {@code 304 Not Modified} response should be sent instead of this stored response
+         */
+        public boolean isNotModified(HttpFields requestHeaders)
+        {
+            if (status != HttpStatus.OK_200)
+                return false;
+            List<String> ifNoneMatch = requestHeaders.getCSV(HttpHeader.IF_NONE_MATCH, true);
+            if (!ifNoneMatch.isEmpty())
+            {
+                String etag = headers.get(HttpHeader.ETAG);
+                if (etag == null)
+                    return false;
+                for (String tag : ifNoneMatch)
+                {
+                    // Weak comparison, see RFC 9110 section 13.1.2.
+                    if ("*".equals(tag) || weak(tag).equals(weak(etag)))
+                        return true;
+                }
+                return false;
+            }
+            long ifModifiedSince = dateField(requestHeaders, HttpHeader.IF_MODIFIED_SINCE);
+            if (ifModifiedSince < 0)
+                return false;
+            long lastModified = dateField(headers, HttpHeader.LAST_MODIFIED);
+            return lastModified >= 0 && lastModified <= ifModifiedSince;
+        }
+
+        private static String weak(String etag)
+        {
+            return etag.startsWith("W/") ? etag.substring(2) : etag;
+        }
+
+        /**
+         * <p>Writes the headers of this stored response to the given headers,
+         * adding the {@code Age} header.</p>
+         *
+         * @param headers the headers to write to
+         * @param now the current time, in milliseconds since the Unix Epoch
+         */
+        public void writeHeaders(HttpFields.Mutable headers, long now)
+        {
+            for (HttpField field : this.headers)
+            {
+                if (field.getHeader() != HttpHeader.AGE)
+                    headers.add(field);
+            }
+            headers.put(HttpHeader.AGE, getAge(now));
+        }
+
+        private Entry freshen(HttpFields notModifiedHeaders, long requestTime, long responseTime)
+        {
+            HttpFields.Mutable updated = HttpFields.build(headers);
+            for (HttpField field : notModifiedHeaders)
+            {
+                if (!NOT_UPDATED_HEADERS.contains(field.getHeader()))
+                    updated.remove(field.getName());
+            }
+            for (HttpField field : notModifiedHeaders)
+            {
+                if (!NOT_UPDATED_HEADERS.contains(field.getHeader()))
+                    updated.add(field);
+            }
+            // The new entry shares the content with this entry.
+            content.retain();
+            return new Entry(key, status, updated.asImmutable(), varyFields, content, requestTime, responseTime);
+        }
+
+        private void writeTo(DataOutputStream output) throws IOException
+        {
+            output.writeInt(status);
+            output.writeLong(requestTime);
+            output.writeLong(responseTime);
+            writeFields(output, headers);
+            writeFields(output, varyFields);
+            ByteBuffer buffer = getContent();
+            output.writeInt(buffer.remaining());
+            BufferUtil.writeTo(buffer, output);
+        }
+
+        private static void writeFields(DataOutputStream output, HttpFields fields) throws IOException
+        {
+            output.writeInt(fields.size());
+            for (HttpField field : fields)
+            {
+                output.writeUTF(field.getName());
+                output.writeUTF(StringUtil.nonNull(field.getValue()));
+            }
+        }
+
+        private static Entry readFrom(String key, DataInputStream input, ByteBufferPool bufferPool) throws IOException
+        {
+            int status = input.readInt();
+            long requestTime = input.readLong();
+            long responseTime = input.readLong();
+            HttpFields headers = readFields(input);
+            HttpFields varyFields = readFields(input);
+            int length = input.readInt();
+            RetainableByteBuffer content = bufferPool.acquire(length, false);
+            try
+            {
+                ByteBuffer buffer = content.getByteBuffer();
+                int position = BufferUtil.flipToFill(buffer);
+                input.readFully(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                BufferUtil.flipToFlush(buffer, position);
+                return new Entry(key, status, headers, varyFields, content, requestTime, responseTime);
+            }
+            catch (Throwable x)
+            {
+                content.release();
+                throw x;
+            }
+        }
+
+        private static HttpFields readFields(DataInputStream input) throws IOException
+        {
+            int size = input.readInt();
+            HttpFields.Mutable fields = HttpFields.build(size);
+            for (int i = 0; i < size; ++i)
+            {
+                fields.add(input.readUTF(), input.readUTF());
+            }
+            return fields.asImmutable();
+        }
+
+        @Override
+        public boolean canRetain()
+        {
+            return true;
+        }
+
+        @Override
+        public void retain()
+        {
+            content.retain();
+        }
+
+        @Override
+        public boolean release()
+        {
+            return content.release();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%d,%s,%d bytes]", getClass().getSimpleName(), hashCode(), status, key, getContentLength());
+        }
+    }
+
+    private static long dateField(HttpFields fields, HttpHeader header)
+    {
+        try
+        {
+            return fields.getDateField(header);
+        }
+        catch (Throwable x)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * <p>The {@code Cache-Control} directives of a request or of a response.</p>
+     * <p>Durations are expressed in seconds, with {@code -1} meaning that the
+     * directive is not present.</p>
+     *
+     * @param maxAge the {@code max-age} directive
+     * @param sMaxAge the {@code s-maxage} directive
+     * @param maxStale the {@code max-stale} directive, {@link Long#MAX_VALUE} if present without value
+     * @param minFresh the {@code min-fresh} directive
+     * @param staleWhileRevalidate the {@code stale-while-revalidate} directive
+     * @param noCache whether the {@code no-cache} directive is present
+     * @param noStore whether the {@code no-store} directive is present
+     * @param isPublic whether the {@code public} directive is present
+     * @param isPrivate whether the {@code private} directive is present
+     * @param mustRevalidate whether the {@code must-revalidate} directive is present
+     * @param proxyRevalidate whether the {@code proxy-revalidate} directive is present
+     * @param onlyIfCached whether the {@code only-if-cached} directive is present
+     */
+    public record CacheControl(
+        long maxAge,
+        long sMaxAge,
+        long maxStale,
+        long minFresh,
+        long staleWhileRevalidate,
+        boolean noCache,
+        boolean noStore,
+        boolean isPublic,
+        boolean isPrivate,
+        boolean mustRevalidate,
+        boolean proxyRevalidate,
+        boolean onlyIfCached)
+    {
+        public static CacheControl from(HttpFields fields)
+        {
+            long maxAge = -1;
+            long sMaxAge = -1;
+            long maxStale = -1;
+            long minFresh = -1;
+            long staleWhileRevalidate = -1;
+            boolean noCache = false;
+            boolean noStore = false;
+            boolean isPublic = false;
+            boolean isPrivate = false;
+            boolean mustRevalidate = false;
+            boolean proxyRevalidate = false;
+            boolean onlyIfCached = false;
+
+            List<String> values = fields.getValuesList(HttpHeader.CACHE_CONTROL);
+            if (values.isEmpty())
+            {
+                // Pragma: no-cache is only honored when Cache-Control is absent, see RFC 9111 section 5.4.
+                noCache = fields.contains(HttpHeader.PRAGMA, "no-cache");
+            }
+            else
+            {
+                for (String directive : new QuotedCSV(false, values.toArray(String[]::new)))
+                {
+                    int equals = directive.indexOf('=');
+                    String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase();
+                    String value = equals < 0 ? null : QuotedCSVParser.unquote(directive.substring(equals + 1).trim());
+                    switch (name)
+                    {
+                        case "max-age" -> maxAge = seconds(value, maxAge);
+                        case "s-maxage" -> sMaxAge = seconds(value, sMaxAge);
+                        case "max-stale" -> maxStale = value == null ? Long.MAX_VALUE : seconds(value, maxStale);
+                        case "min-fresh" -> minFresh = seconds(value, minFresh);
+                        case "stale-while-revalidate" -> staleWhileRevalidate = seconds(value, staleWhileRevalidate);
+                        case "no-cache" -> noCache = true;
+                        case "no-store" -> noStore = true;
+                        case "public" -> isPublic = true;
+                        case "private" -> isPrivate = true;
+                        case "must-revalidate" -> mustRevalidate = true;
+                        case "proxy-revalidate" -> proxyRevalidate = true;
+                        case "only-if-cached" -> onlyIfCached = true;
+                        default ->
+                        {
+                            // Ignore unknown directives, see RFC 9111 section 5.2.3.
+                        }
+                    }
+                }
+            }
+            return new CacheControl(maxAge, sMaxAge, maxStale, minFresh, staleWhileRevalidate,
+                noCache, noStore, isPublic, isPrivate, mustRevalidate, proxyRevalidate, onlyIfCached);
+        }
+
+        private static long seconds(String value, long defaultValue)
+        {
+            if (value == null)
+                return defaultValue;
+            try
+            {
+                return Math.max(0, Long.parseLong(value));
+            }
+            catch (NumberFormatException x)
+            {
+                // Values too large to be represented are treated as infinite.
+                return StringUtil.isBlank(value) || !value.chars().allMatch(Character::isDigit) ? defaultValue : Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private class CachingResponseListener implements Response.Listener
+    {
+        private final Lookup lookup;
+        private final Request request;
+        private final Response.Listener delegate;
+        private Writer writer;
+        private boolean notModified;
+
+        private CachingResponseListener(Lookup lookup, Request request, Response.Listener delegate)
+        {
+            this.lookup = lookup;
+            this.request = request;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onBegin(Response response)
+        {
+            notModified = response.getStatus() == HttpStatus.NOT_MODIFIED_304 && lookup.getEntry() != null;
+            if (!notModified && delegate != null)
+                delegate.onBegin(response);
+        }
+
+        @Override
+        public boolean onHeader(Response response, HttpField field)
+        {
+            return notModified || delegate == null || delegate.onHeader(response, field);
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            if (notModified)
+                return;
+            writer = lookup.newWriter(response.getStatus(), response.getHeaders());
+            if (delegate != null)
+                delegate.onHeaders(response);
+        }
+
+        @Override
+        public void onContentSource(Response response, Content.Source contentSource)
+        {
+            Content.Source source = writer == null ? contentSource : new TeeContentSource(contentSource, writer);
+            if (delegate == null)
+                Response.Listener.super.onContentSource(response, source);
+            else
+                delegate.onContentSource(response, source);
+        }
+
+        @Override
+        public void onSuccess(Response response)
+        {
+            if (notModified)
+            {
+                Entry freshened = lookup.freshen(response.getHeaders());
+                if (delegate == null)
+                    freshened.release();
+                else
+                    notifyStored(request, new Lookup(Status.FRESH, freshened, lookup.method, lookup.uri, lookup.requestHeaders, null, false), delegate);
+                return;
+            }
+            if (writer != null)
+                writer.commit();
+            if (lookup.isInvalidating() && response.getStatus() < HttpStatus.BAD_REQUEST_400)
+                invalidate(lookup.uri);
+            if (delegate != null)
+                delegate.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable failure)
+        {
+            if (writer != null)
+                writer.abort();
+            if (delegate != null)
+            {
+                if (notModified)
+                    delegate.onBegin(response);
+                delegate.onFailure(response, failure);
+            }
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            lookup.complete();
+            if (notModified && result.isSucceeded())
+                return;
+            if (delegate != null)
+                delegate.onComplete(result);
+        }
+    }
+
+    /**
+     * <p>A {@link Content.Source} that copies the content it reads into a {@link Writer}.</p>
+     */
+    private static class TeeContentSource implements Content.Source
+    {
+        private final Content.Source source;
+        private final Writer writer;
+
+        private TeeContentSource(Content.Source source, Writer writer)
+        {
+            this.source = source;
+            this.writer = writer;
+        }
+
+        @Override
+        public Content.Chunk read()
+        {
+            Content.Chunk chunk = source.read();
+            if (chunk != null)
+            {
+                if (Content.Chunk.isFailure(chunk))
+                    writer.abort();
+                else if (chunk.hasRemaining())
+                    writer.write(chunk.getByteBuffer());
+            }
+            return chunk;
+        }
+
+        @Override
+        public void demand(Runnable demandCallback)
+        {
+            source.demand(demandCallback);
+        }
+
+        @Override
+        public void fail(Throwable failure)
+        {
+            writer.abort();
+            source.fail(failure);
+        }
+
+        @Override
+        public long getLength()
+        {
+            return source.getLength();
+        }
+    }
+
+    /**
+     * <p>A {@link Content.Source} for the content of a stored response,
+     * that notifies when the reader reads the end of the content,
+     * or when the reader fails this source.</p>
+     */
+    private static class StoredContentSource implements Content.Source
+    {
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final ByteBuffer content;
+        private final Runnable onSuccess;
+        private final Consumer<Throwable> onFailure;
+        private volatile Throwable failure;
+        private boolean read;
+
+        private StoredContentSource(ByteBuffer content, Runnable onSuccess, Consumer<Throwable> onFailure)
+        {
+            this.content = content;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        public Content.Chunk read()
+        {
+            Throwable failure = this.failure;
+            if (failure != null)
+                return Content.Chunk.from(failure, true);
+            if (!read)
+            {
+                read = true;
+                return Content.Chunk.from(content, false);
+            }
+            // The reader has consumed the content.
+            if (done.compareAndSet(false, true))
+                onSuccess.run();
+            return Content.Chunk.EOF;
+        }
+
+        @Override
+        public void demand(Runnable demandCallback)
+        {
+            demandCallback.run();
+        }
+
+        @Override
+        public void fail(Throwable failure)
+        {
+            if (done.compareAndSet(false, true))
+            {
+                this.failure = failure;
+                onFailure.accept(failure);
+            }
+        }
+
+        @Override
+        public long getLength()
+        {
+            return content.remaining();
+        }
+    }
+}
@@ -13,10 +13,12 @@
 
 package org.eclipse.jetty.client;
 
+import java.net.Inet6Address;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.time.Duration;
@@ -25,10 +27,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jetty.client.internal.HttpAuthenticationStore;
@@ -52,7 +56,9 @@ import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.ClientConnector;
 import org.eclipse.jetty.io.Transport;
 import org.eclipse.jetty.io.ssl.SslClientConnectionFactory;
+import org.eclipse.jetty.util.ExceptionUtil;
 import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.Jetty;
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.Promise;
@@ -62,6 +68,7 @@ import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -128,6 +135,7 @@ public class HttpClient extends ContainerLifeCycle
     private int responseBufferSize = 16384;
     private int maxRedirects = 8;
     private long addressResolutionTimeout = 15000;
+    private long connectionAttemptDelay = 250;
     private boolean strictEventOrdering = false;
     private long destinationIdleTimeout;
     private String name = getClass().getSimpleName() + "@" + Integer.toHexString(hashCode());
@@ -203,7 +211,7 @@ public class HttpClient extends ContainerLifeCycle
         }
 
         if (resolver == null)
-            setSocketAddressResolver(new SocketAddressResolver.Async(getExecutor(), scheduler, getAddressResolutionTimeout()));
+            setSocketAddressResolver(new SocketAddressResolver.Caching(new SocketAddressResolver.Async(getExecutor(), scheduler, getAddressResolutionTimeout())));
 
         handlers.put(new ContinueProtocolHandler());
         handlers.put(new ProcessingProtocolHandler());
@@ -506,6 +514,24 @@ public class HttpClient extends ContainerLifeCycle
         });
     }
 
+    /**
+     * <p>Pre-creates up to {@code connectionCount} connections to the destination
+     * of the given URI, so that they are ready to be used when requests are sent.</p>
+     * <p>The returned {@link CompletableFuture} is completed when the connections
+     * are established, which includes the TLS handshake for secure destinations
+     * and the protocol preface exchange for multiplexed protocols such as HTTP/2.</p>
+     *
+     * @param uri the URI that identifies the destination
+     * @param connectionCount the number of connections to pre-create
+     * @return a {@link CompletableFuture} completed when the connections are ready
+     * @see ConnectionPool#preCreateConnections(int)
+     */
+    public CompletableFuture<Void> preCreateConnections(URI uri, int connectionCount)
+    {
+        Destination destination = resolveDestination(newRequest(uri));
+        return destination.getConnectionPool().preCreateConnections(connectionCount);
+    }
+
     public boolean removeDestination(Destination destination)
     {
         HttpDestination httpDestination = (HttpDestination)destination;
@@ -552,7 +578,11 @@ public class HttpClient extends ContainerLifeCycle
                 @Override
                 public void succeeded(List<InetSocketAddress> socketAddresses)
                 {
-                    connect(socketAddresses, 0, context);
+                    long delay = getConnectionAttemptDelay();
+                    if (delay > 0 && socketAddresses.size() > 1 && !isConnectBlocking())
+                        new HappyEyeballs(interleave(socketAddresses), delay, context, promise).connect();
+                    else
+                        connect(socketAddresses, 0, context);
                 }
 
                 @Override
@@ -586,6 +616,40 @@ public class HttpClient extends ContainerLifeCycle
         }
     }
 
+    /**
+     * <p>Orders the given addresses as specified by
+     * <a href="https://datatracker.ietf.org/doc/html/rfc8305#section-4">RFC 8305, section 4</a>,
+     * interleaving IPv6 and IPv4 addresses, starting with the family of the first address.</p>
+     *
+     * @param socketAddresses the addresses to order
+     * @return the interleaved addresses
+     */
+    static List<InetSocketAddress> interleave(List<InetSocketAddress> socketAddresses)
+    {
+        List<InetSocketAddress> preferred = new ArrayList<>();
+        List<InetSocketAddress> others = new ArrayList<>();
+        boolean preferIPv6 = socketAddresses.get(0).getAddress() instanceof Inet6Address;
+        for (InetSocketAddress socketAddress : socketAddresses)
+        {
+            boolean ipv6 = socketAddress.getAddress() instanceof Inet6Address;
+            if (ipv6 == preferIPv6)
+                preferred.add(socketAddress);
+            else
+                others.add(socketAddress);
+        }
+        if (others.isEmpty())
+            return socketAddresses;
+        List<InetSocketAddress> result = new ArrayList<>(socketAddresses.size());
+        for (int i = 0; i < Math.max(preferred.size(), others.size()); ++i)
+        {
+            if (i < preferred.size())
+                result.add(preferred.get(i));
+            if (i < others.size())
+                result.add(others.get(i));
+        }
+        return result;
+    }
+
     private HttpConversation newConversation()
     {
         return new HttpConversation();
@@ -681,6 +745,35 @@ public class HttpClient extends ContainerLifeCycle
         this.addressResolutionTimeout = addressResolutionTimeout;
     }
 
+    /**
+     * @return the delay, in milliseconds, after which a connection attempt to the next resolved address is started
+     * @see #setConnectionAttemptDelay(long)
+     */
+    @ManagedAttribute("The delay, in milliseconds, to start a connection attempt to the next resolved address")
+    public long getConnectionAttemptDelay()
+    {
+        return connectionAttemptDelay;
+    }
+
+    /**
+     * <p>Sets the delay, in milliseconds, after which a connection attempt to the next
+     * resolved address is started, if the previous attempts did not complete yet.</p>
+     * <p>When a host resolves to multiple addresses, connection attempts are raced as
+     * specified by <a href="https://datatracker.ietf.org/doc/html/rfc8305">RFC 8305</a>
+     * (also known as "happy eyeballs"), interleaving IPv6 and IPv4 addresses: the first
+     * connection that is established is used, and the others are closed.
+     * A failed attempt immediately starts the attempt to the next address.</p>
+     * <p>A value of zero or less, or connect operations performed in blocking mode,
+     * disable the racing, so that addresses are tried one at a time, in the order
+     * returned by the {@link SocketAddressResolver}.</p>
+     *
+     * @param connectionAttemptDelay the delay, in milliseconds, to start a connection attempt to the next resolved address
+     */
+    public void setConnectionAttemptDelay(long connectionAttemptDelay)
+    {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+    }
+
     /**
      * @return the max time, in milliseconds, a connection can be idle (that is, without traffic of bytes in either direction)
      */
@@ -1141,4 +1234,162 @@ public class HttpClient extends ContainerLifeCycle
             sslContextFactory = getSslContextFactory();
         return new SslClientConnectionFactory(sslContextFactory, getByteBufferPool(), getExecutor(), connectionFactory);
     }
+
+    /**
+     * <p>Races connection attempts to multiple addresses, as specified by
+     * <a href="https://datatracker.ietf.org/doc/html/rfc8305">RFC 8305</a>.</p>
+     * <p>When one attempt succeeds, the other attempts still in progress are aborted.</p>
+     */
+    private class HappyEyeballs
+    {
+        private final AutoLock lock = new AutoLock();
+        private final List<Attempt> attempts = new ArrayList<>();
+        private final List<InetSocketAddress> socketAddresses;
+        private final long delay;
+        private final Map<String, Object> context;
+        private final Promise<Connection> promise;
+        private int next;
+        private boolean complete;
+        private Scheduler.Task task;
+        private Throwable failure;
+
+        private HappyEyeballs(List<InetSocketAddress> socketAddresses, long delay, Map<String, Object> context, Promise<Connection> promise)
+        {
+            this.socketAddresses = socketAddresses;
+            this.delay = delay;
+            this.context = context;
+            this.promise = promise;
+        }
+
+        private void connect()
+        {
+            Attempt attempt;
+            try (AutoLock ignored = lock.lock())
+            {
+                if (complete || next == socketAddresses.size())
+                    return;
+                int index = next++;
+                attempt = new Attempt(index, socketAddresses.get(index));
+                attempts.add(attempt);
+                if (task != null)
+                    task.cancel();
+                task = next < socketAddresses.size() ? getScheduler().schedule(this::connect, delay, TimeUnit.MILLISECONDS) : null;
+            }
+            attempt.connect();
+        }
+
+        private void onConnected(Attempt attempt, Connection connection)
+        {
+            boolean winner;
+            List<Attempt> losers = List.of();
+            try (AutoLock ignored = lock.lock())
+            {
+                attempts.remove(attempt);
+                winner = !complete;
+                if (winner)
+                {
+                    complete = true;
+                    if (task != null)
+                        task.cancel();
+                    task = null;
+                    losers = new ArrayList<>(attempts);
+                    attempts.clear();
+                }
+            }
+
+            if (winner)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Connected to {} {}", attempt.socketAddress, connection);
+                losers.forEach(Attempt::abort);
+                promise.succeeded(connection);
+            }
+            else
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Closing connection to {} that lost the race {}", attempt.socketAddress, connection);
+                connection.close();
+            }
+        }
+
+        private void onFailed(Attempt attempt, Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection attempt to {} failed", attempt.socketAddress, x);
+
+            boolean connectNext = false;
+            Throwable result = null;
+            try (AutoLock ignored = lock.lock())
+            {
+                attempts.remove(attempt);
+                if (complete)
+                    return;
+                failure = ExceptionUtil.combine(failure, x);
+                if (next < socketAddresses.size())
+                {
+                    connectNext = true;
+                }
+                else if (attempts.isEmpty())
+                {
+                    complete = true;
+                    result = failure;
+                }
+            }
+
+            if (connectNext)
+                connect();
+            else if (result != null)
+                promise.failed(result);
+        }
+
+        private class Attempt implements Promise<Connection>
+        {
+            private final int index;
+            private final InetSocketAddress socketAddress;
+            // Each attempt needs its own context, as attempts may be concurrent.
+            private final Map<String, Object> attemptContext = new ConcurrentHashMap<>(context);
+            private volatile boolean aborted;
+
+            private Attempt(int index, InetSocketAddress socketAddress)
+            {
+                this.index = index;
+                this.socketAddress = socketAddress;
+                attemptContext.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY, this);
+            }
+
+            private void connect()
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Connection attempt {}/{} to {}", index + 1, socketAddresses.size(), socketAddress);
+                HttpClient.this.transport.connect((SocketAddress)socketAddress, attemptContext);
+                // The attempt may have been aborted before its channel was created.
+                if (aborted)
+                    abort();
+            }
+
+            private void abort()
+            {
+                aborted = true;
+                // Closing the channel releases the socket immediately, rather than
+                // waiting for the connect timeout, and fails this attempt; if the
+                // connection is nonetheless established, onConnected() closes it.
+                SelectableChannel channel = (SelectableChannel)attemptContext.get(ClientConnector.SELECTABLE_CHANNEL_CONTEXT_KEY);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Aborting connection attempt to {} {}", socketAddress, channel);
+                IO.close(channel);
+            }
+
+            @Override
+            public void succeeded(Connection connection)
+            {
+                onConnected(this, connection);
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                onFailed(this, x);
+            }
+        }
+    }
 }
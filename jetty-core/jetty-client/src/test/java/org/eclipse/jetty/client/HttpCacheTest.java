@@ -0,0 +1,433 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpCacheTest extends AbstractHttpClientServerTest
+{
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpCache cache;
+    private Path storeDirectory;
+
+    private void start(Handler handler) throws Exception
+    {
+        start(new NormalScenario(), handler);
+        cache = new HttpCache(client.getByteBufferPool());
+        cache.setStoreDirectory(storeDirectory);
+        cache.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(cache);
+        if (storeDirectory != null)
+            IO.delete(storeDirectory);
+    }
+
+    private ContentResponse send(String path, HttpFields headers) throws Exception
+    {
+        org.eclipse.jetty.client.Request request = client.newRequest("localhost", connector.getLocalPort())
+            .path(path)
+            .headers(h -> h.add(headers))
+            .timeout(5, TimeUnit.SECONDS);
+        return send(request).get(5, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<ContentResponse> send(org.eclipse.jetty.client.Request request)
+    {
+        CompletableFuture<ContentResponse> completable = new CompletableFuture<>();
+        cache.send(request, new BufferingResponseListener()
+        {
+            @Override
+            public void onComplete(Result result)
+            {
+                if (result.isSucceeded())
+                    completable.complete(ContentResponse.from(result.getResponse(), getContent(), getMediaType(), getEncoding()));
+                else
+                    completable.completeExceptionally(result.getFailure());
+            }
+        });
+        return completable;
+    }
+
+    private ContentResponse send(String path) throws Exception
+    {
+        return send(path, HttpFields.EMPTY);
+    }
+
+    private Handler newHandler(String cacheControl)
+    {
+        return new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                int count = requests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, cacheControl);
+                Content.Sink.write(response, true, "content" + count, callback);
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        ContentResponse response1 = send("/");
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        assertEquals("content1", response1.getContentAsString());
+
+        ContentResponse response2 = send("/");
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("content1", response2.getContentAsString());
+        assertNotNull(response2.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testFailedStoredContentIsNotifiedAsFailure() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        assertEquals("content1", send("/").getContentAsString());
+
+        AtomicBoolean succeeded = new AtomicBoolean();
+        CompletableFuture<Result> completable = new CompletableFuture<>();
+        org.eclipse.jetty.client.Request request = client.newRequest("localhost", connector.getLocalPort()).path("/");
+        cache.send(request, new org.eclipse.jetty.client.Response.Listener()
+        {
+            @Override
+            public void onContentSource(org.eclipse.jetty.client.Response response, Content.Source contentSource)
+            {
+                contentSource.fail(new IOException("explicitly_thrown_by_test"));
+            }
+
+            @Override
+            public void onSuccess(org.eclipse.jetty.client.Response response)
+            {
+                succeeded.set(true);
+            }
+
+            @Override
+            public void onComplete(Result result)
+            {
+                completable.complete(result);
+            }
+        });
+
+        Result result = completable.get(5, TimeUnit.SECONDS);
+        assertTrue(result.isFailed());
+        assertInstanceOf(IOException.class, result.getResponseFailure());
+        assertFalse(succeeded.get());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testNoStoreResponseIsNotCached() throws Exception
+    {
+        start(newHandler("no-store"));
+
+        assertEquals("content1", send("/").getContentAsString());
+        assertEquals("content2", send("/").getContentAsString());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testRequestNoCacheRevalidates() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        assertEquals("content1", send("/").getContentAsString());
+        // No validators, so the response is fetched again.
+        HttpFields headers = HttpFields.build().put(HttpHeader.CACHE_CONTROL, "no-cache");
+        assertEquals("content2", send("/", headers).getContentAsString());
+        assertEquals("content2", send("/").getContentAsString());
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithETag() throws Exception
+    {
+        List<String> conditionals = new ArrayList<>();
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                requests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=0");
+                response.getHeaders().put(HttpHeader.ETAG, "\"v1\"");
+                String ifNoneMatch = request.getHeaders().get(HttpHeader.IF_NONE_MATCH);
+                if (ifNoneMatch != null)
+                {
+                    conditionals.add(ifNoneMatch);
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    callback.succeeded();
+                    return true;
+                }
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        assertEquals("content", send("/").getContentAsString());
+
+        ContentResponse response = send("/");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals(List.of("\"v1\""), conditionals);
+        assertEquals(2, requests.get());
+        assertEquals(1, cache.getRevalidations());
+
+        // The client's own conditional request is answered from the cache.
+        HttpFields headers = HttpFields.build().put(HttpHeader.IF_NONE_MATCH, "W/\"v1\"");
+        assertEquals(HttpStatus.NOT_MODIFIED_304, send("/", headers).getStatus());
+    }
+
+    @Test
+    public void testVary() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                requests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                response.getHeaders().put(HttpHeader.VARY, "Accept-Language");
+                String language = request.getHeaders().get(HttpHeader.ACCEPT_LANGUAGE);
+                Content.Sink.write(response, true, String.valueOf(language), callback);
+                return true;
+            }
+        });
+
+        HttpFields english = HttpFields.build().put(HttpHeader.ACCEPT_LANGUAGE, "en");
+        HttpFields italian = HttpFields.build().put(HttpHeader.ACCEPT_LANGUAGE, "it");
+        assertEquals("en", send("/", english).getContentAsString());
+        assertEquals("it", send("/", italian).getContentAsString());
+        assertEquals("en", send("/", english).getContentAsString());
+        assertEquals("it", send("/", italian).getContentAsString());
+        assertEquals("null", send("/").getContentAsString());
+
+        assertEquals(3, requests.get());
+        assertEquals(3, cache.getEntryCount());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception
+    {
+        start(newHandler("max-age=0, stale-while-revalidate=60"));
+
+        assertEquals("content1", send("/").getContentAsString());
+        // The stale response is served, and revalidated in background.
+        assertEquals("content1", send("/").getContentAsString());
+
+        long start = NanoTime.now();
+        while (requests.get() < 2 && NanoTime.secondsSince(start) < 5)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(2, requests.get());
+        start = NanoTime.now();
+        String content = send("/").getContentAsString();
+        while (!"content2".equals(content) && NanoTime.secondsSince(start) < 5)
+        {
+            Thread.sleep(10);
+            content = send("/").getContentAsString();
+        }
+        assertEquals("content2", content);
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                requests.incrementAndGet();
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            responses.add(send(client.newRequest("localhost", connector.getLocalPort()).timeout(5, TimeUnit.SECONDS)));
+        }
+        latch.countDown();
+
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals("content", response.get(5, TimeUnit.SECONDS).getContentAsString());
+        }
+        assertEquals(1, requests.get());
+        assertEquals(3, cache.getCoalesced());
+    }
+
+    @Test
+    public void testUnsafeMethodInvalidates() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        assertEquals("content1", send("/").getContentAsString());
+        assertEquals("content1", send("/").getContentAsString());
+        send(client.newRequest("localhost", connector.getLocalPort())
+            .method(HttpMethod.POST)
+            .timeout(5, TimeUnit.SECONDS))
+            .get(5, TimeUnit.SECONDS);
+        assertEquals("content3", send("/").getContentAsString());
+    }
+
+    @Test
+    public void testHeadResponseIsNotServedToGet() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        ContentResponse head = send(client.newRequest("localhost", connector.getLocalPort())
+            .method(HttpMethod.HEAD)
+            .timeout(5, TimeUnit.SECONDS))
+            .get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK_200, head.getStatus());
+        assertEquals(0, head.getContent().length);
+        assertEquals(0, cache.getEntryCount());
+
+        ContentResponse get = send("/");
+        assertEquals(HttpStatus.OK_200, get.getStatus());
+        assertEquals("content2", get.getContentAsString());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testOnlyIfCached() throws Exception
+    {
+        start(newHandler("max-age=60"));
+
+        HttpFields headers = HttpFields.build().put(HttpHeader.CACHE_CONTROL, "only-if-cached");
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT_504, send("/", headers).getStatus());
+        assertEquals("content1", send("/").getContentAsString());
+        assertEquals("content1", send("/", headers).getContentAsString());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testEntriesMoveToOnDiskStore() throws Exception
+    {
+        storeDirectory = Files.createTempDirectory(HttpCacheTest.class.getSimpleName());
+        start(newHandler("max-age=60"));
+        cache.setMaxMemorySize(0);
+
+        assertEquals("content1", send("/").getContentAsString());
+        assertEquals(0, cache.getEntryCount());
+        // The response is saved to disk by the executor.
+        await().atMost(5, TimeUnit.SECONDS).until(cache::getStoreSize, greaterThan(0L));
+
+        // The lookup does not read the disk, but waits for the response to be loaded.
+        HttpURI uri = HttpURI.from("http://localhost:" + connector.getLocalPort() + "/");
+        HttpCache.Lookup lookup = cache.lookup(HttpMethod.GET.asString(), uri, HttpFields.EMPTY);
+        assertEquals(HttpCache.Status.WAIT, lookup.getStatus());
+        CountDownLatch loaded = new CountDownLatch(1);
+        lookup.whenComplete(loaded::countDown);
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        lookup.complete();
+
+        ContentResponse response = send("/");
+        assertEquals("content1", response.getContentAsString());
+        assertEquals("max-age=60", response.getHeaders().get(HttpHeader.CACHE_CONTROL));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testFreshnessLifetime()
+    {
+        HttpCache cache = new HttpCache(null);
+        HttpURI uri = HttpURI.from("http://localhost/path#fragment");
+
+        HttpCache.Lookup miss = cache.lookup("GET", uri, HttpFields.EMPTY);
+        assertEquals(HttpCache.Status.MISS, miss.getStatus());
+        long now = System.currentTimeMillis();
+        HttpFields responseHeaders = HttpFields.build()
+            .addDateField(HttpHeader.DATE.asString(), now)
+            .addDateField(HttpHeader.EXPIRES.asString(), now + TimeUnit.MINUTES.toMillis(1))
+            .put(HttpHeader.CACHE_CONTROL, "s-maxage=120, private=\"Set-Cookie, Foo\"");
+        HttpCache.Writer writer = miss.newWriter(HttpStatus.OK_200, responseHeaders);
+        // The private directive prevents shared caches from storing the response.
+        assertNull(writer);
+        miss.complete();
+
+        cache.setShared(false);
+        miss = cache.lookup("GET", uri, HttpFields.EMPTY);
+        writer = miss.newWriter(HttpStatus.OK_200, responseHeaders);
+        assertNotNull(writer);
+        writer.commit();
+        miss.complete();
+
+        HttpCache.Lookup hit = cache.lookup("HEAD", HttpURI.from("http://localhost/path"), HttpFields.EMPTY);
+        assertEquals(HttpCache.Status.FRESH, hit.getStatus());
+        // Private caches ignore s-maxage and use Expires.
+        assertEquals(60, hit.getEntry().getFreshnessLifetime(false));
+        assertEquals(120, hit.getEntry().getFreshnessLifetime(true));
+        hit.complete();
+
+        HttpFields requestHeaders = HttpFields.build().put(HttpHeader.CACHE_CONTROL, "min-fresh=90");
+        HttpCache.Lookup revalidate = cache.lookup("GET", uri, requestHeaders);
+        assertEquals(HttpCache.Status.MISS, revalidate.getStatus());
+        revalidate.complete();
+    }
+}
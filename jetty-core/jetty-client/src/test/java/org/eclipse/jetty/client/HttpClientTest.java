@@ -17,13 +17,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -76,6 +79,7 @@ import org.eclipse.jetty.util.SocketAddressResolver;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ArgumentsSource;
@@ -85,6 +89,7 @@ import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -856,6 +861,56 @@ public class HttpClientTest extends AbstractHttpClientServerTest
             .send();
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConnectionAttemptsAreRaced(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new EmptyServerHandler());
+        InetSocketAddress blackHole = InetSocketAddress.createUnresolved("blackhole", connector.getLocalPort());
+        SocketChannel blackHoleChannel = SocketChannel.open();
+        startClient(scenario, clientConnector -> new HttpClientTransportOverHTTP(clientConnector)
+        {
+            @Override
+            public void connect(SocketAddress address, Map<String, Object> context)
+            {
+                // Simulate a connect attempt that never completes.
+                if (blackHole.equals(address))
+                    context.put(ClientConnector.SELECTABLE_CHANNEL_CONTEXT_KEY, blackHoleChannel);
+                else
+                    super.connect(address, context);
+            }
+        }, client ->
+        {
+            client.setConnectionAttemptDelay(100);
+            client.setSocketAddressResolver((host, port, promise) ->
+                promise.succeeded(List.of(blackHole, new InetSocketAddress("localhost", port))));
+        });
+
+        long start = NanoTime.now();
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .timeout(15, TimeUnit.SECONDS)
+            .send();
+        assertEquals(200, response.getStatus());
+        assertThat(NanoTime.millisSince(start), lessThan(5000L));
+        // The connect attempt that lost the race has been aborted.
+        assertFalse(blackHoleChannel.isOpen());
+    }
+
+    @Test
+    public void testInterleaveAddresses() throws Exception
+    {
+        InetSocketAddress ipv6a = new InetSocketAddress(InetAddress.getByName("::1"), 80);
+        InetSocketAddress ipv6b = new InetSocketAddress(InetAddress.getByName("fe80::1"), 80);
+        InetSocketAddress ipv6c = new InetSocketAddress(InetAddress.getByName("fe80::2"), 80);
+        InetSocketAddress ipv4a = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 80);
+        InetSocketAddress ipv4b = new InetSocketAddress(InetAddress.getByName("127.0.0.2"), 80);
+
+        assertEquals(List.of(ipv6a, ipv4a, ipv6b, ipv4b, ipv6c), HttpClient.interleave(List.of(ipv6a, ipv6b, ipv6c, ipv4a, ipv4b)));
+        assertEquals(List.of(ipv4a, ipv6a, ipv4b, ipv6b, ipv6c), HttpClient.interleave(List.of(ipv4a, ipv4b, ipv6a, ipv6b, ipv6c)));
+        assertEquals(List.of(ipv4a, ipv4b), HttpClient.interleave(List.of(ipv4a, ipv4b)));
+    }
+
     @ParameterizedTest
     @ArgumentsSource(ScenarioProvider.class)
     public void testCustomUserAgent(Scenario scenario) throws Exception
@@ -31,5 +31,9 @@ contextHandlerClass?=org.eclipse.jetty.server.handler.ResourceHandler$ResourceCo
 ## Monitored directory scan period (seconds)
 # jetty.deploy.scanInterval=0
 
+## Whether the monitored directories are only scanned when the file system
+## notifies a change in them, rather than every scan period.
+# jetty.deploy.useWatchService=false
+
 ## Default ContextHandler class for core deployments
 # contextHandlerClass=org.eclipse.jetty.server.handler.ResourceHandler$ResourceContext
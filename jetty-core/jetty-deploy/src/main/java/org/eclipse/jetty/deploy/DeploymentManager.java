@@ -19,11 +19,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import org.eclipse.jetty.deploy.bindings.StandardDeployer;
 import org.eclipse.jetty.deploy.bindings.StandardStarter;
@@ -36,6 +39,8 @@ import org.eclipse.jetty.server.Deployable;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.util.ExceptionUtil;
+import org.eclipse.jetty.util.FileID;
+import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -59,6 +64,16 @@ import org.slf4j.LoggerFactory;
  * </ol>
  * <p>
  * <img alt="deployment manager graph" src="doc-files/DeploymentManager.png">
+ * <p>
+ * By default, the apps provided when the Deployment Manager starts are moved to the
+ * {@link #getDefaultLifeCycleGoal() default lifecycle goal} one at a time.
+ * If a {@link #setLifeCycleExecutor(Executor) lifecycle executor} is configured, these apps are
+ * moved through the {@link AppLifeCycle} concurrently, except for the apps that declare, via the
+ * {@link Deployable#DEPENDS_ON} property, a comma separated list of the ids of the apps they depend on,
+ * which are deployed after the apps they depend on.
+ * The id of an app is the file name of its {@link App#getPath() path}, with or without extension.
+ * The {@link AppLifeCycle.Binding bindings} of an app, including those grouped in an
+ * {@link org.eclipse.jetty.deploy.bindings.OrderedGroupBinding}, are still run in order.
  */
 @ManagedObject("Deployment Manager")
 public class DeploymentManager extends ContainerLifeCycle
@@ -121,6 +136,7 @@ public class DeploymentManager extends ContainerLifeCycle
 
     private final AutoLock _lock = new AutoLock();
     private Throwable _onStartupErrors;
+    private List<AppEntry> _startupApps;
     private final List<AppProvider> _providers = new ArrayList<>();
     private final AppLifeCycle _lifecycle = new AppLifeCycle();
     private final Queue<AppEntry> _apps = new ConcurrentLinkedQueue<AppEntry>();
@@ -158,6 +174,16 @@ public class DeploymentManager extends ContainerLifeCycle
 
         if (isRunning() && _defaultLifeCycleGoal != null)
         {
+            try (AutoLock l = _lock.lock())
+            {
+                // Deployed concurrently by doStart().
+                if (_startupApps != null)
+                {
+                    _startupApps.add(entry);
+                    return;
+                }
+            }
+
             // Immediately attempt to go to default lifecycle state
             this.requestAppGoal(entry, _defaultLifeCycleGoal);
         }
@@ -257,12 +283,32 @@ public class DeploymentManager extends ContainerLifeCycle
             addLifeCycleBinding(new StandardUndeployer());
         }
 
+        boolean concurrent = getLifeCycleExecutor() != null && _defaultLifeCycleGoal != null;
+        if (concurrent)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _startupApps = new ArrayList<>();
+            }
+        }
+
         // Start all of the AppProviders
         for (AppProvider provider : _providers)
         {
             startAppProvider(provider);
         }
 
+        if (concurrent)
+        {
+            List<AppEntry> apps;
+            try (AutoLock l = _lock.lock())
+            {
+                apps = _startupApps;
+                _startupApps = null;
+            }
+            deployConcurrently(apps);
+        }
+
         try (AutoLock l = _lock.lock())
         {
             ExceptionUtil.ifExceptionThrow(_onStartupErrors);
@@ -271,6 +317,49 @@ public class DeploymentManager extends ContainerLifeCycle
         super.doStart();
     }
 
+    private void deployConcurrently(List<AppEntry> apps) throws Exception
+    {
+        String goal = _defaultLifeCycleGoal;
+        Map<AppEntry, Callable<?>> tasks = new LinkedHashMap<>();
+        for (AppEntry entry : apps)
+        {
+            tasks.put(entry, () ->
+            {
+                // Failures are collected as startup errors.
+                requestAppGoal(entry, goal);
+                return null;
+            });
+        }
+        runConcurrently(tasks, entry -> getDependencies(entry, apps), false);
+    }
+
+    private List<AppEntry> getDependencies(AppEntry entry, List<AppEntry> apps)
+    {
+        String dependsOn = entry.app.getProperties().get(Deployable.DEPENDS_ON);
+        if (StringUtil.isBlank(dependsOn))
+            return List.of();
+        List<AppEntry> result = new ArrayList<>();
+        for (String id : StringUtil.csvSplit(dependsOn))
+        {
+            AppEntry dependency = null;
+            for (AppEntry other : apps)
+            {
+                Path path = other.app.getPath();
+                String fileName = path.getName(path.getNameCount() - 1).toString();
+                if (id.equals(fileName) || id.equals(FileID.getBasename(path)))
+                {
+                    dependency = other;
+                    break;
+                }
+            }
+            if (dependency != null)
+                result.add(dependency);
+            else
+                LOG.warn("Unknown dependency {} of {}", id, entry.app);
+        }
+        return result;
+    }
+
     @Override
     protected void doStop() throws Exception
     {
@@ -56,6 +56,7 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
     private FilenameFilter _filenameFilter;
     private final List<Resource> _monitored = new CopyOnWriteArrayList<>();
     private int _scanInterval = 10;
+    private boolean _useWatchService;
     private Scanner _scanner;
     private boolean _useRealPaths;
     private String _environmentName;
@@ -204,7 +205,7 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
         if (environment == null)
             throw new IllegalStateException("Unknown environment " + _environmentName);
 
-        LOG.info("Deployment monitor {} in {} at intervals {}s", getEnvironmentName(), _monitored, getScanInterval());
+        LOG.info("Deployment monitor {} in {} at intervals {}s{}", getEnvironmentName(), _monitored, getScanInterval(), isUseWatchService() ? " with watch service" : "");
         List<Path> files = new ArrayList<>();
         for (Resource resource : _monitored)
         {
@@ -233,6 +234,7 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
         _scanner = new Scanner(null, _useRealPaths);
         _scanner.setScanDirs(files);
         _scanner.setScanInterval(_scanInterval);
+        _scanner.setUseWatchService(_useWatchService);
         _scanner.setFilenameFilter(_filenameFilter);
         _scanner.setReportDirs(true);
         _scanner.setScanDepth(1); //consider direct dir children of monitored dir
@@ -436,6 +438,25 @@ public abstract class ScanningAppProvider extends ContainerLifeCycle implements
         _scanInterval = scanInterval;
     }
 
+    /**
+     * @return whether the monitored directories are only scanned when the file system notifies a change in them
+     * @see Scanner#isUseWatchService()
+     */
+    @ManagedAttribute("whether the monitored directories are only scanned when the file system notifies a change in them")
+    public boolean isUseWatchService()
+    {
+        return _useWatchService;
+    }
+
+    /**
+     * @param useWatchService whether the monitored directories are only scanned when the file system notifies a change in them
+     * @see Scanner#setUseWatchService(boolean)
+     */
+    public void setUseWatchService(boolean useWatchService)
+    {
+        _useWatchService = useWatchService;
+    }
+
     @ManagedOperation(value = "Scan the monitored directories", impact = "ACTION")
     public void scan()
     {
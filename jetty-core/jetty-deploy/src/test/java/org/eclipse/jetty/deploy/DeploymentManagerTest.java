@@ -15,8 +15,13 @@ package org.eclipse.jetty.deploy;
 
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.eclipse.jetty.deploy.graph.Node;
 import org.eclipse.jetty.deploy.test.XmlConfiguredJetty;
 import org.eclipse.jetty.server.Deployable;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
@@ -155,6 +160,64 @@ public class DeploymentManagerTest
                 ));
     }
 
+    @Test
+    public void testConcurrentDeploymentWithDependencies() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            List<String> deployed = new CopyOnWriteArrayList<>();
+            DeploymentManager depman = new DeploymentManager();
+            depman.setContexts(new ContextHandlerCollection());
+            depman.setUseStandardBindings(false);
+            depman.setDefaultLifeCycleGoal(AppLifeCycle.DEPLOYED);
+            depman.setLifeCycleExecutor(executor);
+            depman.addLifeCycleBinding(new AppLifeCycle.Binding()
+            {
+                @Override
+                public String[] getBindingTargets()
+                {
+                    return new String[]{AppLifeCycle.DEPLOYING};
+                }
+
+                @Override
+                public void processBinding(Node node, App app) throws Exception
+                {
+                    // Give the chance to the other apps to be deployed if they were not waiting.
+                    Thread.sleep(100);
+                    deployed.add(app.getPath().getFileName().toString());
+                }
+            });
+            depman.addAppProvider(new MockAppProvider()
+            {
+                @Override
+                public void doStart()
+                {
+                    super.doStart();
+                    // The dependent apps are provided first, so that the sequential order would be wrong.
+                    App bar = new App(depman, this, Path.of("./mock-bar.xml"));
+                    bar.getProperties().put(Deployable.DEPENDS_ON, "mock-foo, mock-baz.war");
+                    depman.addApp(bar);
+                    App foo = new App(depman, this, Path.of("./mock-foo.xml"));
+                    foo.getProperties().put(Deployable.DEPENDS_ON, "mock-baz");
+                    depman.addApp(foo);
+                    depman.addApp(new App(depman, this, Path.of("./mock-baz.war")));
+                }
+            });
+
+            depman.start();
+
+            assertEquals(List.of("mock-baz.war", "mock-foo.xml", "mock-bar.xml"), deployed);
+            assertEquals(3, depman.getApps(AppLifeCycle.DEPLOYED).size());
+
+            depman.stop();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testXmlConfigured(WorkDir workDir) throws Exception
     {
@@ -35,6 +35,7 @@ public enum HttpHeader
     VIA("Via"),
     WARNING("Warning"),
     NEGOTIATE("Negotiate"),
+    PRIORITY("Priority"),
 
     /**
      * Entity Fields.
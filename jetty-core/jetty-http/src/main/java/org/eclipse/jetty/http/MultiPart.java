@@ -144,12 +144,17 @@ public class MultiPart
         }
 
         private Part(String name, String fileName, HttpFields fields, Path path)
+        {
+            this(name, fileName, fields, path, true);
+        }
+
+        private Part(String name, String fileName, HttpFields fields, Path path, boolean temporary)
         {
             this.name = name;
             this.fileName = fileName;
             this.fields = fields != null ? fields : HttpFields.EMPTY;
             this.path = path;
-            this.temporary = true;
+            this.temporary = temporary;
         }
 
         private Path getPath()
@@ -466,6 +471,18 @@ public class MultiPart
             super(name, fileName, fields, path);
         }
 
+        /**
+         * @param name the part name
+         * @param fileName the part fileName
+         * @param fields the part headers
+         * @param path the file with the part content
+         * @param temporary whether the file is deleted when this part is closed or failed
+         */
+        public PathPart(String name, String fileName, HttpFields fields, Path path, boolean temporary)
+        {
+            super(name, fileName, fields, path, temporary);
+        }
+
         public Path getPath()
         {
             return super.getPath();
@@ -1739,6 +1756,14 @@ public class MultiPart
             return fileName;
         }
 
+        /**
+         * @return the headers of the part being parsed, parsed so far
+         */
+        public HttpFields getHeaders()
+        {
+            return fields.asImmutable();
+        }
+
         @Override
         public void onPartHeader(String headerName, String headerValue)
         {
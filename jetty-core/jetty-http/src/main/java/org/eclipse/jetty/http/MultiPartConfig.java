@@ -30,6 +30,7 @@ public class MultiPartConfig
     private static final int DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
     private static final int DEFAULT_MAX_PART_SIZE = 10 * 1024 * 1024;
     private static final int DEFAULT_MAX_MEMORY_PART_SIZE = 1024;
+    private static final int DEFAULT_MAX_MEMORY_SIZE = -1;
     private static final int DEFAULT_MAX_HEADERS_SIZE = 8 * 1024;
     private static final boolean DEFAULT_USE_FILES_FOR_PARTS_WITHOUT_FILE_NAME = true;
 
@@ -40,6 +41,7 @@ public class MultiPartConfig
         private Long _maxSize;
         private Long _maxPartSize;
         private Long _maxMemoryPartSize;
+        private Long _maxMemorySize;
         private Integer _maxHeadersSize;
         private Boolean _useFilesForPartsWithoutFileName;
         private MultiPartCompliance _complianceMode;
@@ -98,6 +100,20 @@ public class MultiPartConfig
             return this;
         }
 
+        /**
+         * <p>Sets the maximum size of all the parts in memory, after which
+         * parts will be written as files, even if they are smaller than
+         * {@link #maxMemoryPartSize(long)}.</p>
+         * <p>Use value {@code -1} to not limit the size of all the parts in memory.</p>
+         *
+         * @param maxMemorySize the maximum size of all the parts which can be held in memory.
+         */
+        public Builder maxMemorySize(long maxMemorySize)
+        {
+            _maxMemorySize = maxMemorySize;
+            return this;
+        }
+
         /**
          * @param maxHeadersSize the max length of a {@link MultiPart.Part} headers, in bytes, or -1 for unlimited length.
          */
@@ -141,6 +157,7 @@ public class MultiPartConfig
                 _maxSize == null ? DEFAULT_MAX_SIZE : _maxSize,
                 _maxPartSize == null ? DEFAULT_MAX_PART_SIZE : _maxPartSize,
                 _maxMemoryPartSize == null ? DEFAULT_MAX_MEMORY_PART_SIZE : _maxMemoryPartSize,
+                _maxMemorySize == null ? DEFAULT_MAX_MEMORY_SIZE : _maxMemorySize,
                 _maxHeadersSize == null ? DEFAULT_MAX_HEADERS_SIZE : _maxHeadersSize,
                 _useFilesForPartsWithoutFileName == null ? DEFAULT_USE_FILES_FOR_PARTS_WITHOUT_FILE_NAME : _useFilesForPartsWithoutFileName,
                 _complianceMode == null ? MultiPartCompliance.RFC7578 : _complianceMode,
@@ -150,6 +167,7 @@ public class MultiPartConfig
 
     private final Path _location;
     private final long _maxMemoryPartSize;
+    private final long _maxMemorySize;
     private final long _maxPartSize;
     private final long _maxSize;
     private final int _maxParts;
@@ -159,7 +177,7 @@ public class MultiPartConfig
     private final ComplianceViolation.Listener _listener;
 
     private MultiPartConfig(Path location, int maxParts, long maxSize, long maxPartSize, long maxMemoryPartSize,
-                            int maxHeadersSize, boolean useFilesForPartsWithoutFileName,
+                            long maxMemorySize, int maxHeadersSize, boolean useFilesForPartsWithoutFileName,
                             MultiPartCompliance compliance, ComplianceViolation.Listener listener)
     {
         this._location = location;
@@ -167,6 +185,7 @@ public class MultiPartConfig
         this._maxSize = maxSize;
         this._maxPartSize = maxPartSize;
         this._maxMemoryPartSize = maxMemoryPartSize;
+        this._maxMemorySize = maxMemorySize;
         this._maxHeadersSize = maxHeadersSize;
         this._useFilesForPartsWithoutFileName = useFilesForPartsWithoutFileName;
         this._compliance = compliance;
@@ -198,6 +217,11 @@ public class MultiPartConfig
         return _maxMemoryPartSize;
     }
 
+    public long getMaxMemorySize()
+    {
+        return _maxMemorySize;
+    }
+
     public int getMaxHeadersSize()
     {
         return _maxHeadersSize;
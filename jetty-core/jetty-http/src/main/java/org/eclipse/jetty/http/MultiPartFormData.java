@@ -14,6 +14,7 @@
 package org.eclipse.jetty.http;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
@@ -265,6 +266,30 @@ public class MultiPartFormData
         }
     }
 
+    /**
+     * <p>Chooses the file where the content of a part is written, as the part is parsed.</p>
+     * <p>Writing the content of large parts directly to their final destination avoids to
+     * hold their content in memory or to save it in a temporary file, to later copy it
+     * again with {@link MultiPart.Part#writeTo(Path)}.</p>
+     * <p>The file is not deleted when the part is closed, unless the parsing fails
+     * while the content of the part is written to the file.</p>
+     */
+    @FunctionalInterface
+    public interface PartDestination
+    {
+        /**
+         * <p>Invoked when the headers of a part have been parsed.</p>
+         *
+         * @param name the part name
+         * @param fileName the part fileName
+         * @param headers the part headers
+         * @return the file where the content of the part is written,
+         * or null to store the content of the part in memory or in a temporary file
+         * @throws IOException if the destination cannot be determined
+         */
+        Path getPath(String name, String fileName, HttpFields headers) throws IOException;
+    }
+
     public static class Parser
     {
         private final PartsListener listener = new PartsListener();
@@ -275,8 +300,10 @@ public class MultiPartFormData
         private Path filesDirectory;
         private long maxFileSize = -1;
         private long maxMemoryFileSize;
+        private long maxMemoryLength = -1;
         private long maxLength = -1;
         private long length;
+        private PartDestination partDestination;
         private Parts parts;
 
         public Parser(String boundary)
@@ -451,6 +478,46 @@ public class MultiPartFormData
             this.maxMemoryFileSize = maxMemoryFileSize;
         }
 
+        /**
+         * @return the maximum length in bytes of the content of all the parts held in memory, or -1 for unlimited length
+         */
+        public long getMaxMemoryLength()
+        {
+            return maxMemoryLength;
+        }
+
+        /**
+         * <p>Sets the maximum length in bytes of the content of all the parts held in memory,
+         * after which parts will be saved in the directory specified by {@link #setFilesDirectory(Path)},
+         * even if they are smaller than {@link #getMaxMemoryFileSize()}.</p>
+         * <p>Use value {@code -1} to not limit the length of the parts held in memory.</p>
+         *
+         * @param maxMemoryLength the maximum length in bytes of the content of all the parts held in memory, or -1 for unlimited length
+         */
+        public void setMaxMemoryLength(long maxMemoryLength)
+        {
+            this.maxMemoryLength = maxMemoryLength;
+        }
+
+        /**
+         * @return the destination of the content of the parts, or null if the parts are stored in memory or in files
+         */
+        public PartDestination getPartDestination()
+        {
+            return partDestination;
+        }
+
+        /**
+         * <p>Sets the destination of the content of the parts, that is invoked when the
+         * headers of a part have been parsed to choose where its content is written.</p>
+         *
+         * @param partDestination the destination of the content of the parts
+         */
+        public void setPartDestination(PartDestination partDestination)
+        {
+            this.partDestination = partDestination;
+        }
+
         /**
          * @return the maximum length in bytes of the whole multipart content, or -1 for unlimited length
          */
@@ -491,6 +558,7 @@ public class MultiPartFormData
         {
             parser.setMaxParts(config.getMaxParts());
             maxMemoryFileSize = config.getMaxMemoryPartSize();
+            maxMemoryLength = config.getMaxMemorySize();
             maxFileSize = config.getMaxPartSize();
             maxLength = config.getMaxSize();
             parser.setPartHeadersMaxLength(config.getMaxHeadersSize());
@@ -512,10 +580,38 @@ public class MultiPartFormData
             private final List<MultiPart.Part> parts = new ArrayList<>();
             private final List<Content.Chunk> partChunks = new ArrayList<>();
             private long size;
+            private long memoryLength;
             private Path filePath;
+            private boolean fileDestination;
             private SeekableByteChannel fileChannel;
             private Throwable failure;
 
+            @Override
+            public void onPartHeaders()
+            {
+                PartDestination destination = getPartDestination();
+                if (destination == null)
+                    return;
+                try
+                {
+                    Path path = destination.getPath(getName(), getFileName(), getHeaders());
+                    if (path != null)
+                    {
+                        SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                        try (AutoLock ignored = lock.lock())
+                        {
+                            filePath = path;
+                            fileDestination = true;
+                            fileChannel = channel;
+                        }
+                    }
+                }
+                catch (Throwable x)
+                {
+                    onFailure(x);
+                }
+            }
+
             @Override
             public void onPartContent(Content.Chunk chunk)
             {
@@ -528,45 +624,61 @@ public class MultiPartFormData
                     return;
                 }
 
+                // Parts written to a file, either because they exceeded
+                // the memory limits or because they have a destination.
+                if (fileChannel() != null)
+                {
+                    try
+                    {
+                        write(buffer);
+                        if (chunk.isLast())
+                            close();
+                    }
+                    catch (Throwable x)
+                    {
+                        onFailure(x);
+                    }
+                    return;
+                }
+
                 String fileName = getFileName();
                 if (fileName != null || isUseFilesForPartsWithoutFileName())
                 {
-                    long maxMemoryPartSize = getMaxMemoryFileSize();
-                    if (maxMemoryPartSize >= 0)
+                    if (isMaxMemoryExceeded(buffer.remaining()))
                     {
-                        if (size > maxMemoryPartSize)
+                        try
                         {
-                            try
+                            // Must save to disk.
+                            if (ensureFileChannel())
                             {
-                                // Must save to disk.
-                                if (ensureFileChannel())
+                                // Write existing memory chunks.
+                                List<Content.Chunk> partChunks;
+                                try (AutoLock ignored = lock.lock())
                                 {
-                                    // Write existing memory chunks.
-                                    List<Content.Chunk> partChunks;
-                                    try (AutoLock ignored = lock.lock())
-                                    {
-                                        partChunks = List.copyOf(this.partChunks);
-                                    }
-                                    for (Content.Chunk c : partChunks)
-                                    {
-                                        write(c.getByteBuffer());
-                                    }
-                                    try (AutoLock ignored = lock.lock())
-                                    {
-                                        this.partChunks.forEach(Content.Chunk::release);
-                                        this.partChunks.clear();
-                                    }
+                                    partChunks = List.copyOf(this.partChunks);
+                                }
+                                long written = 0;
+                                for (Content.Chunk c : partChunks)
+                                {
+                                    written += c.remaining();
+                                    write(c.getByteBuffer());
+                                }
+                                try (AutoLock ignored = lock.lock())
+                                {
+                                    memoryLength -= written;
+                                    this.partChunks.forEach(Content.Chunk::release);
+                                    this.partChunks.clear();
                                 }
-                                write(buffer);
-                                if (chunk.isLast())
-                                    close();
-                            }
-                            catch (Throwable x)
-                            {
-                                onFailure(x);
                             }
-                            return;
+                            write(buffer);
+                            if (chunk.isLast())
+                                close();
                         }
+                        catch (Throwable x)
+                        {
+                            onFailure(x);
+                        }
+                        return;
                     }
                 }
                 else
@@ -580,16 +692,43 @@ public class MultiPartFormData
                             return;
                         }
                     }
+                    long maxMemoryLength = getMaxMemoryLength();
+                    if (maxMemoryLength >= 0)
+                    {
+                        if (memoryLength() + buffer.remaining() > maxMemoryLength)
+                        {
+                            onFailure(new IllegalStateException("max memory length exceeded: %d".formatted(maxMemoryLength)));
+                            return;
+                        }
+                    }
                 }
 
                 // Retain the chunk because it is stored for later use.
                 chunk.retain();
                 try (AutoLock ignored = lock.lock())
                 {
+                    memoryLength += chunk.remaining();
                     partChunks.add(chunk);
                 }
             }
 
+            private boolean isMaxMemoryExceeded(int length)
+            {
+                long maxMemoryPartSize = getMaxMemoryFileSize();
+                if (maxMemoryPartSize >= 0 && size > maxMemoryPartSize)
+                    return true;
+                long maxMemoryLength = getMaxMemoryLength();
+                return maxMemoryLength >= 0 && memoryLength() + length > maxMemoryLength;
+            }
+
+            private long memoryLength()
+            {
+                try (AutoLock ignored = lock.lock())
+                {
+                    return memoryLength;
+                }
+            }
+
             private void write(ByteBuffer buffer) throws Exception
             {
                 int remaining = buffer.remaining();
@@ -661,11 +800,18 @@ public class MultiPartFormData
 
                     MultiPart.Part part;
                     if (fileChannel != null)
-                        part = new MultiPart.PathPart(name, fileName, headers, filePath);
+                    {
+                        // The file may not have been closed if the part had no content.
+                        close();
+                        part = new MultiPart.PathPart(name, fileName, headers, filePath, !fileDestination);
+                    }
                     else
+                    {
                         part = new MultiPart.ChunksPart(name, fileName, headers, List.copyOf(partChunks));
+                    }
                     // Reset part-related state.
                     filePath = null;
+                    fileDestination = false;
                     fileChannel = null;
                     partChunks.forEach(Content.Chunk::release);
                     partChunks.clear();
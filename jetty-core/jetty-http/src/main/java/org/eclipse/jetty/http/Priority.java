@@ -0,0 +1,155 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A representation of the priority parameters specified by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc9218">RFC 9218</a>.</p>
+ * <p>This class parses the value of the {@code Priority} header, for example:</p>
+ * <pre>{@code
+ * Priority: u=1
+ * Priority: u=5, i
+ * }</pre>
+ * <p>The urgency ranges from {@code 0}, the most urgent, to {@code 7};
+ * the responses of incremental requests may be interleaved with the
+ * responses of other requests of the same urgency, while the responses
+ * of non-incremental requests are best sent one after the other.</p>
+ *
+ * @param urgency the urgency, from 0 (most urgent) to 7
+ * @param incremental whether the response can be processed incrementally
+ */
+public record Priority(int urgency, boolean incremental)
+{
+    private static final Logger LOG = LoggerFactory.getLogger(Priority.class);
+    public static final int MAX_URGENCY = 7;
+    public static final int DEFAULT_URGENCY = 3;
+    public static final Priority DEFAULT = new Priority(DEFAULT_URGENCY, false);
+
+    public Priority
+    {
+        if (urgency < 0 || urgency > MAX_URGENCY)
+            throw new IllegalArgumentException("Invalid urgency " + urgency);
+    }
+
+    /**
+     * @return the value for the {@code Priority} header corresponding to this priority
+     */
+    public String toHeaderValue()
+    {
+        return incremental ? "u=" + urgency + ", i" : "u=" + urgency;
+    }
+
+    /**
+     * <p>Returns the priority specified by the {@code Priority} headers
+     * of the given fields, or {@link #DEFAULT} if there are none.</p>
+     *
+     * @param fields the HTTP fields
+     * @return the priority specified by the fields
+     */
+    public static Priority from(HttpFields fields)
+    {
+        return from(fields, DEFAULT);
+    }
+
+    /**
+     * <p>Returns the priority specified by the {@code Priority} headers
+     * of the given fields, merged with the given priority.</p>
+     * <p>This is used, for example, by servers to merge the priority
+     * of a request with the priority of its response.</p>
+     *
+     * @param fields the HTTP fields
+     * @param priority the priority that provides the parameters not specified by the fields
+     * @return the priority specified by the fields
+     */
+    public static Priority from(HttpFields fields, Priority priority)
+    {
+        if (fields == null)
+            return priority;
+        for (HttpField field : fields)
+        {
+            if (field.getHeader() == HttpHeader.PRIORITY)
+                priority = parse(field.getValue(), priority);
+        }
+        return priority;
+    }
+
+    /**
+     * <p>Parses the value of a {@code Priority} header such as {@code u=5, i}.</p>
+     * <p>Unknown parameters and invalid values are ignored, so that the
+     * corresponding parameters retain the value they have in the given
+     * priority.</p>
+     *
+     * @param value the value of the {@code Priority} header
+     * @param priority the priority that provides the parameters not specified by the value
+     * @return the parsed priority
+     */
+    public static Priority parse(String value, Priority priority)
+    {
+        if (value == null)
+            return priority;
+
+        int urgency = priority.urgency();
+        boolean incremental = priority.incremental();
+        for (String member : value.split(","))
+        {
+            // Parameters of dictionary members are not used by RFC 9218.
+            int semicolon = member.indexOf(';');
+            if (semicolon >= 0)
+                member = member.substring(0, semicolon);
+            member = member.trim();
+
+            int equals = member.indexOf('=');
+            String key = equals < 0 ? member : member.substring(0, equals).trim();
+            String item = equals < 0 ? null : member.substring(equals + 1).trim();
+            switch (key)
+            {
+                case "u" ->
+                {
+                    try
+                    {
+                        int u = item == null ? -1 : Integer.parseInt(item);
+                        if (u >= 0 && u <= MAX_URGENCY)
+                            urgency = u;
+                    }
+                    catch (NumberFormatException x)
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("could not parse urgency {}", value, x);
+                    }
+                }
+                case "i" ->
+                {
+                    // A boolean without a value is true.
+                    if (item == null || "?1".equals(item))
+                        incremental = true;
+                    else if ("?0".equals(item))
+                        incremental = false;
+                }
+                default ->
+                {
+                    // Ignore unknown parameters.
+                }
+            }
+        }
+
+        if (urgency == priority.urgency() && incremental == priority.incremental())
+            return priority;
+        if (urgency == DEFAULT_URGENCY && !incremental)
+            return DEFAULT;
+        return new Priority(urgency, incremental);
+    }
+}
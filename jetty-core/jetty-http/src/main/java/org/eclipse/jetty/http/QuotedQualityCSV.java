@@ -195,6 +195,17 @@ public class QuotedQualityCSV extends QuotedCSV implements Iterable<String>
         return _values.iterator();
     }
 
+    /**
+     * @return the values with a quality of zero, that is the values that are explicitly refused
+     */
+    public List<String> getRefusedValues()
+    {
+        return _qualities.stream()
+            .filter((qv) -> qv._quality == 0.0D)
+            .map(QualityValue::getValue)
+            .toList();
+    }
+
     protected void sort()
     {
         _values.clear();
@@ -16,13 +16,13 @@ package org.eclipse.jetty.http.content;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.Objects;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
@@ -35,6 +35,9 @@ import org.eclipse.jetty.io.Retainable;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,10 +48,15 @@ import org.slf4j.LoggerFactory;
  * using it as a caching authority. Only HttpContent instances whose path is not a directory are cached.
  * </p>
  * <p>
- * No eviction is done by this {@link HttpContent.Factory}, once an entry is in the cache it is always
+ * No validation is done by this {@link HttpContent.Factory}, once an entry is in the cache it is always
  * assumed to be valid. This class can be extended to implement the validation behaviours on
  * {@link CachingHttpContent} which allow entries to be evicted once they become invalid.
  * </p>
+ * <p>
+ * When the cache exceeds either its maximum number of entries or its maximum size in bytes,
+ * entries are evicted in the order chosen by the configured {@link EvictionPolicy}, which
+ * defaults to a least recently used policy.
+ * </p>
  * <br>
  * The default values for the cache are:
  * <ul>
@@ -58,6 +66,7 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * @see ValidatingCachingHttpContentFactory
  */
+@ManagedObject("Caching HttpContent Factory")
 public class CachingHttpContentFactory implements HttpContent.Factory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachingHttpContentFactory.class);
@@ -69,6 +78,10 @@ public class CachingHttpContentFactory implements HttpContent.Factory
     private final ConcurrentHashMap<String, CachingHttpContent> _cache = new ConcurrentHashMap<>();
     private final AtomicLong _cachedSize = new AtomicLong();
     private final ByteBufferPool _bufferPool;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private EvictionPolicy _evictionPolicy = new SegmentedLruEvictionPolicy(0);
     private int _maxCachedFileSize = DEFAULT_MAX_CACHED_FILE_SIZE;
     private int _maxCachedFiles = DEFAULT_MAX_CACHED_FILES;
     private long _maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
@@ -85,16 +98,65 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return _cache;
     }
 
+    @ManagedAttribute("The size in bytes of the cached content")
     public long getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("The number of cached entries")
     public int getCachedFiles()
     {
         return _cache.size();
     }
 
+    @ManagedAttribute("The number of requests for content found in the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of requests for content not found in the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of entries evicted to keep the cache within its limits")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return _evictionPolicy;
+    }
+
+    /**
+     * <p>Sets the policy that chooses the entries to evict when the cache exceeds its limits.</p>
+     * <p>The policy must be set before the cache is used, as it is not informed of the entries
+     * that are already cached.</p>
+     *
+     * @param evictionPolicy the eviction policy
+     * @see SegmentedLruEvictionPolicy
+     */
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy)
+    {
+        if (!_cache.isEmpty())
+            throw new IllegalStateException("Cache not empty");
+        _evictionPolicy = Objects.requireNonNull(evictionPolicy);
+    }
+
+    @ManagedAttribute("The maximum size in bytes of a cached entry")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -106,6 +168,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         shrinkCache();
     }
 
+    @ManagedAttribute("The maximum size in bytes of the cached content")
     public long getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +184,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
      * Get the max number of cached files..
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The maximum number of cached entries")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -148,46 +212,41 @@ public class CachingHttpContentFactory implements HttpContent.Factory
 
     private void shrinkCache()
     {
-        // While we need to shrink
-        int numCacheEntries = _cache.size();
-        while (numCacheEntries > 0 && (numCacheEntries > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        // While we need to shrink, evict the entries chosen by the policy.
+        while (!_cache.isEmpty() && (_cache.size() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachingHttpContent> sorted = new TreeSet<>((c1, c2) ->
-            {
-                long delta = NanoTime.elapsed(c2.getLastAccessedNanos(), c1.getLastAccessedNanos());
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
-
-                delta = c1.getContentLengthValue() - c2.getContentLengthValue();
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
-
-                return c1.getKey().compareTo(c2.getKey());
-            });
-            sorted.addAll(_cache.values());
-
-            // TODO: Can we remove the buffers from the content before evicting.
-            // Invalidate least recently used first
-            for (CachingHttpContent content : sorted)
+            String key = _evictionPolicy.evict();
+            if (key == null)
             {
-                if (_cache.size() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
+                // The policy may have lost track of an entry concurrently removed and re-added,
+                // so evict any entry to keep the cache within its limits.
+                key = _cache.keySet().stream().findAny().orElse(null);
+                if (key == null)
                     break;
-                removeFromCache(content);
             }
 
-            numCacheEntries = _cache.size();
+            // The policy may know of keys that have been concurrently removed from the cache.
+            CachingHttpContent content = _cache.get(key);
+            if (content != null && removeFromCache(key, content))
+                _evictions.increment();
         }
     }
 
     protected void removeFromCache(CachingHttpContent content)
     {
-        CachingHttpContent removed = _cache.remove(content.getKey());
-        if (removed != null)
+        removeFromCache(content.getKey(), content);
+    }
+
+    private boolean removeFromCache(String key, CachingHttpContent content)
+    {
+        if (_cache.remove(key, content))
         {
-            removed.release();
-            _cachedSize.addAndGet(-removed.getBytesOccupied());
+            _evictionPolicy.onRemove(key);
+            content.release();
+            _cachedSize.addAndGet(-content.getBytesOccupied());
+            return true;
         }
+        return false;
     }
 
     public void flushCache()
@@ -231,12 +290,17 @@ public class CachingHttpContentFactory implements HttpContent.Factory
             {
                 // If retain fails the CachingHttpContent was already evicted.
                 if (cachingHttpContent.retain())
+                {
+                    _hits.increment();
+                    _evictionPolicy.onAccess(path);
                     return (cachingHttpContent instanceof NotFoundHttpContent) ? null : cachingHttpContent;
+                }
             }
             else
                 removeFromCache(cachingHttpContent);
         }
 
+        _misses.increment();
         HttpContent httpContent = _authority.getContent(path);
         if (!isCacheable(httpContent))
             return httpContent;
@@ -258,6 +322,7 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         if (added.get())
         {
             // We want to shrink cache only if we have just added an entry.
+            _evictionPolicy.onInsert(path);
             shrinkCache();
         }
         else if (httpContent != null)
@@ -280,6 +345,44 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return new NotFoundHttpContent(p);
     }
 
+    /**
+     * <p>A policy that chooses which entries to evict when the cache exceeds its limits.</p>
+     * <p>Implementations must be thread-safe, and all their operations should have
+     * a constant, or amortized constant, cost, so that evicting does not depend on
+     * the number of cached entries.
+     * The policy may be informed of a key after it has been removed from the cache,
+     * so {@link #evict()} may return keys that are no longer cached.</p>
+     */
+    public interface EvictionPolicy
+    {
+        /**
+         * @param key the key of the entry added to the cache
+         */
+        void onInsert(String key);
+
+        /**
+         * @param key the key of the cached entry that was used
+         */
+        void onAccess(String key);
+
+        /**
+         * @param key the key of the entry removed from the cache
+         */
+        void onRemove(String key);
+
+        /**
+         * <p>Removes from this policy the key of the next entry to evict.</p>
+         *
+         * @return the key of the entry to evict, or null if this policy has no entries
+         */
+        String evict();
+
+        /**
+         * @return the number of keys tracked by this policy
+         */
+        int size();
+    }
+
     protected interface CachingHttpContent extends HttpContent
     {
         long getLastAccessedNanos();
@@ -0,0 +1,226 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A segmented LRU {@link CachingHttpContentFactory.EvictionPolicy}.</p>
+ * <p>Newly inserted keys enter a <em>probationary</em> segment, and are promoted
+ * to a <em>protected</em> segment when they are accessed again.
+ * When the protected segment exceeds its share of the entries, its least recently
+ * used key is demoted back to the probationary segment.
+ * Victims are taken from the least recently used end of the probationary segment
+ * first, so that a burst of one-time requests cannot flush the frequently
+ * requested content out of the cache.</p>
+ * <p>A protected ratio of {@code 0} degenerates to a plain LRU policy.</p>
+ * <p>All the operations are {@code O(1)}.
+ * Accesses are recorded only if the lock is not contended, so that cache hits never block;
+ * a lost access only makes the policy approximate, as in other concurrent caches.</p>
+ */
+public class SegmentedLruEvictionPolicy implements CachingHttpContentFactory.EvictionPolicy
+{
+    public static final double DEFAULT_PROTECTED_RATIO = 0.8D;
+
+    private final AutoLock _lock = new AutoLock();
+    private final Map<String, Node> _nodes = new HashMap<>();
+    private final Node _probation = new Node(null);
+    private final Node _protected = new Node(null);
+    private final double _protectedRatio;
+    private int _protectedSize;
+
+    /**
+     * <p>Creates a segmented LRU policy with a protected ratio of {@value #DEFAULT_PROTECTED_RATIO}.</p>
+     */
+    public SegmentedLruEvictionPolicy()
+    {
+        this(DEFAULT_PROTECTED_RATIO);
+    }
+
+    /**
+     * @param protectedRatio the ratio, between {@code 0} and {@code 1}, of the entries that may be
+     * held in the protected segment; {@code 0} for a plain LRU policy
+     */
+    public SegmentedLruEvictionPolicy(double protectedRatio)
+    {
+        if (protectedRatio < 0 || protectedRatio > 1)
+            throw new IllegalArgumentException("Invalid protected ratio: " + protectedRatio);
+        _protectedRatio = protectedRatio;
+    }
+
+    public double getProtectedRatio()
+    {
+        return _protectedRatio;
+    }
+
+    @Override
+    public void onInsert(String key)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            Node node = _nodes.get(key);
+            if (node == null)
+            {
+                node = new Node(key);
+                _nodes.put(key, node);
+                node.linkBefore(_probation);
+            }
+            else
+            {
+                touch(node);
+            }
+        }
+    }
+
+    @Override
+    public void onAccess(String key)
+    {
+        try (AutoLock lock = _lock.tryLock())
+        {
+            if (!lock.isHeldByCurrentThread())
+                return;
+            Node node = _nodes.get(key);
+            if (node != null)
+                touch(node);
+        }
+    }
+
+    @Override
+    public void onRemove(String key)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            Node node = _nodes.remove(key);
+            if (node != null)
+            {
+                if (node._protected)
+                    _protectedSize--;
+                node.unlink();
+            }
+        }
+    }
+
+    @Override
+    public String evict()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            Node node = _probation._next;
+            if (node == _probation)
+                node = _protected._next;
+            if (node == _protected)
+                return null;
+            _nodes.remove(node._key);
+            if (node._protected)
+                _protectedSize--;
+            node.unlink();
+            return node._key;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return _nodes.size();
+        }
+    }
+
+    private void touch(Node node)
+    {
+        assert _lock.isHeldByCurrentThread();
+
+        node.unlink();
+        if (node._protected)
+        {
+            node.linkBefore(_protected);
+            return;
+        }
+
+        int maxProtected = (int)(_nodes.size() * _protectedRatio);
+        if (maxProtected == 0)
+        {
+            node.linkBefore(_probation);
+            return;
+        }
+
+        // Promote to the protected segment.
+        node._protected = true;
+        _protectedSize++;
+        node.linkBefore(_protected);
+
+        // Demote the least recently used protected nodes if the segment is too large.
+        while (_protectedSize > maxProtected)
+        {
+            Node demoted = _protected._next;
+            demoted.unlink();
+            demoted._protected = false;
+            _protectedSize--;
+            demoted.linkBefore(_probation);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        try (AutoLock lock = _lock.tryLock())
+        {
+            boolean held = lock.isHeldByCurrentThread();
+            return String.format("%s@%x{ratio=%.2f,size=%s,protected=%s}",
+                getClass().getSimpleName(),
+                hashCode(),
+                _protectedRatio,
+                held ? _nodes.size() : "?",
+                held ? _protectedSize : "?");
+        }
+    }
+
+    /**
+     * <p>A node of an intrusive circular doubly linked list, whose sentinel
+     * nodes have a {@code null} key; the most recently used nodes are linked
+     * just before the sentinel.</p>
+     */
+    private static class Node
+    {
+        private final String _key;
+        private Node _prev = this;
+        private Node _next = this;
+        private boolean _protected;
+
+        private Node(String key)
+        {
+            _key = key;
+        }
+
+        private void linkBefore(Node sentinel)
+        {
+            _next = sentinel;
+            _prev = sentinel._prev;
+            _prev._next = this;
+            sentinel._prev = this;
+        }
+
+        private void unlink()
+        {
+            _prev._next = _next;
+            _next._prev = _prev;
+            _prev = this;
+            _next = this;
+        }
+    }
+}
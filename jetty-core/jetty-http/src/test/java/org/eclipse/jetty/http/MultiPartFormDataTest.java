@@ -863,6 +863,130 @@ public class MultiPartFormDataTest
         }
     }
 
+    @Test
+    public void testMaxMemoryLength() throws Exception
+    {
+        AsyncContent source = new TestContent();
+        MultiPartFormData.Parser formData = new MultiPartFormData.Parser("AaB03x");
+        formData.setFilesDirectory(_tmpDir);
+        String chunk = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        formData.setMaxMemoryFileSize(chunk.length() * 2);
+        formData.setMaxMemoryLength(chunk.length() * 3);
+
+        String body = """
+            --AaB03x
+            Content-Disposition: form-data; name="file1"; filename="file1.txt"
+            Content-Type: text/plain
+            
+            $C$C
+            --AaB03x
+            Content-Disposition: form-data; name="file2"; filename="file2.txt"
+            Content-Type: text/plain
+            
+            $C$C
+            --AaB03x
+            Content-Disposition: form-data; name="file3"; filename="file3.txt"
+            Content-Type: text/plain
+            
+            $C
+            --AaB03x--
+            """.replace("$C", chunk);
+        Content.Sink.write(source, true, body, Callback.NOOP);
+        try (MultiPartFormData.Parts parts = formData.parse(source).get(5, TimeUnit.SECONDS))
+        {
+            assertNotNull(parts);
+            assertEquals(3, parts.size());
+
+            // Each part is smaller than the max memory file size,
+            // but the second part exceeds the max memory length.
+            MultiPart.Part part1 = parts.get(0);
+            assertThat(part1, instanceOf(MultiPart.ChunksPart.class));
+            assertEquals(chunk.repeat(2), Content.Source.asString(part1.getContentSource()));
+
+            MultiPart.Part part2 = parts.get(1);
+            assertThat(part2, instanceOf(MultiPart.PathPart.class));
+            assertEquals(chunk.repeat(2), Content.Source.asString(part2.getContentSource()));
+
+            MultiPart.Part part3 = parts.get(2);
+            assertThat(part3, instanceOf(MultiPart.ChunksPart.class));
+            assertEquals(chunk, Content.Source.asString(part3.getContentSource()));
+        }
+    }
+
+    @Test
+    public void testMaxMemoryLengthExceededWithoutFiles() throws Exception
+    {
+        AsyncContent source = new TestContent();
+        MultiPartFormData.Parser formData = new MultiPartFormData.Parser("AaB03x");
+        formData.setFilesDirectory(_tmpDir);
+        formData.setUseFilesForPartsWithoutFileName(false);
+        formData.setMaxMemoryFileSize(-1);
+        formData.setMaxMemoryLength(32);
+
+        String body = """
+            --AaB03x
+            Content-Disposition: form-data; name="field1"
+            
+            ABCDEFGHIJKLMNOPQRSTUVWXYZ
+            --AaB03x
+            Content-Disposition: form-data; name="field2"
+            
+            ABCDEFGHIJKLMNOPQRSTUVWXYZ
+            --AaB03x--
+            """;
+        Content.Sink.write(source, true, body, Callback.NOOP);
+        ExecutionException x = assertThrows(ExecutionException.class, () -> formData.parse(source).get(5, TimeUnit.SECONDS));
+        assertThat(x.getCause().getMessage(), containsString("max memory length exceeded"));
+    }
+
+    @Test
+    public void testPartDestination() throws Exception
+    {
+        Files.createDirectories(_tmpDir);
+        Path destination = _tmpDir.resolve("upload.bin");
+        AsyncContent source = new TestContent();
+        MultiPartFormData.Parser formData = new MultiPartFormData.Parser("AaB03x");
+        formData.setFilesDirectory(_tmpDir);
+        formData.setPartDestination((name, fileName, headers) ->
+        {
+            assertEquals("text/plain", headers.get(HttpHeader.CONTENT_TYPE));
+            return "upload".equals(name) ? destination : null;
+        });
+
+        String body = """
+            --AaB03x
+            Content-Disposition: form-data; name="upload"; filename="upload.txt"
+            Content-Type: text/plain
+            
+            ABCDEFGHIJKLMNOPQRSTUVWXYZ
+            --AaB03x
+            Content-Disposition: form-data; name="other"; filename="other.txt"
+            Content-Type: text/plain
+            
+            0123456789
+            --AaB03x--
+            """;
+        Content.Sink.write(source, true, body, Callback.NOOP);
+        try (MultiPartFormData.Parts parts = formData.parse(source).get(5, TimeUnit.SECONDS))
+        {
+            assertNotNull(parts);
+            assertEquals(2, parts.size());
+
+            MultiPart.Part part1 = parts.get(0);
+            assertThat(part1, instanceOf(MultiPart.PathPart.class));
+            assertEquals(destination, ((MultiPart.PathPart)part1).getPath());
+            assertEquals("ABCDEFGHIJKLMNOPQRSTUVWXYZ", Files.readString(destination));
+            // Writing to the destination itself does not copy the content.
+            part1.writeTo(destination);
+
+            MultiPart.Part part2 = parts.get(1);
+            assertEquals("0123456789", Content.Source.asString(part2.getContentSource()));
+        }
+
+        // The destination is not deleted when the parts are closed.
+        assertTrue(Files.exists(destination));
+    }
+
     @Test
     public void testAbort()
     {
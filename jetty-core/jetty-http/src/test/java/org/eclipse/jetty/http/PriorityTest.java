@@ -0,0 +1,73 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PriorityTest
+{
+    @Test
+    public void testParse()
+    {
+        assertEquals(new Priority(1, false), Priority.parse("u=1", Priority.DEFAULT));
+        assertEquals(new Priority(5, true), Priority.parse("u=5, i", Priority.DEFAULT));
+        assertEquals(new Priority(5, true), Priority.parse(" i ,u=5 ", Priority.DEFAULT));
+        assertEquals(new Priority(3, true), Priority.parse("i=?1", Priority.DEFAULT));
+        assertEquals(new Priority(0, false), Priority.parse("u=0;foo=bar, i=?0", new Priority(6, true)));
+    }
+
+    @Test
+    public void testParseIgnoresInvalidParameters()
+    {
+        assertSame(Priority.DEFAULT, Priority.parse("u=8", Priority.DEFAULT));
+        assertSame(Priority.DEFAULT, Priority.parse("u=x", Priority.DEFAULT));
+        assertSame(Priority.DEFAULT, Priority.parse("u", Priority.DEFAULT));
+        assertSame(Priority.DEFAULT, Priority.parse("foo=1, i=x", Priority.DEFAULT));
+        assertEquals(new Priority(2, false), Priority.parse("u=9", new Priority(2, false)));
+    }
+
+    @Test
+    public void testFromFields()
+    {
+        assertSame(Priority.DEFAULT, Priority.from(HttpFields.EMPTY));
+
+        HttpFields fields = HttpFields.build()
+            .add(HttpHeader.PRIORITY, "u=1")
+            .add(HttpHeader.PRIORITY, "i");
+        assertEquals(new Priority(1, true), Priority.from(fields));
+
+        // Parameters not specified by the fields are retained.
+        Priority request = new Priority(0, false);
+        assertEquals(new Priority(0, true), Priority.from(HttpFields.build().put(HttpHeader.PRIORITY, "i"), request));
+    }
+
+    @Test
+    public void testToHeaderValue()
+    {
+        assertEquals("u=3", Priority.DEFAULT.toHeaderValue());
+        assertEquals("u=5, i", new Priority(5, true).toHeaderValue());
+        assertEquals(new Priority(5, true), Priority.parse(new Priority(5, true).toHeaderValue(), Priority.DEFAULT));
+    }
+
+    @Test
+    public void testInvalidUrgency()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new Priority(-1, false));
+        assertThrows(IllegalArgumentException.class, () -> new Priority(Priority.MAX_URGENCY + 1, false));
+    }
+}
@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.content;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SegmentedLruEvictionPolicyTest
+{
+    @Test
+    public void testPlainLru()
+    {
+        SegmentedLruEvictionPolicy policy = new SegmentedLruEvictionPolicy(0);
+        policy.onInsert("a");
+        policy.onInsert("b");
+        policy.onInsert("c");
+        policy.onAccess("a");
+
+        assertThat(policy.size(), is(3));
+        assertThat(policy.evict(), is("b"));
+        assertThat(policy.evict(), is("c"));
+        assertThat(policy.evict(), is("a"));
+        assertThat(policy.evict(), nullValue());
+        assertThat(policy.size(), is(0));
+    }
+
+    @Test
+    public void testProtectedSegmentResistsScan()
+    {
+        SegmentedLruEvictionPolicy policy = new SegmentedLruEvictionPolicy(0.5);
+        policy.onInsert("hot1");
+        policy.onInsert("hot2");
+        policy.onInsert("cold1");
+        policy.onInsert("cold2");
+        policy.onAccess("hot1");
+        policy.onAccess("hot2");
+
+        // A scan of one-time keys must be evicted before the hot keys.
+        for (int i = 0; i < 4; i++)
+        {
+            policy.onInsert("scan" + i);
+        }
+        assertThat(policy.evict(), is("cold1"));
+        assertThat(policy.evict(), is("cold2"));
+        for (int i = 0; i < 4; i++)
+        {
+            assertThat(policy.evict(), is("scan" + i));
+        }
+        assertThat(policy.evict(), is("hot1"));
+        assertThat(policy.evict(), is("hot2"));
+        assertThat(policy.evict(), nullValue());
+    }
+
+    @Test
+    public void testProtectedSegmentDemotion()
+    {
+        SegmentedLruEvictionPolicy policy = new SegmentedLruEvictionPolicy(0.5);
+        policy.onInsert("a");
+        policy.onInsert("b");
+        policy.onInsert("c");
+        policy.onInsert("d");
+        policy.onAccess("a");
+        policy.onAccess("b");
+        // The protected segment holds at most 2 keys, so "a" is demoted.
+        policy.onAccess("c");
+
+        assertThat(policy.evict(), is("d"));
+        assertThat(policy.evict(), is("a"));
+        assertThat(policy.evict(), is("b"));
+        assertThat(policy.evict(), is("c"));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        SegmentedLruEvictionPolicy policy = new SegmentedLruEvictionPolicy();
+        policy.onInsert("a");
+        policy.onInsert("b");
+        policy.onAccess("a");
+        policy.onRemove("a");
+        policy.onRemove("unknown");
+
+        assertThat(policy.size(), is(1));
+        assertThat(policy.evict(), is("b"));
+        assertThat(policy.evict(), nullValue());
+    }
+}
@@ -16,8 +16,12 @@ package org.eclipse.jetty.http2.client.transport;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.security.cert.X509Certificate;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jetty.alpn.client.ALPNClientConnectionFactory;
 import org.eclipse.jetty.client.AbstractHttpClientTransport;
@@ -31,24 +35,35 @@ import org.eclipse.jetty.client.Request;
 import org.eclipse.jetty.client.transport.HttpDestination;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.client.HTTP2Client;
 import org.eclipse.jetty.http2.client.HTTP2ClientConnectionFactory;
 import org.eclipse.jetty.http2.client.transport.internal.HTTPSessionListenerPromise;
 import org.eclipse.jetty.http2.client.transport.internal.HttpConnectionOverHTTP2;
+import org.eclipse.jetty.http2.client.transport.internal.MisdirectedRequestProtocolHandler;
 import org.eclipse.jetty.http2.frames.GoAwayFrame;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.ssl.X509;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @ManagedObject("The HTTP/2 client transport")
 public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
 {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientTransportOverHTTP2.class);
+
     private final ClientConnectionFactory connectionFactory = new HTTP2ClientConnectionFactory();
+    private final Set<SessionListenerPromise> coalescables = ConcurrentHashMap.newKeySet();
     private final HTTP2Client http2Client;
     private boolean useALPN = true;
+    private boolean coalescing;
+    private boolean adaptiveMaxMultiplex;
 
     public HttpClientTransportOverHTTP2(HTTP2Client http2Client)
     {
@@ -83,6 +98,50 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
         this.useALPN = useALPN;
     }
 
+    @ManagedAttribute("Whether connections to different origins may share the same session")
+    public boolean isCoalescing()
+    {
+        return coalescing;
+    }
+
+    /**
+     * <p>Sets whether connections to different origins may share the same session.</p>
+     * <p>As allowed by RFC 9113 section 9.1.1, when a secure connection
+     * to an origin is requested, an existing session may be reused if it is
+     * connected to the same IP address and port, and the certificate presented
+     * by the server during the TLS handshake is valid for the origin host.
+     * This avoids opening one connection for each virtual host served by the
+     * same server.</p>
+     * <p>Connections through proxies are never coalesced.</p>
+     *
+     * @param coalescing whether connections to different origins may share the same session
+     */
+    public void setCoalescing(boolean coalescing)
+    {
+        this.coalescing = coalescing;
+    }
+
+    @ManagedAttribute("Whether the max multiplex of connections adapts to the observed stream latency")
+    public boolean isAdaptiveMaxMultiplex()
+    {
+        return adaptiveMaxMultiplex;
+    }
+
+    /**
+     * @param adaptiveMaxMultiplex whether the max multiplex of connections adapts to the observed stream latency
+     * @see HttpConnectionOverHTTP2#setAdaptiveMaxMultiplex(boolean)
+     */
+    public void setAdaptiveMaxMultiplex(boolean adaptiveMaxMultiplex)
+    {
+        this.adaptiveMaxMultiplex = adaptiveMaxMultiplex;
+    }
+
+    @ManagedAttribute(value = "The number of sessions that may be shared by different origins", readonly = true)
+    public int getCoalescableSessionCount()
+    {
+        return coalescables.size();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -100,6 +159,8 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
             http2Client.setConnectBlocking(httpClient.isConnectBlocking());
             http2Client.setBindAddress(httpClient.getBindAddress());
         }
+        // Requests over coalesced connections may be rejected with 421.
+        getHttpClient().getProtocolHandlers().put(new MisdirectedRequestProtocolHandler());
         super.doStart();
     }
 
@@ -119,11 +180,43 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
     @Override
     public void connect(SocketAddress address, Map<String, Object> context)
     {
-        SessionListenerPromise listenerPromise = new SessionListenerPromise(context);
         HttpDestination destination = (HttpDestination)context.get(HTTP_DESTINATION_CONTEXT_KEY);
+        boolean coalescable = isCoalescing() && destination.isSecure() && destination.getProxy() == null && address instanceof InetSocketAddress;
+        if (coalescable)
+        {
+            Connection connection = coalesce(destination, (InetSocketAddress)address);
+            if (connection != null)
+            {
+                @SuppressWarnings("unchecked")
+                Promise<Connection> promise = (Promise<Connection>)context.get(HTTP_CONNECTION_PROMISE_CONTEXT_KEY);
+                promise.succeeded(connection);
+                return;
+            }
+        }
+        SessionListenerPromise listenerPromise = new SessionListenerPromise(context);
+        if (coalescable)
+            coalescables.add(listenerPromise);
         connect(address, destination.getClientConnectionFactory(), listenerPromise, listenerPromise, context);
     }
 
+    private Connection coalesce(HttpDestination destination, InetSocketAddress address)
+    {
+        for (SessionListenerPromise candidate : coalescables)
+        {
+            if (!candidate.isAuthoritative(destination, address))
+                continue;
+            HttpConnectionOverHTTP2 connection = candidate.coalesce(destination);
+            if (connection != null)
+            {
+                connection.setAdaptiveMaxMultiplex(isAdaptiveMaxMultiplex());
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Coalesced {} on {}", destination, connection.getSession());
+                return connection;
+            }
+        }
+        return null;
+    }
+
     @Override
     public void connect(InetSocketAddress address, Map<String, Object> context)
     {
@@ -175,7 +268,58 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
         @Override
         protected Connection newConnection(Destination destination, Session session, HTTP2Connection connection)
         {
-            return HttpClientTransportOverHTTP2.this.newConnection(destination, session, connection);
+            Connection result = HttpClientTransportOverHTTP2.this.newConnection(destination, session, connection);
+            if (result instanceof HttpConnectionOverHTTP2 http2Connection)
+                http2Connection.setAdaptiveMaxMultiplex(isAdaptiveMaxMultiplex());
+            return result;
+        }
+
+        private boolean isAuthoritative(Destination destination, InetSocketAddress address)
+        {
+            HttpConnectionOverHTTP2 connection = getConnection();
+            if (connection == null)
+                return false;
+            Session session = connection.getSession();
+            if (session.isClosed() || !address.equals(session.getRemoteSocketAddress()))
+                return false;
+            if (!Objects.equals(destination.getOrigin().getTransport(), connection.getHttpDestination().getOrigin().getTransport()))
+                return false;
+            // The server certificate must be valid for the destination host.
+            EndPoint.SslSessionData sslSessionData = ((HTTP2Session)session).getEndPoint().getSslSessionData();
+            if (sslSessionData == null)
+                return false;
+            X509Certificate[] certificates = sslSessionData.peerCertificates();
+            if (certificates == null || certificates.length == 0)
+                return false;
+            return new X509(null, certificates[0]).matches(destination.getOrigin().getAddress().getHost());
+        }
+
+        @Override
+        public void failed(Throwable failure)
+        {
+            coalescables.remove(this);
+            super.failed(failure);
+        }
+
+        @Override
+        public void onGoAway(Session session, GoAwayFrame frame)
+        {
+            coalescables.remove(this);
+            super.onGoAway(session, frame);
+        }
+
+        @Override
+        public void onClose(Session session, GoAwayFrame frame, Callback callback)
+        {
+            coalescables.remove(this);
+            super.onClose(session, frame, callback);
+        }
+
+        @Override
+        public void onFailure(Session session, Throwable failure, Callback callback)
+        {
+            coalescables.remove(this);
+            super.onFailure(session, failure, callback);
         }
 
         @Override
@@ -14,13 +14,18 @@
 package org.eclipse.jetty.http2.client.transport.internal;
 
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicMarkableReference;
 
 import org.eclipse.jetty.client.Connection;
 import org.eclipse.jetty.client.Destination;
 import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.api.Session;
@@ -28,10 +33,14 @@ import org.eclipse.jetty.http2.frames.GoAwayFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.AutoLock;
 
 public class HTTPSessionListenerPromise implements Session.Listener, Promise<Session>
 {
     private final AtomicMarkableReference<HttpConnectionOverHTTP2> connection = new AtomicMarkableReference<>(null, false);
+    private final AutoLock lock = new AutoLock();
+    private final List<HttpConnectionOverHTTP2> connections = new ArrayList<>();
+    private final Set<Origin> misdirected = new HashSet<>();
     private final Map<String, Object> context;
 
     public HTTPSessionListenerPromise(Map<String, Object> context)
@@ -77,6 +86,11 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
         HttpConnectionOverHTTP2 connection = (HttpConnectionOverHTTP2)newConnection(destination(), session, http2Connection);
         if (this.connection.compareAndSet(null, connection, false, true))
         {
+            try (AutoLock ignored = lock.lock())
+            {
+                connections.add(connection);
+            }
+            connection.setSessionListener(this);
             // The connection promise must be called synchronously
             // so that the HTTP/1 to HTTP/2 upgrade can create the
             // HTTP/2 stream that represents the HTTP/1 request.
@@ -89,14 +103,96 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
         return new HttpConnectionOverHTTP2(destination, session, connection);
     }
 
+    /**
+     * <p>Creates a connection for the given destination that shares
+     * the session of this listener, as allowed by RFC 9113 section 9.1.1.</p>
+     * <p>The caller is responsible to verify that the session is authoritative
+     * for the destination; this method only verifies that the session is open
+     * and that it is not already used by the given destination.</p>
+     *
+     * @param destination the destination to coalesce
+     * @return a connection that shares the session of this listener,
+     * or {@code null} if the session cannot be shared
+     */
+    public HttpConnectionOverHTTP2 coalesce(Destination destination)
+    {
+        HttpConnectionOverHTTP2 primary = getConnection();
+        if (primary == null)
+            return null;
+        Session session = primary.getSession();
+        try (AutoLock ignored = lock.lock())
+        {
+            // The session is closing when all its connections have been released.
+            if (session.isClosed() || connections.isEmpty())
+                return null;
+            // The server replied 421 to a request for this origin.
+            if (misdirected.contains(destination.getOrigin()))
+                return null;
+            for (HttpConnectionOverHTTP2 connection : connections)
+            {
+                if (connection.getHttpDestination() == destination)
+                    return null;
+            }
+            HTTP2Connection http2Connection = (HTTP2Connection)context.get(HTTP2Connection.class.getName());
+            HttpConnectionOverHTTP2 connection = (HttpConnectionOverHTTP2)newConnection(destination, session, http2Connection);
+            connection.setSessionListener(this);
+            connections.add(connection);
+            return connection;
+        }
+    }
+
+    /**
+     * <p>Records that the server is not authoritative for the origin
+     * of the given destination, which therefore cannot be coalesced
+     * with the session of this listener anymore.</p>
+     *
+     * @param destination the destination that received a {@code 421 Misdirected Request} response
+     */
+    void misdirected(Destination destination)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            misdirected.add(destination.getOrigin());
+        }
+    }
+
+    /**
+     * @return the number of connections that share the session of this listener
+     */
+    public int getConnectionCount()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return connections.size();
+        }
+    }
+
+    boolean release(HttpConnectionOverHTTP2 connection)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            connections.remove(connection);
+            return connections.isEmpty();
+        }
+    }
+
+    private List<HttpConnectionOverHTTP2> getConnections()
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            return new ArrayList<>(connections);
+        }
+    }
+
     @Override
     public void onGoAway(Session session, GoAwayFrame frame)
     {
         if (!failConnectionPromise(new ClosedChannelException()))
         {
-            HttpConnectionOverHTTP2 connection = getConnection();
-            if (connection != null)
+            for (HttpConnectionOverHTTP2 connection : getConnections())
+            {
                 connection.remove();
+            }
         }
     }
 
@@ -105,9 +201,10 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
     {
         if (!failConnectionPromise(new ClosedChannelException()))
         {
-            HttpConnectionOverHTTP2 connection = getConnection();
-            if (connection != null)
+            for (HttpConnectionOverHTTP2 connection : getConnections())
+            {
                 onClose(connection, frame);
+            }
         }
         callback.succeeded();
     }
@@ -124,10 +221,15 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
         TimeoutException failure = new TimeoutException("Idle timeout expired: " + idleTimeout + " ms");
         if (failConnectionPromise(failure))
             return true;
-        HttpConnectionOverHTTP2 connection = getConnection();
-        if (connection != null)
-            return connection.onIdleTimeout(idleTimeout, failure);
-        return true;
+        List<HttpConnectionOverHTTP2> connections = getConnections();
+        if (connections.isEmpty())
+            return true;
+        boolean result = true;
+        for (HttpConnectionOverHTTP2 connection : connections)
+        {
+            result &= connection.onIdleTimeout(idleTimeout, failure);
+        }
+        return result;
     }
 
     @Override
@@ -135,9 +237,10 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
     {
         if (!failConnectionPromise(failure))
         {
-            HttpConnectionOverHTTP2 connection = getConnection();
-            if (connection != null)
+            for (HttpConnectionOverHTTP2 connection : getConnections())
+            {
                 connection.close(failure);
+            }
         }
         callback.succeeded();
     }
@@ -150,7 +253,7 @@ public class HTTPSessionListenerPromise implements Session.Listener, Promise<Ses
         return result;
     }
 
-    private HttpConnectionOverHTTP2 getConnection()
+    protected HttpConnectionOverHTTP2 getConnection()
     {
         return connection.getReference();
     }
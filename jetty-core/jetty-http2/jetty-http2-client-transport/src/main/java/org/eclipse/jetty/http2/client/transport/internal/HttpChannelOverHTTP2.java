@@ -30,6 +30,7 @@ import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PushPromiseFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.Promise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +45,7 @@ public class HttpChannelOverHTTP2 extends HttpChannel
     private final HttpSenderOverHTTP2 sender;
     private final HttpReceiverOverHTTP2 receiver;
     private Stream stream;
+    private long sendNanoTime;
 
     public HttpChannelOverHTTP2(HttpConnectionOverHTTP2 connection, Session session)
     {
@@ -107,9 +109,15 @@ public class HttpChannelOverHTTP2 extends HttpChannel
     @Override
     public void send(HttpExchange exchange)
     {
+        sendNanoTime = NanoTime.now();
         sender.send(exchange);
     }
 
+    long getSendNanoTime()
+    {
+        return sendNanoTime;
+    }
+
     @Override
     public void release()
     {
@@ -45,6 +45,8 @@ import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Sweeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,14 +54,24 @@ import org.slf4j.LoggerFactory;
 public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.Sweepable, ConnectionPool.MaxMultiplexable
 {
     private static final Logger LOG = LoggerFactory.getLogger(HttpConnectionOverHTTP2.class);
+    private static final int INITIAL_MULTIPLEX_LIMIT = 100;
+    private static final int STREAM_LATENCY_WINDOW = 1000;
 
     private final Set<HttpChannel> activeChannels = ConcurrentHashMap.newKeySet();
     private final Queue<HttpChannelOverHTTP2> idleChannels = new ConcurrentLinkedQueue<>();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicInteger sweeps = new AtomicInteger();
+    private final AutoLock lock = new AutoLock();
     private final Session session;
     private final HTTP2Connection connection;
     private boolean recycleHttpChannels = true;
+    private boolean adaptiveMaxMultiplex;
+    private volatile int multiplexLimit;
+    private double adaptiveLimit;
+    private long minStreamLatency = Long.MAX_VALUE;
+    private int streamLatencySamples;
+    private volatile HTTPSessionListenerPromise sessionListener;
+    private volatile boolean misdirected;
 
     public HttpConnectionOverHTTP2(Destination destination, Session session, HTTP2Connection connection)
     {
@@ -95,10 +107,106 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
         this.recycleHttpChannels = recycleHttpChannels;
     }
 
+    /**
+     * @return whether the max multiplex is adapted to the observed stream latency
+     */
+    public boolean isAdaptiveMaxMultiplex()
+    {
+        return adaptiveMaxMultiplex;
+    }
+
+    /**
+     * <p>Sets whether the max multiplex is adapted to the observed stream latency.</p>
+     * <p>When enabled, the max multiplex starts from the server's
+     * {@code SETTINGS_MAX_CONCURRENT_STREAMS} and it is reduced when the
+     * latency of the streams grows above the minimum observed latency,
+     * so that the connection pool opens other connections rather than
+     * queueing more streams on a congested connection.</p>
+     *
+     * @param adaptiveMaxMultiplex whether the max multiplex is adapted to the observed stream latency
+     */
+    public void setAdaptiveMaxMultiplex(boolean adaptiveMaxMultiplex)
+    {
+        this.adaptiveMaxMultiplex = adaptiveMaxMultiplex;
+    }
+
     @Override
     public int getMaxMultiplex()
     {
-        return ((HTTP2Session)session).getMaxLocalStreams();
+        int maxMultiplex = ((HTTP2Session)session).getMaxLocalStreams();
+        int limit = multiplexLimit;
+        if (adaptiveMaxMultiplex && limit > 0 && (maxMultiplex < 0 || limit < maxMultiplex))
+            maxMultiplex = limit;
+        HTTPSessionListenerPromise sessionListener = this.sessionListener;
+        if (maxMultiplex > 0 && sessionListener != null && sessionListener.getConnectionCount() > 1)
+        {
+            // The session is shared with coalesced connections,
+            // so the streams they opened must be accounted for.
+            int otherStreams = ((HTTP2Session)session).getStreamCount() - activeChannels.size();
+            maxMultiplex = Math.max(1, maxMultiplex - Math.max(0, otherStreams));
+        }
+        return maxMultiplex;
+    }
+
+    private void onStreamLatency(long latency)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            int maxLocalStreams = ((HTTP2Session)session).getMaxLocalStreams();
+            double maxLimit = maxLocalStreams > 0 ? maxLocalStreams : Integer.MAX_VALUE;
+            if (adaptiveLimit == 0)
+                adaptiveLimit = maxLocalStreams > 0 ? maxLocalStreams : INITIAL_MULTIPLEX_LIMIT;
+
+            // Periodically forget the minimum latency,
+            // to track changes in the server conditions.
+            latency = Math.max(1, latency);
+            if (++streamLatencySamples % STREAM_LATENCY_WINDOW == 0)
+                minStreamLatency = latency;
+            else
+                minStreamLatency = Math.min(minStreamLatency, latency);
+
+            // Gradient algorithm: shrink the limit proportionally to the
+            // latency increase, otherwise grow it by its square root.
+            double gradient = Math.max(0.5, Math.min(1.0, (double)minStreamLatency / latency));
+            double newLimit = adaptiveLimit * gradient + Math.sqrt(adaptiveLimit);
+            adaptiveLimit = Math.max(1, Math.min(maxLimit, 0.8 * adaptiveLimit + 0.2 * newLimit));
+            multiplexLimit = (int)adaptiveLimit;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stream latency {} ns, multiplex limit {} for {}", latency, multiplexLimit, this);
+    }
+
+    void setSessionListener(HTTPSessionListenerPromise sessionListener)
+    {
+        this.sessionListener = sessionListener;
+    }
+
+    /**
+     * @return whether this connection shares the session opened by a connection to another origin
+     */
+    public boolean isCoalesced()
+    {
+        HTTPSessionListenerPromise sessionListener = this.sessionListener;
+        return sessionListener != null && sessionListener.getConnection() != this;
+    }
+
+    /**
+     * <p>Called when a request sent over this connection received a
+     * {@code 421 Misdirected Request} response.</p>
+     * <p>This connection is not used anymore for new requests,
+     * and it is closed when its in-flight requests complete.</p>
+     */
+    void misdirect()
+    {
+        HTTPSessionListenerPromise sessionListener = this.sessionListener;
+        if (sessionListener != null)
+            sessionListener.misdirected(getHttpDestination());
+        misdirected = true;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Misdirected {}", this);
+        remove();
+        if (activeChannels.isEmpty())
+            close();
     }
 
     @Override
@@ -194,11 +302,16 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
             LOG.debug("Released {}", channel);
         if (activeChannels.remove(channel))
         {
+            if (isAdaptiveMaxMultiplex() && !channel.isFailed())
+                onStreamLatency(NanoTime.since(channel.getSendNanoTime()));
+
             // Recycle only non-failed channels.
             if (channel.isFailed())
                 channel.destroy();
             else if (isRecycleHttpChannels())
                 idleChannels.offer(channel);
+            if (misdirected && activeChannels.isEmpty())
+                close();
             return true;
         }
         else
@@ -236,7 +349,11 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
 
             abort(failure);
 
-            session.close(ErrorCode.NO_ERROR.code, failure.getMessage(), Callback.NOOP);
+            // The session may be shared with coalesced connections,
+            // and it is closed only when the last one is closed.
+            HTTPSessionListenerPromise sessionListener = this.sessionListener;
+            if (sessionListener == null || sessionListener.release(this))
+                session.close(ErrorCode.NO_ERROR.code, failure.getMessage(), Callback.NOOP);
 
             HttpChannel channel = idleChannels.poll();
             while (channel != null)
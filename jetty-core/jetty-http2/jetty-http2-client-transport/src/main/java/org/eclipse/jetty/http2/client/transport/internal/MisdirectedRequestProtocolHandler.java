@@ -0,0 +1,149 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.transport.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpRequestException;
+import org.eclipse.jetty.client.ProtocolHandler;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.client.transport.HttpConversation;
+import org.eclipse.jetty.client.transport.HttpRequest;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.NanoTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A protocol handler that handles the {@code 421 Misdirected Request}
+ * status code received over a coalesced connection.</p>
+ * <p>As specified by RFC 9113 section 9.1.1, the server is not authoritative
+ * for the origin of the request, so the coalesced connection is not used
+ * anymore for that origin, and the request is retried once on a
+ * connection that is not coalesced.</p>
+ */
+public class MisdirectedRequestProtocolHandler implements ProtocolHandler, Response.Listener
+{
+    public static final String NAME = "misdirected-request";
+    private static final Logger LOG = LoggerFactory.getLogger(MisdirectedRequestProtocolHandler.class);
+    private static final String ATTRIBUTE = MisdirectedRequestProtocolHandler.class.getName() + ".retried";
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public boolean accept(Request request, Response response)
+    {
+        if (response.getStatus() != HttpStatus.MISDIRECTED_REQUEST_421)
+            return false;
+        if (!(request.getConnection() instanceof HttpConnectionOverHTTP2 connection) || !connection.isCoalesced())
+            return false;
+        // Retry only once, in case the server also rejects the new connection.
+        return ((HttpRequest)request).getConversation().getAttribute(ATTRIBUTE) == null;
+    }
+
+    @Override
+    public Response.Listener getResponseListener()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean onHeader(Response response, HttpField field)
+    {
+        // Avoid that the content is decoded, since it is discarded.
+        return field.getHeader() != HttpHeader.CONTENT_ENCODING;
+    }
+
+    @Override
+    public void onSuccess(Response response)
+    {
+        // The request may still be sending content, stop it.
+        Request request = response.getRequest();
+        request.abort(new HttpRequestException("Aborting request after receiving a %d response".formatted(response.getStatus()), request));
+    }
+
+    @Override
+    public void onComplete(Result result)
+    {
+        HttpRequest request = (HttpRequest)result.getRequest();
+        Response response = result.getResponse();
+        if (request.getConnection() instanceof HttpConnectionOverHTTP2 connection)
+            connection.misdirect();
+
+        if (result.getResponseFailure() != null)
+        {
+            fail(request, result.getFailure(), response);
+            return;
+        }
+
+        HttpConversation conversation = request.getConversation();
+        conversation.setAttribute(ATTRIBUTE, Boolean.TRUE);
+        try
+        {
+            HttpRequest retry = request.copy(request.getURI());
+            // Unlike redirects, the request is retried to the same URI.
+            retry.headers(headers -> request.getHeaders().stream()
+                .filter(field -> field.getHeader() == HttpHeader.AUTHORIZATION || field.getHeader() == HttpHeader.PROXY_AUTHORIZATION)
+                .forEach(headers::add));
+
+            Request.Content body = retry.getBody();
+            if (body != null && !body.rewind())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not retry misdirected {}, request body is not reproducible", request);
+                conversation.updateResponseListeners(null);
+                conversation.getResponseListeners().emitSuccessComplete(new Result(request, response));
+                return;
+            }
+
+            // Adjust the timeout of the new request, taking into account the
+            // timeout of the previous request and the time already elapsed.
+            long timeoutNanoTime = request.getTimeoutNanoTime();
+            if (timeoutNanoTime < Long.MAX_VALUE)
+            {
+                long newTimeout = NanoTime.until(timeoutNanoTime);
+                if (newTimeout <= 0)
+                {
+                    fail(request, new TimeoutException("Total timeout " + conversation.getTimeout() + " ms elapsed"), response);
+                    return;
+                }
+                retry.timeout(newTimeout, TimeUnit.NANOSECONDS);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Retrying misdirected {} as {}", request, retry);
+            retry.send(null);
+        }
+        catch (Throwable x)
+        {
+            fail(request, x, response);
+        }
+    }
+
+    private void fail(HttpRequest request, Throwable failure, Response response)
+    {
+        HttpConversation conversation = request.getConversation();
+        conversation.updateResponseListeners(null);
+        conversation.getResponseListeners().emitFailureComplete(new Result(request, failure, response, failure));
+    }
+}
@@ -0,0 +1,71 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jetty.http.Priority;
+
+/**
+ * <p>A {@link StreamScheduler} that implements the prioritization scheme of
+ * <a href="https://datatracker.ietf.org/doc/html/rfc9218">RFC 9218</a>,
+ * based on the {@link HTTP2Stream#getPriority() priority} of the streams.</p>
+ * <p>Only the streams with the most urgent priority write DATA frames.
+ * Among those, a non-incremental stream writes all its DATA frames before
+ * the other streams, in stream id order; otherwise, the incremental streams
+ * write their DATA frames in round-robin order.</p>
+ * <p>Streams that are not able to write, for example because their flow
+ * control window is exhausted, do not prevent less urgent streams to write.</p>
+ */
+public class ExtensiblePriorityStreamScheduler implements StreamScheduler
+{
+    @Override
+    public void select(List<HTTP2Stream> streams, Collection<HTTP2Stream> selected)
+    {
+        int urgency = Priority.MAX_URGENCY;
+        for (HTTP2Stream stream : streams)
+        {
+            urgency = Math.min(urgency, stream.getPriority().urgency());
+        }
+
+        HTTP2Stream sequential = null;
+        for (HTTP2Stream stream : streams)
+        {
+            Priority priority = stream.getPriority();
+            if (priority.urgency() == urgency && !priority.incremental())
+            {
+                if (sequential == null || stream.getId() < sequential.getId())
+                    sequential = stream;
+            }
+        }
+        if (sequential != null)
+        {
+            selected.add(sequential);
+            return;
+        }
+
+        for (HTTP2Stream stream : streams)
+        {
+            if (stream.getPriority().urgency() == urgency)
+                selected.add(stream);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -105,6 +106,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements Session
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private StreamScheduler streamScheduler = StreamScheduler.FIFO;
     private int maxEncoderTableCapacity;
     private boolean pushEnabled;
     private boolean connectProtocolEnabled;
@@ -209,6 +211,24 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements Session
         this.writeThreshold = writeThreshold;
     }
 
+    @ManagedAttribute("The scheduler of the DATA frames of the streams")
+    public StreamScheduler getStreamScheduler()
+    {
+        return streamScheduler;
+    }
+
+    /**
+     * <p>Sets the {@link StreamScheduler} that decides which streams write
+     * their DATA frames first; defaults to {@link StreamScheduler#FIFO}.</p>
+     *
+     * @param streamScheduler the scheduler of the DATA frames of the streams
+     * @see ExtensiblePriorityStreamScheduler
+     */
+    public void setStreamScheduler(StreamScheduler streamScheduler)
+    {
+        this.streamScheduler = Objects.requireNonNull(streamScheduler);
+    }
+
     @ManagedAttribute("The HPACK encoder dynamic table maximum capacity")
     public int getMaxEncoderTableCapacity()
     {
@@ -1250,6 +1270,14 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements Session
 
         public abstract int getFrameBytesGenerated();
 
+        /**
+         * @return the stream of the frame, or null if the frame is not associated to a stream
+         */
+        public HTTP2Stream getStream()
+        {
+            return stream;
+        }
+
         public int getDataBytesRemaining()
         {
             return 0;
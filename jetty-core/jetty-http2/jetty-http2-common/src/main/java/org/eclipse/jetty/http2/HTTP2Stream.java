@@ -34,6 +34,7 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.Priority;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.FailureFrame;
@@ -81,6 +82,7 @@ public class HTTP2Stream implements Stream, Attachable, Closeable, Callback, Dum
     private boolean committed;
     private long idleTimeout;
     private long expireNanoTime = Long.MAX_VALUE;
+    private volatile Priority priority;
 
     public HTTP2Stream(HTTP2Session session, int streamId, MetaData.Request request, boolean local)
     {
@@ -90,6 +92,7 @@ public class HTTP2Stream implements Stream, Attachable, Closeable, Callback, Dum
         this.local = local;
         this.dataLength = -1;
         this.dataStalled = true;
+        this.priority = request == null ? Priority.DEFAULT : Priority.from(request.getHttpFields());
     }
 
     @Override
@@ -142,6 +145,10 @@ public class HTTP2Stream implements Stream, Attachable, Closeable, Callback, Dum
 
     public void send(FrameList frameList, Callback callback)
     {
+        // A server may override the priority of the request
+        // with the Priority header of the response.
+        if (frameList.getFrames().get(0) instanceof HeadersFrame headers && headers.getMetaData() instanceof MetaData.Response response)
+            priority = Priority.from(response.getHttpFields(), priority);
         if (startWrite(callback))
             session.frames(this, frameList.getFrames(), this);
     }
@@ -334,6 +341,23 @@ public class HTTP2Stream implements Stream, Attachable, Closeable, Callback, Dum
         return map;
     }
 
+    /**
+     * @return the priority of this stream, as specified by the {@code Priority} header
+     * @see StreamScheduler
+     */
+    public Priority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * @param priority the priority of this stream
+     */
+    public void setPriority(Priority priority)
+    {
+        this.priority = Objects.requireNonNull(priority);
+    }
+
     @Override
     public Listener getListener()
     {
@@ -959,12 +983,13 @@ public class HTTP2Stream implements Stream, Attachable, Closeable, Callback, Dum
     @Override
     public String toString()
     {
-        return String.format("%s#%d@%x{sendWindow=%s,recvWindow=%s,queue=%d,demand=%b,reset=%b/%b,%s,age=%d,attachment=%s}",
+        return String.format("%s#%d@%x{sendWindow=%s,recvWindow=%s,priority=%s,queue=%d,demand=%b,reset=%b/%b,%s,age=%d,attachment=%s}",
             getClass().getSimpleName(),
             getId(),
             session.hashCode(),
             sendWindow,
             recvWindow,
+            priority.toHeaderValue(),
             dataSize(),
             hasDemand(),
             localReset,
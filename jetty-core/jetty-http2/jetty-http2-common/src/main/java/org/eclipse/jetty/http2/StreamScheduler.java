@@ -0,0 +1,49 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>Decides which streams write their DATA frames first, when
+ * DATA frames of multiple streams are queued on the same session.</p>
+ * <p>The queued frames are written in passes, where a stream writes
+ * at most one DATA frame per pass; frames other than DATA frames
+ * are always written in the order they have been queued.</p>
+ * <p>Before each pass, the streams that are able to write a DATA
+ * frame are passed to {@link #select(List, Collection)}, and only
+ * the selected streams write a DATA frame in that pass.</p>
+ * <p>Implementations are called by one thread at a time for a given
+ * session, but may be shared among sessions.</p>
+ *
+ * @see HTTP2Session#setStreamScheduler(StreamScheduler)
+ */
+public interface StreamScheduler
+{
+    /**
+     * <p>A scheduler that selects all the streams, so that their
+     * DATA frames are interleaved in the order they have been queued.</p>
+     */
+    public static final StreamScheduler FIFO = (streams, selected) -> selected.addAll(streams);
+
+    /**
+     * <p>Selects the streams that write a DATA frame in the next pass.</p>
+     * <p>At least one stream must be selected.</p>
+     *
+     * @param streams the streams that are able to write a DATA frame, in the order their frames have been queued
+     * @param selected the collection to add the selected streams to
+     */
+    public void select(List<HTTP2Stream> streams, Collection<HTTP2Stream> selected);
+}
@@ -28,6 +28,7 @@ import java.util.Set;
 import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.HTTP2Stream;
+import org.eclipse.jetty.http2.StreamScheduler;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
@@ -49,6 +50,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private final Deque<HTTP2Session.Entry> entries = new ArrayDeque<>();
     private final Queue<HTTP2Session.Entry> pendingEntries = new ArrayDeque<>();
     private final Collection<HTTP2Session.Entry> processedEntries = new ArrayList<>();
+    private final List<HTTP2Stream> writableStreams = new ArrayList<>();
+    private final Collection<HTTP2Stream> selectedStreams = new ArrayList<>();
+    private final Collection<HTTP2Stream> deferredStreams = new ArrayList<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Accumulator accumulator;
     private InvocationType invocationType = InvocationType.NON_BLOCKING;
@@ -185,6 +189,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        boolean schedule = true;
         while (true)
         {
             boolean progress = false;
@@ -192,6 +197,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             if (pendingEntries.isEmpty())
                 break;
 
+            boolean scheduled = schedule && schedule();
+            boolean deferred = false;
+
             Iterator<HTTP2Session.Entry> pending = pendingEntries.iterator();
             while (pending.hasNext())
             {
@@ -210,6 +218,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                     continue;
                 }
 
+                if (scheduled && isDeferred(entry))
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Deferred {}", entry);
+                    deferred = true;
+                    continue;
+                }
+
                 try
                 {
                     if (entry.generate(accumulator))
@@ -259,7 +275,17 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             }
 
             if (!progress)
+            {
+                // The selected streams could not write,
+                // so let all the streams write instead.
+                if (deferred)
+                {
+                    schedule = false;
+                    continue;
+                }
                 break;
+            }
+            schedule = true;
 
             if (stalledEntry != null)
                 break;
@@ -293,6 +319,61 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Selects, via the session {@link StreamScheduler}, the streams
+     * that write DATA frames in the next pass over the pending entries.</p>
+     *
+     * @return whether the streams that are not selected must be deferred
+     */
+    private boolean schedule()
+    {
+        StreamScheduler scheduler = session.getStreamScheduler();
+        if (scheduler == StreamScheduler.FIFO || session.getSendWindow() <= 0)
+            return false;
+
+        writableStreams.clear();
+        selectedStreams.clear();
+        deferredStreams.clear();
+        for (HTTP2Session.Entry entry : pendingEntries)
+        {
+            if (entry.getDataBytesRemaining() == 0)
+                continue;
+            HTTP2Stream stream = entry.getStream();
+            if (stream == null || stream.getSendWindow() <= 0 || stream.isResetOrFailed())
+                continue;
+            // We use ArrayList contains() + add() instead of HashSet add()
+            // because that is faster for collections of size up to 250 entries.
+            if (!writableStreams.contains(stream))
+                writableStreams.add(stream);
+        }
+
+        // There is nothing to choose from.
+        if (writableStreams.size() < 2)
+            return false;
+
+        scheduler.select(writableStreams, selectedStreams);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Scheduled {}/{} streams with {}", selectedStreams.size(), writableStreams.size(), scheduler);
+        return true;
+    }
+
+    private boolean isDeferred(HTTP2Session.Entry entry)
+    {
+        HTTP2Stream stream = entry.getStream();
+        if (stream == null)
+            return false;
+        // The entries that follow a deferred entry of the
+        // same stream are deferred as well, to keep their order.
+        if (deferredStreams.contains(stream))
+            return true;
+        if (entry.getDataBytesRemaining() > 0 && writableStreams.contains(stream) && !selectedStreams.contains(stream))
+        {
+            deferredStreams.add(stream);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     protected void onSuccess()
     {
@@ -313,6 +394,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         processedEntries.forEach(HTTP2Session.Entry::succeeded);
         processedEntries.clear();
         invocationType = InvocationType.NON_BLOCKING;
+        writableStreams.clear();
+        selectedStreams.clear();
+        deferredStreams.clear();
 
         if (stalledEntry != null)
         {
@@ -28,6 +28,7 @@ import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.RateControl;
+import org.eclipse.jetty.http2.StreamScheduler;
 import org.eclipse.jetty.http2.WindowRateControl;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
@@ -49,6 +50,8 @@ import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.statistic.MetricsRegistry;
+import org.eclipse.jetty.util.statistic.MetricsSource;
 
 @ManagedObject
 public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConnectionFactory
@@ -75,6 +78,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private boolean connectProtocolEnabled = true;
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(128);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private StreamScheduler streamScheduler = StreamScheduler.FIFO;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
@@ -253,6 +257,25 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.rateControlFactory = Objects.requireNonNull(rateControlFactory);
     }
 
+    /**
+     * @return the scheduler of the DATA frames of the streams of a session
+     */
+    public StreamScheduler getStreamScheduler()
+    {
+        return streamScheduler;
+    }
+
+    /**
+     * <p>Sets the scheduler that decides which streams of a session write their DATA frames first.</p>
+     *
+     * @param streamScheduler the scheduler of the DATA frames of the streams of a session
+     * @see org.eclipse.jetty.http2.ExtensiblePriorityStreamScheduler
+     */
+    public void setStreamScheduler(StreamScheduler streamScheduler)
+    {
+        this.streamScheduler = Objects.requireNonNull(streamScheduler);
+    }
+
     @ManagedAttribute("Whether to use direct ByteBuffers for reading")
     public boolean isUseInputDirectByteBuffers()
     {
@@ -323,6 +346,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setStreamIdleTimeout(streamIdleTimeout);
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
+        session.setStreamScheduler(getStreamScheduler());
         session.setConnectProtocolEnabled(isConnectProtocolEnabled());
 
         HTTP2Connection connection = new HTTP2ServerConnection(connector,
@@ -343,7 +367,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     }
 
     @ManagedObject("The container of HTTP/2 sessions")
-    public static class HTTP2SessionContainer implements Connection.Listener, Graceful, Dumpable
+    public static class HTTP2SessionContainer implements Connection.Listener, Graceful, Dumpable, MetricsSource
     {
         private final Set<HTTP2Session> sessions = ConcurrentHashMap.newKeySet();
         private final AtomicReference<CompletableFuture<Void>> shutdown = new AtomicReference<>();
@@ -377,6 +401,24 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
             return sessions.size();
         }
 
+        @ManagedAttribute(value = "The number of active streams of the HTTP/2 sessions", readonly = true)
+        public int getStreamCount()
+        {
+            int count = 0;
+            for (HTTP2Session session : sessions)
+            {
+                count += session.getStreamCount();
+            }
+            return count;
+        }
+
+        @Override
+        public void registerMetrics(MetricsRegistry registry, String labels)
+        {
+            registry.gauge("jetty_http2_sessions", "The number of HTTP/2 sessions", labels, this::getSize);
+            registry.gauge("jetty_http2_streams", "The number of active HTTP/2 streams", labels, this::getStreamCount);
+        }
+
         @Override
         public CompletableFuture<Void> shutdown()
         {
@@ -0,0 +1,283 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.tests;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.http2.client.transport.internal.HttpConnectionOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpClientCoalescingTest
+{
+    private final List<HttpConnectionOverHTTP2> connections = new CopyOnWriteArrayList<>();
+    private Server server;
+    private ServerConnector connector;
+    private HttpClientTransportOverHTTP2 transport;
+    private HttpClient httpClient;
+
+    private void startServer(Handler handler) throws Exception
+    {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        HttpConfiguration httpsConfig = new HttpConfiguration();
+        httpsConfig.addCustomizer(new SecureRequestCustomizer(false));
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpsConfig);
+        SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+        sslContextFactory.setKeyStorePath("src/test/resources/keystore.p12");
+        sslContextFactory.setKeyStorePassword("storepwd");
+        SslConnectionFactory ssl = new SslConnectionFactory(sslContextFactory, h2.getProtocol());
+        connector = new ServerConnector(server, 1, 1, ssl, h2);
+        // Both "localhost" and "127.0.0.1" connect to the same IP address.
+        connector.setHost("127.0.0.1");
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+    }
+
+    private void startClient(boolean coalescing) throws Exception
+    {
+        ClientConnector clientConnector = new ClientConnector();
+        QueuedThreadPool clientThreads = new QueuedThreadPool();
+        clientThreads.setName("client");
+        clientConnector.setExecutor(clientThreads);
+        SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
+        sslContextFactory.setKeyStorePath("src/test/resources/keystore.p12");
+        sslContextFactory.setKeyStorePassword("storepwd");
+        clientConnector.setSslContextFactory(sslContextFactory);
+        transport = new HttpClientTransportOverHTTP2(new HTTP2Client(clientConnector))
+        {
+            @Override
+            protected Connection newConnection(Destination destination, Session session, HTTP2Connection connection)
+            {
+                HttpConnectionOverHTTP2 result = (HttpConnectionOverHTTP2)super.newConnection(destination, session, connection);
+                connections.add(result);
+                return result;
+            }
+        };
+        transport.setUseALPN(false);
+        transport.setCoalescing(coalescing);
+        httpClient = new HttpClient(transport);
+        httpClient.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(httpClient);
+        LifeCycle.stop(server);
+    }
+
+    private ContentResponse send(String host) throws Exception
+    {
+        return httpClient.newRequest("https://" + host + ":" + connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    private static Handler newHandler()
+    {
+        return new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testOriginsAreCoalesced() throws Exception
+    {
+        startServer(newHandler());
+        startClient(true);
+
+        assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        // The server certificate is also valid for "localhost".
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        assertEquals(2, httpClient.getDestinations().size());
+        assertEquals(2, connections.size());
+        assertSame(connections.get(0).getSession(), connections.get(1).getSession());
+        assertEquals(1, connector.getConnectedEndPoints().size());
+        assertEquals(1, transport.getCoalescableSessionCount());
+    }
+
+    @Test
+    public void testOriginsAreNotCoalescedByDefault() throws Exception
+    {
+        startServer(newHandler());
+        startClient(false);
+
+        assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        assertEquals(2, connections.size());
+        assertNotSame(connections.get(0).getSession(), connections.get(1).getSession());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+    }
+
+    @Test
+    public void testCoalescedSessionIsClosedByLastConnection() throws Exception
+    {
+        startServer(newHandler());
+        startClient(true);
+
+        assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        assertEquals(2, connections.size());
+        Session session = connections.get(0).getSession();
+
+        // Closing one of the coalesced connections does not close the session.
+        connections.get(0).close();
+        assertFalse(session.isClosed());
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        connections.get(1).close();
+        assertTrue(session.isClosed());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transport.getCoalescableSessionCount() == 0);
+    }
+
+    @Test
+    public void testMisdirectedRequestIsRetriedOnNewConnection() throws Exception
+    {
+        Map<String, String> connectionHosts = new ConcurrentHashMap<>();
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                // The server is only authoritative for the first host of each connection.
+                String host = Request.getServerName(request);
+                String connectionHost = connectionHosts.computeIfAbsent(request.getConnectionMetaData().getId(), id -> host);
+                if (!connectionHost.equals(host))
+                    response.setStatus(HttpStatus.MISDIRECTED_REQUEST_421);
+                callback.succeeded();
+                return true;
+            }
+        });
+        startClient(true);
+
+        assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+
+        // The coalesced connection received the 421 and was closed,
+        // and the request was retried on a new connection.
+        assertEquals(3, connections.size());
+        assertTrue(connections.get(1).isClosed());
+        assertFalse(connections.get(2).isCoalesced());
+        assertNotSame(connections.get(0).getSession(), connections.get(2).getSession());
+        assertFalse(connections.get(0).getSession().isClosed());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+
+        // The origin is not coalesced anymore.
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        assertEquals(3, connections.size());
+    }
+
+    @Test
+    public void testPreCreateConnections() throws Exception
+    {
+        startServer(newHandler());
+        startClient(false);
+
+        URI uri = URI.create("https://localhost:" + connector.getLocalPort());
+        httpClient.preCreateConnections(uri, 2).get(5, TimeUnit.SECONDS);
+
+        // The connections are ready, TLS handshaked and with the SETTINGS exchanged.
+        assertEquals(2, connections.size());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+        Destination destination = httpClient.resolveDestination(httpClient.newRequest(uri));
+        assertEquals(2, ((AbstractConnectionPool)destination.getConnectionPool()).getIdleConnectionCount());
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        assertEquals(2, connections.size());
+    }
+
+    @Test
+    public void testAdaptiveMaxMultiplex() throws Exception
+    {
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                if (Request.getPathInContext(request).startsWith("/slow"))
+                    Thread.sleep(100);
+                callback.succeeded();
+                return true;
+            }
+        });
+        startClient(false);
+        transport.setAdaptiveMaxMultiplex(true);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        }
+        assertEquals(1, connections.size());
+        HttpConnectionOverHTTP2 connection = connections.get(0);
+        assertTrue(connection.isAdaptiveMaxMultiplex());
+        int maxMultiplex = connection.getMaxMultiplex();
+
+        // Increased latency reduces the max multiplex.
+        for (int i = 0; i < 10; ++i)
+        {
+            ContentResponse response = httpClient.newRequest("https://localhost:" + connector.getLocalPort() + "/slow")
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+        assertTrue(connection.getMaxMultiplex() < maxMultiplex, connection.getMaxMultiplex() + " < " + maxMultiplex);
+    }
+}
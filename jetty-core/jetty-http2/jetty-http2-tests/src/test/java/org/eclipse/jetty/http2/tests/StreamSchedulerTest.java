@@ -0,0 +1,194 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.tests;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.Priority;
+import org.eclipse.jetty.http2.ExtensiblePriorityStreamScheduler;
+import org.eclipse.jetty.http2.HTTP2Stream;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamSchedulerTest extends AbstractTest
+{
+    // Larger than the max frame size, so that each response is written in multiple DATA frames,
+    // but small enough that all the responses fit in the flow control windows.
+    private static final int CONTENT_LENGTH = 20 * 1024;
+
+    @Test
+    public void testMoreUrgentStreamWritesFirst() throws Exception
+    {
+        List<Integer> streams = exchange(List.of("u=5", "u=1"));
+
+        assertEquals(List.of(3, 1), streams);
+    }
+
+    @Test
+    public void testNonIncrementalStreamsWriteInStreamIdOrder() throws Exception
+    {
+        List<Integer> streams = exchange(List.of("u=2", "u=2"));
+
+        assertEquals(List.of(1, 3), streams);
+    }
+
+    @Test
+    public void testIncrementalStreamsInterleave() throws Exception
+    {
+        List<Integer> streams = exchange(List.of("u=2, i", "u=2, i", "u=6"));
+
+        assertEquals(List.of(1, 3, 1, 3, 5), streams);
+    }
+
+    @Test
+    public void testResponsePriorityOverridesRequestPriority() throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        List<Priority> priorities = new ArrayList<>();
+        start(new ServerSessionListener()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                HTTP2Stream http2Stream = (HTTP2Stream)stream;
+                priorities.add(http2Stream.getPriority());
+                HttpFields fields = HttpFields.build().put(HttpHeader.PRIORITY, "i");
+                MetaData.Response response = new MetaData.Response(HttpStatus.OK_200, null, HttpVersion.HTTP_2, fields);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.from(() ->
+                {
+                    priorities.add(http2Stream.getPriority());
+                    serverLatch.countDown();
+                }));
+                return null;
+            }
+        }, factory -> factory.setStreamScheduler(new ExtensiblePriorityStreamScheduler()));
+
+        Session session = newClientSession(new Session.Listener() {});
+        HttpFields fields = HttpFields.build().put(HttpHeader.PRIORITY, "u=1");
+        session.newStream(new HeadersFrame(newRequest("GET", fields), null, true), new FuturePromise<>(), null);
+
+        assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(new Priority(1, false), new Priority(1, true)), priorities);
+    }
+
+    /**
+     * <p>Performs one request per given priority, and writes the
+     * DATA frames of all the responses at the same time.</p>
+     *
+     * @param priorities the values of the {@code Priority} header of the requests
+     * @return the ids of the streams in the order their DATA frames have been received,
+     * where consecutive DATA frames of the same stream are collapsed into one
+     */
+    private List<Integer> exchange(List<String> priorities) throws Exception
+    {
+        int count = priorities.size();
+        CountDownLatch serverStreamsLatch = new CountDownLatch(count);
+        List<Stream> serverStreams = new ArrayList<>();
+        start(new ServerSessionListener()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverStreams.add(stream);
+                serverStreamsLatch.countDown();
+                return null;
+            }
+        }, factory -> factory.setStreamScheduler(new ExtensiblePriorityStreamScheduler()));
+
+        Session session = newClientSession(new Session.Listener() {});
+
+        BlockingQueue<Integer> dataQueue = new LinkedBlockingDeque<>();
+        CountDownLatch clientLatch = new CountDownLatch(count);
+        Stream.Listener streamListener = new Stream.Listener()
+        {
+            @Override
+            public void onDataAvailable(Stream stream)
+            {
+                Stream.Data data = stream.readData();
+                if (data == null)
+                {
+                    stream.demand();
+                    return;
+                }
+                DataFrame frame = data.frame();
+                if (frame.remaining() > 0)
+                    dataQueue.offer(stream.getId());
+                boolean last = frame.isEndStream();
+                data.release();
+                if (last)
+                    clientLatch.countDown();
+                else
+                    stream.demand();
+            }
+        };
+
+        for (String priority : priorities)
+        {
+            HttpFields fields = HttpFields.build().put(HttpHeader.PRIORITY, priority);
+            FuturePromise<Stream> streamPromise = new FuturePromise<>();
+            session.newStream(new HeadersFrame(newRequest("GET", fields), null, true), streamPromise, streamListener);
+            streamPromise.get(5, TimeUnit.SECONDS);
+        }
+
+        assertTrue(serverStreamsLatch.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; ++i)
+        {
+            Stream serverStream = serverStreams.get(i);
+            MetaData.Response response = new MetaData.Response(HttpStatus.OK_200, null, HttpVersion.HTTP_2, HttpFields.EMPTY);
+            // Write the DATA frames of all streams from within the callback
+            // of the last HEADERS frame, so that they get queued together.
+            Callback callback = i < count - 1 ? Callback.NOOP : Callback.from(() ->
+            {
+                for (Stream stream : serverStreams)
+                {
+                    ByteBuffer content = ByteBuffer.allocate(CONTENT_LENGTH);
+                    stream.data(new DataFrame(stream.getId(), content, true), Callback.NOOP);
+                }
+            });
+            serverStream.headers(new HeadersFrame(serverStream.getId(), response, null, false), callback);
+        }
+
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+
+        List<Integer> streams = new ArrayList<>();
+        Integer streamId;
+        while ((streamId = dataQueue.poll()) != null)
+        {
+            if (streams.isEmpty() || !streams.get(streams.size() - 1).equals(streamId))
+                streams.add(streamId);
+        }
+        return streams;
+    }
+}
@@ -14,11 +14,13 @@
 package org.eclipse.jetty.http3;
 
 import java.util.EnumSet;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.jetty.http.Priority;
 import org.eclipse.jetty.http3.api.Stream;
 import org.eclipse.jetty.http3.frames.DataFrame;
 import org.eclipse.jetty.http3.frames.Frame;
@@ -37,6 +39,8 @@ import org.slf4j.LoggerFactory;
 public abstract class HTTP3Stream implements Stream, CyclicTimeouts.Expirable, Attachable
 {
     private static final Logger LOG = LoggerFactory.getLogger(HTTP3Stream.class);
+    // QUIC streams have urgency 127 by default, that of the control and QPACK streams.
+    private static final int URGENCY_OFFSET = 128;
 
     private final AutoLock lock = new AutoLock();
     private final AtomicReference<Data> dataRef = new AtomicReference<>();
@@ -52,6 +56,7 @@ public abstract class HTTP3Stream implements Stream, CyclicTimeouts.Expirable, A
     private boolean dataStalled;
     private boolean dataLast;
     private boolean dataAvailable;
+    private volatile Priority priority = Priority.DEFAULT;
 
     public HTTP3Stream(HTTP3Session session, QuicStreamEndPoint endPoint, boolean local)
     {
@@ -65,6 +70,28 @@ public abstract class HTTP3Stream implements Stream, CyclicTimeouts.Expirable, A
         return endPoint;
     }
 
+    /**
+     * @return the priority of this stream, as specified by the {@code Priority} header
+     */
+    public Priority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * <p>Sets the priority of this stream, that QUIC uses to decide
+     * which streams of a connection send their data first.</p>
+     * <p>The streams with a priority are sent after the control and
+     * QPACK streams, that keep the default QUIC priority.</p>
+     *
+     * @param priority the priority of this stream
+     */
+    public void setPriority(Priority priority)
+    {
+        this.priority = Objects.requireNonNull(priority);
+        endPoint.setPriority(URGENCY_OFFSET + priority.urgency(), priority.incremental());
+    }
+
     @Override
     public Object getAttachment()
     {
@@ -17,6 +17,7 @@ import java.util.EnumSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
+import org.eclipse.jetty.http.Priority;
 import org.eclipse.jetty.http3.HTTP3Session;
 import org.eclipse.jetty.http3.HTTP3Stream;
 import org.eclipse.jetty.http3.MessageFlusher;
@@ -45,6 +46,7 @@ public class HTTP3StreamServer extends HTTP3Stream implements Stream.Server
         if (validateAndUpdate(EnumSet.of(FrameState.INITIAL), FrameState.HEADER))
         {
             onHeaders(frame);
+            setPriority(Priority.from(frame.getMetaData().getHttpFields()));
             Listener listener = this.listener = notifyRequest(frame);
             if (listener == null)
                 getSession().writeMessageFrame(getId(), new MessageFlusher.FlushFrame(), Callback.NOOP);
@@ -69,6 +71,12 @@ public class HTTP3StreamServer extends HTTP3Stream implements Stream.Server
     @Override
     public CompletableFuture<Stream> respond(HeadersFrame frame)
     {
+        // A server may override the priority of the request
+        // with the Priority header of the response.
+        Priority priority = getPriority();
+        Priority merged = Priority.from(frame.getMetaData().getHttpFields(), priority);
+        if (merged != priority)
+            setPriority(merged);
         return write(frame);
     }
 
@@ -26,7 +26,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
@@ -35,6 +37,7 @@ import org.eclipse.jetty.io.internal.QueuedPool;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.ConcurrentPool;
 import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -51,6 +54,13 @@ import org.slf4j.LoggerFactory;
  * 2048, and so on with capacities 3072, 4096, 5120, etc.</p>
  * <p>The {@code maxHeapMemory} and {@code maxDirectMemory} default heuristic is to use {@link Runtime#maxMemory()}
  * divided by 8.</p>
+ * <p>Optionally, each bucket may have a {@link #setFrontCacheSize(int) front cache}: a small array of
+ * released buffers, striped by thread, that is looked up before the bucket {@link Pool}, similarly
+ * to the per-CPU magazines of a slab allocator.
+ * On machines with many cores, this reduces the contention on the bucket {@link Pool}s, since
+ * threads mostly acquire and release buffers from their own stripe.
+ * Buffers held by a front cache count as retained memory, so they are subject to the
+ * {@code maxHeapMemory} and {@code maxDirectMemory} limits and are evicted first.</p>
  */
 @ManagedObject
 public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
@@ -67,6 +77,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     private final IntUnaryOperator _bucketIndexFor;
     private final AtomicBoolean _evictor = new AtomicBoolean(false);
     private boolean _statisticsEnabled;
+    private int _frontCacheSize;
 
     /**
      * Creates a new ArrayByteBufferPool with a default configuration.
@@ -186,6 +197,38 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         _statisticsEnabled = enabled;
     }
 
+    @ManagedAttribute("The number of buffers cached per thread stripe in front of each bucket")
+    public int getFrontCacheSize()
+    {
+        return _frontCacheSize;
+    }
+
+    /**
+     * <p>Sets the number of buffers that each bucket may cache per thread stripe,
+     * in front of the bucket {@link Pool}.</p>
+     * <p>The number of thread stripes is twice the number of available processors,
+     * so the total number of buffers that may be cached for each bucket is
+     * {@code frontCacheSize * 2 * availableProcessors}.</p>
+     * <p>Setting a new front cache size releases the buffers held by the previous front caches
+     * to their bucket {@link Pool}s.</p>
+     *
+     * @param frontCacheSize the number of buffers cached per thread stripe, or {@code 0} to disable front caches
+     */
+    public void setFrontCacheSize(int frontCacheSize)
+    {
+        if (frontCacheSize < 0)
+            throw new IllegalArgumentException("Invalid front cache size: " + frontCacheSize);
+        _frontCacheSize = frontCacheSize;
+        int stripes = 2 * ProcessorUtils.availableProcessors();
+        for (RetainedBucket[] buckets : List.of(_direct, _indirect))
+        {
+            for (RetainedBucket bucket : buckets)
+            {
+                bucket.setFrontCache(frontCacheSize == 0 ? null : new FrontCache(stripes, frontCacheSize));
+            }
+        }
+    }
+
     @ManagedAttribute("The minimum pooled buffer capacity")
     public int getMinCapacity()
     {
@@ -209,8 +252,10 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
 
         bucket.recordAcquire();
 
-        // Try to acquire a pooled entry.
-        Pool.Entry<RetainableByteBuffer> entry = bucket.getPool().acquire();
+        // Try to acquire a pooled entry, first from the front cache.
+        Pool.Entry<RetainableByteBuffer> entry = bucket.poll();
+        if (entry == null)
+            entry = bucket.getPool().acquire();
         if (entry == null)
         {
             ByteBuffer buffer = BufferUtil.allocate(bucket.getCapacity(), direct);
@@ -280,9 +325,9 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         RetainableByteBuffer buffer = entry.getPooled();
         BufferUtil.reset(buffer.getByteBuffer());
 
-        // Release the buffer and check the memory 1% of the times.
+        // Release the buffer, possibly to the front cache, and check the memory 1% of the times.
         int used = ((Buffer)buffer).use();
-        if (entry.release())
+        if (bucket.offer(entry) || entry.release())
         {
             if (used % 100 == 0)
                checkMaxMemory(bucket, buffer.isDirect());
@@ -390,7 +435,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     private long getAvailableByteBufferCount(boolean direct)
     {
         RetainedBucket[] buckets = direct ? _direct : _indirect;
-        return Arrays.stream(buckets).mapToLong(bucket -> bucket.getPool().getIdleCount()).sum();
+        return Arrays.stream(buckets).mapToLong(RetainedBucket::getAvailableCount).sum();
     }
 
     @ManagedAttribute("The bytes retained by direct ByteBuffers")
@@ -409,7 +454,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     {
         long size = 0;
         for (RetainedBucket bucket : direct ? _direct : _indirect)
-            size += (long)bucket.getPool().getIdleCount() * bucket.getCapacity();
+            size += (long)bucket.getAvailableCount() * bucket.getCapacity();
         return size;
     }
 
@@ -452,10 +497,11 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     @Override
     public String toString()
     {
-        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d}",
+        return String.format("%s{min=%d,max=%d,buckets=%d,frontCache=%d,heap=%d/%d,direct=%d/%d}",
             super.toString(),
             _minCapacity, _maxCapacity,
             _direct.length,
+            _frontCacheSize,
             getHeapMemory(), _maxHeapMemory,
             getDirectMemory(), _maxDirectMemory);
     }
@@ -470,6 +516,7 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         private final LongAdder _releases = new LongAdder();
         private final Pool<RetainableByteBuffer> _pool;
         private final int _capacity;
+        private volatile FrontCache _frontCache;
 
         private RetainedBucket(int capacity, int poolSize)
         {
@@ -529,13 +576,59 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             return _pool;
         }
 
+        private void setFrontCache(FrontCache frontCache)
+        {
+            FrontCache oldFrontCache = _frontCache;
+            _frontCache = frontCache;
+            if (oldFrontCache != null)
+                oldFrontCache.drain(this::release);
+        }
+
+        private Pool.Entry<RetainableByteBuffer> poll()
+        {
+            FrontCache frontCache = _frontCache;
+            if (frontCache == null)
+                return null;
+            while (true)
+            {
+                Pool.Entry<RetainableByteBuffer> entry = frontCache.poll();
+                // The entry may have been removed by clear() while it was cached.
+                if (entry == null || !entry.isTerminated())
+                    return entry;
+            }
+        }
+
+        private boolean offer(Pool.Entry<RetainableByteBuffer> entry)
+        {
+            FrontCache frontCache = _frontCache;
+            return frontCache != null && !entry.isTerminated() && frontCache.offer(entry);
+        }
+
+        private void release(Pool.Entry<RetainableByteBuffer> entry)
+        {
+            if (!entry.release())
+                entry.remove();
+        }
+
+        private int getAvailableCount()
+        {
+            FrontCache frontCache = _frontCache;
+            int cached = frontCache == null ? 0 : frontCache.size();
+            return _pool.getIdleCount() + cached;
+        }
+
         private int evict()
         {
             Pool.Entry<RetainableByteBuffer> entry;
-            if (_pool instanceof BucketCompoundPool compound)
-                entry = compound.evict();
-            else
-                entry = _pool.acquire();
+            FrontCache frontCache = _frontCache;
+            entry = frontCache == null ? null : frontCache.evict();
+            if (entry == null)
+            {
+                if (_pool instanceof BucketCompoundPool compound)
+                    entry = compound.evict();
+                else
+                    entry = _pool.acquire();
+            }
 
             if (entry == null)
                 return 0;
@@ -554,6 +647,9 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             _evicts.reset();
             _removes.reset();
             _releases.reset();
+            FrontCache frontCache = _frontCache;
+            if (frontCache != null)
+                frontCache.drain(Pool.Entry::remove);
             getPool().stream().forEach(Pool.Entry::remove);
         }
 
@@ -572,11 +668,14 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
             long pooled = _pooled.longValue();
             long acquires = _acquires.longValue();
             float hitRatio = acquires == 0 ? Float.NaN : pooled * 100F / acquires;
-            return String.format("%s{capacity=%d,in-use=%d/%d,pooled/acquires=%d/%d(%.3f%%),non-pooled/evicts/removes/releases=%d/%d/%d/%d}",
+            FrontCache frontCache = _frontCache;
+            int cached = frontCache == null ? 0 : frontCache.size();
+            return String.format("%s{capacity=%d,in-use=%d/%d,cached=%d,pooled/acquires=%d/%d(%.3f%%),non-pooled/evicts/removes/releases=%d/%d/%d/%d}",
                 super.toString(),
                 getCapacity(),
-                inUse,
+                inUse - cached,
                 entries,
+                cached,
                 pooled,
                 acquires,
                 hitRatio,
@@ -604,6 +703,104 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         }
     }
 
+    /**
+     * <p>A cache of pool entries that have been released by the application, but that are still
+     * acquired from the bucket {@link Pool}, so that they can be acquired again without
+     * contending on the {@link Pool}.</p>
+     * <p>The slots are divided in stripes, one per group of threads as selected by
+     * the thread id, and each stripe is padded to avoid false sharing.</p>
+     */
+    private static class FrontCache
+    {
+        // Padding in number of references, large enough to cover a cache line.
+        private static final int STRIPE_PADDING = 16;
+
+        private final AtomicReferenceArray<Pool.Entry<RetainableByteBuffer>> _slots;
+        private final LongAdder _size = new LongAdder();
+        private final int _stripes;
+        private final int _stripeSize;
+        private final int _stride;
+
+        private FrontCache(int stripes, int stripeSize)
+        {
+            _stripes = stripes;
+            _stripeSize = stripeSize;
+            _stride = (stripeSize + STRIPE_PADDING - 1) / STRIPE_PADDING * STRIPE_PADDING;
+            _slots = new AtomicReferenceArray<>(stripes * _stride);
+        }
+
+        private int stripeOffset()
+        {
+            return (int)(Thread.currentThread().getId() % _stripes) * _stride;
+        }
+
+        private Pool.Entry<RetainableByteBuffer> poll()
+        {
+            int offset = stripeOffset();
+            // Poll from the last slot, so that the most recently used buffers are reused first.
+            for (int i = offset + _stripeSize - 1; i >= offset; --i)
+            {
+                Pool.Entry<RetainableByteBuffer> entry = _slots.get(i);
+                if (entry != null && _slots.compareAndSet(i, entry, null))
+                {
+                    _size.decrement();
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        private boolean offer(Pool.Entry<RetainableByteBuffer> entry)
+        {
+            int offset = stripeOffset();
+            for (int i = offset; i < offset + _stripeSize; ++i)
+            {
+                if (_slots.get(i) == null && _slots.compareAndSet(i, null, entry))
+                {
+                    _size.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Pool.Entry<RetainableByteBuffer> evict()
+        {
+            int length = _slots.length();
+            int index = ThreadLocalRandom.current().nextInt(length);
+            for (int c = 0; c < length; ++c)
+            {
+                Pool.Entry<RetainableByteBuffer> entry = _slots.getAndSet(index, null);
+                if (entry != null)
+                {
+                    _size.decrement();
+                    return entry;
+                }
+                if (++index == length)
+                    index = 0;
+            }
+            return null;
+        }
+
+        private void drain(Consumer<Pool.Entry<RetainableByteBuffer>> consumer)
+        {
+            for (int i = 0; i < _slots.length(); ++i)
+            {
+                Pool.Entry<RetainableByteBuffer> entry = _slots.getAndSet(i, null);
+                if (entry != null)
+                {
+                    _size.decrement();
+                    consumer.accept(entry);
+                }
+            }
+        }
+
+        private int size()
+        {
+            return Math.max(0, _size.intValue());
+        }
+    }
+
     private class ReservedBuffer extends AbstractRetainableByteBuffer
     {
         private final RetainedBucket _bucket;
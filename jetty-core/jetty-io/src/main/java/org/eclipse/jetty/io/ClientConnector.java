@@ -77,6 +77,11 @@ public class ClientConnector extends ContainerLifeCycle
     public static final String CLIENT_CONNECTION_FACTORY_CONTEXT_KEY = CLIENT_CONNECTOR_CONTEXT_KEY + ".clientConnectionFactory";
     public static final String CONNECTION_PROMISE_CONTEXT_KEY = CLIENT_CONNECTOR_CONTEXT_KEY + ".connectionPromise";
     public static final String APPLICATION_PROTOCOLS_CONTEXT_KEY = CLIENT_CONNECTOR_CONTEXT_KEY + ".applicationProtocols";
+    /**
+     * The context key of the {@link SelectableChannel} that is connecting,
+     * that may be closed to abort the connect operation.
+     */
+    public static final String SELECTABLE_CHANNEL_CONTEXT_KEY = CLIENT_CONNECTOR_CONTEXT_KEY + ".selectableChannel";
     private static final Logger LOG = LoggerFactory.getLogger(ClientConnector.class);
 
     /**
@@ -439,6 +444,7 @@ public class ClientConnector extends ContainerLifeCycle
             context.putIfAbsent(REMOTE_SOCKET_ADDRESS_CONTEXT_KEY, address);
 
             channel = transport.newSelectableChannel();
+            context.put(SELECTABLE_CHANNEL_CONTEXT_KEY, channel);
             configure(channel);
 
             if (channel instanceof NetworkChannel networkChannel)
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -26,6 +27,7 @@ import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.RateCounter;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
@@ -160,6 +162,18 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         return _stats.getConnectionDurationStdDev();
     }
 
+    @ManagedAttribute("The 50th percentile of the duration of a connection in ms")
+    public long getConnectionDurationP50()
+    {
+        return _stats.getConnectionDurationP50();
+    }
+
+    @ManagedAttribute("The 99th percentile of the duration of a connection in ms")
+    public long getConnectionDurationP99()
+    {
+        return _stats.getConnectionDurationP99();
+    }
+
     @ManagedAttribute("The total number of connections opened")
     public long getConnectionsTotal()
     {
@@ -226,6 +240,7 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
     {
         private final CounterStatistic _connections = new CounterStatistic();
         private final SampleStatistic _connectionsDuration = new SampleStatistic();
+        private final HistogramStatistic _connectionsDurationHistogram = new HistogramStatistic(TimeUnit.DAYS.toMillis(1));
         private final LongAdder _bytesIn = new LongAdder();
         private final RateCounter _bytesInRate = new RateCounter();
         private final LongAdder _bytesOut = new LongAdder();
@@ -245,6 +260,7 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         {
             _connections.reset();
             _connectionsDuration.reset();
+            _connectionsDurationHistogram.reset();
             _bytesIn.reset();
             _bytesInRate.reset();
             _bytesOut.reset();
@@ -299,6 +315,21 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
             return _connectionsDuration.getStdDev();
         }
 
+        public long getConnectionDurationP50()
+        {
+            return _connectionsDurationHistogram.getValueAtPercentile(50);
+        }
+
+        public long getConnectionDurationP99()
+        {
+            return _connectionsDurationHistogram.getValueAtPercentile(99);
+        }
+
+        public HistogramStatistic getConnectionDurationHistogram()
+        {
+            return _connectionsDurationHistogram;
+        }
+
         public long getConnectionsTotal()
         {
             return _connections.getTotal();
@@ -351,6 +382,7 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         public void recordDuration(long duration)
         {
             _connectionsDuration.record(duration);
+            _connectionsDurationHistogram.record(duration);
         }
 
         public void recordBytesIn(long bytesIn)
@@ -383,6 +415,7 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
             Dumpable.dumpObjects(out, indent, this,
                 String.format("connections=%s", _connections),
                 String.format("durations=%s", _connectionsDuration),
+                String.format("duration percentiles=%s", _connectionsDurationHistogram),
                 String.format("bytes in/out=%s/%s", getReceivedBytes(), getSentBytes()),
                 String.format("messages in/out=%s/%s", getReceivedMessages(), getSentMessages()));
         }
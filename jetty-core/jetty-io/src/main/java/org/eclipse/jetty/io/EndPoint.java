@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 import java.security.cert.X509Certificate;
@@ -318,6 +319,34 @@ public interface EndPoint extends Closeable
         write(callback, buffers);
     }
 
+    /**
+     * @return whether this EndPoint supports {@link #transferFrom(Callback, FileChannel, long, long)}
+     */
+    default boolean isFileTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Writes a region of the given file, possibly without copying the file bytes
+     * into user space (for example via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}),
+     * and invokes the callback when either all the bytes have been written or an error occurs.</p>
+     * <p>The file transfer is a write operation like {@link #write(Callback, ByteBuffer...)},
+     * so it cannot be concurrent with other writes.
+     * The file channel is not closed by this method.</p>
+     *
+     * @param callback the callback to call when an error occurs or the transfer completed
+     * @param file the file to transfer bytes from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @throws WritePendingException if another write operation is concurrent.
+     * @see #isFileTransferSupported()
+     */
+    default void transferFrom(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        callback.failed(new UnsupportedOperationException("File transfer not supported by " + this));
+    }
+
     /**
      * @return the {@link Connection} associated with this EndPoint
      * @see #setConnection(Connection)
@@ -212,6 +212,23 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         selector.submit(selector.new Accept(channel, attachment));
     }
 
+    /**
+     * <p>Registers a channel to perform non-blocking read/write operations
+     * on the selector with the given index.</p>
+     * <p>This method is used when the caller has its own affinity with the selectors,
+     * for example to avoid handing off an accepted channel to another selector.</p>
+     *
+     * @param channel the channel to register
+     * @param attachment the attachment object
+     * @param selector the index of the selector, modulo the number of selectors
+     * @see #accept(SelectableChannel, Object)
+     */
+    public void accept(SelectableChannel channel, Object attachment, int selector)
+    {
+        ManagedSelector managedSelector = _selectors[Math.floorMod(selector, _selectors.length)];
+        managedSelector.submit(managedSelector.new Accept(channel, attachment));
+    }
+
     /**
      * <p>Registers a server channel for accept operations.
      * When a {@link SocketChannel} is accepted from the given {@link ServerSocketChannel}
@@ -229,6 +246,25 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         return acceptor;
     }
 
+    /**
+     * <p>Registers a server channel for accept operations on the selector with the given index.</p>
+     * <p>When a {@link SocketChannel} is accepted from the given {@link ServerSocketChannel}
+     * then the {@link #accepted(SelectableChannel, int)} method is called with the index
+     * of the selector.</p>
+     *
+     * @param server the server channel to register
+     * @param selector the index of the selector, modulo the number of selectors
+     * @return A Closable that allows the acceptor to be cancelled
+     * @see #acceptor(SelectableChannel)
+     */
+    public Closeable acceptor(SelectableChannel server, int selector)
+    {
+        ManagedSelector managedSelector = _selectors[Math.floorMod(selector, _selectors.length)];
+        ManagedSelector.Acceptor acceptor = managedSelector.new Acceptor(server);
+        managedSelector.submit(acceptor);
+        return acceptor;
+    }
+
     /**
      * Callback method when a channel is accepted from the {@link ServerSocketChannel}
      * passed to {@link #acceptor(SelectableChannel)}.
@@ -243,6 +279,20 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * <p>Callback method when a channel is accepted from a {@link ServerSocketChannel}
+     * registered with {@link #acceptor(SelectableChannel)} or {@link #acceptor(SelectableChannel, int)}.</p>
+     * <p>The default implementation calls {@link #accepted(SelectableChannel)}.</p>
+     *
+     * @param channel the accepted channel
+     * @param selector the index of the selector that accepted the channel
+     * @throws IOException if unable to accept channel
+     */
+    protected void accepted(SelectableChannel channel, int selector) throws IOException
+    {
+        accepted(channel);
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -16,10 +16,13 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +34,8 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
 {
     private static final Logger LOG = LoggerFactory.getLogger(SocketChannelEndPoint.class);
 
+    private volatile FileTransfer _transfer;
+
     public SocketChannelEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
     {
         super(scheduler, channel, selector, key);
@@ -126,6 +131,107 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
                 return false;
         }
 
+        FileTransfer transfer = _transfer;
+        if (transfer == null)
+            return true;
+        return transfer.flush();
+    }
+
+    @Override
+    public boolean isFileTransferSupported()
+    {
         return true;
     }
+
+    @Override
+    public void transferFrom(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        if (position < 0 || length < 0)
+        {
+            callback.failed(new IllegalArgumentException("Invalid file region " + position + "+" + length));
+            return;
+        }
+        if (_transfer != null)
+            throw new WritePendingException();
+
+        FileTransfer transfer = new FileTransfer(callback, file, position, length);
+        _transfer = transfer;
+        try
+        {
+            // The transfer is performed by flush(), so that the WriteFlusher
+            // stays pending and resumes the transfer when the channel is writable.
+            write(transfer, BufferUtil.EMPTY_BUFFER);
+        }
+        catch (WritePendingException x)
+        {
+            _transfer = null;
+            throw x;
+        }
+    }
+
+    private class FileTransfer extends Callback.Nested
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileTransfer(Callback callback, FileChannel file, long position, long length)
+        {
+            super(callback);
+            _file = file;
+            _position = position;
+            _remaining = length;
+        }
+
+        private boolean flush() throws IOException
+        {
+            while (_remaining > 0)
+            {
+                long transferred;
+                try
+                {
+                    transferred = _file.transferTo(_position, _remaining, getChannel());
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("transferred {}/{} {}", transferred, _remaining, SocketChannelEndPoint.this);
+                }
+                catch (IOException e)
+                {
+                    throw new EofException(e);
+                }
+
+                if (transferred <= 0)
+                {
+                    // Either the channel is congested, or the file was truncated.
+                    if (_position + _remaining > _file.size())
+                        throw new EofException("File truncated during transfer");
+                    return false;
+                }
+
+                notIdle();
+                _position += transferred;
+                _remaining -= transferred;
+            }
+            return true;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            _transfer = null;
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            _transfer = null;
+            super.failed(x);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%d+%d}", getClass().getSimpleName(), hashCode(), _position, _remaining);
+        }
+    }
 }
@@ -20,6 +20,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -43,6 +44,7 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ExceptionUtil;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.AutoLock;
@@ -84,6 +86,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 {
     private static final Logger LOG = LoggerFactory.getLogger(SslConnection.class);
     private static final String TLS_1_3 = "TLSv1.3";
+    private static final long UNSET = Long.MIN_VALUE;
 
     private enum HandshakeState
     {
@@ -112,6 +115,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private final List<SslHandshakeListener> handshakeListeners = new ArrayList<>();
     private final AtomicLong _bytesIn = new AtomicLong();
     private final AtomicLong _bytesOut = new AtomicLong();
+    private final AtomicLong _handshakeBegin = new AtomicLong(UNSET);
     private final ByteBufferPool _bufferPool;
     private final SSLEngine _sslEngine;
     private final SslContextFactory _sslContextFactory;
@@ -123,11 +127,13 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private RetainableByteBuffer _encryptedOutput;
     private boolean _renegotiationAllowed;
     private int _renegotiationLimit = -1;
+    private int _maxRecordsPerFlush = 1;
     private boolean _closedOutbound;
     private boolean _requireCloseMessage;
     private FlushState _flushState = FlushState.IDLE;
     private FillState _fillState = FillState.IDLE;
     private boolean _underflown;
+    private Executor _handshakeExecutor;
     private final Runnable _runFillable = new RunnableTask("runFillable")
     {
         @Override
@@ -142,6 +148,34 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             return _sslEndPoint.getFillInterest().getCallbackInvocationType();
         }
     };
+    private final Runnable _runHandshake = new RunnableTask("runHandshake")
+    {
+        @Override
+        public void run()
+        {
+            handshake();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return InvocationType.BLOCKING;
+        }
+    };
+    private final Runnable _runOnFillable = new RunnableTask("runOnFillable")
+    {
+        @Override
+        public void run()
+        {
+            _sslEndPoint.onFillable();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _sslEndPoint.getFillInterest().getCallbackInvocationType();
+        }
+    };
     private final Callback _sslReadCallback = new Callback()
     {
         @Override
@@ -266,6 +300,36 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         _renegotiationLimit = renegotiationLimit;
     }
 
+    /**
+     * @return the max number of TLS records encrypted before they are written to the network
+     */
+    public int getMaxRecordsPerFlush()
+    {
+        return _maxRecordsPerFlush;
+    }
+
+    /**
+     * <p>Sets the max number of TLS records encrypted before they are written to the network.</p>
+     * <p>By default, every TLS record is written to the network as soon as it is encrypted,
+     * so that writing a large amount of application data performs one network write per
+     * TLS record (of at most 16 KiB).
+     * A value larger than 1 allows to encrypt several TLS records into a larger buffer,
+     * that is written to the network with a single write, reducing the number of system
+     * calls and of write interest registrations when writing large amounts of data.</p>
+     * <p>The encrypted output buffer is acquired from the {@link ByteBufferPool} with a
+     * capacity of about 16.5 KiB times this value, which should not be larger than the
+     * max capacity of pooled buffers, otherwise the buffer will not be pooled.
+     * TLS records are only gathered after the TLS handshake is complete.</p>
+     *
+     * @param maxRecordsPerFlush the max number of TLS records encrypted before they are written to the network
+     */
+    public void setMaxRecordsPerFlush(int maxRecordsPerFlush)
+    {
+        if (maxRecordsPerFlush < 1)
+            throw new IllegalArgumentException("Invalid max records per flush " + maxRecordsPerFlush);
+        _maxRecordsPerFlush = maxRecordsPerFlush;
+    }
+
     /**
      * @return whether peers must send the TLS {@code close_notify} message
      */
@@ -288,6 +352,35 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         _requireCloseMessage = requireCloseMessage;
     }
 
+    /**
+     * @return the executor that runs the TLS handshake, or null if the TLS handshake
+     * runs in the thread that is notified that the network is readable
+     */
+    public Executor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    /**
+     * <p>Sets the executor that runs the TLS handshake.</p>
+     * <p>When the network is readable and the TLS handshake is not complete, the
+     * processing of the TLS handshake messages, including the delegated tasks of
+     * the {@link SSLEngine}, is performed by the handshake executor, so that the
+     * CPU intensive key agreement does not compete with the processing of requests
+     * on the established connections.
+     * Once the TLS handshake is complete, the application data is read as usual.</p>
+     * <p>If the handshake executor rejects the task with a {@link RejectedExecutionException},
+     * a TLS handshake that has not started yet fails and the connection is closed, while
+     * a TLS handshake that is already in progress is performed in the current thread.</p>
+     *
+     * @param handshakeExecutor the executor that runs the TLS handshake, or null to run the
+     * TLS handshake in the thread that is notified that the network is readable
+     */
+    public void setHandshakeExecutor(Executor handshakeExecutor)
+    {
+        _handshakeExecutor = handshakeExecutor;
+    }
+
     private boolean isHandshakeInitial()
     {
         return _handshake.get() == HandshakeState.INITIAL;
@@ -334,8 +427,13 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private void acquireEncryptedOutput()
     {
         // TODO: before the output was done with the BBP only.
+        int records = isHandshakeSucceeded() ? _maxRecordsPerFlush : 1;
+        int capacity = getPacketBufferSize() * records;
+        // Replace the empty buffer acquired during the handshake with one large enough to gather records.
+        if (records > 1 && _encryptedOutput != null && _encryptedOutput.capacity() < capacity)
+            releaseEmptyEncryptedOutputBuffer();
         if (_encryptedOutput == null)
-            _encryptedOutput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
+            _encryptedOutput = _bufferPool.acquire(capacity, _encryptedDirectBuffers);
     }
 
     @Override
@@ -387,12 +485,80 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         if (_sslEndPoint.isInputShutdown())
             _sslEndPoint.close();
 
-        _sslEndPoint.onFillable();
+        if (_handshakeExecutor == null || isHandshakeComplete() || !offloadHandshake())
+            _sslEndPoint.onFillable();
 
         if (LOG.isDebugEnabled())
             LOG.debug("<c.onFillable {}", SslConnection.this);
     }
 
+    private boolean offloadHandshake()
+    {
+        boolean initial = isHandshakeInitial();
+        if (initial)
+            _handshakeBegin.compareAndSet(UNSET, NanoTime.now());
+        try
+        {
+            _handshakeExecutor.execute(_runHandshake);
+            return true;
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("handshake rejected {}", SslConnection.this, x);
+            // Do not waste the work already done for a handshake in progress.
+            if (!initial)
+                return false;
+            _sslEndPoint.rejectHandshake(x);
+            return true;
+        }
+    }
+
+    private void handshake()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug(">c.handshake {}", SslConnection.this);
+
+        try
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _fillState = FillState.IDLE;
+            }
+            // Process the TLS handshake messages, possibly
+            // buffering the application data that follows.
+            int filled = _sslEndPoint.fill(BufferUtil.EMPTY_BUFFER);
+
+            if (filled < 0 || isHandshakeComplete())
+            {
+                // Notify the application from the connection executor,
+                // so that it does not run in the handshake executor.
+                getExecutor().execute(_runOnFillable);
+            }
+            else
+            {
+                // Wait for more TLS handshake messages, without waking up the
+                // application, so that they are processed by the handshake executor.
+                _sslEndPoint.needsFillInterest();
+            }
+        }
+        catch (Throwable x)
+        {
+            // The connection has already been closed by fill().
+            if (LOG.isDebugEnabled())
+                LOG.debug("handshake failure {}", SslConnection.this, x);
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("<c.handshake {}", SslConnection.this);
+    }
+
+    private long handshakeDuration()
+    {
+        long begin = _handshakeBegin.get();
+        return begin == UNSET ? -1 : NanoTime.since(begin);
+    }
+
     @Override
     public void onFillInterestedFailed(Throwable cause)
     {
@@ -728,6 +894,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeBegin.compareAndSet(UNSET, NanoTime.now());
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("fill starting handshake {}", SslConnection.this);
                             }
@@ -984,6 +1151,18 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             return failure;
         }
 
+        private void rejectHandshake(RejectedExecutionException rejection)
+        {
+            Throwable failure;
+            try (AutoLock l = _lock.lock())
+            {
+                if (!_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
+                    return;
+                failure = handshakeFailed(new SSLHandshakeException("Handshake rejected").initCause(rejection));
+            }
+            close(failure);
+        }
+
         private void terminateInput()
         {
             try
@@ -1097,6 +1276,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeBegin.compareAndSet(UNSET, NanoTime.now());
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("flush starting handshake {}", SslConnection.this);
                             }
@@ -1125,6 +1305,10 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             // Was all the data consumed?
                             isEmpty = BufferUtil.isEmpty(appOuts);
 
+                            // Encrypt more records before writing them to the network, if possible.
+                            if (!isEmpty && canGatherRecord(wrapResult, encryptedOutputBuffer, packetBufferSize))
+                                continue;
+
                             // if we have net bytes, let's try to flush them
                             boolean flushed = true;
                             int remaining = encryptedOutputBuffer.remaining();
@@ -1481,7 +1665,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             for (SslHandshakeListener listener : handshakeListeners)
             {
                 if (event == null)
-                    event = new SslHandshakeListener.Event(sslEngine, this);
+                    event = new SslHandshakeListener.Event(sslEngine, this, handshakeDuration());
                 try
                 {
                     listener.handshakeSucceeded(event);
@@ -1503,7 +1687,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             for (SslHandshakeListener listener : handshakeListeners)
             {
                 if (event == null)
-                    event = new SslHandshakeListener.Event(sslEngine, this);
+                    event = new SslHandshakeListener.Event(sslEngine, this, handshakeDuration());
                 try
                 {
                     listener.handshakeFailed(event, failure);
@@ -1515,6 +1699,15 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             }
         }
 
+        private boolean canGatherRecord(SSLEngineResult wrapResult, ByteBuffer encryptedOutputBuffer, int packetBufferSize)
+        {
+            return _maxRecordsPerFlush > 1 &&
+                wrapResult.getStatus() == Status.OK &&
+                wrapResult.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING &&
+                wrapResult.bytesConsumed() > 0 &&
+                BufferUtil.space(encryptedOutputBuffer) >= packetBufferSize;
+        }
+
         private boolean isRenegotiating()
         {
             if (!isHandshakeComplete())
@@ -54,6 +54,7 @@ public interface SslHandshakeListener extends EventListener
     class Event extends EventObject
     {
         private final EndPoint endPoint;
+        private final long handshakeDuration;
 
         /**
          * <p>Creates a new instance with the given event source.</p>
@@ -68,9 +69,15 @@ public interface SslHandshakeListener extends EventListener
         }
 
         Event(Object sslEngine, EndPoint endPoint)
+        {
+            this(sslEngine, endPoint, -1);
+        }
+
+        Event(Object sslEngine, EndPoint endPoint, long handshakeDuration)
         {
             super(sslEngine);
             this.endPoint = endPoint;
+            this.handshakeDuration = handshakeDuration;
         }
 
         /**
@@ -88,5 +95,19 @@ public interface SslHandshakeListener extends EventListener
         {
             return endPoint;
         }
+
+        /**
+         * <p>Returns the duration of the TLS handshake, from when the first
+         * TLS handshake bytes were read or written to when the TLS handshake
+         * succeeded or failed, including the time the TLS handshake spent
+         * waiting to be processed by a {@link SslConnection#setHandshakeExecutor(java.util.concurrent.Executor)
+         * handshake executor}.</p>
+         *
+         * @return the duration of the TLS handshake in nanoseconds, or -1 if unknown
+         */
+        public long getHandshakeDuration()
+        {
+            return handshakeDuration;
+        }
     }
 }
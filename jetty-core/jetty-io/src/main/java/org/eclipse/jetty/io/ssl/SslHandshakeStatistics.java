@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+import org.eclipse.jetty.util.statistic.RateCounter;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+
+/**
+ * <p>A {@link SslHandshakeListener} that tracks TLS handshake statistics.</p>
+ * <p>Adding an instance of this class as a bean to a ServerConnector or
+ * SslConnectionFactory (for the server) or to HttpClient (for the client)
+ * will trigger the tracking of the TLS handshake statistics for all the
+ * TLS connections managed by the server or by the client.</p>
+ * <p>TLS handshakes that are rejected because the
+ * {@link SslConnection#setHandshakeExecutor(java.util.concurrent.Executor) handshake executor}
+ * is overloaded are counted separately from the other failed TLS handshakes.</p>
+ * <p>SslHandshakeStatistics instances must be {@link #start() started}
+ * to collect statistics, either as part of starting the whole component
+ * tree, or explicitly if the component tree has already been started.</p>
+ */
+@ManagedObject("Tracks statistics on TLS handshakes")
+public class SslHandshakeStatistics extends AbstractLifeCycle implements SslHandshakeListener
+{
+    private final LongAdder _succeeded = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+    private final LongAdder _rejected = new LongAdder();
+    private final RateCounter _rate = new RateCounter();
+    private final SampleStatistic _duration = new SampleStatistic();
+    private final HistogramStatistic _durationHistogram = new HistogramStatistic(TimeUnit.MINUTES.toNanos(1));
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _succeeded.reset();
+        _failed.reset();
+        _rejected.reset();
+        _rate.reset();
+        _duration.reset();
+        _durationHistogram.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        reset();
+    }
+
+    @Override
+    public void handshakeSucceeded(Event event)
+    {
+        if (!isStarted())
+            return;
+        _succeeded.increment();
+        _rate.add(1);
+        recordDuration(event.getHandshakeDuration());
+    }
+
+    @Override
+    public void handshakeFailed(Event event, Throwable failure)
+    {
+        if (!isStarted())
+            return;
+        _rate.add(1);
+        if (failure.getCause() instanceof RejectedExecutionException)
+        {
+            _rejected.increment();
+        }
+        else
+        {
+            _failed.increment();
+            recordDuration(event.getHandshakeDuration());
+        }
+    }
+
+    private void recordDuration(long duration)
+    {
+        if (duration < 0)
+            return;
+        _duration.record(duration);
+        _durationHistogram.record(duration);
+    }
+
+    @ManagedAttribute("The number of successful TLS handshakes")
+    public long getHandshakesSucceeded()
+    {
+        return _succeeded.sum();
+    }
+
+    @ManagedAttribute("The number of failed TLS handshakes, excluding the rejected ones")
+    public long getHandshakesFailed()
+    {
+        return _failed.sum();
+    }
+
+    @ManagedAttribute("The number of TLS handshakes rejected because the handshake executor was overloaded")
+    public long getHandshakesRejected()
+    {
+        return _rejected.sum();
+    }
+
+    @ManagedAttribute("Total number of TLS handshakes per second since the last invocation of this method")
+    public long getHandshakeRate()
+    {
+        long rate = _rate.getRate();
+        _rate.reset();
+        return rate;
+    }
+
+    @ManagedAttribute("The max duration of a TLS handshake in ns")
+    public long getHandshakeDurationMax()
+    {
+        return _duration.getMax();
+    }
+
+    @ManagedAttribute("The mean duration of a TLS handshake in ns")
+    public double getHandshakeDurationMean()
+    {
+        return _duration.getMean();
+    }
+
+    @ManagedAttribute("The 50th percentile of the duration of a TLS handshake in ns")
+    public long getHandshakeDurationP50()
+    {
+        return _durationHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the duration of a TLS handshake in ns")
+    public long getHandshakeDurationP99()
+    {
+        return _durationHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the histogram of the duration of the TLS handshakes, in nanoseconds
+     */
+    public HistogramStatistic getHandshakeDurationHistogram()
+    {
+        return _durationHistogram;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{s=%d,f=%d,r=%d}", getClass().getSimpleName(), hashCode(), getHandshakesSucceeded(), getHandshakesFailed(), getHandshakesRejected());
+    }
+}
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.io;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -484,4 +485,89 @@ public class ArrayByteBufferPoolTest
         assertTrue(retained0.release());
         assertThat(pool.getHeapByteBufferCount(), is(3L));
     }
+
+    @Test
+    public void testFrontCacheReusesBuffers()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 4096);
+        pool.setFrontCacheSize(2);
+
+        // The first release adds the buffer to the pool.
+        RetainableByteBuffer buffer = pool.acquire(1024, true);
+        buffer.release();
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(1L));
+
+        // The subsequent releases add the buffer to the front cache.
+        buffer = pool.acquire(1024, true);
+        ByteBuffer byteBuffer = buffer.getByteBuffer();
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+        buffer.release();
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(1L));
+        assertThat(pool.getDirectMemory(), is(1024L));
+
+        buffer = pool.acquire(1024, true);
+        assertThat(buffer.getByteBuffer(), sameInstance(byteBuffer));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+        buffer.release();
+
+        pool.clear();
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+        assertThat(pool.getDirectMemory(), is(0L));
+    }
+
+    @Test
+    public void testFrontCacheMaxMemoryEviction()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 10, 20, Integer.MAX_VALUE, 40, 40);
+        pool.setFrontCacheSize(8);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            buffers.add(pool.acquire(10 + i / 10, true));
+        buffers.forEach(RetainableByteBuffer::release);
+
+        for (int r = 0; r < 5; ++r)
+        {
+            buffers.clear();
+            for (int i = 0; i < 200; i++)
+                buffers.add(pool.acquire(10 + i / 10, true));
+
+            long maxSize = 0;
+            for (RetainableByteBuffer buffer : buffers)
+            {
+                buffer.release();
+                maxSize = Math.max(pool.getDirectMemory(), maxSize);
+            }
+
+            // Test that the front caches are accounted and evicted.
+            assertThat(maxSize, lessThan(100L));
+        }
+    }
+
+    @Test
+    public void testFrontCacheResize()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 4096);
+        pool.setFrontCacheSize(4);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            buffers.add(pool.acquire(1024, false));
+        buffers.forEach(RetainableByteBuffer::release);
+        buffers.clear();
+        for (int i = 0; i < 3; i++)
+            buffers.add(pool.acquire(1024, false));
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getHeapByteBufferCount(), is(3L));
+        assertThat(pool.getAvailableHeapByteBufferCount(), is(3L));
+
+        // Disabling the front cache releases the cached buffers to the pool.
+        pool.setFrontCacheSize(0);
+        assertThat(pool.getHeapByteBufferCount(), is(3L));
+        assertThat(pool.getAvailableHeapByteBufferCount(), is(3L));
+        assertThat(pool.getHeapMemory(), is(3 * 1024L));
+    }
 }
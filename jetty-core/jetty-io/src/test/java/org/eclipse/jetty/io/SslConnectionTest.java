@@ -16,6 +16,7 @@ package org.eclipse.jetty.io;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
@@ -25,6 +26,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -48,7 +50,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -66,6 +70,9 @@ public class SslConnectionTest
     protected volatile EndPoint _lastEndp;
     private volatile boolean _testFill = true;
     private volatile boolean _onXWriteThenShutdown = false;
+    private volatile ByteBuffer _writeOnConnect = BufferUtil.toBuffer("Hello Client");
+    private volatile int _maxRecordsPerFlush = 1;
+    private final AtomicInteger _maxNetworkFlush = new AtomicInteger();
 
     private volatile FutureCallback _writeCallback;
     protected ServerSocketChannel _connector;
@@ -87,9 +94,18 @@ public class SslConnectionTest
         {
             SSLEngine engine = _sslCtxFactory.newSSLEngine();
             engine.setUseClientMode(false);
-            SslConnection sslConnection = new SslConnection(_bufferPool, getExecutor(), _sslCtxFactory, endpoint, engine);
+            SslConnection sslConnection = new SslConnection(_bufferPool, getExecutor(), _sslCtxFactory, endpoint, engine)
+            {
+                @Override
+                protected boolean networkFlush(ByteBuffer output) throws IOException
+                {
+                    _maxNetworkFlush.accumulateAndGet(output.remaining(), Math::max);
+                    return super.networkFlush(output);
+                }
+            };
             sslConnection.setRenegotiationAllowed(_sslCtxFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(_sslCtxFactory.getRenegotiationLimit());
+            sslConnection.setMaxRecordsPerFlush(_maxRecordsPerFlush);
             SslConnection.SslEndPoint sslEndPoint = sslConnection.getSslEndPoint();
             Connection appConnection = new TestConnection(sslEndPoint);
             sslEndPoint.setConnection(appConnection);
@@ -200,7 +216,7 @@ public class SslConnectionTest
                 fillInterested();
             else
             {
-                getExecutor().execute(() -> getEndPoint().write(_writeCallback, BufferUtil.toBuffer("Hello Client")));
+                getExecutor().execute(() -> getEndPoint().write(_writeCallback, _writeOnConnect));
             }
         }
 
@@ -429,6 +445,44 @@ public class SslConnectionTest
         }
     }
 
+    @Test
+    public void testMaxRecordsPerFlush() throws Exception
+    {
+        byte[] content = new byte[1024 * 1024];
+        new Random().nextBytes(content);
+        _testFill = false;
+        _writeOnConnect = ByteBuffer.wrap(content);
+        _maxRecordsPerFlush = 3;
+        _writeCallback = new FutureCallback();
+        startSSL();
+        try (SSLSocket client = newClient())
+        {
+            client.setSoTimeout(5000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                byte[] received = new byte[content.length];
+                InputStream input = client.getInputStream();
+                int offset = 0;
+                while (offset < received.length)
+                {
+                    int read = input.read(received, offset, received.length - offset);
+                    if (read < 0)
+                        break;
+                    offset += read;
+                }
+                assertArrayEquals(content, received);
+                assertNull(_writeCallback.get(5, TimeUnit.SECONDS));
+
+                // Several TLS records have been written to the network at once.
+                int packetBufferSize = client.getSession().getPacketBufferSize();
+                assertThat(_maxNetworkFlush.get(), greaterThan(packetBufferSize));
+            }
+        }
+    }
+
     @Test
     public void testBlockedWrite() throws Exception
     {
@@ -23,6 +23,7 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -31,7 +32,9 @@ import org.eclipse.jetty.client.AsyncRequestContent;
 import org.eclipse.jetty.client.ContentSourceRequestContent;
 import org.eclipse.jetty.client.ContinueProtocolHandler;
 import org.eclipse.jetty.client.EarlyHintsProtocolHandler;
+import org.eclipse.jetty.client.HttpCache;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.ProcessingProtocolHandler;
 import org.eclipse.jetty.client.ProtocolHandlers;
 import org.eclipse.jetty.client.Result;
@@ -41,6 +44,7 @@ import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.io.ClientConnector;
@@ -65,6 +69,9 @@ import org.slf4j.LoggerFactory;
  * {@link #setHttpClient(HttpClient) set explicitly}, or created implicitly.
  * To customize the implicit {@code HttpClient} instance, applications can
  * override {@link #newHttpClient()} and {@link #configureHttpClient(HttpClient)}.</p>
+ * <p>Responses can be cached by {@link #setHttpCache(HttpCache) setting} an
+ * {@link HttpCache}; requests that can be served from the cache are not
+ * proxied to the server.</p>
  *
  * @see Forward
  * @see Reverse
@@ -75,6 +82,7 @@ public abstract class ProxyHandler extends Handler.Abstract
     private static final String CLIENT_TO_PROXY_REQUEST_ATTRIBUTE = ProxyHandler.class.getName() + ".clientToProxyRequest";
     private static final String PROXY_TO_CLIENT_RESPONSE_ATTRIBUTE = ProxyHandler.class.getName() + ".proxyToClientResponse";
     private static final String PROXY_TO_SERVER_CONTINUE_ATTRIBUTE = ProxyHandler.class.getName() + ".proxyToServerContinue";
+    private static final String HTTP_CACHE_LOOKUP_ATTRIBUTE = ProxyHandler.class.getName() + ".httpCacheLookup";
     private static final EnumSet<HttpHeader> HOP_HEADERS = EnumSet.of(
         HttpHeader.CONNECTION,
         HttpHeader.KEEP_ALIVE,
@@ -88,6 +96,7 @@ public abstract class ProxyHandler extends Handler.Abstract
     );
 
     private HttpClient httpClient;
+    private HttpCache httpCache;
     private String proxyToServerHost;
     private String viaHost;
 
@@ -101,6 +110,20 @@ public abstract class ProxyHandler extends Handler.Abstract
         this.httpClient = httpClient;
     }
 
+    public HttpCache getHttpCache()
+    {
+        return httpCache;
+    }
+
+    /**
+     * @param httpCache the cache for the responses, or {@code null} to not cache responses
+     */
+    public void setHttpCache(HttpCache httpCache)
+    {
+        updateBean(this.httpCache, httpCache, true);
+        this.httpCache = httpCache;
+    }
+
     /**
      * Get the proxy-to-server {@code Host} header value.
      * @return the proxy-to-server {@code Host} header value
@@ -225,6 +248,131 @@ public abstract class ProxyHandler extends Handler.Abstract
                 clientToProxyRequest,
                 clientToProxyRequest.getHeaders());
 
+        HttpCache httpCache = getHttpCache();
+        if (httpCache != null)
+            return handle(httpCache, clientToProxyRequest, proxyToClientResponse, proxyToClientCallback, true);
+        return proxy(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+    }
+
+    private boolean handle(HttpCache httpCache, Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback, boolean coalesce)
+    {
+        HttpCache.Lookup lookup = httpCache.lookup(clientToProxyRequest.getMethod(), clientToProxyRequest.getHttpURI(), clientToProxyRequest.getHeaders(), coalesce);
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} cache lookup {}", requestId(clientToProxyRequest), lookup);
+        switch (lookup.getStatus())
+        {
+            case FRESH ->
+            {
+                writeCachedResponse(clientToProxyRequest, proxyToClientResponse, Callback.from(proxyToClientCallback, lookup::complete), lookup.getEntry());
+                return true;
+            }
+            case STALE ->
+            {
+                if (lookup.isRevalidating())
+                    revalidate(httpCache, clientToProxyRequest, lookup);
+                writeCachedResponse(clientToProxyRequest, proxyToClientResponse, Callback.from(proxyToClientCallback, lookup::complete), lookup.getEntry());
+                return true;
+            }
+            case WAIT ->
+            {
+                // Retry when the concurrent request completes, likely served from the cache.
+                lookup.whenComplete(() ->
+                {
+                    try
+                    {
+                        handle(httpCache, clientToProxyRequest, proxyToClientResponse, proxyToClientCallback, false);
+                    }
+                    catch (Throwable x)
+                    {
+                        Response.writeError(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback, x);
+                    }
+                });
+                return true;
+            }
+            case UNSATISFIABLE ->
+            {
+                Response.writeError(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback, HttpStatus.GATEWAY_TIMEOUT_504);
+                return true;
+            }
+            default ->
+            {
+                clientToProxyRequest.setAttribute(HTTP_CACHE_LOOKUP_ATTRIBUTE, lookup);
+                try
+                {
+                    return proxy(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+                }
+                catch (Throwable x)
+                {
+                    lookup.complete();
+                    throw x;
+                }
+            }
+        }
+    }
+
+    private void revalidate(HttpCache httpCache, Request clientToProxyRequest, HttpCache.Lookup lookup)
+    {
+        try
+        {
+            HttpURI rewritten = rewriteHttpURI(clientToProxyRequest);
+            var proxyToServerRequest = newProxyToServerRequest(clientToProxyRequest, rewritten);
+            copyRequestHeaders(clientToProxyRequest, proxyToServerRequest);
+            addProxyHeaders(clientToProxyRequest, proxyToServerRequest);
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} P2S revalidating {}", requestId(clientToProxyRequest), proxyToServerRequest);
+            httpCache.revalidate(lookup, proxyToServerRequest);
+        }
+        catch (Throwable x)
+        {
+            // The stale response is served anyway.
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} P2S could not revalidate", requestId(clientToProxyRequest), x);
+        }
+    }
+
+    private void writeCachedResponse(Request clientToProxyRequest, Response proxyToClientResponse, Callback callback, HttpCache.Entry entry)
+    {
+        boolean notModified = entry.isNotModified(clientToProxyRequest.getHeaders());
+        proxyToClientResponse.setStatus(notModified ? HttpStatus.NOT_MODIFIED_304 : entry.getStatus());
+        HttpFields.Mutable cachedHeaders = HttpFields.build();
+        entry.writeHeaders(cachedHeaders, System.currentTimeMillis());
+        for (HttpField cachedField : cachedHeaders)
+        {
+            if (HOP_HEADERS.contains(cachedField.getHeader()))
+                continue;
+            if (notModified && cachedField.getHeader() == HttpHeader.CONTENT_LENGTH)
+                continue;
+            HttpField newField = filterServerToProxyResponseField(cachedField);
+            if (newField == null)
+                continue;
+            proxyToClientResponse.getHeaders().add(newField);
+        }
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("""
+                    {} P2C sending cached response
+                    {}
+                    {}""",
+                requestId(clientToProxyRequest),
+                proxyToClientResponse,
+                proxyToClientResponse.getHeaders());
+        }
+        boolean content = !notModified && !HttpMethod.HEAD.is(clientToProxyRequest.getMethod());
+        proxyToClientResponse.write(true, content ? entry.getContent() : BufferUtil.EMPTY_BUFFER, callback);
+    }
+
+    /**
+     * <p>Proxies the client-to-proxy request to the server.</p>
+     * <p>This method is called by {@link #handle(Request, Response, Callback)}
+     * when the request cannot be served from the {@link #getHttpCache() cache}.</p>
+     *
+     * @param clientToProxyRequest the client-to-proxy request
+     * @param proxyToClientResponse the proxy-to-client response
+     * @param proxyToClientCallback the proxy-to-client callback
+     * @return whether the request has been handled
+     */
+    protected boolean proxy(Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+    {
         HttpURI rewritten = rewriteHttpURI(clientToProxyRequest);
         if (LOG.isDebugEnabled())
             LOG.debug("{} URI rewrite {} => {}", requestId(clientToProxyRequest), clientToProxyRequest.getHttpURI(), rewritten);
@@ -237,6 +385,10 @@ public abstract class ProxyHandler extends Handler.Abstract
 
         addProxyHeaders(clientToProxyRequest, proxyToServerRequest);
 
+        var lookup = (HttpCache.Lookup)clientToProxyRequest.getAttribute(HTTP_CACHE_LOOKUP_ATTRIBUTE);
+        if (lookup != null)
+            proxyToServerRequest.headers(lookup::addConditionalHeaders);
+
         if (hasContent(clientToProxyRequest))
         {
             if (expects100Continue(clientToProxyRequest))
@@ -427,6 +579,9 @@ public abstract class ProxyHandler extends Handler.Abstract
 
     protected org.eclipse.jetty.client.Response.CompleteListener newServerToProxyResponseListener(Request clientToProxyRequest, org.eclipse.jetty.client.Request proxyToServerRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
     {
+        var lookup = (HttpCache.Lookup)clientToProxyRequest.getAttribute(HTTP_CACHE_LOOKUP_ATTRIBUTE);
+        if (lookup != null)
+            return new CachingProxyResponseListener(clientToProxyRequest, proxyToServerRequest, proxyToClientResponse, proxyToClientCallback, lookup);
         return new ProxyResponseListener(clientToProxyRequest, proxyToServerRequest, proxyToClientResponse, proxyToClientCallback);
     }
 
@@ -512,12 +667,18 @@ public abstract class ProxyHandler extends Handler.Abstract
      * proxy-to-server request URI.
      * This can be done by providing a rewrite function to the constructor,
      * and/or override {@link #rewriteHttpURI(Request)}.</p>
+     * <p>Alternatively, a reverse proxy can forward requests to an
+     * {@link UpstreamCluster}, that selects the upstream server for
+     * each request, preserving the request path and query.</p>
      *
      * @see Forward
      */
     public static class Reverse extends ProxyHandler
     {
+        private static final String UPSTREAM_ATTRIBUTE = Reverse.class.getName() + ".upstream";
+
         private final Function<Request, HttpURI> httpURIRewriter;
+        private final UpstreamCluster upstreamCluster;
 
         /**
          * <p>Convenience constructor that provides a rewrite function
@@ -553,6 +714,42 @@ public abstract class ProxyHandler extends Handler.Abstract
         public Reverse(Function<Request, HttpURI> httpURIRewriter)
         {
             this.httpURIRewriter = Objects.requireNonNull(httpURIRewriter);
+            this.upstreamCluster = null;
+        }
+
+        /**
+         * <p>Creates a new instance that forwards requests to the upstreams
+         * of the given cluster.</p>
+         * <p>The client-to-proxy request URI is rewritten to target the
+         * origin of the upstream selected by the cluster.
+         * If no upstream is available, the proxy responds with
+         * {@code 503 Service Unavailable}.</p>
+         *
+         * @param upstreamCluster the cluster of upstream servers
+         */
+        public Reverse(UpstreamCluster upstreamCluster)
+        {
+            this.upstreamCluster = Objects.requireNonNull(upstreamCluster);
+            this.httpURIRewriter = request ->
+            {
+                Selection selection = (Selection)request.getAttribute(UPSTREAM_ATTRIBUTE);
+                if (selection == null)
+                {
+                    // Requests that revalidate cached responses are not proxied via proxy(),
+                    // and their exchange may complete after this request completes.
+                    UpstreamCluster.Upstream selected = upstreamCluster.select(request);
+                    if (selected == null)
+                        throw new IllegalStateException("No upstream available");
+                    Selection revalidation = new Selection(selected);
+                    request.setAttribute(UPSTREAM_ATTRIBUTE, revalidation);
+                    // Release the upstream when this request completes only
+                    // if the revalidation request could not be sent.
+                    Request.addCompletionListener(request, x -> revalidation.abandon());
+                    selection = revalidation;
+                }
+                return selection.upstream.rewrite(request.getHttpURI());
+            };
+            addBean(upstreamCluster);
         }
 
         public Function<Request, HttpURI> getHttpURIRewriter()
@@ -560,6 +757,72 @@ public abstract class ProxyHandler extends Handler.Abstract
             return httpURIRewriter;
         }
 
+        /**
+         * @return the cluster of upstream servers, or {@code null}
+         * if this instance uses a rewrite function
+         */
+        public UpstreamCluster getUpstreamCluster()
+        {
+            return upstreamCluster;
+        }
+
+        @Override
+        public void setHttpClient(HttpClient httpClient)
+        {
+            super.setHttpClient(httpClient);
+            if (upstreamCluster != null && upstreamCluster.getHttpClient() == null)
+                upstreamCluster.setHttpClient(httpClient);
+        }
+
+        @Override
+        protected boolean proxy(Request clientToProxyRequest, Response proxyToClientResponse, Callback proxyToClientCallback)
+        {
+            if (upstreamCluster == null)
+                return super.proxy(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+
+            UpstreamCluster.Upstream upstream = upstreamCluster.select(clientToProxyRequest);
+            if (upstream == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} no upstream available", requestId(clientToProxyRequest));
+                Response.writeError(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback, HttpStatus.SERVICE_UNAVAILABLE_503);
+                return true;
+            }
+
+            Selection selection = new Selection(upstream);
+            clientToProxyRequest.setAttribute(UPSTREAM_ATTRIBUTE, selection);
+            try
+            {
+                return super.proxy(clientToProxyRequest, proxyToClientResponse, proxyToClientCallback);
+            }
+            catch (Throwable x)
+            {
+                // The proxy-to-server request could not be built or sent.
+                selection.abandon();
+                throw x;
+            }
+        }
+
+        @Override
+        protected org.eclipse.jetty.client.Request newProxyToServerRequest(Request clientToProxyRequest, HttpURI newHttpURI)
+        {
+            org.eclipse.jetty.client.Request proxyToServerRequest = super.newProxyToServerRequest(clientToProxyRequest, newHttpURI);
+            Selection selection = (Selection)clientToProxyRequest.getAttribute(UPSTREAM_ATTRIBUTE);
+            if (selection != null)
+            {
+                // Target the destination of the upstream origin, not only its address.
+                Origin origin = selection.upstream.getOrigin();
+                proxyToServerRequest.tag(origin.getTag());
+                if (origin.getTransport() != null)
+                    proxyToServerRequest.transport(origin.getTransport());
+                // Once queued, the exchange always completes and owns the release
+                // of the upstream, independently of the client-to-proxy request.
+                proxyToServerRequest.onRequestQueued(request -> selection.queued = true)
+                    .onComplete(selection::release);
+            }
+            return proxyToServerRequest;
+        }
+
         /**
          * {@inheritDoc}
          * <p>Applications that use this class typically provide a rewrite
@@ -576,6 +839,35 @@ public abstract class ProxyHandler extends Handler.Abstract
         {
             return getHttpURIRewriter().apply(clientToProxyRequest);
         }
+
+        /**
+         * <p>The upstream selected for a proxy-to-server exchange,
+         * that must be released exactly once.</p>
+         */
+        private class Selection
+        {
+            private final AtomicBoolean released = new AtomicBoolean();
+            private final UpstreamCluster.Upstream upstream;
+            private volatile boolean queued;
+
+            private Selection(UpstreamCluster.Upstream upstream)
+            {
+                this.upstream = upstream;
+            }
+
+            private void release(Result result)
+            {
+                if (released.compareAndSet(false, true))
+                    upstreamCluster.release(upstream, result);
+            }
+
+            private void abandon()
+            {
+                // The upstream was not contacted, so it is not blamed.
+                if (!queued && released.compareAndSet(false, true))
+                    upstreamCluster.release(upstream, false);
+            }
+        }
     }
 
     protected static class ProxyRequestContent extends ContentSourceRequestContent
@@ -732,6 +1024,86 @@ public abstract class ProxyHandler extends Handler.Abstract
         }
     }
 
+    /**
+     * <p>A {@link ProxyResponseListener} that stores cacheable responses in the
+     * {@link #getHttpCache() cache}, and that replies with the cached response
+     * when the server confirms that it is still valid.</p>
+     */
+    protected class CachingProxyResponseListener extends ProxyResponseListener
+    {
+        private final Request clientToProxyRequest;
+        private final Response proxyToClientResponse;
+        private final HttpCache.Lookup lookup;
+        private HttpCache.Writer writer;
+        private boolean notModified;
+
+        public CachingProxyResponseListener(Request clientToProxyRequest, org.eclipse.jetty.client.Request proxyToServerRequest, Response proxyToClientResponse, Callback proxyToClientCallback, HttpCache.Lookup lookup)
+        {
+            super(clientToProxyRequest, proxyToServerRequest, proxyToClientResponse, proxyToClientCallback);
+            this.clientToProxyRequest = clientToProxyRequest;
+            this.proxyToClientResponse = proxyToClientResponse;
+            this.lookup = lookup;
+        }
+
+        @Override
+        public void onBegin(org.eclipse.jetty.client.Response serverToProxyResponse)
+        {
+            notModified = serverToProxyResponse.getStatus() == HttpStatus.NOT_MODIFIED_304 && lookup.getEntry() != null;
+            if (!notModified)
+                super.onBegin(serverToProxyResponse);
+        }
+
+        @Override
+        public void onHeaders(org.eclipse.jetty.client.Response serverToProxyResponse)
+        {
+            if (notModified)
+                return;
+            writer = lookup.newWriter(serverToProxyResponse.getStatus(), serverToProxyResponse.getHeaders());
+            super.onHeaders(serverToProxyResponse);
+        }
+
+        @Override
+        public void onContent(org.eclipse.jetty.client.Response serverToProxyResponse, Content.Chunk serverToProxyChunk, Runnable serverToProxyDemander)
+        {
+            if (writer != null)
+                writer.write(serverToProxyChunk.getByteBuffer());
+            super.onContent(serverToProxyResponse, serverToProxyChunk, serverToProxyDemander);
+        }
+
+        @Override
+        public void onSuccess(org.eclipse.jetty.client.Response serverToProxyResponse)
+        {
+            if (notModified)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} S2P cached response not modified", requestId(clientToProxyRequest));
+                HttpCache.Entry entry = lookup.freshen(serverToProxyResponse.getHeaders());
+                writeCachedResponse(clientToProxyRequest, proxyToClientResponse, Callback.from(this, entry::release), entry);
+                return;
+            }
+            if (writer != null)
+                writer.commit();
+            if (lookup.isInvalidating() && serverToProxyResponse.getStatus() < HttpStatus.BAD_REQUEST_400)
+                getHttpCache().invalidate(clientToProxyRequest.getHttpURI());
+            super.onSuccess(serverToProxyResponse);
+        }
+
+        @Override
+        public void onFailure(org.eclipse.jetty.client.Response serverToProxyResponse, Throwable failure)
+        {
+            if (writer != null)
+                writer.abort();
+            super.onFailure(serverToProxyResponse, failure);
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            lookup.complete();
+            super.onComplete(result);
+        }
+    }
+
     private class ProxyToClientResponseFailureCallback implements Callback
     {
         private final Request clientToProxyRequest;
@@ -0,0 +1,626 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A cluster of {@link Upstream upstream} servers that a
+ * {@link ProxyHandler.Reverse reverse proxy} forwards requests to.</p>
+ * <p>For each request, a {@link LoadBalancer} selects one of the
+ * upstreams that are currently available; the request URI is then
+ * rewritten to target the {@link Origin} of the selected upstream,
+ * so that the request is sent through the {@link HttpClient}
+ * destination of that origin, reusing its pooled connections.</p>
+ * <p>Upstreams become unavailable in two ways:</p>
+ * <ul>
+ * <li>passively, when {@link #getMaxConsecutiveFailures() too many}
+ * consecutive requests fail (or receive a {@code 5xx} response), in which
+ * case the upstream is ejected for {@link #getEjectionPeriod() a period of time};</li>
+ * <li>actively, when a {@link #getHealthCheckPath() health check} request
+ * periodically sent to the upstream fails.</li>
+ * </ul>
+ * <p>Typical usage:</p>
+ * <pre>{@code
+ * UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+ * cluster.addUpstream(new Origin("http", "backend1", 8080));
+ * cluster.addUpstream(new Origin("http", "backend2", 8080), 2);
+ * cluster.setHealthCheckPath("/health");
+ * server.setHandler(new ProxyHandler.Reverse(cluster));
+ * }</pre>
+ */
+@ManagedObject("A cluster of upstream servers")
+public class UpstreamCluster extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamCluster.class);
+
+    private final AutoLock lock = new AutoLock();
+    private final LoadBalancer loadBalancer;
+    // Replaced on modification, so that it can be read without locking.
+    private volatile List<Upstream> upstreams = List.of();
+    private HttpClient httpClient;
+    private int maxConsecutiveFailures = 5;
+    private long ejectionPeriod = TimeUnit.SECONDS.toMillis(30);
+    private String healthCheckPath;
+    private long healthCheckInterval = TimeUnit.SECONDS.toMillis(10);
+    private long healthCheckTimeout = TimeUnit.SECONDS.toMillis(5);
+    private Scheduler.Task healthCheckTask;
+
+    public UpstreamCluster(LoadBalancer loadBalancer)
+    {
+        this.loadBalancer = Objects.requireNonNull(loadBalancer);
+    }
+
+    public LoadBalancer getLoadBalancer()
+    {
+        return loadBalancer;
+    }
+
+    public HttpClient getHttpClient()
+    {
+        return httpClient;
+    }
+
+    /**
+     * <p>Sets the {@link HttpClient} used to send health check requests.</p>
+     * <p>{@link ProxyHandler.Reverse} sets its own {@code HttpClient}
+     * automatically.</p>
+     *
+     * @param httpClient the {@code HttpClient} used to send health check requests
+     */
+    public void setHttpClient(HttpClient httpClient)
+    {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @param origin the origin of the upstream
+     * @return the upstream added to this cluster, with weight {@code 1}
+     */
+    public Upstream addUpstream(Origin origin)
+    {
+        return addUpstream(origin, 1);
+    }
+
+    /**
+     * @param origin the origin of the upstream
+     * @param weight the weight of the upstream, must be positive
+     * @return the upstream added to this cluster
+     */
+    public Upstream addUpstream(Origin origin, int weight)
+    {
+        Upstream upstream = new Upstream(origin, weight);
+        try (AutoLock ignored = lock.lock())
+        {
+            List<Upstream> newUpstreams = new ArrayList<>(upstreams);
+            newUpstreams.add(upstream);
+            upstreams = List.copyOf(newUpstreams);
+        }
+        return upstream;
+    }
+
+    public boolean removeUpstream(Upstream upstream)
+    {
+        try (AutoLock ignored = lock.lock())
+        {
+            List<Upstream> newUpstreams = new ArrayList<>(upstreams);
+            boolean removed = newUpstreams.remove(upstream);
+            upstreams = List.copyOf(newUpstreams);
+            return removed;
+        }
+    }
+
+    public List<Upstream> getUpstreams()
+    {
+        return upstreams;
+    }
+
+    @ManagedAttribute("The number of upstreams")
+    public int getUpstreamCount()
+    {
+        return upstreams.size();
+    }
+
+    @ManagedAttribute("The number of upstreams that are currently available")
+    public int getAvailableUpstreamCount()
+    {
+        long now = NanoTime.now();
+        int count = 0;
+        for (Upstream upstream : upstreams)
+        {
+            if (upstream.isAvailable(now))
+                ++count;
+        }
+        return count;
+    }
+
+    @ManagedAttribute("The number of consecutive failures after which an upstream is ejected")
+    public int getMaxConsecutiveFailures()
+    {
+        return maxConsecutiveFailures;
+    }
+
+    /**
+     * @param maxConsecutiveFailures the number of consecutive failures after which
+     * an upstream is ejected, or a non-positive value to disable passive ejection
+     */
+    public void setMaxConsecutiveFailures(int maxConsecutiveFailures)
+    {
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+    }
+
+    @ManagedAttribute("The period of time, in ms, an upstream is ejected for")
+    public long getEjectionPeriod()
+    {
+        return ejectionPeriod;
+    }
+
+    public void setEjectionPeriod(long ejectionPeriod)
+    {
+        this.ejectionPeriod = ejectionPeriod;
+    }
+
+    @ManagedAttribute("The path of the health check requests")
+    public String getHealthCheckPath()
+    {
+        return healthCheckPath;
+    }
+
+    /**
+     * @param healthCheckPath the path of the health check requests,
+     * or {@code null} to disable active health checks
+     */
+    public void setHealthCheckPath(String healthCheckPath)
+    {
+        this.healthCheckPath = healthCheckPath;
+    }
+
+    @ManagedAttribute("The interval, in ms, between health checks")
+    public long getHealthCheckInterval()
+    {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(long healthCheckInterval)
+    {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    @ManagedAttribute("The timeout, in ms, of health check requests")
+    public long getHealthCheckTimeout()
+    {
+        return healthCheckTimeout;
+    }
+
+    public void setHealthCheckTimeout(long healthCheckTimeout)
+    {
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (getHealthCheckPath() != null && getHttpClient() == null)
+            throw new IllegalStateException("Missing HttpClient for health checks");
+        super.doStart();
+        if (getHealthCheckPath() != null)
+            scheduleHealthChecks();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler.Task task = healthCheckTask;
+        healthCheckTask = null;
+        if (task != null)
+            task.cancel();
+        super.doStop();
+    }
+
+    /**
+     * <p>Selects an available upstream for the given request.</p>
+     * <p>The returned upstream must be {@link #release(Upstream, Result) released}
+     * when the proxy-to-server exchange completes.</p>
+     *
+     * @param request the client-to-proxy request
+     * @return the selected upstream, or {@code null} if no upstream is available
+     */
+    public Upstream select(Request request)
+    {
+        Upstream upstream = loadBalancer.select(upstreams, NanoTime.now());
+        if (upstream != null)
+            upstream.inFlight.incrementAndGet();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Selected {} for {}", upstream, request);
+        return upstream;
+    }
+
+    /**
+     * <p>Releases the given upstream, previously {@link #select(Request) selected},
+     * recording whether the exchange succeeded or failed.</p>
+     * <p>Exchanges that fail, or that receive a {@code 5xx} response, count as
+     * failures towards the {@link #getMaxConsecutiveFailures() passive ejection}
+     * of the upstream.</p>
+     *
+     * @param upstream the upstream to release
+     * @param result the result of the proxy-to-server exchange
+     */
+    public void release(Upstream upstream, Result result)
+    {
+        boolean failed = result.isFailed() || HttpStatus.isServerError(result.getResponse().getStatus());
+        release(upstream, failed);
+    }
+
+    void release(Upstream upstream, boolean failed)
+    {
+        upstream.inFlight.decrementAndGet();
+        if (failed)
+        {
+            upstream.failures.increment();
+            int failures = upstream.consecutiveFailures.incrementAndGet();
+            int maxFailures = getMaxConsecutiveFailures();
+            if (maxFailures > 0 && failures >= maxFailures)
+                eject(upstream);
+        }
+        else
+        {
+            // Avoid writing to the shared counter in the common case.
+            if (upstream.consecutiveFailures.get() != 0)
+                upstream.consecutiveFailures.set(0);
+        }
+    }
+
+    private void eject(Upstream upstream)
+    {
+        upstream.consecutiveFailures.set(0);
+        upstream.ejectedUntil = NanoTime.now() + TimeUnit.MILLISECONDS.toNanos(getEjectionPeriod());
+        upstream.ejected = true;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Ejected {} for {} ms", upstream, getEjectionPeriod());
+    }
+
+    private void scheduleHealthChecks()
+    {
+        if (isRunning() || isStarting())
+            healthCheckTask = getHttpClient().getScheduler().schedule(this::checkHealth, getHealthCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHealth()
+    {
+        try
+        {
+            for (Upstream upstream : upstreams)
+            {
+                checkHealth(upstream);
+            }
+        }
+        finally
+        {
+            scheduleHealthChecks();
+        }
+    }
+
+    private void checkHealth(Upstream upstream)
+    {
+        Origin origin = upstream.getOrigin();
+        Origin.Address address = origin.getAddress();
+        org.eclipse.jetty.client.Request request = getHttpClient().newRequest(address.getHost(), address.getPort())
+            .scheme(origin.getScheme())
+            .path(getHealthCheckPath())
+            .tag(origin.getTag())
+            .timeout(getHealthCheckTimeout(), TimeUnit.MILLISECONDS);
+        if (origin.getTransport() != null)
+            request.transport(origin.getTransport());
+        request.send(result ->
+        {
+            boolean healthy = result.isSucceeded() && HttpStatus.isSuccess(result.getResponse().getStatus());
+            if (LOG.isDebugEnabled())
+                LOG.debug("Health check {} for {}", healthy ? "succeeded" : "failed", upstream, result.getFailure());
+            // A successful health check does not cancel a passive ejection,
+            // which expires only after the ejection period.
+            upstream.healthy = healthy;
+        });
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        dumpObjects(out, indent, new DumpableCollection("upstreams", upstreams));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[lb=%s,upstreams=%d]", getClass().getSimpleName(), hashCode(), getLoadBalancer(), upstreams.size());
+    }
+
+    /**
+     * <p>An upstream server of an {@link UpstreamCluster}.</p>
+     * <p>The number of in-flight requests is tracked without locks,
+     * so that it can be read cheaply by the {@link LoadBalancer}.</p>
+     */
+    public static class Upstream
+    {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final LongAdder failures = new LongAdder();
+        private final Origin origin;
+        private final int weight;
+        private volatile boolean healthy = true;
+        private volatile boolean ejected;
+        private volatile long ejectedUntil;
+
+        private Upstream(Origin origin, int weight)
+        {
+            if (weight <= 0)
+                throw new IllegalArgumentException("Invalid weight " + weight);
+            this.origin = Objects.requireNonNull(origin);
+            this.weight = weight;
+        }
+
+        public Origin getOrigin()
+        {
+            return origin;
+        }
+
+        public int getWeight()
+        {
+            return weight;
+        }
+
+        /**
+         * @return the number of requests currently in flight to this upstream
+         */
+        public int getInFlight()
+        {
+            return inFlight.get();
+        }
+
+        /**
+         * @return the total number of failed requests to this upstream
+         */
+        public long getFailures()
+        {
+            return failures.sum();
+        }
+
+        /**
+         * @return whether the last health check of this upstream succeeded
+         */
+        public boolean isHealthy()
+        {
+            return healthy;
+        }
+
+        /**
+         * @return whether this upstream has been ejected after too many consecutive failures
+         */
+        public boolean isEjected()
+        {
+            return isEjected(NanoTime.now());
+        }
+
+        private boolean isEjected(long now)
+        {
+            if (!ejected)
+                return false;
+            if (NanoTime.isBefore(now, ejectedUntil))
+                return true;
+            ejected = false;
+            return false;
+        }
+
+        /**
+         * @param now the current time, as returned by {@link NanoTime#now()}
+         * @return whether this upstream can be selected
+         */
+        public boolean isAvailable(long now)
+        {
+            return healthy && !isEjected(now);
+        }
+
+        /**
+         * @param uri the client-to-proxy request URI
+         * @return the proxy-to-server request URI targeting this upstream
+         */
+        public HttpURI rewrite(HttpURI uri)
+        {
+            Origin.Address address = origin.getAddress();
+            return HttpURI.build(uri)
+                .scheme(origin.getScheme())
+                .host(address.getHost())
+                .port(address.getPort());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,weight=%d,inFlight=%d,healthy=%b,ejected=%b]",
+                getClass().getSimpleName(), hashCode(), origin.asString(), weight, getInFlight(), isHealthy(), isEjected());
+        }
+    }
+
+    /**
+     * <p>Selects one upstream among those of a cluster.</p>
+     * <p>Implementations must be thread-safe and should not block,
+     * as they are invoked for every request.</p>
+     */
+    public interface LoadBalancer
+    {
+        /**
+         * @param upstreams the immutable list of the upstreams of the cluster, including those not available
+         * @param now the current time, as returned by {@link NanoTime#now()}
+         * @return an {@link Upstream#isAvailable(long) available} upstream,
+         * or {@code null} if no upstream is available
+         */
+        Upstream select(List<Upstream> upstreams, long now);
+    }
+
+    /**
+     * <p>Selects the available upstreams in turn, each
+     * in proportion to its {@link Upstream#getWeight() weight}.</p>
+     */
+    public static class WeightedRoundRobin implements LoadBalancer
+    {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Upstream select(List<Upstream> upstreams, long now)
+        {
+            int totalWeight = 0;
+            int size = upstreams.size();
+            for (int i = 0; i < size; ++i)
+            {
+                Upstream upstream = upstreams.get(i);
+                if (upstream.isAvailable(now))
+                    totalWeight += upstream.getWeight();
+            }
+            if (totalWeight == 0)
+                return null;
+
+            int index = Math.floorMod(counter.getAndIncrement(), totalWeight);
+            for (int i = 0; i < size; ++i)
+            {
+                Upstream upstream = upstreams.get(i);
+                if (!upstream.isAvailable(now))
+                    continue;
+                index -= upstream.getWeight();
+                if (index < 0)
+                    return upstream;
+            }
+            // An upstream became unavailable concurrently.
+            return null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Selects the available upstream with the least
+     * in-flight requests, relative to its {@link Upstream#getWeight() weight}.</p>
+     * <p>Ties are broken by rotating the starting upstream.</p>
+     */
+    public static class LeastOutstandingRequests implements LoadBalancer
+    {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Upstream select(List<Upstream> upstreams, long now)
+        {
+            int size = upstreams.size();
+            if (size == 0)
+                return null;
+            int start = Math.floorMod(counter.getAndIncrement(), size);
+            Upstream result = null;
+            for (int i = 0; i < size; ++i)
+            {
+                Upstream upstream = upstreams.get((start + i) % size);
+                if (!upstream.isAvailable(now))
+                    continue;
+                if (result == null || isLessLoaded(upstream, result))
+                    result = upstream;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Selects two available upstreams at random, and
+     * then the one with the least in-flight requests, relative
+     * to its {@link Upstream#getWeight() weight}.</p>
+     * <p>This strategy approximates {@link LeastOutstandingRequests}
+     * in constant time, and avoids that many proxies sharing the same
+     * upstreams all pick the same least loaded upstream.</p>
+     */
+    public static class PowerOfTwoChoices implements LoadBalancer
+    {
+        @Override
+        public Upstream select(List<Upstream> upstreams, long now)
+        {
+            int size = upstreams.size();
+            if (size == 0)
+                return null;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            Upstream upstream1 = nextAvailable(upstreams, first, now);
+            if (upstream1 == null)
+                return null;
+            if (size == 1)
+                return upstream1;
+            // Pick a different index for the second choice.
+            int second = (first + 1 + random.nextInt(size - 1)) % size;
+            Upstream upstream2 = nextAvailable(upstreams, second, now);
+            if (upstream2 == null || upstream2 == upstream1)
+                return upstream1;
+            return isLessLoaded(upstream2, upstream1) ? upstream2 : upstream1;
+        }
+
+        private static Upstream nextAvailable(List<Upstream> upstreams, int start, long now)
+        {
+            int size = upstreams.size();
+            for (int i = 0; i < size; ++i)
+            {
+                Upstream upstream = upstreams.get((start + i) % size);
+                if (upstream.isAvailable(now))
+                    return upstream;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    private static boolean isLessLoaded(Upstream upstream, Upstream other)
+    {
+        // Compare inFlight/weight without divisions.
+        return (long)upstream.getInFlight() * other.getWeight() < (long)other.getInFlight() * upstream.getWeight();
+    }
+}
@@ -0,0 +1,263 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpCache;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpCacheProxyTest extends AbstractProxyTest
+{
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpCache httpCache;
+
+    private void startProxy() throws Exception
+    {
+        ProxyHandler.Reverse proxyHandler = new ProxyHandler.Reverse(clientToProxyRequest ->
+            HttpURI.build(clientToProxyRequest.getHttpURI()).port(serverConnector.getLocalPort()));
+        httpCache = new HttpCache(null);
+        proxyHandler.setHttpCache(httpCache);
+        startProxy(proxyHandler);
+    }
+
+    private ContentResponse send(String method) throws Exception
+    {
+        return client.newRequest("localhost", proxyConnector.getLocalPort())
+            .method(method)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    private Handler newServerHandler(String cacheControl)
+    {
+        return new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                int count = requests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, cacheControl);
+                Content.Sink.write(response, true, "content" + count, callback);
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testFreshResponseIsServedByProxy() throws Exception
+    {
+        startServer(newServerHandler("public, max-age=60"));
+        startProxy();
+        startClient();
+
+        assertEquals("content1", send("GET").getContentAsString());
+        ContentResponse response = send("GET");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content1", response.getContentAsString());
+        assertNotNull(response.getHeaders().get(HttpHeader.AGE));
+
+        // HEAD requests are served from the cached GET response.
+        response = send("HEAD");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(0, response.getContent().length);
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testPrivateResponseIsNotCached() throws Exception
+    {
+        startServer(newServerHandler("private, max-age=60"));
+        startProxy();
+        startClient();
+
+        assertEquals("content1", send("GET").getContentAsString());
+        assertEquals("content2", send("GET").getContentAsString());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception
+    {
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                requests.incrementAndGet();
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "no-cache");
+                response.getHeaders().put(HttpHeader.ETAG, "\"v1\"");
+                if ("\"v1\"".equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)))
+                {
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    callback.succeeded();
+                    return true;
+                }
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+        startProxy();
+        startClient();
+
+        assertEquals("content", send("GET").getContentAsString());
+        ContentResponse response = send("GET");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("content", response.getContentAsString());
+        assertEquals(2, requests.get());
+
+        // The client's conditional request is evaluated by the proxy.
+        response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .headers(headers -> headers.put(HttpHeader.IF_NONE_MATCH, "\"v1\""))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.NOT_MODIFIED_304, response.getStatus());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                requests.incrementAndGet();
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+        startProxy();
+        startClient();
+
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            var request = client.newRequest("localhost", proxyConnector.getLocalPort()).timeout(5, TimeUnit.SECONDS);
+            responses.add(new CompletableResponseListener(request).send());
+        }
+        // Wait for the requests to arrive to the proxy and to be coalesced.
+        await().atMost(5, TimeUnit.SECONDS).until(httpCache::getCoalesced, is(3L));
+        latch.countDown();
+
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals("content", response.get(5, TimeUnit.SECONDS).getContentAsString());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testUnsafeMethodInvalidates() throws Exception
+    {
+        startServer(newServerHandler("max-age=60"));
+        startProxy();
+        startClient();
+
+        assertEquals("content1", send("GET").getContentAsString());
+        assertEquals("content1", send("GET").getContentAsString());
+        assertEquals("content2", send(HttpMethod.DELETE.asString()).getContentAsString());
+        assertEquals("content3", send("GET").getContentAsString());
+    }
+
+    @Test
+    public void testCachedResponsesReleaseUpstreams() throws Exception
+    {
+        startServer(newServerHandler("max-age=60"));
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+        UpstreamCluster.Upstream upstream = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        ProxyHandler.Reverse proxyHandler = new ProxyHandler.Reverse(cluster);
+        proxyHandler.setHttpCache(new HttpCache(null));
+        startProxy(proxyHandler);
+        startClient();
+
+        for (int i = 0; i < 3; ++i)
+        {
+            assertEquals("content1", send("GET").getContentAsString());
+        }
+        assertEquals(1, requests.get());
+        await().atMost(5, TimeUnit.SECONDS).until(upstream::getInFlight, is(0));
+    }
+
+    @Test
+    public void testRevalidationReleasesUpstreamWhenExchangeCompletes() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                if (requests.incrementAndGet() > 1)
+                {
+                    // The revalidation fails after the stale response has been served.
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                    Response.writeError(request, response, callback, HttpStatus.SERVICE_UNAVAILABLE_503);
+                    return true;
+                }
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=0, stale-while-revalidate=60");
+                Content.Sink.write(response, true, "content", callback);
+                return true;
+            }
+        });
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+        UpstreamCluster.Upstream upstream = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        cluster.setMaxConsecutiveFailures(0);
+        ProxyHandler.Reverse proxyHandler = new ProxyHandler.Reverse(cluster);
+        proxyHandler.setHttpCache(new HttpCache(null));
+        startProxy(proxyHandler);
+        startClient();
+
+        assertEquals("content", send("GET").getContentAsString());
+        await().atMost(5, TimeUnit.SECONDS).until(upstream::getInFlight, is(0));
+
+        // The stale response is served while the revalidation is in flight.
+        assertEquals("content", send("GET").getContentAsString());
+        await().atMost(5, TimeUnit.SECONDS).until(requests::get, is(2));
+        assertEquals(1, upstream.getInFlight());
+
+        latch.countDown();
+
+        // The upstream is released with the result of the revalidation.
+        await().atMost(5, TimeUnit.SECONDS).until(upstream::getInFlight, is(0));
+        assertEquals(1, upstream.getFailures());
+    }
+}
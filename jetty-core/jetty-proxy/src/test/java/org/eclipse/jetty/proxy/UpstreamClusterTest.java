@@ -0,0 +1,372 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Origin;
+import org.eclipse.jetty.client.StringRequestContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpstreamClusterTest extends AbstractProxyTest
+{
+    private Server server2;
+    private ServerConnector serverConnector2;
+
+    private void startServers(Supplier<Handler> handlers) throws Exception
+    {
+        startServer(handlers.get());
+        server2 = new Server();
+        serverConnector2 = new ServerConnector(server2, 1, 1);
+        server2.addConnector(serverConnector2);
+        server2.setHandler(handlers.get());
+        server2.start();
+    }
+
+    @AfterEach
+    public void disposeServer2()
+    {
+        LifeCycle.stop(server2);
+    }
+
+    private static Handler newServerHandler()
+    {
+        return new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                String port = String.valueOf(Request.getLocalPort(request));
+                response.getHeaders().put("X-Upstream", port);
+                Content.Sink.write(response, true, port, callback);
+                return true;
+            }
+        };
+    }
+
+    private Map<String, Integer> sendRequests(int count) throws Exception
+    {
+        Map<String, Integer> distribution = new HashMap<>();
+        for (int i = 0; i < count; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+                .path("/path?q=" + i)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            distribution.merge(response.getHeaders().get("X-Upstream"), 1, Integer::sum);
+        }
+        return distribution;
+    }
+
+    @Test
+    public void testWeightedRoundRobin() throws Exception
+    {
+        startServers(UpstreamClusterTest::newServerHandler);
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.WeightedRoundRobin());
+        cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()), 1);
+        cluster.addUpstream(new Origin("http", "localhost", serverConnector2.getLocalPort()), 2);
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        Map<String, Integer> distribution = sendRequests(9);
+
+        assertEquals(3, (int)distribution.get(String.valueOf(serverConnector.getLocalPort())));
+        assertEquals(6, (int)distribution.get(String.valueOf(serverConnector2.getLocalPort())));
+        // Upstreams are released when the proxy-to-server exchange completes,
+        // which may happen after the client received the response.
+        for (UpstreamCluster.Upstream upstream : cluster.getUpstreams())
+        {
+            await().atMost(5, TimeUnit.SECONDS).until(upstream::getInFlight, is(0));
+        }
+    }
+
+    @Test
+    public void testPathAndQueryArePreserved() throws Exception
+    {
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                String pathQuery = request.getHttpURI().getPathQuery();
+                Content.Sink.write(response, true, pathQuery, callback);
+                return true;
+            }
+        });
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.PowerOfTwoChoices());
+        cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .path("/a/b?c=d")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("/a/b?c=d", response.getContentAsString());
+    }
+
+    @Test
+    public void testPassiveEjection() throws Exception
+    {
+        startServers(UpstreamClusterTest::newServerHandler);
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.WeightedRoundRobin());
+        UpstreamCluster.Upstream upstream1 = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        UpstreamCluster.Upstream upstream2 = cluster.addUpstream(new Origin("http", "localhost", serverConnector2.getLocalPort()));
+        cluster.setMaxConsecutiveFailures(2);
+        cluster.setEjectionPeriod(TimeUnit.HOURS.toMillis(1));
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        server2.stop();
+
+        // Requests to the stopped upstream fail until it is ejected.
+        int failures = 0;
+        for (int i = 0; i < 8; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            if (response.getStatus() == HttpStatus.BAD_GATEWAY_502)
+                ++failures;
+        }
+        assertEquals(2, failures);
+        assertTrue(upstream2.isEjected());
+        assertFalse(upstream1.isEjected());
+        assertEquals(1, cluster.getAvailableUpstreamCount());
+
+        Map<String, Integer> distribution = sendRequests(4);
+        assertEquals(Map.of(String.valueOf(serverConnector.getLocalPort()), 4), distribution);
+    }
+
+    @Test
+    public void testHealthCheck() throws Exception
+    {
+        startServers(() -> new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                int port = Request.getLocalPort(request);
+                if ("/health".equals(Request.getPathInContext(request)))
+                {
+                    // The second server is unhealthy.
+                    int status = port == serverConnector.getLocalPort() ? HttpStatus.OK_200 : HttpStatus.SERVICE_UNAVAILABLE_503;
+                    response.setStatus(status);
+                    callback.succeeded();
+                    return true;
+                }
+                response.getHeaders().put("X-Upstream", String.valueOf(port));
+                callback.succeeded();
+                return true;
+            }
+        });
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+        UpstreamCluster.Upstream upstream1 = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        UpstreamCluster.Upstream upstream2 = cluster.addUpstream(new Origin("http", "localhost", serverConnector2.getLocalPort()));
+        cluster.setHealthCheckPath("/health");
+        cluster.setHealthCheckInterval(100);
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        await().atMost(5, TimeUnit.SECONDS).until(upstream2::isHealthy, is(false));
+        assertTrue(upstream1.isHealthy());
+
+        Map<String, Integer> distribution = sendRequests(4);
+        assertEquals(Map.of(String.valueOf(serverConnector.getLocalPort()), 4), distribution);
+    }
+
+    @Test
+    public void testHealthCheckDoesNotCancelEjection() throws Exception
+    {
+        AtomicInteger healthChecks = new AtomicInteger();
+        startServer(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                healthChecks.incrementAndGet();
+                callback.succeeded();
+                return true;
+            }
+        });
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.WeightedRoundRobin());
+        UpstreamCluster.Upstream upstream = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        cluster.setMaxConsecutiveFailures(1);
+        cluster.setEjectionPeriod(TimeUnit.HOURS.toMillis(1));
+        cluster.setHealthCheckPath("/health");
+        cluster.setHealthCheckInterval(100);
+        startProxy(new ProxyHandler.Reverse(cluster));
+
+        assertSame(upstream, cluster.select(null));
+        cluster.release(upstream, true);
+        assertTrue(upstream.isEjected());
+
+        // Successful health checks do not shorten the ejection period.
+        int checks = healthChecks.get();
+        await().atMost(5, TimeUnit.SECONDS).until(healthChecks::get, greaterThan(checks + 1));
+        assertTrue(upstream.isHealthy());
+        assertTrue(upstream.isEjected());
+        assertEquals(0, cluster.getAvailableUpstreamCount());
+    }
+
+    @Test
+    public void testUpstreamIsReleasedWhenProxyRequestCannotBeBuilt() throws Exception
+    {
+        startServer(newServerHandler());
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.WeightedRoundRobin());
+        UpstreamCluster.Upstream upstream = cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        startProxy(new ProxyHandler.Reverse(cluster)
+        {
+            @Override
+            protected void addProxyHeaders(Request clientToProxyRequest, org.eclipse.jetty.client.Request proxyToServerRequest)
+            {
+                throw new IllegalStateException("explicitly_thrown_by_test");
+            }
+        });
+        startClient();
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR_500, response.getStatus());
+        assertEquals(0, upstream.getInFlight());
+        // The upstream was not contacted, so it is not blamed for the failure.
+        assertEquals(0, upstream.getFailures());
+    }
+
+    @Test
+    public void testNoUpstreamAvailable() throws Exception
+    {
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.WeightedRoundRobin());
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE_503, response.getStatus());
+    }
+
+    @Test
+    public void testLeastOutstandingRequests()
+    {
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+        UpstreamCluster.Upstream upstream1 = cluster.addUpstream(new Origin("http", "localhost", 8081));
+        UpstreamCluster.Upstream upstream2 = cluster.addUpstream(new Origin("http", "localhost", 8082), 2);
+
+        // Weight 2 means that upstream2 gets twice the in-flight requests.
+        for (int i = 0; i < 30; ++i)
+        {
+            cluster.select(null);
+        }
+        assertEquals(10, upstream1.getInFlight());
+        assertEquals(20, upstream2.getInFlight());
+
+        for (int i = 0; i < 10; ++i)
+        {
+            cluster.release(upstream2, false);
+        }
+        assertSame(upstream2, cluster.select(null));
+    }
+
+    @Test
+    public void testPowerOfTwoChoices()
+    {
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.PowerOfTwoChoices());
+        UpstreamCluster.Upstream upstream1 = cluster.addUpstream(new Origin("http", "localhost", 8081));
+        UpstreamCluster.Upstream upstream2 = cluster.addUpstream(new Origin("http", "localhost", 8082));
+
+        // With two upstreams, both are always chosen, and the least loaded wins.
+        cluster.select(null);
+        for (int i = 0; i < 10; ++i)
+        {
+            UpstreamCluster.Upstream selected = cluster.select(null);
+            cluster.release(selected, false);
+            assertEquals(1, upstream1.getInFlight() + upstream2.getInFlight());
+            assertEquals(0, selected.getInFlight());
+        }
+
+        cluster.setMaxConsecutiveFailures(1);
+        UpstreamCluster.Upstream busy = upstream1.getInFlight() > 0 ? upstream1 : upstream2;
+        UpstreamCluster.Upstream idle = busy == upstream1 ? upstream2 : upstream1;
+        cluster.select(null);
+        cluster.release(idle, true);
+        assertTrue(idle.isEjected());
+        assertSame(busy, cluster.select(null));
+        cluster.release(busy, true);
+        assertTrue(busy.isEjected());
+        assertNull(cluster.select(null));
+    }
+
+    @Test
+    public void testContentIsProxied() throws Exception
+    {
+        startServers(() -> new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain");
+                Content.copy(request, response, callback);
+                return true;
+            }
+        });
+        UpstreamCluster cluster = new UpstreamCluster(new UpstreamCluster.LeastOutstandingRequests());
+        cluster.addUpstream(new Origin("http", "localhost", serverConnector.getLocalPort()));
+        cluster.addUpstream(new Origin("http", "localhost", serverConnector2.getLocalPort()));
+        startProxy(new ProxyHandler.Reverse(cluster));
+        startClient();
+
+        String content = "hello";
+        ContentResponse response = client.newRequest("localhost", proxyConnector.getLocalPort())
+            .method("POST")
+            .body(new StringRequestContent(content, StandardCharsets.UTF_8))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(content, response.getContentAsString());
+    }
+}
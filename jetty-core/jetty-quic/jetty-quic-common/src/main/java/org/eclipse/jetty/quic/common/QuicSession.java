@@ -253,6 +253,11 @@ public abstract class QuicSession extends ContainerLifeCycle
         return quicheConnection.windowCapacity(streamId);
     }
 
+    public void setPriority(long streamId, int urgency, boolean incremental) throws IOException
+    {
+        quicheConnection.setStreamPriority(streamId, urgency, incremental);
+    }
+
     public void shutdownInput(long streamId, long error) throws IOException
     {
         quicheConnection.shutdownStream(streamId, false, error);
@@ -98,6 +98,30 @@ public class QuicStreamEndPoint extends AbstractEndPoint
         return session.isFinished(streamId);
     }
 
+    /**
+     * <p>Sets the priority of this stream, with the semantic of
+     * <a href="https://datatracker.ietf.org/doc/html/rfc9218">RFC 9218</a>,
+     * used by QUIC to decide which streams send their data first.</p>
+     * <p>Streams have urgency 127 and are incremental by default.</p>
+     *
+     * @param urgency the urgency, from 0 (most urgent) to 255
+     * @param incremental whether the stream data can be interleaved with the data of other streams of the same urgency
+     */
+    public void setPriority(int urgency, boolean incremental)
+    {
+        try
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("setting priority u={} i={} on {}", urgency, incremental, this);
+            session.setPriority(streamId, urgency, incremental);
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("error setting priority u={} i={} on {}", urgency, incremental, this, x);
+        }
+    }
+
     public void shutdownInput(long error)
     {
         try
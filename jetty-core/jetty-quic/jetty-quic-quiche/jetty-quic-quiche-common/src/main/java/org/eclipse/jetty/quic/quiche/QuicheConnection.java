@@ -132,6 +132,18 @@ public abstract class QuicheConnection
 
     public abstract void shutdownStream(long streamId, boolean writeSide, long error) throws IOException;
 
+    /**
+     * <p>Sets the priority of a stream, with the semantic of
+     * <a href="https://datatracker.ietf.org/doc/html/rfc9218">RFC 9218</a>.</p>
+     * <p>Streams have urgency 127 and are incremental by default.</p>
+     *
+     * @param streamId the stream id
+     * @param urgency the urgency, from 0 (most urgent) to 255
+     * @param incremental whether the stream data can be interleaved with the data of other streams of the same urgency
+     * @throws IOException if the priority cannot be set
+     */
+    public abstract void setStreamPriority(long streamId, int urgency, boolean incremental) throws IOException;
+
     public final void feedFinForStream(long streamId) throws IOException
     {
         feedClearBytesForStream(streamId, BufferUtil.EMPTY_BUFFER, true);
@@ -844,6 +844,19 @@ public class ForeignQuicheConnection extends QuicheConnection
         }
     }
 
+    @Override
+    public void setStreamPriority(long streamId, int urgency, boolean incremental) throws IOException
+    {
+        try (AutoLock ignore = lock.lock())
+        {
+            if (quicheConn == null)
+                throw new IOException("connection was released");
+            int rc = quiche_h.quiche_conn_stream_priority(quicheConn, streamId, (byte)urgency, incremental);
+            if (rc < 0)
+                throw new IOException("failed to set priority of stream " + streamId + ": " + quiche_error.errToString(rc));
+        }
+    }
+
     @Override
     public int feedClearBytesForStream(long streamId, ByteBuffer buffer, boolean last) throws IOException
     {
@@ -686,6 +686,19 @@ public class JnaQuicheConnection extends QuicheConnection
         }
     }
 
+    @Override
+    public void setStreamPriority(long streamId, int urgency, boolean incremental) throws IOException
+    {
+        try (AutoLock ignore = lock.lock())
+        {
+            if (quicheConn == null)
+                throw new IOException("connection was released");
+            int rc = LibQuiche.INSTANCE.quiche_conn_stream_priority(quicheConn, new uint64_t(streamId), new uint8_t((byte)urgency), incremental);
+            if (rc < 0)
+                throw new IOException("failed to set priority of stream " + streamId + ": " + quiche_error.errToString(rc));
+        }
+    }
+
     @Override
     public int feedClearBytesForStream(long streamId, ByteBuffer buffer, boolean last) throws IOException
     {
@@ -27,4 +27,7 @@ etc/jetty-rewrite-rules.xml
 # tag::documentation[]
 ## Request attribute name used to store the original request path.
 # jetty.rewrite.originalPathAttribute=jetty.rewrite.originalRequestPath
+
+## Whether the rules are indexed by their patterns, rather than applied one by one.
+# jetty.rewrite.compiled=false
 # end::documentation[]
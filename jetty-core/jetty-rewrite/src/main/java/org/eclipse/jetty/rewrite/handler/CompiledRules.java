@@ -0,0 +1,372 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.util.Index;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A compiled form of a list of {@link Rule}s, used by {@link RuleContainer#setCompiled(boolean) compiled}
+ * {@link RuleContainer}s.</p>
+ * <p>Consecutive {@link PatternRule}s and {@link RegexRule}s are grouped into a segment that is
+ * indexed by the Servlet patterns (exact, prefix and suffix patterns) and by the literal prefixes
+ * of the regular expressions.
+ * For each request, the index returns the candidate rules of the segment, which is a superset
+ * of the rules that match the request; only the candidate rules are then invoked, in order.
+ * When a rule changes the request URI, the candidates of the remaining rules of the segment
+ * are looked up again, so that the first-match and terminating semantics are the same as
+ * those of a linear walk of the rules.</p>
+ * <p>Other rules, and rules that override {@link Rule#matchAndApply(Rule.Handler)}, form
+ * segments of one rule that are always invoked.</p>
+ */
+class CompiledRules
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledRules.class);
+    private static final ClassValue<Boolean> INDEXABLE = new ClassValue<>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            try
+            {
+                Class<?> declaringClass = type.getMethod("matchAndApply", Rule.Handler.class).getDeclaringClass();
+                return declaringClass == PatternRule.class || declaringClass == RegexRule.class;
+            }
+            catch (NoSuchMethodException x)
+            {
+                return false;
+            }
+        }
+    };
+
+    private final Rule[] _rules;
+    private final List<Segment> _segments = new ArrayList<>();
+
+    CompiledRules(List<Rule> rules)
+    {
+        _rules = rules.toArray(Rule[]::new);
+        int start = -1;
+        for (int i = 0; i < _rules.length; ++i)
+        {
+            if (isIndexable(_rules[i]))
+            {
+                if (start < 0)
+                    start = i;
+            }
+            else
+            {
+                if (start >= 0)
+                    _segments.add(new Segment(start, i, new RuleIndex(_rules, start, i)));
+                start = -1;
+                _segments.add(new Segment(i, i + 1, null));
+            }
+        }
+        if (start >= 0)
+            _segments.add(new Segment(start, _rules.length, new RuleIndex(_rules, start, _rules.length)));
+    }
+
+    private static boolean isIndexable(Rule rule)
+    {
+        if (!INDEXABLE.get(rule.getClass()))
+            return false;
+        if (rule instanceof PatternRule patternRule)
+            return patternRule.getPattern() != null;
+        if (rule instanceof RegexRule regexRule)
+            return regexRule.getRegex() != null;
+        return false;
+    }
+
+    /**
+     * @return the number of rules that are indexed
+     */
+    int getIndexedRuleCount()
+    {
+        return _segments.stream()
+            .filter(segment -> segment._index != null)
+            .mapToInt(segment -> segment._end - segment._start)
+            .sum();
+    }
+
+    /**
+     * <p>Processes the rules, with the same semantic of {@link RuleContainer#matchAndApply(Rule.Handler)}.</p>
+     *
+     * @param input the input {@code Request} and {@code Handler}
+     * @return the output {@code Request} and {@code Handler}, or {@code null} if no rule matched
+     * @throws IOException if applying a rule failed
+     */
+    Rule.Handler matchAndApply(Rule.Handler input) throws IOException
+    {
+        boolean match = false;
+        for (Segment segment : _segments)
+        {
+            HttpURI uri = input.getHttpURI();
+            BitSet candidates = segment._index == null ? null : segment._index.getCandidates(uri);
+            int next = segment._start;
+            while (next < segment._end)
+            {
+                int index = next;
+                if (candidates != null)
+                {
+                    int candidate = candidates.nextSetBit(next - segment._start);
+                    if (candidate < 0)
+                        break;
+                    index = segment._start + candidate;
+                }
+                next = index + 1;
+
+                Rule rule = _rules[index];
+                if (LOG.isDebugEnabled())
+                    LOG.debug("applying {}", rule);
+                Rule.Handler output = rule.matchAndApply(input);
+                if (output == null)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("no match {}", rule);
+                    continue;
+                }
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("match {}", rule);
+
+                match = true;
+
+                // Chain the rules.
+                input = output;
+
+                if (rule.isTerminating())
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("terminating {}", rule);
+                    return input;
+                }
+
+                // The rule may have rewritten the URI, so the candidates must be looked up again.
+                HttpURI newURI = input.getHttpURI();
+                if (candidates != null && newURI != uri &&
+                    !(Objects.equals(newURI.getPath(), uri.getPath()) && Objects.equals(newURI.getPathQuery(), uri.getPathQuery())))
+                {
+                    uri = newURI;
+                    candidates = segment._index.getCandidates(uri);
+                }
+            }
+        }
+        return match ? input : null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[rules=%d,segments=%d,indexed=%d]".formatted(getClass().getSimpleName(), hashCode(), _rules.length, _segments.size(), getIndexedRuleCount());
+    }
+
+    /**
+     * <p>Returns the literal prefix that all the strings matched by the given regular expression start with.</p>
+     * <p>The prefix is computed conservatively: it stops at the first metacharacter, it excludes a
+     * literal character followed by a quantifier that allows zero occurrences, and it is empty if the
+     * regular expression has a top level alternation.</p>
+     *
+     * @param regex the regular expression
+     * @return the literal prefix, possibly empty
+     */
+    static String literalPrefix(String regex)
+    {
+        if (hasTopLevelAlternation(regex))
+            return "";
+
+        int start = regex.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < regex.length() && ".[]{}()*+?^$|\\".indexOf(regex.charAt(end)) < 0)
+        {
+            ++end;
+        }
+
+        // A quantifier that allows zero occurrences makes the last literal character optional.
+        if (end > start && end < regex.length() && "*?{".indexOf(regex.charAt(end)) >= 0)
+            --end;
+
+        return regex.substring(start, end);
+    }
+
+    private static boolean hasTopLevelAlternation(String regex)
+    {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); ++i)
+        {
+            char c = regex.charAt(i);
+            if (c == '\\')
+                ++i;
+            else if (inClass)
+                inClass = c != ']';
+            else if (c == '[')
+                inClass = true;
+            else if (c == '(')
+                ++depth;
+            else if (c == ')')
+                --depth;
+            else if (c == '|' && depth == 0)
+                return true;
+        }
+        return false;
+    }
+
+    private record Segment(int _start, int _end, RuleIndex _index)
+    {
+    }
+
+    /**
+     * <p>The index of a segment of {@link PatternRule}s and {@link RegexRule}s.</p>
+     * <p>The Servlet patterns are indexed with the same semantic of
+     * {@link org.eclipse.jetty.http.pathmap.ServletPathSpec#match(String, String)}:</p>
+     * <ul>
+     *   <li>{@code "/"} matches every path;</li>
+     *   <li>{@code "/foo/*"} matches {@code "/foo"} and the paths that start with {@code "/foo/"};</li>
+     *   <li>{@code "*.ext"} matches the paths that end with {@code ".ext"};</li>
+     *   <li>the empty pattern matches {@code "/"} and other patterns starting with {@code '/'} match exactly.</li>
+     * </ul>
+     */
+    private static class RuleIndex
+    {
+        private final BitSet _always = new BitSet();
+        private final Index.Mutable<BitSet> _exact = newIndex();
+        private final Index.Mutable<BitSet> _prefix = newIndex();
+        private final Index.Mutable<BitSet> _suffix = newIndex();
+        private final int[] _suffixLengths;
+        private final Index.Mutable<Prefixed> _regexPrefix = newIndex();
+
+        private static <V> Index.Mutable<V> newIndex()
+        {
+            return new Index.Builder<V>()
+                .caseSensitive(true)
+                .mutable()
+                .build();
+        }
+
+        private RuleIndex(Rule[] rules, int start, int end)
+        {
+            Map<String, BitSet> exact = new HashMap<>();
+            Map<String, BitSet> prefix = new HashMap<>();
+            Map<String, BitSet> suffix = new HashMap<>();
+            Map<String, BitSet> regexPrefix = new HashMap<>();
+            for (int i = start; i < end; ++i)
+            {
+                int bit = i - start;
+                if (rules[i] instanceof PatternRule patternRule)
+                {
+                    String pattern = patternRule.getPattern();
+                    if (pattern.isEmpty())
+                        exact.computeIfAbsent("/", k -> new BitSet()).set(bit);
+                    else if (pattern.equals("/"))
+                        _always.set(bit);
+                    else if (pattern.charAt(0) == '/')
+                    {
+                        exact.computeIfAbsent(pattern, k -> new BitSet()).set(bit);
+                        if (pattern.endsWith("/*"))
+                            prefix.computeIfAbsent(pattern.substring(0, pattern.length() - 2), k -> new BitSet()).set(bit);
+                    }
+                    else if (pattern.charAt(0) == '*')
+                        suffix.computeIfAbsent(pattern.substring(1), k -> new BitSet()).set(bit);
+                    // Other patterns never match.
+                }
+                else if (rules[i] instanceof RegexRule regexRule)
+                {
+                    String literalPrefix = literalPrefix(regexRule.getRegex());
+                    if (literalPrefix.isEmpty())
+                        _always.set(bit);
+                    else
+                        regexPrefix.computeIfAbsent(literalPrefix, k -> new BitSet()).set(bit);
+                }
+            }
+
+            exact.forEach(_exact::put);
+            prefix.forEach(_prefix::put);
+            suffix.forEach(_suffix::put);
+            regexPrefix.forEach((key, bits) -> _regexPrefix.put(key, new Prefixed(key.length(), bits)));
+            _suffixLengths = new TreeSet<>(suffix.keySet().stream().map(String::length).toList()).stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+        }
+
+        /**
+         * @param uri the request URI
+         * @return the indexes, relative to the segment start, of the rules that may match the given URI
+         */
+        private BitSet getCandidates(HttpURI uri)
+        {
+            BitSet candidates = (BitSet)_always.clone();
+
+            String path = uri.getPath();
+            if (path != null)
+            {
+                int length = path.length();
+
+                BitSet exact = _exact.get(path);
+                if (exact != null)
+                    candidates.or(exact);
+
+                // A prefix pattern "/foo/*" matches "/foo" and "/foo/...".
+                for (int i = 0; i <= length; ++i)
+                {
+                    if (i == length || path.charAt(i) == '/')
+                    {
+                        BitSet prefix = _prefix.get(path, 0, i);
+                        if (prefix != null)
+                            candidates.or(prefix);
+                    }
+                }
+
+                for (int suffixLength : _suffixLengths)
+                {
+                    if (suffixLength > length)
+                        break;
+                    BitSet suffix = _suffix.get(path, length - suffixLength, suffixLength);
+                    if (suffix != null)
+                        candidates.or(suffix);
+                }
+            }
+
+            // Regular expressions are matched against the path and query.
+            String target = uri.getPathQuery();
+            if (target != null)
+            {
+                int length = target.length();
+                while (length > 0)
+                {
+                    Prefixed prefixed = _regexPrefix.getBest(target, 0, length);
+                    if (prefixed == null)
+                        break;
+                    candidates.or(prefixed.rules());
+                    length = prefixed.length() - 1;
+                }
+            }
+
+            return candidates;
+        }
+
+        private record Prefixed(int length, BitSet rules)
+        {
+        }
+    }
+}
@@ -124,6 +124,22 @@ public class RewriteHandler extends Handler.Wrapper
         _rules.setOriginalPathAttribute(originalPathAttribute);
     }
 
+    /**
+     * @see RuleContainer#isCompiled()
+     */
+    public boolean isCompiled()
+    {
+        return _rules.isCompiled();
+    }
+
+    /**
+     * @see RuleContainer#setCompiled(boolean)
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _rules.setCompiled(compiled);
+    }
+
     @Override
     public boolean handle(Request request, Response response, Callback callback) throws Exception
     {
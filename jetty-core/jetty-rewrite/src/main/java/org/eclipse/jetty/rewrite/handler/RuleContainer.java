@@ -36,6 +36,8 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
 
     private String _originalPathAttribute;
     private String _originalQueryStringAttribute;
+    private boolean _compiled;
+    private volatile CompiledRules _compiledRules;
 
     /**
      * @return the list of {@code Rule}s
@@ -53,6 +55,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     {
         clear();
         _rules.addAll(rules);
+        _compiledRules = null;
     }
 
     @Override
@@ -69,6 +72,7 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     public void addRule(Rule rule)
     {
         _rules.add(rule);
+        _compiledRules = null;
     }
 
     /**
@@ -77,6 +81,34 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
     public void clear()
     {
         _rules.clear();
+        _compiledRules = null;
+    }
+
+    /**
+     * @return whether the rules are processed in compiled mode
+     * @see #setCompiled(boolean)
+     */
+    public boolean isCompiled()
+    {
+        return _compiled;
+    }
+
+    /**
+     * <p>Sets whether the rules are processed in compiled mode.</p>
+     * <p>In compiled mode, consecutive {@link PatternRule}s and {@link RegexRule}s are indexed
+     * by their patterns, so that for each request only the rules that may match are invoked,
+     * rather than all the rules in order.
+     * The first-match and terminating semantics are the same as in non-compiled mode.</p>
+     * <p>The index is built the first time the rules are processed, and it is rebuilt when
+     * the rules are added, set or cleared; rules must not be modified once they have been
+     * processed in compiled mode.</p>
+     *
+     * @param compiled whether the rules are processed in compiled mode
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _compiled = compiled;
+        _compiledRules = null;
     }
 
     /**
@@ -124,6 +156,14 @@ public class RuleContainer extends Rule implements Iterable<Rule>, Dumpable
                 input.setAttribute(originalQueryStringAttribute, httpURI.getQuery());
         }
 
+        if (isCompiled())
+        {
+            CompiledRules compiledRules = _compiledRules;
+            if (compiledRules == null)
+                _compiledRules = compiledRules = new CompiledRules(_rules);
+            return compiledRules.matchAndApply(input);
+        }
+
         boolean match = false;
         for (Rule rule : _rules)
         {
@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompiledRulesTest extends AbstractRuleTest
+{
+    public static Stream<Arguments> requests()
+    {
+        return Stream.of(true, false).flatMap(compiled -> Stream.of(
+            Arguments.of(compiled, "/docs/index.html", "/docs/index.html", List.of("docs", "html", "docs2", "default")),
+            Arguments.of(compiled, "/docs", "/docs", List.of("docs", "docs2", "default")),
+            Arguments.of(compiled, "/docsx", "/docsx", List.of("default")),
+            Arguments.of(compiled, "/old/index.html", "/docs/index.html", List.of("html", "docs2", "default")),
+            Arguments.of(compiled, "/api/v2/items?id=1", "/api/v2/items", List.of("api", "default")),
+            Arguments.of(compiled, "/api/vx/items", "/api/vx/items", List.of("default")),
+            Arguments.of(compiled, "/exact", "/exact", List.of("exact", "default")),
+            Arguments.of(compiled, "/exact/", "/exact/", List.of("default")),
+            Arguments.of(compiled, "/stop/here", "/stop/here", List.of()),
+            Arguments.of(compiled, "/other.jsp", "/other.jsp", List.of("alt", "default"))
+        ));
+    }
+
+    @ParameterizedTest
+    @MethodSource("requests")
+    public void testCompiledRulesSameAsLinear(boolean compiled, String uri, String expectedPath, List<String> expectedRules) throws Exception
+    {
+        _rewriteHandler.addRule(newHeaderPatternRule("/docs/*", "docs"));
+        _rewriteHandler.addRule(newHeaderPatternRule("*.html", "html"));
+        _rewriteHandler.addRule(newHeaderRegexRule("^/api/v[0-9]+/.*", "api"));
+        _rewriteHandler.addRule(new RewriteRegexRule("/old/(.*)", "/docs/$1"));
+        _rewriteHandler.addRule(newHeaderPatternRule("/docs/*", "docs2"));
+        _rewriteHandler.addRule(newHeaderPatternRule("/exact", "exact"));
+        _rewriteHandler.addRule(newHeaderRegexRule("/index|/other\\.jsp", "alt"));
+        _rewriteHandler.addRule(new TerminatingPatternRule("/stop/*"));
+        _rewriteHandler.addRule(newHeaderPatternRule("/", "default"));
+        _rewriteHandler.setCompiled(compiled);
+
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                response.getHeaders().put("X-Path", Request.getPathInContext(request));
+                callback.succeeded();
+                return true;
+            }
+        });
+
+        String request = """
+            GET $U HTTP/1.1
+            Host: localhost
+
+            """.replace("$U", uri);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(expectedPath, response.get("X-Path"));
+        assertEquals(expectedRules, response.getValuesList("X-Rule"));
+    }
+
+    @Test
+    public void testCompiledRulesWithCustomRule() throws Exception
+    {
+        _rewriteHandler.addRule(newHeaderPatternRule("/a/*", "a"));
+        _rewriteHandler.addRule(new Rule()
+        {
+            @Override
+            public Handler matchAndApply(Handler input)
+            {
+                return new Handler(input)
+                {
+                    @Override
+                    protected boolean handle(Response response, Callback callback) throws Exception
+                    {
+                        response.getHeaders().add("X-Rule", "custom");
+                        return super.handle(response, callback);
+                    }
+                };
+            }
+        });
+        _rewriteHandler.addRule(newHeaderPatternRule("*.txt", "txt"));
+        _rewriteHandler.setCompiled(true);
+
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+
+        String request = """
+            GET /a/b.txt HTTP/1.1
+            Host: localhost
+
+            """;
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(List.of("a", "custom", "txt"), response.getValuesList("X-Rule"));
+    }
+
+    @Test
+    public void testLiteralPrefix()
+    {
+        assertEquals("/api/v", CompiledRules.literalPrefix("^/api/v[0-9]+/.*"));
+        assertEquals("/login", CompiledRules.literalPrefix("/login.jsp"));
+        assertEquals("/logi", CompiledRules.literalPrefix("/login?"));
+        assertEquals("/ab", CompiledRules.literalPrefix("/abc*"));
+        assertEquals("/abc", CompiledRules.literalPrefix("/abc+"));
+        assertEquals("/a", CompiledRules.literalPrefix("/a(b|c)"));
+        assertEquals("", CompiledRules.literalPrefix("/a|/b"));
+        assertEquals("", CompiledRules.literalPrefix(".*"));
+    }
+
+    private static HeaderPatternRule newHeaderPatternRule(String pattern, String value)
+    {
+        HeaderPatternRule rule = new HeaderPatternRule(pattern, "X-Rule", value);
+        rule.setAdd(true);
+        return rule;
+    }
+
+    private static HeaderRegexRule newHeaderRegexRule(String regex, String value)
+    {
+        HeaderRegexRule rule = new HeaderRegexRule(regex, "X-Rule", value);
+        rule.setAdd(true);
+        return rule;
+    }
+}
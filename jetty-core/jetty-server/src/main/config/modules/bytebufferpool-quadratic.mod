@@ -29,3 +29,7 @@ etc/jetty-bytebufferpool-quadratic.xml
 
 ## Maximum direct memory held idle by the pool (0 for heuristic, -1 for unlimited).
 #jetty.byteBufferPool.maxDirectMemory=0
+
+## Number of buffers cached per thread stripe in front of each bucket (0 to disable).
+## May reduce contention on machines with many cores.
+#jetty.byteBufferPool.frontCacheSize=0
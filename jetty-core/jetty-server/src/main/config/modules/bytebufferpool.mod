@@ -34,3 +34,7 @@ etc/jetty-bytebufferpool.xml
 
 ## Whether statistics are enabled.
 #jetty.byteBufferPool.statisticsEnabled=false
+
+## Number of buffers cached per thread stripe in front of each bucket (0 to disable).
+## May reduce contention on machines with many cores.
+#jetty.byteBufferPool.frontCacheSize=0
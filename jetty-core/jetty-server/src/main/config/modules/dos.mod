@@ -0,0 +1,30 @@
+[description]
+Applies DoSHandler to entire server, to limit the request rate per IP address for DOS protection.
+
+[tags]
+server
+
+[depend]
+server
+
+[xml]
+etc/jetty-dos.xml
+
+[ini-template]
+## The maximum number of requests per second for each remote IP address.
+#jetty.dos.maxRequestsPerSecond=100
+
+## The number of counters in each row of the request rate sketch.
+#jetty.dos.sketchWidth=8192
+
+## The number of rows of the request rate sketch.
+#jetty.dos.sketchDepth=4
+
+## The status code of the responses to rejected requests.
+#jetty.dos.rejectStatus=429
+
+## The delay in milliseconds applied to requests that exceed the rate, 0 to reject them.
+#jetty.dos.delayMs=0
+
+## The maximum number of concurrently delayed requests.
+#jetty.dos.maxDelayedRequestCount=1024
@@ -43,6 +43,10 @@ etc/jetty-http.xml
 ## Whether to enable the SO_REUSEPORT socket option.
 # jetty.http.reusePort=false
 
+## Whether to open one SO_REUSEPORT listening socket per acceptor
+## (or per selector if there are no acceptors).
+# jetty.http.reusePortListeners=false
+
 ## Whether to enable the TCP_NODELAY socket option on accepted sockets.
 # jetty.http.acceptedTcpNoDelay=true
 
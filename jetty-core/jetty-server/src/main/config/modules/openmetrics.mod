@@ -0,0 +1,22 @@
+# DO NOT EDIT THIS FILE - See: https://eclipse.dev/jetty/documentation/
+
+[description]
+Exposes the server statistics in the OpenMetrics text format,
+to be scraped by Prometheus and compatible monitoring systems.
+Enable also the statistics module to expose request and connection metrics.
+
+[tags]
+server
+
+[depend]
+server
+
+[after]
+statistics
+
+[xml]
+etc/jetty-openmetrics.xml
+
+[ini-template]
+## The path of the metrics resource.
+#jetty.openmetrics.path=/metrics
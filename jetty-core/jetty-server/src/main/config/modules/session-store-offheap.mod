@@ -0,0 +1,29 @@
+# DO NOT EDIT THIS FILE - See: https://eclipse.dev/jetty/documentation/
+
+[description]
+Enables session storage in off-heap memory.
+Sessions are not persisted across restarts.
+
+[tags]
+session
+
+[provides]
+session-store
+
+[depends]
+sessions
+
+[xml]
+etc/sessions/offheap/session-store.xml
+
+[ini-template]
+## Memory map the session storage to a file in this directory (default uses direct memory).
+#jetty.session.offheap.storeDir=${jetty.base}/sessions
+#jetty.session.offheap.segmentSize=16777216
+#jetty.session.offheap.maxMemory=-1
+#jetty.session.gracePeriod.seconds=3600
+#jetty.session.savePeriod.seconds=0
+
+## Evict sessions from the heap cache when the last request leaves them
+## (requires the session-cache-hash module).
+#jetty.session.evictionPolicy=0
@@ -0,0 +1,21 @@
+# DO NOT EDIT THIS FILE - See: https://eclipse.dev/jetty/documentation/
+
+[description]
+Enables deferred, batched writes of SessionData to a SessionDataStore.
+
+[tags]
+session
+
+[depend]
+session-store
+
+[xml]
+etc/sessions/session-write-behind-store.xml
+
+[ini-template]
+## The max time in ms that session writes are deferred, which bounds
+## the session writes lost on a crash; 0 writes synchronously.
+#jetty.session.writeBehind.flushPeriodMs=1000
+
+## The max number of sessions written in a single batch.
+#jetty.session.writeBehind.maxBatchSize=100
@@ -45,6 +45,10 @@ etc/jetty-ssl-context.xml
 ## Whether to enable the SO_REUSEPORT socket option.
 # jetty.ssl.reusePort=false
 
+## Whether to open one SO_REUSEPORT listening socket per acceptor
+## (or per selector if there are no acceptors).
+# jetty.ssl.reusePortListeners=false
+
 ## Whether to enable the TCP_NODELAY socket option on accepted sockets.
 # jetty.ssl.acceptedTcpNoDelay=true
 
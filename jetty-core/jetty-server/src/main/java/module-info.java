@@ -28,4 +28,6 @@ module org.eclipse.jetty.server
 
     exports org.eclipse.jetty.server.jmx to
          org.eclipse.jetty.jmx;
+
+    uses org.eclipse.jetty.util.compression.CompressionEncoder.Factory;
 }
@@ -58,6 +58,7 @@ public interface Deployable
     String CONTEXT_PATH = "jetty.deploy.contextPath";
     String CONTEXT_HANDLER_CLASS = "jetty.deploy.contextHandlerClass";
     String DEFAULTS_DESCRIPTOR = "jetty.deploy.defaultsDescriptor";
+    String DEPENDS_ON = "jetty.deploy.dependsOn";
     String ENVIRONMENT = "environment";
     String ENVIRONMENT_XML = "jetty.deploy.environmentXml";
     String EXTRACT_WARS = "jetty.deploy.extractWars";
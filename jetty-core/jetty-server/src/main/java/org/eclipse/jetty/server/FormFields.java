@@ -27,7 +27,9 @@ import org.eclipse.jetty.util.Attributes;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.CharsetStringBuilder;
 import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.Index;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.Utf8StringBuilder;
 
 import static org.eclipse.jetty.util.UrlEncoded.decodeHexByte;
 
@@ -193,6 +195,29 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
         return futureFormFields;
     }
 
+    /**
+     * <p>Decodes the {@code application/x-www-form-urlencoded} content from a {@link Content.Source},
+     * notifying the given {@link Visitor} of the fields as they are decoded.</p>
+     * <p>Unlike {@link #from(Request)}, the fields are not accumulated in a {@link Fields} instance:
+     * field names that are present in the given {@link Index} are notified with the indexed instance,
+     * without allocating a new {@link String}, and UTF-8 values are notified as they are decoded from
+     * the chunks of content, possibly in multiple portions, without allocating a {@link String}.</p>
+     *
+     * @param source The {@link Content.Source} from which to read the fields.
+     * @param charset the {@link Charset} to use for byte to string conversion.
+     * @param names the case-sensitive {@link Index} of well known field names, or {@code null}
+     * @param maxFields The maximum number of fields to be parsed, or -1 for no limit
+     * @param maxLength The maximum total size of the fields, or -1 for no limit
+     * @param visitor the {@link Visitor} notified of the fields
+     * @return A {@link CompletableFuture} that will provide the number of fields or a failure.
+     */
+    public static CompletableFuture<Integer> visit(Content.Source source, Charset charset, Index<String> names, int maxFields, int maxLength, Visitor visitor)
+    {
+        FieldsDecoder decoder = new FieldsDecoder(source, charset, names, maxFields, maxLength, visitor);
+        decoder.parse();
+        return decoder;
+    }
+
     private static int getContextAttribute(Context context, String attribute, int defValue)
     {
         Object value = context.getAttribute(attribute);
@@ -328,4 +353,218 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
         if (_maxFields >= 0 && _fields.getSize() > _maxFields)
             throw new IllegalStateException("form with too many fields > " + _maxFields);
     }
+
+    /**
+     * <p>A visitor of the fields of {@code application/x-www-form-urlencoded} content.</p>
+     *
+     * @see #visit(Content.Source, Charset, Index, int, int, Visitor)
+     */
+    public interface Visitor
+    {
+        /**
+         * <p>Called when the name of a field has been decoded.</p>
+         *
+         * @param name the field name, which is the instance from the {@link Index} of names if present there
+         */
+        void onName(String name);
+
+        /**
+         * <p>Called when a portion of the value of the current field has been decoded.</p>
+         * <p>The value may be notified in multiple portions, the last one having
+         * {@code last==true}, possibly with an empty {@link CharSequence}.
+         * The {@link CharSequence} is only valid during this call, and must be
+         * copied if it is needed afterwards.</p>
+         *
+         * @param value the portion of the field value
+         * @param last whether this is the last portion of the field value
+         */
+        void onValue(CharSequence value, boolean last);
+    }
+
+    private static class FieldsDecoder extends ContentSourceCompletableFuture<Integer>
+    {
+        private final StringBuilder _chars = new StringBuilder();
+        private final CharsetStringBuilder _builder;
+        private final Utf8StringBuilder _utf8;
+        private final Index<String> _names;
+        private final int _maxFields;
+        private final int _maxLength;
+        private final Visitor _visitor;
+        private ByteBuffer _nameBuffer = ByteBuffer.allocate(64);
+        private boolean _value;
+        private int _fields;
+        private int _length;
+        private int _percent;
+        private byte _percentCode;
+
+        private FieldsDecoder(Content.Source source, Charset charset, Index<String> names, int maxFields, int maxLength, Visitor visitor)
+        {
+            super(source);
+            _utf8 = StandardCharsets.UTF_8.equals(charset) ? new Utf8StringBuilder(_chars) {} : null;
+            _builder = _utf8 != null ? _utf8 : CharsetStringBuilder.forCharset(charset);
+            _names = names;
+            _maxFields = maxFields;
+            _maxLength = maxLength;
+            _visitor = visitor;
+        }
+
+        @Override
+        protected Integer parse(Content.Chunk chunk) throws CharacterCodingException
+        {
+            ByteBuffer buffer = chunk.getByteBuffer();
+
+            while (BufferUtil.hasContent(buffer))
+            {
+                byte b = buffer.get();
+                switch (_percent)
+                {
+                    case 1 ->
+                    {
+                        _percentCode = b;
+                        _percent++;
+                        continue;
+                    }
+                    case 2 ->
+                    {
+                        _percent = 0;
+                        append(decodeHexByte((char)_percentCode, (char)b));
+                        continue;
+                    }
+                }
+
+                switch (b)
+                {
+                    case '&' ->
+                    {
+                        if (!_value)
+                            onName();
+                        onValue(true);
+                        _value = false;
+                    }
+                    case '=' ->
+                    {
+                        if (_value)
+                        {
+                            append(b);
+                        }
+                        else
+                        {
+                            onName();
+                            _value = true;
+                        }
+                    }
+                    case '+' -> append((byte)' ');
+                    case '%' -> _percent++;
+                    default -> append(b);
+                }
+            }
+
+            if (!chunk.isLast())
+            {
+                // Notify the portion of the value decoded so far, so that it is not accumulated.
+                if (_value && _utf8 != null && _chars.length() > 0)
+                    onValue(false);
+                return null;
+            }
+
+            if (_percent > 0)
+                throw new IllegalStateException("invalid percent encoding");
+
+            if (_value)
+            {
+                onValue(true);
+            }
+            else if (_builder.length() > 0 || _nameBuffer.position() > 0)
+            {
+                onName();
+                onValue(true);
+            }
+            return _fields;
+        }
+
+        private void append(byte b)
+        {
+            _builder.append(b);
+            if (!_value && _names != null)
+            {
+                if (!_nameBuffer.hasRemaining())
+                    _nameBuffer = ByteBuffer.allocate(_nameBuffer.capacity() * 2).put(_nameBuffer.flip());
+                _nameBuffer.put(b);
+            }
+        }
+
+        private void onName() throws CharacterCodingException
+        {
+            ++_fields;
+            if (_maxFields >= 0 && _fields > _maxFields)
+                throw new IllegalStateException("form with too many fields > " + _maxFields);
+
+            String name = null;
+            if (_names != null)
+            {
+                int length = _nameBuffer.position();
+                name = _names.get(_nameBuffer, 0, length);
+                if (name != null && !matches(name, _nameBuffer, length))
+                    name = null;
+                _nameBuffer.clear();
+            }
+            if (name == null)
+            {
+                name = _builder.build();
+            }
+            else
+            {
+                if (_utf8 != null && _utf8.hasCodingErrors())
+                    throw new Utf8StringBuilder.Utf8CharacterCodingException();
+                _builder.reset();
+            }
+            checkMaxLength(name.length());
+            _visitor.onName(name);
+        }
+
+        private static boolean matches(String name, ByteBuffer bytes, int length)
+        {
+            if (name.length() != length)
+                return false;
+            for (int i = 0; i < length; ++i)
+            {
+                if (name.charAt(i) != (char)(bytes.get(i) & 0xFF))
+                    return false;
+            }
+            return true;
+        }
+
+        private void onValue(boolean last) throws CharacterCodingException
+        {
+            if (_utf8 == null)
+            {
+                String value = _builder.build();
+                checkMaxLength(value.length());
+                _visitor.onValue(value, true);
+                return;
+            }
+
+            if (last)
+                _utf8.complete();
+            if (_utf8.hasCodingErrors())
+                throw new Utf8StringBuilder.Utf8CharacterCodingException();
+            checkMaxLength(_chars.length());
+            _visitor.onValue(_chars, last);
+            // Retain the decoding state of a UTF-8 sequence split across chunks.
+            if (last)
+                _utf8.reset();
+            else
+                _utf8.partialReset();
+        }
+
+        private void checkMaxLength(int length)
+        {
+            if (_maxLength >= 0)
+            {
+                _length += length;
+                if (_length > _maxLength)
+                    throw new IllegalStateException("form too large > " + _maxLength);
+            }
+        }
+    }
 }
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.MetaData;
@@ -82,6 +83,33 @@ public interface HttpStream extends Callback
      */
     void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback);
 
+    /**
+     * @return whether this stream supports {@link #transferFrom(FileChannel, long, long, Callback)}
+     */
+    default boolean isFileTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Sends response data from a region of a file, possibly without copying
+     * the file bytes into user space.</p>
+     * <p>The response must have already been committed by a previous call to
+     * {@link #send(MetaData.Request, MetaData.Response, boolean, ByteBuffer, Callback)}
+     * with a known content length, and the response must be completed by a
+     * subsequent call to {@code send(...)}.</p>
+     *
+     * @param file the file to send data from
+     * @param position the position in the file of the first byte to send
+     * @param length the number of bytes to send
+     * @param callback The callback to invoke when the transfer is completed successfully or in failure.
+     * @see #isFileTransferSupported()
+     */
+    default void transferFrom(FileChannel file, long position, long length, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
+
     /**
      * <p>Pushes the given {@code resource} to the client.</p>
      *
@@ -179,6 +207,18 @@ public interface HttpStream extends Callback
             getWrapped().send(request, response, last, content, callback);
         }
 
+        @Override
+        public boolean isFileTransferSupported()
+        {
+            return getWrapped().isFileTransferSupported();
+        }
+
+        @Override
+        public void transferFrom(FileChannel file, long position, long length, Callback callback)
+        {
+            getWrapped().transferFrom(file, position, length, callback);
+        }
+
         @Override
         public void push(MetaData.Request resource)
         {
@@ -15,8 +15,11 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,7 +49,9 @@ import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.io.IOResources;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.resource.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,6 +76,7 @@ public class ResourceService
     private boolean _dirAllowed = true;
     private boolean _acceptRanges = true;
     private HttpField _cacheControl;
+    private long _fileTransferThreshold = -1;
 
     public ResourceService()
     {
@@ -682,8 +688,11 @@ public class ResourceService
             response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
             response.getHeaders().put(HttpHeader.CONTENT_RANGE, range.toHeaderValue(contentLength));
 
-            // TODO use a buffer pool
-            IOResources.copy(content.getResource(), response, null, 0, false, range.first(), range.getLength(), callback);
+            if (!transferFile(response, callback, content, range.first(), range.getLength()))
+            {
+                // TODO use a buffer pool
+                IOResources.copy(content.getResource(), response, null, 0, false, range.first(), range.getLength(), callback);
+            }
             return;
         }
 
@@ -709,7 +718,7 @@ public class ResourceService
             {
                 response.write(true, buffer, callback);
             }
-            else
+            else if (!transferFile(response, callback, content, 0, content.getContentLengthValue()))
             {
                 IOResources.copy(
                     content.getResource(),
@@ -726,6 +735,38 @@ public class ResourceService
         }
     }
 
+    /**
+     * <p>Writes a region of the content file with a zero-copy file transfer, if
+     * the content is large enough and the response supports file transfers.</p>
+     *
+     * @param response the response to write to
+     * @param callback the callback to notify when the region is written
+     * @param content the content to write
+     * @param position the position in the file of the first byte to write
+     * @param length the number of bytes to write
+     * @return {@code true} if the file transfer was initiated, {@code false} if the
+     * content must be written by other means
+     * @throws IOException if the file cannot be opened
+     * @see #setFileTransferThreshold(long)
+     * @see Response#isFileTransferSupported(Response)
+     */
+    protected boolean transferFile(Response response, Callback callback, HttpContent content, long position, long length) throws IOException
+    {
+        long threshold = getFileTransferThreshold();
+        if (threshold < 0 || length < threshold)
+            return false;
+        Resource resource = content.getResource();
+        Path path = resource == null ? null : resource.getPath();
+        if (path == null || !Response.isFileTransferSupported(response))
+            return false;
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferring {}+{} of {}", position, length, path);
+        Response.transferFrom(response, true, channel, position, length, Callback.from(callback, () -> IO.close(channel)));
+        return true;
+    }
+
     protected void putHeaders(Response response, HttpContent content, long contentLength)
     {
         // TODO it is very inefficient to do many put's to a HttpFields, as each put is a full iteration.
@@ -779,6 +820,32 @@ public class ResourceService
             response.getHeaders().put(_cacheControl);
     }
 
+    /**
+     * @return the minimum length of the file content that is written with a
+     * zero-copy file transfer, or {@code -1} if file transfers are disabled
+     * @see #setFileTransferThreshold(long)
+     */
+    public long getFileTransferThreshold()
+    {
+        return _fileTransferThreshold;
+    }
+
+    /**
+     * <p>Sets the minimum length of the file content that is written with a zero-copy
+     * file transfer (via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}),
+     * rather than being copied through buffers.</p>
+     * <p>File transfers are only used for content that is not cached in memory, and
+     * only if the connection supports them, which is typically the case for cleartext
+     * HTTP/1.1; other connections, such as TLS or HTTP/2 ones, use the buffered copy.</p>
+     *
+     * @param fileTransferThreshold the minimum length of the file content, or {@code -1}
+     * to disable file transfers
+     */
+    public void setFileTransferThreshold(long fileTransferThreshold)
+    {
+        _fileTransferThreshold = fileTransferThreshold;
+    }
+
     /**
      * @return If true, range requests and responses are supported
      */
@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ListIterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
@@ -646,6 +647,52 @@ public interface Response extends Content.Sink
         return -1;
     }
 
+    /**
+     * <p>Returns whether the given response supports
+     * {@link #transferFrom(Response, boolean, FileChannel, long, long, Callback) file transfers}.</p>
+     * <p>File transfers are supported only if the response is not wrapped by a
+     * {@link Wrapper} that overrides {@link #write(boolean, ByteBuffer, Callback)},
+     * and if the underlying {@link HttpStream} can write file regions directly
+     * to the network, for example via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.</p>
+     *
+     * @param response the HTTP response
+     * @return whether the response supports file transfers
+     */
+    static boolean isFileTransferSupported(Response response)
+    {
+        while (response instanceof Response.Wrapper wrapper)
+        {
+            if (Wrapper.WRITE_OVERRIDDEN.get(wrapper.getClass()))
+                return false;
+            response = wrapper.getWrapped();
+        }
+        return response instanceof HttpChannelState.ChannelResponse channelResponse && channelResponse.isFileTransferSupported();
+    }
+
+    /**
+     * <p>Writes a region of a file as response content, possibly without copying
+     * the file bytes into user space.</p>
+     * <p>The response must have a known content length, either because it is
+     * already committed with a {@code Content-Length} or because the
+     * {@code Content-Length} header is set.
+     * The file channel is not closed by this method.</p>
+     *
+     * @param response the HTTP response
+     * @param last whether this is the last write of the response
+     * @param file the file to transfer bytes from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback the callback to notify when the transfer is complete
+     * @see #isFileTransferSupported(Response)
+     */
+    static void transferFrom(Response response, boolean last, FileChannel file, long position, long length, Callback callback)
+    {
+        if (isFileTransferSupported(response))
+            ((HttpChannelState.ChannelResponse)getOriginalResponse(response)).transferFrom(last, file, position, length, callback);
+        else
+            callback.failed(new UnsupportedOperationException("File transfer not supported by " + response));
+    }
+
     /**
      * <p>Wraps a {@link Response} as a {@link OutputStream} that performs buffering. The necessary
      * {@link ByteBufferPool} is taken from the request's connector while the size and direction of the buffer
@@ -682,6 +729,22 @@ public interface Response extends Content.Sink
 
     class Wrapper implements Response
     {
+        private static final ClassValue<Boolean> WRITE_OVERRIDDEN = new ClassValue<>()
+        {
+            @Override
+            protected Boolean computeValue(Class<?> type)
+            {
+                try
+                {
+                    return type.getMethod("write", boolean.class, ByteBuffer.class, Callback.class).getDeclaringClass() != Wrapper.class;
+                }
+                catch (NoSuchMethodException x)
+                {
+                    return true;
+                }
+            }
+        };
+
         private final Request _request;
         private final Response _wrapped;
 
@@ -26,7 +26,9 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.EventListener;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -68,6 +70,15 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * which should allow optimal performance even if all the connections used are performing
  * significant non-blocking work in the callback tasks.
  * </p>
+ * <h2>Reuse Port Listeners</h2>
+ * <p>
+ * By default, a single listening socket is opened and shared by all the acceptors.
+ * If {@link #setReusePortListeners(boolean)} is enabled, then one listening socket per acceptor
+ * (or per selector if there are no acceptors) is opened with the {@code SO_REUSEPORT} socket option,
+ * so that the kernel load balances new connections across the listening sockets.
+ * Each listening socket is pinned to its own subset of selectors, so that there is no
+ * contention on a shared accept queue and no hand-off of accepted connections.
+ * </p>
  */
 @ManagedObject("HTTP connector using NIO ByteChannels and Selectors")
 public class ServerConnector extends AbstractNetworkConnector
@@ -80,6 +91,8 @@ public class ServerConnector extends AbstractNetworkConnector
     private volatile int _acceptQueueSize = 0;
     private volatile boolean _reuseAddress = true;
     private volatile boolean _reusePort = false;
+    private volatile boolean _reusePortListeners = false;
+    private volatile Listener[] _listeners;
     private volatile boolean _acceptedTcpNoDelay = true;
     private volatile int _acceptedReceiveBufferSize = -1;
     private volatile int _acceptedSendBufferSize = -1;
@@ -224,6 +237,14 @@ public class ServerConnector extends AbstractNetworkConnector
     protected void doStart() throws Exception
     {
         addBean(_acceptChannel);
+        Listener[] listeners = _listeners;
+        if (listeners != null)
+        {
+            for (int i = 1; i < listeners.length; ++i)
+            {
+                addBean(listeners[i]._channel);
+            }
+        }
 
         for (EventListener l : getBeans(SelectorManager.SelectorManagerListener.class))
             _manager.addEventListener(l);
@@ -231,10 +252,7 @@ public class ServerConnector extends AbstractNetworkConnector
         super.doStart();
 
         if (getAcceptors() == 0)
-        {
-            _acceptChannel.configureBlocking(false);
-            _acceptor.set(_manager.acceptor(_acceptChannel));
-        }
+            _acceptor.set(newSelectorAcceptor());
     }
 
     @Override
@@ -246,6 +264,15 @@ public class ServerConnector extends AbstractNetworkConnector
 
         removeBean(_acceptChannel);
         _acceptChannel = null;
+        Listener[] listeners = _listeners;
+        if (listeners != null)
+        {
+            for (int i = 1; i < listeners.length; ++i)
+            {
+                removeBean(listeners[i]._channel);
+            }
+        }
+        _listeners = null;
 
         for (EventListener l : getBeans(EventListener.class))
         {
@@ -311,6 +338,7 @@ public class ServerConnector extends AbstractNetworkConnector
         if (_acceptChannel == null)
         {
             open(openAcceptChannel());
+            openReusePortListeners();
             super.open();
         }
     }
@@ -336,21 +364,93 @@ public class ServerConnector extends AbstractNetworkConnector
         if (serverChannel == null)
         {
             InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
-            serverChannel = ServerSocketChannel.open();
-            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
-            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort());
-            try
+            serverChannel = bindServerChannel(bindAddress);
+        }
+
+        return serverChannel;
+    }
+
+    private ServerSocketChannel bindServerChannel(InetSocketAddress bindAddress) throws IOException
+    {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
+        setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort() || isReusePortListeners());
+        try
+        {
+            serverChannel.bind(bindAddress, getAcceptQueueSize());
+        }
+        catch (Throwable e)
+        {
+            IO.close(serverChannel);
+            throw new IOException("Failed to bind to " + bindAddress, e);
+        }
+        return serverChannel;
+    }
+
+    /**
+     * <p>Opens the additional listening sockets when {@link #isReusePortListeners()} is enabled.</p>
+     * <p>The additional sockets are bound to the same address as the accept channel,
+     * which must have the {@code SO_REUSEPORT} socket option enabled, otherwise
+     * only the accept channel is used.</p>
+     *
+     * @throws IOException if an additional listening socket cannot be bound
+     */
+    private void openReusePortListeners() throws IOException
+    {
+        if (!isReusePortListeners())
+            return;
+
+        int selectors = _manager.getSelectorCount();
+        int count = getAcceptors() > 0 ? getAcceptors() : selectors;
+        if (count <= 1)
+            return;
+
+        ServerSocketChannel acceptChannel = _acceptChannel;
+        if (!isReusePortEnabled(acceptChannel))
+        {
+            LOG.warn("SO_REUSEPORT not enabled on {}, using a single listening socket for {}", acceptChannel, this);
+            return;
+        }
+
+        InetSocketAddress bindAddress = (InetSocketAddress)acceptChannel.getLocalAddress();
+        Listener[] listeners = new Listener[count];
+        try
+        {
+            for (int i = 0; i < count; ++i)
             {
-                serverChannel.bind(bindAddress, getAcceptQueueSize());
+                ServerSocketChannel channel = i == 0 ? acceptChannel : bindServerChannel(bindAddress);
+                channel.configureBlocking(true);
+                // Pin each listener to its own subset of selectors.
+                int from = selectors >= count ? i * selectors / count : i % selectors;
+                int to = selectors >= count ? (i + 1) * selectors / count : from + 1;
+                listeners[i] = new Listener(channel, from, to - from);
             }
-            catch (Throwable e)
+        }
+        catch (Throwable x)
+        {
+            for (int i = 1; i < count; ++i)
             {
-                IO.close(serverChannel);
-                throw new IOException("Failed to bind to " + bindAddress, e);
+                if (listeners[i] != null)
+                    IO.close(listeners[i]._channel);
             }
+            throw x;
         }
+        _listeners = listeners;
+    }
 
-        return serverChannel;
+    private boolean isReusePortEnabled(ServerSocketChannel channel)
+    {
+        try
+        {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT) &&
+                channel.getOption(StandardSocketOptions.SO_REUSEPORT);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not read {} on {}", StandardSocketOptions.SO_REUSEPORT, channel, x);
+            return false;
+        }
     }
 
     private <T> void setSocketOption(ServerSocketChannel channel, SocketOption<T> option, T value)
@@ -375,7 +475,17 @@ public class ServerConnector extends AbstractNetworkConnector
         // to be closed by the SelectorManager when the
         // SelectorManager is stopped (as a bean) in doStop().
         if (getAcceptors() > 0)
+        {
             IO.close(_acceptChannel);
+            Listener[] listeners = _listeners;
+            if (listeners != null)
+            {
+                for (Listener listener : listeners)
+                {
+                    IO.close(listener._channel);
+                }
+            }
+        }
 
         _localPort = -2;
     }
@@ -383,6 +493,19 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     public void accept(int acceptorID) throws IOException
     {
+        Listener[] listeners = _listeners;
+        if (listeners != null)
+        {
+            Listener listener = listeners[acceptorID % listeners.length];
+            ServerSocketChannel serverChannel = listener._channel;
+            if (serverChannel.isOpen())
+            {
+                SocketChannel channel = serverChannel.accept();
+                accepted(channel, listener.nextSelector());
+            }
+            return;
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         if (serverChannel != null && serverChannel.isOpen())
         {
@@ -392,11 +515,19 @@ public class ServerConnector extends AbstractNetworkConnector
     }
 
     private void accepted(SocketChannel channel) throws IOException
+    {
+        accepted(channel, -1);
+    }
+
+    private void accepted(SocketChannel channel, int selector) throws IOException
     {
         channel.configureBlocking(false);
         Socket socket = channel.socket();
         configure(socket);
-        _manager.accept(channel);
+        if (selector < 0)
+            _manager.accept(channel);
+        else
+            _manager.accept(channel, null, selector);
     }
 
     protected void configure(Socket socket)
@@ -496,6 +627,43 @@ public class ServerConnector extends AbstractNetworkConnector
         _reusePort = reusePort;
     }
 
+    /**
+     * @return whether one {@code SO_REUSEPORT} listening socket is opened per acceptor
+     * @see #setReusePortListeners(boolean)
+     */
+    @ManagedAttribute("Server Socket SO_REUSEPORT listening socket per acceptor")
+    public boolean isReusePortListeners()
+    {
+        return _reusePortListeners;
+    }
+
+    /**
+     * <p>Sets whether one listening socket is opened per acceptor, or per selector if there are
+     * no acceptors, all bound to the same host and port with the {@code SO_REUSEPORT} socket option.</p>
+     * <p>The kernel load balances new connections across the listening sockets, and each
+     * listening socket registers the connections it accepts with its own subset of selectors.
+     * If {@code SO_REUSEPORT} is not supported, or if the accept channel is inherited or provided
+     * via {@link #open(ServerSocketChannel)}, a single listening socket is used.</p>
+     *
+     * @param reusePortListeners whether one {@code SO_REUSEPORT} listening socket is opened per acceptor
+     */
+    public void setReusePortListeners(boolean reusePortListeners)
+    {
+        _reusePortListeners = reusePortListeners;
+    }
+
+    /**
+     * @return the number of listening sockets, or 0 if the connector is not open
+     */
+    @ManagedAttribute("The number of listening sockets")
+    public int getListenerCount()
+    {
+        Listener[] listeners = _listeners;
+        if (listeners != null)
+            return listeners.length;
+        return _acceptChannel == null ? 0 : 1;
+    }
+
     /**
      * @return whether the accepted socket gets {@link java.net.SocketOptions#TCP_NODELAY TCP_NODELAY} enabled.
      * @see Socket#getTcpNoDelay()
@@ -570,7 +738,7 @@ public class ServerConnector extends AbstractNetworkConnector
             {
                 if (_acceptor.get() == null)
                 {
-                    Closeable acceptor = _manager.acceptor(_acceptChannel);
+                    Closeable acceptor = newSelectorAcceptor();
                     if (!_acceptor.compareAndSet(null, acceptor))
                         acceptor.close();
                 }
@@ -588,6 +756,52 @@ public class ServerConnector extends AbstractNetworkConnector
         }
     }
 
+    private Closeable newSelectorAcceptor() throws IOException
+    {
+        Listener[] listeners = _listeners;
+        if (listeners == null)
+        {
+            _acceptChannel.configureBlocking(false);
+            return _manager.acceptor(_acceptChannel);
+        }
+
+        // There is one listener per selector.
+        List<Closeable> acceptors = new ArrayList<>(listeners.length);
+        for (Listener listener : listeners)
+        {
+            listener._channel.configureBlocking(false);
+            acceptors.add(_manager.acceptor(listener._channel, listener._selectorFrom));
+        }
+        return () -> acceptors.forEach(IO::close);
+    }
+
+    /**
+     * <p>A {@code SO_REUSEPORT} listening socket, pinned to a subset of selectors.</p>
+     */
+    private static class Listener
+    {
+        private final ServerSocketChannel _channel;
+        private final int _selectorFrom;
+        private final int _selectorCount;
+        // Only accessed by the thread that accepts from this listener.
+        private int _next;
+
+        private Listener(ServerSocketChannel channel, int selectorFrom, int selectorCount)
+        {
+            _channel = channel;
+            _selectorFrom = selectorFrom;
+            _selectorCount = selectorCount;
+        }
+
+        private int nextSelector()
+        {
+            int selector = _selectorFrom + _next;
+            if (++_next == _selectorCount)
+                _next = 0;
+            return selector;
+        }
+    }
+
     protected class ServerConnectorManager extends SelectorManager
     {
         public ServerConnectorManager(Executor executor, Scheduler scheduler, int selectors)
@@ -601,6 +815,13 @@ public class ServerConnector extends AbstractNetworkConnector
             ServerConnector.this.accepted((SocketChannel)channel);
         }
 
+        @Override
+        protected void accepted(SelectableChannel channel, int selector) throws IOException
+        {
+            // With reuse port listeners, keep the accepted channel on the selector of its listener.
+            ServerConnector.this.accepted((SocketChannel)channel, _listeners == null ? -1 : selector);
+        }
+
         @Override
         protected SocketChannelEndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey) throws IOException
         {
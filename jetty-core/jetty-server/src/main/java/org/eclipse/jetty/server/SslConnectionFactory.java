@@ -16,6 +16,10 @@ package org.eclipse.jetty.server;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
 
@@ -25,10 +29,26 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
+/**
+ * <p>A {@link ConnectionFactory} for TLS connections.</p>
+ * <p>The TLS handshakes of the connections may be performed by a dedicated
+ * {@link #setHandshakeExecutor(Executor) handshake executor}, so that the CPU intensive
+ * key agreement does not compete with the processing of requests on the established
+ * connections, for example during a storm of reconnections.
+ * The number of TLS handshakes in progress in the handshake executor
+ * may be {@link #setMaxPendingHandshakes(int) limited}: when the limit is reached, new TLS
+ * handshakes are rejected and their connections closed, while the TLS handshakes already
+ * in progress are completed.</p>
+ * <p>TLS handshake statistics can be tracked by adding an
+ * {@link org.eclipse.jetty.io.ssl.SslHandshakeStatistics} as a bean to this factory
+ * or to its connector.</p>
+ */
 public class SslConnectionFactory extends AbstractConnectionFactory implements ConnectionFactory.Detecting, ConnectionFactory.Configuring
 {
     private static final int TLS_ALERT_FRAME_TYPE = 0x15;
@@ -40,6 +60,11 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
     private boolean _directBuffersForEncryption = false;
     private boolean _directBuffersForDecryption = false;
     private boolean _ensureSecureRequestCustomizer = true;
+    private final AtomicInteger _pending = new AtomicInteger();
+    private final LongAdder _rejected = new LongAdder();
+    private Executor _executor;
+    private int _maxPendingHandshakes = -1;
+    private int _maxRecordsPerFlush = 1;
 
     public SslConnectionFactory()
     {
@@ -84,6 +109,27 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         return _directBuffersForEncryption;
     }
 
+    /**
+     * @return the max number of TLS records encrypted before they are written to the network
+     * @see SslConnection#getMaxRecordsPerFlush()
+     */
+    @ManagedAttribute("The max number of TLS records encrypted before they are written to the network")
+    public int getMaxRecordsPerFlush()
+    {
+        return _maxRecordsPerFlush;
+    }
+
+    /**
+     * @param maxRecordsPerFlush the max number of TLS records encrypted before they are written to the network
+     * @see SslConnection#setMaxRecordsPerFlush(int)
+     */
+    public void setMaxRecordsPerFlush(int maxRecordsPerFlush)
+    {
+        if (maxRecordsPerFlush < 1)
+            throw new IllegalArgumentException("Invalid max records per flush " + maxRecordsPerFlush);
+        _maxRecordsPerFlush = maxRecordsPerFlush;
+    }
+
     public String getNextProtocol()
     {
         return _nextProtocol;
@@ -104,6 +150,81 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         _ensureSecureRequestCustomizer = ensureSecureRequestCustomizer;
     }
 
+    /**
+     * @return the executor that performs the TLS handshakes, or null if the TLS
+     * handshakes are performed by the threads that read from the network
+     */
+    @ManagedAttribute("The executor that performs the TLS handshakes")
+    public Executor getHandshakeExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * <p>Sets the executor that performs the TLS handshakes.</p>
+     * <p>The executor should be bounded and separate from the connector executor,
+     * for example a {@link org.eclipse.jetty.util.thread.QueuedThreadPool} with
+     * a small number of threads.</p>
+     *
+     * @param executor the executor that performs the TLS handshakes, or null to
+     * perform the TLS handshakes in the threads that read from the network
+     * @see SslConnection#setHandshakeExecutor(Executor)
+     */
+    public void setHandshakeExecutor(Executor executor)
+    {
+        updateBean(_executor, executor);
+        _executor = executor;
+    }
+
+    /**
+     * @return the max number of TLS handshakes in progress in the handshake executor,
+     * or a negative value for no limit
+     */
+    @ManagedAttribute("The max number of TLS handshakes in progress in the handshake executor")
+    public int getMaxPendingHandshakes()
+    {
+        return _maxPendingHandshakes;
+    }
+
+    /**
+     * <p>Sets the max number of TLS handshakes in progress in the handshake executor.</p>
+     * <p>A TLS handshake is in progress from the processing of its first message
+     * until it succeeds, fails or its connection is closed.
+     * When this limit is reached, new TLS handshakes are rejected and their
+     * connections closed, while the TLS handshakes already in progress are
+     * completed by the handshake executor.</p>
+     *
+     * @param maxPendingHandshakes the max number of pending TLS handshakes, or a negative value for no limit
+     */
+    public void setMaxPendingHandshakes(int maxPendingHandshakes)
+    {
+        _maxPendingHandshakes = maxPendingHandshakes;
+    }
+
+    /**
+     * @return the number of TLS handshakes in progress in the handshake executor
+     */
+    @ManagedAttribute("The number of TLS handshakes in progress in the handshake executor")
+    public int getPendingHandshakes()
+    {
+        return _pending.get();
+    }
+
+    /**
+     * @return the number of TLS handshakes rejected by the handshake executor
+     */
+    @ManagedAttribute("The number of TLS handshakes rejected by the handshake executor")
+    public long getRejectedHandshakes()
+    {
+        return _rejected.sum();
+    }
+
+    @ManagedOperation(value = "Resets the number of rejected TLS handshakes", impact = "ACTION")
+    public void resetRejectedHandshakes()
+    {
+        _rejected.reset();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -153,6 +274,14 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setMaxRecordsPerFlush(getMaxRecordsPerFlush());
+        if (_executor != null)
+        {
+            HandshakeExecutor handshakeExecutor = new HandshakeExecutor();
+            sslConnection.setHandshakeExecutor(handshakeExecutor);
+            sslConnection.addHandshakeListener(handshakeExecutor);
+            sslConnection.addEventListener(handshakeExecutor);
+        }
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
@@ -185,4 +314,76 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
     {
         return String.format("%s@%x{%s->%s}", this.getClass().getSimpleName(), hashCode(), getProtocol(), _nextProtocol);
     }
+
+    /**
+     * <p>The handshake executor of a connection, that applies the max number
+     * of pending TLS handshakes.</p>
+     * <p>A TLS handshake is counted once, from its first task until it
+     * succeeds, fails or its connection is closed; the following tasks of
+     * a counted TLS handshake are always queued in the handshake executor.</p>
+     */
+    private class HandshakeExecutor implements Executor, SslHandshakeListener, Connection.Listener
+    {
+        private static final int NEW = 0;
+        private static final int PENDING = 1;
+        private static final int DONE = 2;
+
+        private final AtomicInteger _state = new AtomicInteger(NEW);
+
+        @Override
+        public void execute(Runnable task)
+        {
+            boolean first = _state.get() == NEW;
+            if (first)
+            {
+                int pending = _pending.incrementAndGet();
+                int maxPending = getMaxPendingHandshakes();
+                if (maxPending >= 0 && pending > maxPending)
+                {
+                    _pending.decrementAndGet();
+                    _rejected.increment();
+                    throw new RejectedExecutionException("Max pending TLS handshakes " + maxPending + " exceeded");
+                }
+                // The connection may have been closed concurrently.
+                if (!_state.compareAndSet(NEW, PENDING))
+                    _pending.decrementAndGet();
+            }
+
+            try
+            {
+                _executor.execute(task);
+            }
+            catch (RejectedExecutionException x)
+            {
+                // Only the first task rejects the TLS handshake, see SslConnection.setHandshakeExecutor().
+                if (first)
+                    _rejected.increment();
+                throw x;
+            }
+        }
+
+        @Override
+        public void handshakeSucceeded(Event event)
+        {
+            done();
+        }
+
+        @Override
+        public void handshakeFailed(Event event, Throwable failure)
+        {
+            done();
+        }
+
+        @Override
+        public void onClosed(Connection connection)
+        {
+            done();
+        }
+
+        private void done()
+        {
+            if (_state.getAndSet(DONE) == PENDING)
+                _pending.decrementAndGet();
+        }
+    }
 }
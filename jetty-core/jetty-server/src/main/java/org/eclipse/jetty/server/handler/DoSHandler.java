@@ -0,0 +1,446 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A denial of service {@link Handler} that {@link ConditionalHandler conditionally}
+ * limits the request rate of each remote client.</p>
+ * <p>The request rate of each client is estimated with a count-min sketch of
+ * sliding window counters, keyed by the remote IP address (IPv4 addresses,
+ * or the {@code /64} prefix of IPv6 addresses, see {@link #getKey(Request)}).
+ * The sketch uses a fixed amount of memory, that only depends on its
+ * {@link #setSketchWidth(int) width} and {@link #setSketchDepth(int) depth},
+ * so that it stays bounded regardless of the number of distinct clients,
+ * for example during an address spoofing flood.
+ * The estimate of a count-min sketch may exceed, but never be less than,
+ * the actual request rate of a client; the larger the sketch, the smaller
+ * the overestimation.</p>
+ * <p>Requests from clients whose rate exceeds {@link #getMaxRequestsPerSecond()}
+ * are either delayed by {@link #getDelay()} (up to {@link #getMaxDelayedRequestCount()}
+ * concurrently delayed requests), or rejected with {@link #getRejectStatus()}.</p>
+ * <p>Since this is a core {@link Handler}, it may be inserted before any other
+ * handler, so that excess requests are rejected before any servlet machinery
+ * is engaged.
+ * Trusted clients may be excluded via {@link #excludeInetAddressPattern(String...)}.</p>
+ */
+@ManagedObject
+public class DoSHandler extends ConditionalHandler.ElseNext
+{
+    public static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 100;
+    public static final int DEFAULT_SKETCH_WIDTH = 8192;
+    public static final int DEFAULT_SKETCH_DEPTH = 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(DoSHandler.class);
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final AtomicInteger delaying = new AtomicInteger();
+    private int maxRequestsPerSecond = DEFAULT_MAX_REQUESTS_PER_SECOND;
+    private int sketchWidth = DEFAULT_SKETCH_WIDTH;
+    private int sketchDepth = DEFAULT_SKETCH_DEPTH;
+    private int rejectStatus = HttpStatus.TOO_MANY_REQUESTS_429;
+    private Duration delay = Duration.ZERO;
+    private int maxDelayedRequests = 1024;
+    private volatile RateSketch sketch;
+
+    public DoSHandler()
+    {
+        this(null);
+    }
+
+    public DoSHandler(Handler handler)
+    {
+        super(handler);
+    }
+
+    /**
+     * @return the max number of requests per second for each client
+     */
+    @ManagedAttribute("The maximum number of requests per second for each client")
+    public int getMaxRequestsPerSecond()
+    {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * @param maxRequestsPerSecond the max number of requests per second for each client
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond)
+    {
+        if (maxRequestsPerSecond <= 0)
+            throw new IllegalArgumentException("Invalid maxRequestsPerSecond");
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * @return the number of counters in each row of the sketch
+     */
+    @ManagedAttribute(value = "The number of counters in each row of the sketch", readonly = true)
+    public int getSketchWidth()
+    {
+        return sketchWidth;
+    }
+
+    /**
+     * <p>Sets the number of counters in each row of the sketch, rounded up to a power of 2.</p>
+     * <p>The sketch uses {@code 2 * width * depth} counters of 4 bytes each.</p>
+     *
+     * @param sketchWidth the number of counters in each row of the sketch
+     */
+    public void setSketchWidth(int sketchWidth)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change sketchWidth: " + this);
+        if (sketchWidth <= 0 || sketchWidth > 1 << 24)
+            throw new IllegalArgumentException("Invalid sketchWidth");
+        this.sketchWidth = sketchWidth == 1 ? 1 : Integer.highestOneBit(sketchWidth - 1) << 1;
+    }
+
+    /**
+     * @return the number of rows of the sketch
+     */
+    @ManagedAttribute(value = "The number of rows of the sketch", readonly = true)
+    public int getSketchDepth()
+    {
+        return sketchDepth;
+    }
+
+    /**
+     * <p>Sets the number of rows of the sketch, each with an independent hash function.</p>
+     *
+     * @param sketchDepth the number of rows of the sketch
+     */
+    public void setSketchDepth(int sketchDepth)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change sketchDepth: " + this);
+        if (sketchDepth <= 0 || sketchDepth > 16)
+            throw new IllegalArgumentException("Invalid sketchDepth");
+        this.sketchDepth = sketchDepth;
+    }
+
+    /**
+     * @return the status code of the responses to rejected requests
+     */
+    @ManagedAttribute("The status code of the responses to rejected requests")
+    public int getRejectStatus()
+    {
+        return rejectStatus;
+    }
+
+    /**
+     * @param rejectStatus the status code of the responses to rejected requests
+     */
+    public void setRejectStatus(int rejectStatus)
+    {
+        if (rejectStatus < 400 || rejectStatus > 599)
+            throw new IllegalArgumentException("Invalid rejectStatus");
+        this.rejectStatus = rejectStatus;
+    }
+
+    /**
+     * @return the delay applied to requests that exceed the rate, or {@link Duration#ZERO} to reject them
+     */
+    public Duration getDelay()
+    {
+        return delay;
+    }
+
+    /**
+     * <p>Sets the delay applied to requests that exceed the rate, before they are handled.</p>
+     * <p>Delaying requests throttles clients that perform requests sequentially,
+     * without failing their requests.</p>
+     *
+     * @param delay the delay applied to requests that exceed the rate, or {@link Duration#ZERO} to reject them
+     */
+    public void setDelay(Duration delay)
+    {
+        if (delay.isNegative())
+            throw new IllegalArgumentException("Invalid delay");
+        this.delay = delay;
+    }
+
+    /**
+     * @return the max number of concurrently delayed requests, beyond which requests are rejected
+     */
+    @ManagedAttribute("The maximum number of concurrently delayed requests")
+    public int getMaxDelayedRequestCount()
+    {
+        return maxDelayedRequests;
+    }
+
+    /**
+     * @param maxDelayedRequests the max number of concurrently delayed requests, beyond which requests are rejected
+     */
+    public void setMaxDelayedRequestCount(int maxDelayedRequests)
+    {
+        this.maxDelayedRequests = maxDelayedRequests;
+    }
+
+    @ManagedAttribute("The number of rejected requests")
+    public long getRejectedRequestCount()
+    {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute("The number of delayed requests")
+    public long getDelayedRequestCount()
+    {
+        return delayed.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        rejected.reset();
+        delayed.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        sketch = new RateSketch(getSketchWidth(), getSketchDepth(), nanoTime());
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        sketch = null;
+    }
+
+    /**
+     * <p>Returns the key that identifies the client of the given request.</p>
+     * <p>The default implementation returns the remote IPv4 address, or the
+     * {@code /64} prefix of the remote IPv6 address, as clients typically have
+     * a whole {@code /64} IPv6 network at their disposal.</p>
+     *
+     * @param request the request
+     * @return the key that identifies the client of the given request
+     */
+    protected long getKey(Request request)
+    {
+        SocketAddress socketAddress = request.getConnectionMetaData().getRemoteSocketAddress();
+        if (!(socketAddress instanceof InetSocketAddress inetSocketAddress))
+            return 0;
+        InetAddress address = inetSocketAddress.getAddress();
+        if (address == null)
+            return inetSocketAddress.getHostString().hashCode();
+        // The hash code of an IPv4 address is the address itself.
+        if (address instanceof Inet4Address)
+            return address.hashCode() & 0xFFFF_FFFFL;
+        byte[] bytes = address.getAddress();
+        long prefix = 0;
+        for (int i = 0; i < 8 && i < bytes.length; ++i)
+        {
+            prefix = (prefix << 8) | (bytes[i] & 0xFF);
+        }
+        // Distinguish IPv6 prefixes from IPv4 addresses.
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    @Override
+    protected boolean onConditionsMet(Request request, Response response, Callback callback) throws Exception
+    {
+        RateSketch sketch = this.sketch;
+        if (sketch == null)
+            return nextHandler(request, response, callback);
+
+        long key = getKey(request);
+        int rate = sketch.increment(key, nanoTime());
+        if (rate <= getMaxRequestsPerSecond())
+            return nextHandler(request, response, callback);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} rate {}/s exceeded for key {} {}", this, rate, Long.toHexString(key), request);
+
+        Duration delay = getDelay();
+        if (!delay.isZero())
+        {
+            if (delaying.incrementAndGet() <= getMaxDelayedRequestCount())
+            {
+                delayed.increment();
+                request.getComponents().getScheduler().schedule(() -> resume(request, response, callback), delay.toNanos(), TimeUnit.NANOSECONDS);
+                return true;
+            }
+            delaying.decrementAndGet();
+        }
+
+        rejected.increment();
+        Response.writeError(request, response, callback, getRejectStatus());
+        return true;
+    }
+
+    private void resume(Request request, Response response, Callback callback)
+    {
+        // Always dispatch, as the scheduler thread must not run application code.
+        request.getContext().execute(() ->
+        {
+            delaying.decrementAndGet();
+            try
+            {
+                if (!nextHandler(request, response, callback))
+                    Response.writeError(request, response, callback, HttpStatus.NOT_FOUND_404);
+            }
+            catch (Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} failed {}", this, request, x);
+                Response.writeError(request, response, callback, x);
+            }
+        });
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,max=%d/s,sketch=%dx%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getState(),
+            getMaxRequestsPerSecond(),
+            getSketchDepth(),
+            getSketchWidth());
+    }
+
+    /**
+     * @return the current time in nanoseconds, as returned by {@link NanoTime#now()}
+     */
+    long nanoTime()
+    {
+        return NanoTime.now();
+    }
+
+    /**
+     * <p>A count-min sketch of sliding window request counters.</p>
+     * <p>Each of the {@code depth} rows has {@code width} counters for the
+     * current one second window, and as many for the previous window.
+     * A key is hashed to one counter per row, and its rate is estimated by
+     * weighting the counter of the previous window by the part of it that is
+     * still within one second, plus the counter of the current window.
+     * The estimate of the key is the minimum of the estimates of its rows.</p>
+     * <p>Counters are updated without locking; the rare window rotation
+     * may lose a few concurrent increments, which is tolerable for an
+     * estimate.</p>
+     */
+    private static class RateSketch
+    {
+        private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final AutoLock lock = new AutoLock();
+        private final long origin;
+        private final int width;
+        private final int depth;
+        private volatile AtomicIntegerArray current;
+        private volatile AtomicIntegerArray previous;
+        private volatile long window;
+
+        private RateSketch(int width, int depth, long origin)
+        {
+            this.origin = origin;
+            this.width = width;
+            this.depth = depth;
+            this.current = new AtomicIntegerArray(width * depth);
+            this.previous = new AtomicIntegerArray(width * depth);
+        }
+
+        private int increment(long key, long now)
+        {
+            long elapsed = Math.max(0, NanoTime.elapsed(origin, now));
+            long window = elapsed / WINDOW_NANOS;
+            if (window != this.window)
+                rotate(window);
+
+            AtomicIntegerArray current = this.current;
+            AtomicIntegerArray previous = this.previous;
+            // The part of the previous window that is still within one second.
+            double weight = 1.0D - (double)(elapsed % WINDOW_NANOS) / WINDOW_NANOS;
+
+            long hash1 = mix(key);
+            long hash2 = mix(hash1) | 1;
+            double estimate = Double.MAX_VALUE;
+            for (int row = 0; row < depth; ++row)
+            {
+                int index = row * width + (int)((hash1 + row * hash2) & (width - 1));
+                int count = current.incrementAndGet(index);
+                estimate = Math.min(estimate, count + previous.get(index) * weight);
+            }
+            return (int)Math.ceil(estimate);
+        }
+
+        private void rotate(long window)
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                long last = this.window;
+                if (window <= last)
+                    return;
+                AtomicIntegerArray recycled = previous;
+                clear(recycled);
+                if (window == last + 1)
+                {
+                    previous = current;
+                }
+                else
+                {
+                    // More than one window elapsed, so the current window is stale.
+                    clear(current);
+                    previous = current;
+                }
+                current = recycled;
+                this.window = window;
+            }
+        }
+
+        private static void clear(AtomicIntegerArray counters)
+        {
+            for (int i = 0; i < counters.length(); ++i)
+            {
+                counters.set(i, 0);
+            }
+        }
+
+        private static long mix(long value)
+        {
+            // The finalizer of the SplitMix64 generator.
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            return value ^ (value >>> 31);
+        }
+    }
+}
@@ -13,19 +13,27 @@
 
 package org.eclipse.jetty.server.handler;
 
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 
 /**
  * <p>A <code>Handler</code> that helps recording the total latency of the requests executed by the wrapped handler.</p>
  * <p>The latency reported by {@link #onRequestComplete(String, long)} is the delay between when {@link Request#getBeginNanoTime()
  * the request arrived to a connector} until {@link EventsHandler#onComplete(Request, Throwable) the completion of that
  * request}.</p>
+ * <p>The latencies are also recorded in a {@link #getLatencyHistogram() histogram},
+ * whose percentiles are exposed via JMX.</p>
  */
 public abstract class LatencyRecordingHandler extends EventsHandler
 {
+    private final HistogramStatistic _latencyHistogram = new HistogramStatistic(TimeUnit.HOURS.toNanos(1));
+
     public LatencyRecordingHandler()
     {
     }
@@ -38,7 +46,35 @@ public abstract class LatencyRecordingHandler extends EventsHandler
     @Override
     protected final void onComplete(Request request, int status, HttpFields headers, Throwable failure)
     {
-        onRequestComplete(request.getId(), NanoTime.since(request.getBeginNanoTime()));
+        long latency = NanoTime.since(request.getBeginNanoTime());
+        _latencyHistogram.record(latency);
+        onRequestComplete(request.getId(), latency);
+    }
+
+    /**
+     * @return the distribution of the latencies (in ns) of the completed requests
+     */
+    public HistogramStatistic getLatencyHistogram()
+    {
+        return _latencyHistogram;
+    }
+
+    @ManagedAttribute("50th percentile of request latency (in ns)")
+    public long getLatencyP50()
+    {
+        return _latencyHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("99th percentile of request latency (in ns)")
+    public long getLatencyP99()
+    {
+        return _latencyHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("99.9th percentile of request latency (in ns)")
+    public long getLatencyP999()
+    {
+        return _latencyHistogram.getValueAtPercentile(99.9);
     }
 
     /**
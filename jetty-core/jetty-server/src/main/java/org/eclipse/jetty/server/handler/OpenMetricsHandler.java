@@ -0,0 +1,323 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.io.ssl.SslHandshakeStatistics;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.MetricsRegistry;
+import org.eclipse.jetty.util.statistic.MetricsSource;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link Handler} that exposes the server statistics in the
+ * <a href="https://openmetrics.io/">OpenMetrics</a> text format,
+ * that can be scraped by Prometheus and compatible monitoring systems.</p>
+ * <p>Requests whose path in context is equal to the {@link #getPath() configured path}
+ * are served by this handler, while other requests are forwarded to the child handler.</p>
+ * <p>The first time the metrics are requested, the component tree of the {@link Server}
+ * is walked to find the components that provide statistics, such as {@link QueuedThreadPool},
+ * {@link ArrayByteBufferPool}, {@link ConnectionStatistics}, {@link SslHandshakeStatistics}
+ * and {@link StatisticsHandler},
+ * along with the components that implement {@link MetricsSource}, and their metrics are
+ * registered in a {@link MetricsRegistry}.
+ * Subsequent scrapes only read the registered metrics and render them directly into a
+ * pooled buffer, so that the scrape cost does not depend on the size of the component tree.
+ * If the component tree changes, the metrics can be {@link #rescan() registered again}.</p>
+ * <p>Metrics are labeled with the name of the {@link Connector} and with the path of the
+ * {@link ContextHandler} they belong to, if any.</p>
+ * <p>The quantiles of the duration summaries are computed over the samples recorded
+ * since the previous scrape, while their count and sum are cumulative.</p>
+ */
+@ManagedObject
+public class OpenMetricsHandler extends Handler.Wrapper
+{
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final Logger LOG = LoggerFactory.getLogger(OpenMetricsHandler.class);
+    private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final AutoLock _lock = new AutoLock();
+    private String _path = "/metrics";
+    private volatile MetricsRegistry _registry;
+    private volatile int _bufferSize = 4096;
+
+    public OpenMetricsHandler()
+    {
+    }
+
+    public OpenMetricsHandler(Handler handler)
+    {
+        super(handler);
+    }
+
+    /**
+     * @return the path in context of the metrics resource
+     */
+    @ManagedAttribute("The path in context of the metrics resource")
+    public String getPath()
+    {
+        return _path;
+    }
+
+    /**
+     * @param path the path in context of the metrics resource
+     */
+    public void setPath(String path)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _path = path;
+    }
+
+    /**
+     * @return the number of registered samples, or 0 if the component tree has not been walked yet
+     */
+    @ManagedAttribute("The number of registered samples")
+    public int getSampleCount()
+    {
+        MetricsRegistry registry = _registry;
+        return registry == null ? 0 : registry.getSampleCount();
+    }
+
+    /**
+     * <p>Discards the registered metrics, so that the component tree
+     * is walked again at the next scrape.</p>
+     */
+    @ManagedOperation(value = "Walks again the component tree at the next scrape", impact = "ACTION")
+    public void rescan()
+    {
+        _registry = null;
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        rescan();
+        super.doStop();
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        if (!_path.equals(Request.getPathInContext(request)))
+            return super.handle(request, response, callback);
+
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method) && !HttpMethod.HEAD.is(method))
+        {
+            Response.writeError(request, response, callback, HttpStatus.METHOD_NOT_ALLOWED_405);
+            return true;
+        }
+
+        RetainableByteBuffer buffer = render(request.getComponents().getByteBufferPool());
+        response.getHeaders().put(HttpHeader.CONTENT_TYPE, CONTENT_TYPE);
+        response.getHeaders().put(HttpHeader.CACHE_CONTROL, "no-store");
+        if (HttpMethod.HEAD.is(method))
+        {
+            response.getHeaders().put(HttpHeader.CONTENT_LENGTH, buffer.remaining());
+            buffer.release();
+            response.write(true, null, callback);
+        }
+        else
+        {
+            response.write(true, buffer.getByteBuffer(), Callback.from(callback, buffer::release));
+        }
+        return true;
+    }
+
+    private RetainableByteBuffer render(ByteBufferPool byteBufferPool)
+    {
+        MetricsRegistry registry = getRegistry();
+        while (true)
+        {
+            int size = _bufferSize;
+            RetainableByteBuffer buffer = byteBufferPool.acquire(size, false);
+            ByteBuffer byteBuffer = buffer.getByteBuffer();
+            int position = BufferUtil.flipToFill(byteBuffer);
+            try
+            {
+                registry.write(byteBuffer);
+                byteBuffer.put(EOF);
+                BufferUtil.flipToFlush(byteBuffer, position);
+                return buffer;
+            }
+            catch (BufferOverflowException x)
+            {
+                // Remember the larger size for the next scrapes.
+                buffer.release();
+                _bufferSize = Math.max(_bufferSize, size * 2);
+            }
+        }
+    }
+
+    private MetricsRegistry getRegistry()
+    {
+        MetricsRegistry registry = _registry;
+        if (registry != null)
+            return registry;
+        try (AutoLock ignored = _lock.lock())
+        {
+            registry = _registry;
+            if (registry == null)
+            {
+                registry = new MetricsRegistry();
+                Server server = getServer();
+                register(registry, server == null ? this : server, "", Collections.newSetFromMap(new IdentityHashMap<>()));
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Registered {} samples for {}", registry.getSampleCount(), this);
+                _registry = registry;
+            }
+            return registry;
+        }
+    }
+
+    private void register(MetricsRegistry registry, Object bean, String labels, Set<Object> visited)
+    {
+        if (bean == null || !visited.add(bean))
+            return;
+
+        if (bean instanceof Connector connector)
+            labels = MetricsRegistry.labels(labels, "connector", connectorName(connector));
+        else if (bean instanceof ContextHandler contextHandler)
+            labels = MetricsRegistry.labels(labels, "context", contextHandler.getContextPath());
+
+        if (bean instanceof MetricsSource source)
+            source.registerMetrics(registry, labels);
+        else if (bean instanceof QueuedThreadPool threadPool)
+            registerThreadPool(registry, MetricsRegistry.labels(labels, "pool", threadPool.getName()), threadPool);
+        else if (bean instanceof ArrayByteBufferPool byteBufferPool)
+            registerByteBufferPool(registry, labels, byteBufferPool);
+        else if (bean instanceof ConnectionStatistics connectionStatistics)
+            registerConnectionStatistics(registry, labels, connectionStatistics);
+        else if (bean instanceof StatisticsHandler statisticsHandler)
+            registerStatisticsHandler(registry, labels, statisticsHandler);
+        else if (bean instanceof SslHandshakeStatistics sslHandshakeStatistics)
+            registerSslHandshakeStatistics(registry, labels, sslHandshakeStatistics);
+        else if (bean instanceof SslConnectionFactory sslConnectionFactory && sslConnectionFactory.getHandshakeExecutor() != null)
+            registerSslConnectionFactory(registry, labels, sslConnectionFactory);
+
+        if (bean instanceof org.eclipse.jetty.util.component.Container container)
+        {
+            for (Object child : container.getBeans())
+            {
+                register(registry, child, labels, visited);
+            }
+        }
+    }
+
+    private static String connectorName(Connector connector)
+    {
+        String name = connector.getName();
+        if (name != null)
+            return name;
+        if (connector instanceof NetworkConnector networkConnector)
+            return String.valueOf(networkConnector.getPort());
+        return String.join("|", connector.getProtocols());
+    }
+
+    private static void registerThreadPool(MetricsRegistry registry, String labels, QueuedThreadPool threadPool)
+    {
+        registry.gauge("jetty_thread_pool_threads", "The number of threads in the pool", labels, threadPool::getThreads);
+        registry.gauge("jetty_thread_pool_threads_max", "The max number of threads in the pool", labels, threadPool::getMaxThreads);
+        registry.gauge("jetty_thread_pool_threads_busy", "The number of busy threads in the pool", labels, threadPool::getBusyThreads);
+        registry.gauge("jetty_thread_pool_threads_idle", "The number of idle threads in the pool", labels, threadPool::getIdleThreads);
+        registry.gauge("jetty_thread_pool_queue_size", "The number of jobs queued waiting for a thread", labels, threadPool::getQueueSize);
+    }
+
+    private static void registerByteBufferPool(MetricsRegistry registry, String labels, ArrayByteBufferPool byteBufferPool)
+    {
+        String direct = MetricsRegistry.labels(labels, "type", "direct");
+        String heap = MetricsRegistry.labels(labels, "type", "heap");
+        registry.gauge("jetty_buffer_pool_buffers", "The number of pooled buffers", direct, byteBufferPool::getDirectByteBufferCount);
+        registry.gauge("jetty_buffer_pool_buffers", "The number of pooled buffers", heap, byteBufferPool::getHeapByteBufferCount);
+        registry.gauge("jetty_buffer_pool_buffers_available", "The number of available pooled buffers", direct, byteBufferPool::getAvailableDirectByteBufferCount);
+        registry.gauge("jetty_buffer_pool_buffers_available", "The number of available pooled buffers", heap, byteBufferPool::getAvailableHeapByteBufferCount);
+        registry.gauge("jetty_buffer_pool_bytes", "The bytes retained by pooled buffers", direct, byteBufferPool::getDirectMemory);
+        registry.gauge("jetty_buffer_pool_bytes", "The bytes retained by pooled buffers", heap, byteBufferPool::getHeapMemory);
+    }
+
+    private static void registerConnectionStatistics(MetricsRegistry registry, String labels, ConnectionStatistics statistics)
+    {
+        registry.gauge("jetty_connections", "The number of open connections", labels, statistics::getConnections);
+        registry.counter("jetty_connections_opened", "The number of connections opened", labels, statistics::getConnectionsTotal);
+        registry.counter("jetty_connections_received_bytes", "The bytes received by closed connections", labels, statistics::getReceivedBytes);
+        registry.counter("jetty_connections_sent_bytes", "The bytes sent by closed connections", labels, statistics::getSentBytes);
+        registry.counter("jetty_connections_received_messages", "The messages received by closed connections", labels, statistics::getReceivedMessages);
+        registry.counter("jetty_connections_sent_messages", "The messages sent by closed connections", labels, statistics::getSentMessages);
+    }
+
+    private static void registerSslHandshakeStatistics(MetricsRegistry registry, String labels, SslHandshakeStatistics statistics)
+    {
+        registry.counter("jetty_tls_handshakes", "The number of TLS handshakes", MetricsRegistry.labels(labels, "result", "succeeded"), statistics::getHandshakesSucceeded);
+        registry.counter("jetty_tls_handshakes", "The number of TLS handshakes", MetricsRegistry.labels(labels, "result", "failed"), statistics::getHandshakesFailed);
+        registry.counter("jetty_tls_handshakes", "The number of TLS handshakes", MetricsRegistry.labels(labels, "result", "rejected"), statistics::getHandshakesRejected);
+        registry.summary("jetty_tls_handshake_duration_seconds", "The TLS handshake time", labels, statistics.getHandshakeDurationHistogram(), TimeUnit.NANOSECONDS);
+    }
+
+    private static void registerSslConnectionFactory(MetricsRegistry registry, String labels, SslConnectionFactory sslConnectionFactory)
+    {
+        registry.gauge("jetty_tls_handshakes_pending", "The number of TLS handshakes in progress in the handshake executor", labels, sslConnectionFactory::getPendingHandshakes);
+        registry.counter("jetty_tls_handshake_executor_rejected", "The number of TLS handshakes rejected by the handshake executor", labels, sslConnectionFactory::getRejectedHandshakes);
+    }
+
+    private static void registerStatisticsHandler(MetricsRegistry registry, String labels, StatisticsHandler statistics)
+    {
+        registry.counter("jetty_requests", "The number of requests", labels, statistics::getRequestTotal);
+        registry.gauge("jetty_requests_active", "The number of active requests", labels, statistics::getRequestsActive);
+        registry.counter("jetty_requests_failed", "The number of failed requests", labels, statistics::getFailures);
+        registry.counter("jetty_responses", "The number of responses", MetricsRegistry.labels(labels, "code", "1xx"), statistics::getResponses1xx);
+        registry.counter("jetty_responses", "The number of responses", MetricsRegistry.labels(labels, "code", "2xx"), statistics::getResponses2xx);
+        registry.counter("jetty_responses", "The number of responses", MetricsRegistry.labels(labels, "code", "3xx"), statistics::getResponses3xx);
+        registry.counter("jetty_responses", "The number of responses", MetricsRegistry.labels(labels, "code", "4xx"), statistics::getResponses4xx);
+        registry.counter("jetty_responses", "The number of responses", MetricsRegistry.labels(labels, "code", "5xx"), statistics::getResponses5xx);
+        registry.counter("jetty_requests_read_bytes", "The bytes of request content read", labels, statistics::getBytesRead);
+        registry.counter("jetty_responses_written_bytes", "The bytes of response content written", labels, statistics::getBytesWritten);
+        registry.summary("jetty_request_duration_seconds", "The request execution time", labels, statistics.getRequestTimeHistogram(), TimeUnit.NANOSECONDS);
+        registry.summary("jetty_handle_duration_seconds", "The handle() execution time", labels, statistics.getHandleTimeHistogram(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s}", getClass().getSimpleName(), hashCode(), getState(), _path);
+    }
+}
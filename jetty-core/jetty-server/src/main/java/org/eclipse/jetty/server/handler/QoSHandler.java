@@ -13,19 +13,30 @@
 
 package org.eclipse.jetty.server.handler;
 
+import java.security.Principal;
 import java.time.Duration;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.io.CyclicTimeouts;
@@ -37,6 +48,7 @@ import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.slf4j.Logger;
@@ -69,12 +81,28 @@ import org.slf4j.LoggerFactory;
  * priority, followed by requests performed by admin users, etc.
  * so that regardless of the load, "ping" and "admin" requests will
  * always be able to access the web application.</p>
+ * <p>If a {@link #setKeyFunction(Function) key function} is configured,
+ * requests are associated to a key such as the remote address, the value
+ * of a header or the user principal (see {@link Keys}), so that:</p>
+ * <ul>
+ * <li>suspended requests with the same priority are resumed with a
+ * deficit round-robin scheduling across keys, weighted by
+ * {@link #getWeight(Request)}, so that one key with many suspended
+ * requests cannot starve the requests of other keys;</li>
+ * <li>if a {@link #setRequestRate(double) request rate} is configured,
+ * each key has a token bucket that limits its request rate, and requests
+ * in excess are rejected with status code {@code 429 Too Many Requests}.
+ * Token buckets are bounded by {@link #setMaxKeyCount(int)} and are
+ * discarded once they are full again, so that idle keys do not use
+ * memory.</li>
+ * </ul>
  */
 @ManagedObject
 public class QoSHandler extends ConditionalHandler.Abstract
 {
     private static final Logger LOG = LoggerFactory.getLogger(QoSHandler.class);
     private static final String EXPIRED_ATTRIBUTE_NAME = QoSHandler.class.getName() + ".expired";
+    private static final int OVERFLOW_BUCKETS = 64;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final AtomicInteger state = new AtomicInteger();
@@ -83,6 +111,15 @@ public class QoSHandler extends ConditionalHandler.Abstract
     private CyclicTimeouts<Entry> timeouts;
     private int maxRequests;
     private Duration maxSuspend = Duration.ZERO;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final LongAdder rateLimited = new LongAdder();
+    private CyclicTimeouts<TokenBucket> bucketTimeouts;
+    private TokenBucket[] overflowBuckets;
+    private Function<Request, String> keyFunction;
+    private double requestRate;
+    private int requestBurst;
+    private int effectiveRequestBurst;
+    private int maxKeys = 10_000;
 
     public QoSHandler()
     {
@@ -150,6 +187,114 @@ public class QoSHandler extends ConditionalHandler.Abstract
         return Math.max(0, -permits);
     }
 
+    /**
+     * @return the function that returns the key of a request, or {@code null} if requests are not keyed
+     */
+    public Function<Request, String> getKeyFunction()
+    {
+        return keyFunction;
+    }
+
+    /**
+     * <p>Sets the function that returns the key of a request, typically one of the
+     * functions provided by {@link Keys}.</p>
+     * <p>Requests with the same key share the same token bucket, and are queued
+     * together when suspended.
+     * Requests for which the function returns {@code null} share a common key.</p>
+     *
+     * @param keyFunction the function that returns the key of a request, or {@code null} if requests are not keyed
+     */
+    public void setKeyFunction(Function<Request, String> keyFunction)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change keyFunction: " + this);
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * @return the max number of requests per second for each key, or {@code 0} for no rate limit
+     */
+    @ManagedAttribute(value = "The maximum number of requests per second for each key", readonly = true)
+    public double getRequestRate()
+    {
+        return requestRate;
+    }
+
+    /**
+     * <p>Sets the max number of requests per second for each key.</p>
+     * <p>The rate is only enforced if a {@link #setKeyFunction(Function) key function} is configured.</p>
+     *
+     * @param requestRate the max number of requests per second for each key, or {@code 0} for no rate limit
+     */
+    public void setRequestRate(double requestRate)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change requestRate: " + this);
+        if (requestRate < 0)
+            throw new IllegalArgumentException("Invalid requestRate");
+        this.requestRate = requestRate;
+    }
+
+    /**
+     * @return the max number of requests that a key may perform in a burst
+     */
+    @ManagedAttribute(value = "The maximum number of requests that a key may perform in a burst", readonly = true)
+    public int getRequestBurst()
+    {
+        return requestBurst;
+    }
+
+    /**
+     * <p>Sets the max number of requests that a key may perform in a burst,
+     * that is the capacity of the token bucket of each key.</p>
+     * <p>A negative or zero value indicates to use the request rate
+     * (rounded up) as the burst.</p>
+     *
+     * @param requestBurst the max number of requests that a key may perform in a burst
+     */
+    public void setRequestBurst(int requestBurst)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Cannot change requestBurst: " + this);
+        this.requestBurst = requestBurst;
+    }
+
+    /**
+     * @return the max number of keys for which a token bucket is retained
+     */
+    @ManagedAttribute("The maximum number of keys for which a token bucket is retained")
+    public int getMaxKeyCount()
+    {
+        return maxKeys;
+    }
+
+    /**
+     * <p>Sets the max number of keys for which a token bucket is retained.</p>
+     * <p>When this number is reached, the requests of new keys share a small
+     * number of token buckets, selected by the hash of the key, until the
+     * token buckets of idle keys are discarded.</p>
+     *
+     * @param maxKeys the max number of keys for which a token bucket is retained
+     */
+    public void setMaxKeyCount(int maxKeys)
+    {
+        if (maxKeys <= 0)
+            throw new IllegalArgumentException("Invalid maxKeys");
+        this.maxKeys = maxKeys;
+    }
+
+    @ManagedAttribute("The number of keys for which a token bucket is retained")
+    public int getKeyCount()
+    {
+        return buckets.size();
+    }
+
+    @ManagedAttribute("The number of requests rejected because their key exceeded the request rate")
+    public long getRateLimitedRequestCount()
+    {
+        return rateLimited.sum();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -168,8 +313,21 @@ public class QoSHandler extends ConditionalHandler.Abstract
         }
         state.set(maxRequests);
 
+        if (getKeyFunction() != null && getRequestRate() > 0)
+        {
+            int burst = getRequestBurst();
+            effectiveRequestBurst = burst > 0 ? burst : (int)Math.ceil(getRequestRate());
+            bucketTimeouts = new BucketTimeouts(getServer().getScheduler());
+            addBean(bucketTimeouts);
+            overflowBuckets = new TokenBucket[OVERFLOW_BUCKETS];
+            for (int i = 0; i < overflowBuckets.length; ++i)
+            {
+                overflowBuckets[i] = new TokenBucket(null);
+            }
+        }
+
         if (LOG.isDebugEnabled())
-            LOG.debug("{} initialized maxRequests={}", this, maxRequests);
+            LOG.debug("{} initialized maxRequests={} requestRate={} requestBurst={}", this, maxRequests, getRequestRate(), effectiveRequestBurst);
 
         super.doStart();
     }
@@ -180,15 +338,80 @@ public class QoSHandler extends ConditionalHandler.Abstract
         super.doStop();
         removeBean(timeouts);
         timeouts.destroy();
+        if (bucketTimeouts != null)
+        {
+            removeBean(bucketTimeouts);
+            bucketTimeouts.destroy();
+            bucketTimeouts = null;
+        }
+        buckets.clear();
+        overflowBuckets = null;
     }
 
     @Override
     public boolean onConditionsMet(Request request, Response response, Callback callback) throws Exception
     {
-        return process(request, response, callback);
+        String key = null;
+        Function<Request, String> keyFunction = getKeyFunction();
+        if (keyFunction != null)
+        {
+            key = Objects.requireNonNullElse(keyFunction.apply(request), "");
+            // Expired requests are re-handled only to be failed, so they do not take a token.
+            if (request.getAttribute(EXPIRED_ATTRIBUTE_NAME) == null && !tryAcquireToken(key))
+            {
+                rateLimited.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} rate limited key={} {}", this, key, request);
+                Response.writeError(request, response, callback, HttpStatus.TOO_MANY_REQUESTS_429);
+                return true;
+            }
+        }
+        return process(request, response, callback, key);
     }
 
-    private boolean process(Request request, Response response, Callback callback) throws Exception
+    private boolean tryAcquireToken(String key)
+    {
+        if (bucketTimeouts == null)
+            return true;
+
+        while (true)
+        {
+            TokenBucket bucket = buckets.get(key);
+            boolean created = false;
+            if (bucket == null)
+            {
+                if (buckets.size() >= getMaxKeyCount())
+                {
+                    // Spread the new keys over several buckets, so that a few
+                    // of them cannot exhaust the tokens of all the others.
+                    bucket = overflowBuckets[Math.floorMod(key.hashCode(), overflowBuckets.length)];
+                }
+                else
+                {
+                    TokenBucket newBucket = new TokenBucket(key);
+                    bucket = buckets.putIfAbsent(key, newBucket);
+                    if (bucket == null)
+                    {
+                        bucket = newBucket;
+                        created = true;
+                    }
+                }
+            }
+
+            Boolean acquired = bucket.tryAcquire();
+            if (acquired == null)
+            {
+                // The bucket expired concurrently, retry with a new one.
+                buckets.remove(key, bucket);
+                continue;
+            }
+            if (created)
+                bucketTimeouts.schedule(bucket);
+            return acquired;
+        }
+    }
+
+    private boolean process(Request request, Response response, Callback callback, String key) throws Exception
     {
         if (LOG.isDebugEnabled())
             LOG.debug("{} processing {}", this, request);
@@ -211,7 +434,7 @@ public class QoSHandler extends ConditionalHandler.Abstract
                     // T1 suspends the request, despite permits are available.
                     // This is avoided in resume() using a spin loop to wait for the request to be suspended.
                     // See correspondent state machine logic in resume() and expire().
-                    suspend(request, response, callback);
+                    suspend(request, response, callback, key);
                     return true;
                 }
                 else
@@ -265,6 +488,23 @@ public class QoSHandler extends ConditionalHandler.Abstract
         return 0;
     }
 
+    /**
+     * <p>Returns the weight of the key of the given suspended request,
+     * a value greater than or equal to {@code 1}.</p>
+     * <p>When suspended requests of different keys have the same priority,
+     * a key with weight {@code 2} has twice as many requests resumed as a
+     * key with weight {@code 1}.
+     * This method is only called if a {@link #setKeyFunction(Function) key function}
+     * is configured, when a key has no other suspended requests.</p>
+     *
+     * @param request the suspended request to compute the weight of its key for
+     * @return the weight of the key of the given suspended request, a value {@code >= 1}
+     */
+    protected int getWeight(Request request)
+    {
+        return 1;
+    }
+
     /**
      * <p>Fails the given suspended request/response with the given error code and failure.</p>
      * <p>This method is called only for suspended requests, in case of timeout while suspended,
@@ -289,18 +529,18 @@ public class QoSHandler extends ConditionalHandler.Abstract
         return nextHandler(request, response, callback);
     }
 
-    private void suspend(Request request, Response response, Callback callback)
+    private void suspend(Request request, Response response, Callback callback, String key)
     {
         int priority = Math.max(0, getPriority(request));
         if (LOG.isDebugEnabled())
-            LOG.debug("{} suspending priority={} {}", this, priority, request);
-        Entry entry = new Entry(request, response, callback, priority);
+            LOG.debug("{} suspending priority={} key={} {}", this, priority, key, request);
+        Entry entry = new Entry(request, response, callback, priority, key);
         queues.compute(priority, (k, v) ->
         {
             if (v == null)
             {
                 priorities.add(priority);
-                v = new ConcurrentLinkedQueue<>();
+                v = key == null ? new ConcurrentLinkedQueue<>() : new FairQueue();
             }
             v.offer(entry);
             return v;
@@ -366,14 +606,16 @@ public class QoSHandler extends ConditionalHandler.Abstract
         private final Response response;
         private final Callback callback;
         private final int priority;
+        private final String key;
         private final long expireNanoTime;
 
-        private Entry(Request request, Response response, Callback callback, int priority)
+        private Entry(Request request, Response response, Callback callback, int priority, String key)
         {
             this.request = request;
             this.response = response;
             this.callback = callback;
             this.priority = priority;
+            this.key = key;
             Duration maxSuspend = getMaxSuspend();
             long suspendNanos = NanoTime.now() + maxSuspend.toNanos();
             if (suspendNanos == Long.MAX_VALUE)
@@ -460,4 +702,270 @@ public class QoSHandler extends ConditionalHandler.Abstract
             return false;
         }
     }
+
+    private class BucketTimeouts extends CyclicTimeouts<TokenBucket>
+    {
+        private BucketTimeouts(Scheduler scheduler)
+        {
+            super(scheduler);
+        }
+
+        @Override
+        protected Iterator<TokenBucket> iterator()
+        {
+            return buckets.values().iterator();
+        }
+
+        @Override
+        protected boolean onExpired(TokenBucket bucket)
+        {
+            if (bucket.expire())
+                buckets.remove(bucket.key, bucket);
+            return false;
+        }
+    }
+
+    /**
+     * <p>The token bucket of a key.</p>
+     * <p>A bucket expires when it is full again, since at that point
+     * it is equivalent to a new bucket and it can be discarded.</p>
+     */
+    private class TokenBucket implements CyclicTimeouts.Expirable
+    {
+        private final AutoLock lock = new AutoLock();
+        private final String key;
+        private double tokens;
+        private long lastNanoTime;
+        private volatile long expireNanoTime = Long.MAX_VALUE;
+        private boolean expired;
+
+        private TokenBucket(String key)
+        {
+            this.key = key;
+            this.tokens = effectiveRequestBurst;
+            this.lastNanoTime = NanoTime.now();
+        }
+
+        /**
+         * @return whether a token was acquired, or {@code null} if this bucket is expired
+         */
+        private Boolean tryAcquire()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                if (expired)
+                    return null;
+
+                long now = NanoTime.now();
+                double rate = getRequestRate();
+                int burst = effectiveRequestBurst;
+                if (NanoTime.isBefore(lastNanoTime, now))
+                {
+                    tokens = Math.min(burst, tokens + NanoTime.elapsed(lastNanoTime, now) * rate / TimeUnit.SECONDS.toNanos(1));
+                    lastNanoTime = now;
+                }
+
+                boolean acquired = tokens >= 1;
+                if (acquired)
+                    tokens -= 1;
+
+                // Only the buckets of the keys are discarded, not the overflow bucket.
+                if (key != null)
+                {
+                    double refillNanos = (burst - tokens) / rate * TimeUnit.SECONDS.toNanos(1);
+                    expireNanoTime = now + (long)Math.min(refillNanos, TimeUnit.DAYS.toNanos(1));
+                }
+                return acquired;
+            }
+        }
+
+        private boolean expire()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                if (NanoTime.isBefore(NanoTime.now(), expireNanoTime))
+                    return false;
+                expired = true;
+                return true;
+            }
+        }
+
+        @Override
+        public long getExpireNanoTime()
+        {
+            return expireNanoTime;
+        }
+    }
+
+    /**
+     * <p>A queue of suspended requests with the same priority, that polls
+     * the requests of different keys with a deficit round-robin scheduling,
+     * where the quantum of each key is its {@link #getWeight(Request) weight}.</p>
+     * <p>Only the keys that have suspended requests are retained.</p>
+     */
+    private class FairQueue extends AbstractQueue<Entry>
+    {
+        private final AutoLock lock = new AutoLock();
+        private final Map<String, KeyQueue> keyQueues = new HashMap<>();
+        private final Deque<KeyQueue> active = new ArrayDeque<>();
+        private int size;
+
+        @Override
+        public boolean offer(Entry entry)
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                KeyQueue keyQueue = keyQueues.get(entry.key);
+                if (keyQueue == null)
+                {
+                    keyQueue = new KeyQueue(entry.key, Math.max(1, getWeight(entry.request)));
+                    keyQueues.put(entry.key, keyQueue);
+                    active.offerLast(keyQueue);
+                }
+                keyQueue.entries.offerLast(entry);
+                ++size;
+                return true;
+            }
+        }
+
+        @Override
+        public Entry poll()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                KeyQueue keyQueue = active.peekFirst();
+                if (keyQueue == null)
+                    return null;
+
+                // A new round for this key.
+                if (keyQueue.deficit == 0)
+                    keyQueue.deficit = keyQueue.weight;
+
+                Entry entry = keyQueue.entries.pollFirst();
+                --keyQueue.deficit;
+                --size;
+
+                if (keyQueue.entries.isEmpty())
+                {
+                    active.pollFirst();
+                    keyQueues.remove(keyQueue.key);
+                }
+                else if (keyQueue.deficit == 0)
+                {
+                    // The quantum is exhausted, move to the next key.
+                    active.pollFirst();
+                    active.offerLast(keyQueue);
+                }
+                return entry;
+            }
+        }
+
+        @Override
+        public Entry peek()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                KeyQueue keyQueue = active.peekFirst();
+                return keyQueue == null ? null : keyQueue.entries.peekFirst();
+            }
+        }
+
+        @Override
+        public boolean remove(Object object)
+        {
+            if (!(object instanceof Entry entry))
+                return false;
+            try (AutoLock ignored = lock.lock())
+            {
+                KeyQueue keyQueue = keyQueues.get(entry.key);
+                if (keyQueue == null || !keyQueue.entries.remove(entry))
+                    return false;
+                --size;
+                if (keyQueue.entries.isEmpty())
+                {
+                    keyQueues.remove(keyQueue.key);
+                    active.remove(keyQueue);
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public Iterator<Entry> iterator()
+        {
+            // Iterate over a copy, as this is called infrequently.
+            try (AutoLock ignored = lock.lock())
+            {
+                List<Entry> entries = new ArrayList<>(size);
+                active.forEach(keyQueue -> entries.addAll(keyQueue.entries));
+                return entries.iterator();
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                return size;
+            }
+        }
+    }
+
+    private static class KeyQueue
+    {
+        private final Deque<Entry> entries = new ArrayDeque<>();
+        private final String key;
+        private final int weight;
+        private int deficit;
+
+        private KeyQueue(String key, int weight)
+        {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * <p>Common functions that return the key of a request,
+     * to be used with {@link #setKeyFunction(Function)}.</p>
+     */
+    public static class Keys
+    {
+        private Keys()
+        {
+        }
+
+        /**
+         * @return a function that returns the remote IP address of a request
+         */
+        public static Function<Request, String> remoteAddress()
+        {
+            return Request::getRemoteAddr;
+        }
+
+        /**
+         * @param name the name of the request header
+         * @return a function that returns the value of the given request header
+         */
+        public static Function<Request, String> header(String name)
+        {
+            Objects.requireNonNull(name);
+            return request -> request.getHeaders().get(name);
+        }
+
+        /**
+         * @return a function that returns the name of the user principal of a request,
+         * or {@code null} if the request is not authenticated
+         */
+        public static Function<Request, String> principal()
+        {
+            return request ->
+            {
+                Request.AuthenticationState authenticationState = Request.getAuthenticationState(request);
+                Principal principal = authenticationState == null ? null : authenticationState.getUserPrincipal();
+                return principal == null ? null : principal.getName();
+            };
+        }
+    }
 }
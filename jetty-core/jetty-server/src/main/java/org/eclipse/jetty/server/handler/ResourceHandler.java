@@ -101,7 +101,10 @@ public class ResourceHandler extends Handler.Wrapper
 
         _byteBufferPool = getByteBufferPool(context);
         ResourceService resourceService = getResourceService();
-        resourceService.setHttpContentFactory(newHttpContentFactory());
+        HttpContent.Factory contentFactory = newHttpContentFactory();
+        // Expose the content factory, for example the cache statistics, via JMX.
+        updateBean(resourceService.getHttpContentFactory(), contentFactory);
+        resourceService.setHttpContentFactory(contentFactory);
         resourceService.setWelcomeFactory(setupWelcomeFactory());
         if (getStyleSheet() == null)
             setStyleSheet(getServer().getDefaultStyleSheet());
@@ -222,6 +225,16 @@ public class ResourceHandler extends Handler.Wrapper
         return _welcomes;
     }
 
+    /**
+     * @return the minimum length of the file content that is written with a
+     * zero-copy file transfer, or {@code -1} if file transfers are disabled
+     * @see ResourceService#getFileTransferThreshold()
+     */
+    public long getFileTransferThreshold()
+    {
+        return _resourceService.getFileTransferThreshold();
+    }
+
     /**
      * @return If true, range requests and responses are supported
      */
@@ -264,6 +277,16 @@ public class ResourceHandler extends Handler.Wrapper
         return _resourceService.getWelcomeMode();
     }
 
+    /**
+     * @param fileTransferThreshold the minimum length of the file content that is written
+     * with a zero-copy file transfer, or {@code -1} to disable file transfers
+     * @see ResourceService#setFileTransferThreshold(long)
+     */
+    public void setFileTransferThreshold(long fileTransferThreshold)
+    {
+        _resourceService.setFileTransferThreshold(fileTransferThreshold);
+    }
+
     /**
      * @param acceptRanges If true, range requests and responses are supported
      */
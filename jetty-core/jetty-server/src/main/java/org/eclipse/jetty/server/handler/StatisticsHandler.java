@@ -16,6 +16,7 @@ package org.eclipse.jetty.server.handler;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -31,14 +32,17 @@ import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 public class StatisticsHandler extends EventsHandler
 {
     private final CounterStatistic _requestStats = new CounterStatistic(); // how many requests are being handled (full lifecycle)
     private final SampleStatistic _requestTimeStats = new SampleStatistic(); // latencies of requests (full lifecycle)
+    private final HistogramStatistic _requestTimeHistogram = new HistogramStatistic(TimeUnit.HOURS.toNanos(1)); // latency distribution of requests (full lifecycle)
     private final CounterStatistic _handleStats = new CounterStatistic(); // how many requests are in handle()
     private final SampleStatistic _handleTimeStats = new SampleStatistic(); // latencies of requests in handle()
+    private final HistogramStatistic _handleTimeHistogram = new HistogramStatistic(TimeUnit.HOURS.toNanos(1)); // latency distribution of requests in handle()
     private final LongAdder _failures = new LongAdder();
     private final LongAdder _handlingFailures = new LongAdder();
     private final LongAdder _responses1xx = new LongAdder();
@@ -79,7 +83,9 @@ public class StatisticsHandler extends EventsHandler
         if (failure != null)
             _handlingFailures.increment();
         _handleStats.decrement();
-        _handleTimeStats.record(NanoTime.since(request.getHeadersNanoTime()));
+        long handleTime = NanoTime.since(request.getHeadersNanoTime());
+        _handleTimeStats.record(handleTime);
+        _handleTimeHistogram.record(handleTime);
     }
 
     @Override
@@ -102,7 +108,9 @@ public class StatisticsHandler extends EventsHandler
     {
         if (failure != null)
             _failures.increment();
-        _requestTimeStats.record(NanoTime.since(request.getBeginNanoTime()));
+        long requestTime = NanoTime.since(request.getBeginNanoTime());
+        _requestTimeStats.record(requestTime);
+        _requestTimeHistogram.record(requestTime);
         _requestStats.decrement();
         switch (status / 100)
         {
@@ -120,8 +128,10 @@ public class StatisticsHandler extends EventsHandler
         dumpObjects(out, indent,
             Dumpable.named("requestStats", _requestStats),
             Dumpable.named("requestTimeStats", _requestTimeStats),
+            Dumpable.named("requestTimeHistogram", _requestTimeHistogram),
             Dumpable.named("handleStats", _handleStats),
             Dumpable.named("handleTimeStats", _handleTimeStats),
+            Dumpable.named("handleTimeHistogram", _handleTimeHistogram),
             Dumpable.named("failures", _failures),
             Dumpable.named("handlingFailures", _handlingFailures),
             Dumpable.named("1xxResponses", _responses1xx),
@@ -140,8 +150,10 @@ public class StatisticsHandler extends EventsHandler
         _startTime = NanoTime.now();
         _requestStats.reset();
         _requestTimeStats.reset();
+        _requestTimeHistogram.reset();
         _handleStats.reset();
         _handleTimeStats.reset();
+        _handleTimeHistogram.reset();
         _failures.reset();
         _handlingFailures.reset();
         _responses1xx.reset();
@@ -205,6 +217,42 @@ public class StatisticsHandler extends EventsHandler
         return _requestTimeStats.getStdDev();
     }
 
+    @ManagedAttribute("50th percentile of request execution time (in ns)")
+    public long getRequestTimeP50()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("90th percentile of request execution time (in ns)")
+    public long getRequestTimeP90()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(90);
+    }
+
+    @ManagedAttribute("99th percentile of request execution time (in ns)")
+    public long getRequestTimeP99()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("99.9th percentile of request execution time (in ns)")
+    public long getRequestTimeP999()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * <p>Returns the distribution of the request execution times (in ns),
+     * that can be used to obtain other percentiles, or the percentiles
+     * over an interval via {@link HistogramStatistic#intervalSnapshot()}.</p>
+     *
+     * @return the distribution of the request execution times
+     */
+    public HistogramStatistic getRequestTimeHistogram()
+    {
+        return _requestTimeHistogram;
+    }
+
     @ManagedAttribute("total number of calls to handle()")
     public int getHandleTotal()
     {
@@ -247,6 +295,27 @@ public class StatisticsHandler extends EventsHandler
         return _handleTimeStats.getStdDev();
     }
 
+    @ManagedAttribute("50th percentile of handle() execution time (in ns)")
+    public long getHandleTimeP50()
+    {
+        return _handleTimeHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("99th percentile of handle() execution time (in ns)")
+    public long getHandleTimeP99()
+    {
+        return _handleTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the distribution of the handle() execution times (in ns)
+     * @see #getRequestTimeHistogram()
+     */
+    public HistogramStatistic getHandleTimeHistogram()
+    {
+        return _handleTimeHistogram;
+    }
+
     @ManagedAttribute("number of failed requests")
     public int getFailures()
     {
@@ -14,11 +14,28 @@
 package org.eclipse.jetty.server.handler.gzip;
 
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.compression.CompressionEncoder;
+import org.eclipse.jetty.util.compression.DeflaterEncoder;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 
 public interface GzipFactory
 {
     DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength);
 
+    /**
+     * <p>Obtains a {@link CompressionEncoder} for the response to the given request.</p>
+     * <p>The default implementation produces the {@code gzip} content-coding using
+     * the {@link DeflaterPool.Entry} returned by {@link #getDeflaterEntry(Request, long)}.</p>
+     *
+     * @param request the request
+     * @param contentLength the response content length, or -1 if unknown
+     * @return an encoder negotiated for the request, or null if the response must not be compressed
+     */
+    default CompressionEncoder getCompressionEncoder(Request request, long contentLength)
+    {
+        DeflaterPool.Entry entry = getDeflaterEntry(request, contentLength);
+        return entry == null ? null : new DeflaterEncoder(entry, true);
+    }
+
     boolean isMimeTypeDeflatable(String mimetype);
 }
@@ -13,10 +13,17 @@
 
 package org.eclipse.jetty.server.handler.gzip;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.EtagUtils;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
@@ -24,6 +31,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
@@ -33,22 +41,61 @@ import org.eclipse.jetty.util.AsciiLowerCaseSet;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IncludeExclude;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.compression.CompressionEncoder;
+import org.eclipse.jetty.util.compression.DeflaterEncoder;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link Handler} that compresses response content and inflates request content.</p>
+ * <p>Although historically named after {@code gzip}, response content may be compressed
+ * with any content-coding for which a {@link CompressionEncoder.Factory} is available.
+ * The {@code gzip} and {@code deflate} content-codings are always available, while other
+ * content-codings, such as {@code br} or {@code zstd}, may be provided by optional modules
+ * via {@link ServiceLoader} or explicitly via {@link #addEncoderFactory(CompressionEncoder.Factory)}.
+ * The content-coding of each response is negotiated from the quality values of the
+ * request {@code Accept-Encoding} header, with ties resolved by the order configured
+ * with {@link #setEncodings(String...)}.</p>
+ */
 public class GzipHandler extends Handler.Wrapper implements GzipFactory
 {
     public static final String GZIP_HANDLER_ETAGS = "o.e.j.s.h.gzip.GzipHandler.etag";
     public static final String GZIP = "gzip";
     public static final String DEFLATE = "deflate";
+    public static final String BR = "br";
+    public static final String ZSTD = "zstd";
     public static final int DEFAULT_MIN_GZIP_SIZE = 32;
     public static final int BREAK_EVEN_GZIP_SIZE = 23;
     private static final Logger LOG = LoggerFactory.getLogger(GzipHandler.class);
+    private static final Map<String, CompressedContentFormat> COMPRESSED_CONTENT_FORMATS = new ConcurrentHashMap<>();
 
+    static
+    {
+        COMPRESSED_CONTENT_FORMATS.put(GZIP, CompressedContentFormat.GZIP);
+        COMPRESSED_CONTENT_FORMATS.put(BR, CompressedContentFormat.BR);
+        COMPRESSED_CONTENT_FORMATS.put(ZSTD, new CompressedContentFormat(ZSTD, ".zst"));
+        COMPRESSED_CONTENT_FORMATS.put(DEFLATE, new CompressedContentFormat(DEFLATE, ".zz"));
+    }
+
+    static CompressedContentFormat getCompressedContentFormat(String encoding)
+    {
+        return COMPRESSED_CONTENT_FORMATS.computeIfAbsent(StringUtil.asciiToLowerCase(encoding), e -> new CompressedContentFormat(e, "." + e));
+    }
+
+    static Iterable<CompressedContentFormat> getCompressedContentFormats()
+    {
+        return COMPRESSED_CONTENT_FORMATS.values();
+    }
+
+    private final Map<String, CompressionEncoder.Factory> _encoderFactories = new LinkedHashMap<>();
+    private final List<CompressionEncoder.Factory> _activeEncoderFactories = new ArrayList<>();
+    private String[] _encodings = {BR, ZSTD, GZIP};
     private InflaterPool _inflaterPool;
     private DeflaterPool _deflaterPool;
+    private CompressionEncoder.Factory _gzipEncoderFactory;
     private int _minGzipSize = DEFAULT_MIN_GZIP_SIZE;
     private boolean _syncFlush = false;
     private int _inflateBufferSize = -1;
@@ -90,6 +137,7 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         _mimeTypes.exclude("application/gzip");
         _mimeTypes.exclude("application/x-bzip2");
         _mimeTypes.exclude("application/brotli");
+        _mimeTypes.exclude("application/zstd");
         _mimeTypes.exclude("application/x-xz");
         _mimeTypes.exclude("application/x-rar-compressed");
 
@@ -115,6 +163,25 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
             addBean(_deflaterPool);
         }
 
+        // Collect the encoders, explicitly configured first, then the built-in and discovered ones.
+        Map<String, CompressionEncoder.Factory> factories = new LinkedHashMap<>(_encoderFactories);
+        _gzipEncoderFactory = new DeflaterEncoder.Factory(_deflaterPool, true);
+        factories.putIfAbsent(GZIP, _gzipEncoderFactory);
+        factories.putIfAbsent(DEFLATE, new DeflaterEncoder.Factory(_deflaterPool, false));
+        TypeUtil.serviceStream(ServiceLoader.load(CompressionEncoder.Factory.class))
+            .forEach(factory -> factories.putIfAbsent(StringUtil.asciiToLowerCase(factory.getEncoding()), factory));
+        for (String encoding : _encodings)
+        {
+            CompressionEncoder.Factory factory = factories.get(encoding);
+            if (factory != null)
+            {
+                _activeEncoderFactories.add(factory);
+                addBean(factory);
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} encoders {}", this, _activeEncoderFactories);
+
         super.doStart();
     }
 
@@ -128,6 +195,64 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
 
         removeBean(_deflaterPool);
         _deflaterPool = null;
+        _gzipEncoderFactory = null;
+
+        _activeEncoderFactories.forEach(this::removeBean);
+        _activeEncoderFactories.clear();
+    }
+
+    /**
+     * @return the content-codings that may be used to compress responses, in order of preference
+     */
+    public String[] getEncodings()
+    {
+        return _encodings.clone();
+    }
+
+    /**
+     * <p>Sets the content-codings that may be used to compress responses, in order of preference.</p>
+     * <p>Content-codings without an available {@link CompressionEncoder.Factory} are ignored.
+     * The preference order is used when the request {@code Accept-Encoding} header lists more than
+     * one of these content-codings with the same quality value.
+     * The default is {@code br, zstd, gzip}, so that {@code br} and {@code zstd} are
+     * used only when an optional module providing them is available.</p>
+     *
+     * @param encodings the content-codings in order of preference, for example {@code br, gzip, deflate}
+     */
+    public void setEncodings(String... encodings)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        List<String> list = new ArrayList<>();
+        for (String encoding : encodings)
+        {
+            for (String e : StringUtil.csvSplit(encoding))
+                list.add(StringUtil.asciiToLowerCase(e));
+        }
+        _encodings = list.toArray(new String[0]);
+    }
+
+    /**
+     * <p>Adds a {@link CompressionEncoder.Factory}, replacing the built-in or discovered
+     * factory for the same content-coding.</p>
+     * <p>The content-coding must also be listed in {@link #setEncodings(String...)}
+     * to be used.</p>
+     *
+     * @param factory the encoder factory to add
+     */
+    public void addEncoderFactory(CompressionEncoder.Factory factory)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _encoderFactories.put(StringUtil.asciiToLowerCase(factory.getEncoding()), factory);
+    }
+
+    /**
+     * @return the encoder factories in use, in order of preference, or an empty list if not started
+     */
+    public List<CompressionEncoder.Factory> getEncoderFactories()
+    {
+        return List.copyOf(_activeEncoderFactories);
     }
 
     /**
@@ -386,7 +511,7 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         }
 
         // check the accept encoding header
-        if (!request.getHeaders().contains(HttpHeader.ACCEPT_ENCODING, "gzip"))
+        if (!isGzipAccepted(request.getHeaders()))
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("{} excluded not gzip accept {}", this, request);
@@ -396,6 +521,137 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         return _deflaterPool.acquire();
     }
 
+    @Override
+    public CompressionEncoder getCompressionEncoder(Request request, long contentLength)
+    {
+        if (contentLength >= 0 && contentLength < _minGzipSize)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} excluded minGzipSize {}", this, request);
+            return null;
+        }
+
+        CompressionEncoder.Factory factory = negotiateEncoderFactory(request.getHeaders());
+        if (factory == null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} excluded no accepted encoding {}", this, request);
+            return null;
+        }
+
+        // The built-in gzip encoder uses getDeflaterEntry(), that may be overridden.
+        if (factory == _gzipEncoderFactory)
+        {
+            DeflaterPool.Entry entry = getDeflaterEntry(request, contentLength);
+            return entry == null ? null : new DeflaterEncoder(entry, true);
+        }
+
+        return factory.newEncoder();
+    }
+
+    /**
+     * <p>Selects the encoder to use from the quality values of the {@code Accept-Encoding}
+     * header, resolving ties with the configured {@link #getEncodings() encodings} order.</p>
+     *
+     * @param headers the request headers
+     * @return the selected encoder factory, or null if no configured content-coding is acceptable
+     */
+    protected CompressionEncoder.Factory negotiateEncoderFactory(HttpFields headers)
+    {
+        List<CompressionEncoder.Factory> factories = _activeEncoderFactories;
+        if (factories.isEmpty())
+            return null;
+
+        // Fast path for a single Accept-Encoding value without quality parameters.
+        HttpField acceptEncoding = null;
+        for (HttpField field : headers)
+        {
+            if (field.getHeader() == HttpHeader.ACCEPT_ENCODING)
+            {
+                if (acceptEncoding != null)
+                {
+                    acceptEncoding = null;
+                    break;
+                }
+                acceptEncoding = field;
+            }
+        }
+        if (acceptEncoding != null && acceptEncoding.getValue().indexOf(';') < 0)
+        {
+            for (CompressionEncoder.Factory factory : factories)
+            {
+                if (acceptEncoding.contains(factory.getEncoding()))
+                    return factory;
+            }
+            if (!acceptEncoding.contains("*"))
+                return null;
+        }
+
+        QuotedQualityCSV values = newAcceptEncodingCSV(headers);
+        for (String value : values)
+        {
+            if ("*".equals(value))
+            {
+                // Any content-coding is acceptable, except those explicitly refused.
+                List<String> refused = values.getRefusedValues();
+                for (CompressionEncoder.Factory factory : factories)
+                {
+                    if (!isRefused(refused, factory.getEncoding()))
+                        return factory;
+                }
+                return null;
+            }
+            if ("identity".equalsIgnoreCase(value))
+                return null;
+            for (CompressionEncoder.Factory factory : factories)
+            {
+                if (factory.getEncoding().equalsIgnoreCase(value))
+                    return factory;
+            }
+        }
+        return null;
+    }
+
+    private QuotedQualityCSV newAcceptEncodingCSV(HttpFields headers)
+    {
+        QuotedQualityCSV values = new QuotedQualityCSV(_encodings);
+        for (HttpField field : headers)
+        {
+            if (field.getHeader() == HttpHeader.ACCEPT_ENCODING)
+                values.addValue(field.getValue());
+        }
+        return values;
+    }
+
+    private static boolean isRefused(List<String> refused, String encoding)
+    {
+        for (String value : refused)
+        {
+            if (value.equalsIgnoreCase(encoding))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isGzipAccepted(HttpFields headers)
+    {
+        if (headers.contains(HttpHeader.ACCEPT_ENCODING, GZIP))
+            return true;
+        if (!headers.contains(HttpHeader.ACCEPT_ENCODING, "*"))
+            return false;
+        return !isRefused(newAcceptEncodingCSV(headers).getRefusedValues(), GZIP);
+    }
+
+    private boolean isEncodingAccepted(HttpField acceptEncoding)
+    {
+        for (CompressionEncoder.Factory factory : _activeEncoderFactories)
+        {
+            if (acceptEncoding.contains(factory.getEncoding()))
+                return true;
+        }
+        return acceptEncoding.contains("*");
+    }
+
     /**
      * Get the current filter list of excluded HTTP methods
      *
@@ -567,7 +823,7 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
                     inflatable |= !seenContentEncoding && field.containsLast("gzip");
                     seenContentEncoding = true;
                 }
-                case ACCEPT_ENCODING -> deflatable = field.contains("gzip");
+                case ACCEPT_ENCODING -> deflatable |= isEncodingAccepted(field);
                 case IF_MATCH, IF_NONE_MATCH -> etagMatches |= field.getValue().contains(EtagUtils.ETAG_SEPARATOR);
             }
         }
@@ -892,6 +1148,6 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
     @Override
     public String toString()
     {
-        return String.format("%s@%x{%s,min=%s,inflate=%s}", getClass().getSimpleName(), hashCode(), getState(), _minGzipSize, _inflateBufferSize);
+        return String.format("%s@%x{%s,min=%s,inflate=%s,encodings=%s}", getClass().getSimpleName(), hashCode(), getState(), _minGzipSize, _inflateBufferSize, String.join(",", _encodings));
     }
 }
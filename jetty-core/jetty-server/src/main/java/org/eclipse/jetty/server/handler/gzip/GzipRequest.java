@@ -93,7 +93,11 @@ public class GzipRequest extends Request.Wrapper
                 case IF_MATCH, IF_NONE_MATCH ->
                 {
                     String etags = field.getValue();
-                    String etagsNoSuffix = CompressedContentFormat.GZIP.stripSuffixes(etags);
+                    String etagsNoSuffix = etags;
+                    for (CompressedContentFormat format : GzipHandler.getCompressedContentFormats())
+                    {
+                        etagsNoSuffix = format.stripSuffixes(etagsNoSuffix);
+                    }
                     if (!etagsNoSuffix.equals(etags))
                     {
                         i.set(new HttpField(field.getHeader(), etagsNoSuffix));
@@ -15,6 +15,7 @@ package org.eclipse.jetty.server.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -62,6 +63,7 @@ import org.eclipse.jetty.util.Attributes;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ExceptionUtil;
+import org.eclipse.jetty.util.IteratingNestedCallback;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -1214,8 +1216,41 @@ public class HttpChannelState implements HttpChannel, Components
         @Override
         public void write(boolean last, ByteBuffer content, Callback callback)
         {
-            long length = BufferUtil.length(content);
+            write(last, content, null, 0, BufferUtil.length(content), callback);
+        }
+
+        /**
+         * @return whether the stream of this response supports file transfers
+         * @see HttpStream#isFileTransferSupported()
+         */
+        public boolean isFileTransferSupported()
+        {
+            try (AutoLock ignored = _request._lock.lock())
+            {
+                HttpChannelState httpChannelState = _request._httpChannelState;
+                HttpStream stream = httpChannelState == null ? null : httpChannelState._stream;
+                return stream != null && stream.isFileTransferSupported();
+            }
+        }
+
+        /**
+         * <p>Writes a region of a file as response content, accounting the bytes
+         * like {@link #write(boolean, ByteBuffer, Callback)} does.</p>
+         *
+         * @param last whether this is the last write of the response
+         * @param file the file to transfer bytes from
+         * @param position the position in the file of the first byte to transfer
+         * @param length the number of bytes to transfer
+         * @param callback the callback to notify when the transfer is complete
+         * @see HttpStream#transferFrom(FileChannel, long, long, Callback)
+         */
+        public void transferFrom(boolean last, FileChannel file, long position, long length, Callback callback)
+        {
+            write(last, null, Objects.requireNonNull(file), position, length, callback);
+        }
 
+        private void write(boolean last, ByteBuffer content, FileChannel file, long position, long length, Callback callback)
+        {
             HttpChannelState httpChannelState;
             HttpStream stream;
             Throwable writeFailure;
@@ -1233,7 +1268,7 @@ public class HttpChannelState implements HttpChannel, Components
                         if (_writeCallback instanceof InterimCallback interimCallback)
                         {
                             // Do this write after the interim callback.
-                            interimCallback.whenComplete((v, t) -> write(last, content, callback));
+                            interimCallback.whenComplete((v, t) -> write(last, content, file, position, length, callback));
                             return;
                         }
                         writeFailure = new WritePendingException();
@@ -1243,7 +1278,10 @@ public class HttpChannelState implements HttpChannel, Components
                         long committedContentLength = httpChannelState._committedContentLength;
                         long contentLength = committedContentLength >= 0 ? committedContentLength : getHeaders().getLongField(HttpHeader.CONTENT_LENGTH);
 
-                        if (contentLength >= 0 && totalWritten != contentLength)
+                        // A file transfer is not framed by the stream, so the content length must be known.
+                        if (file != null && contentLength < 0)
+                            writeFailure = new IllegalStateException("Unknown content-length for file transfer");
+                        else if (contentLength >= 0 && totalWritten != contentLength)
                         {
                             // If the content length were not compatible with what was written, then we need to abort.
                             String lengthError = null;
@@ -1287,9 +1325,74 @@ public class HttpChannelState implements HttpChannel, Components
                     responseMetaData = lockedPrepareResponse(httpChannelState, last);
             }
 
-            if (LOG.isDebugEnabled())
-                LOG.debug("writing last={} {} {}", last, BufferUtil.toDetailString(content), this);
-            stream.send(_request._metaData, responseMetaData, last, content, this);
+            if (file == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("writing last={} {} {}", last, BufferUtil.toDetailString(content), this);
+                stream.send(_request._metaData, responseMetaData, last, content, this);
+            }
+            else
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferring last={} {}+{} {}", last, position, length, this);
+                new FileTransfer(stream, _request._metaData, responseMetaData, last, file, position, length).iterate();
+            }
+        }
+
+        /**
+         * <p>Sends the response metadata, if any, then the file region, then
+         * the last empty content, if necessary, and finally notifies this
+         * {@link ChannelResponse} like a single call to
+         * {@link HttpStream#send(MetaData.Request, MetaData.Response, boolean, ByteBuffer, Callback)} does.</p>
+         */
+        private class FileTransfer extends IteratingNestedCallback
+        {
+            private final HttpStream _stream;
+            private final MetaData.Request _requestMetaData;
+            private MetaData.Response _responseMetaData;
+            private final boolean _last;
+            private final FileChannel _file;
+            private final long _position;
+            private final long _length;
+            private boolean _transferred;
+            private boolean _completed;
+
+            private FileTransfer(HttpStream stream, MetaData.Request requestMetaData, MetaData.Response responseMetaData, boolean last, FileChannel file, long position, long length)
+            {
+                super(ChannelResponse.this);
+                _stream = stream;
+                _requestMetaData = requestMetaData;
+                _responseMetaData = responseMetaData;
+                _last = last;
+                _file = file;
+                _position = position;
+                _length = length;
+            }
+
+            @Override
+            protected Action process()
+            {
+                if (_responseMetaData != null)
+                {
+                    MetaData.Response responseMetaData = _responseMetaData;
+                    _responseMetaData = null;
+                    _stream.send(_requestMetaData, responseMetaData, false, null, this);
+                    return Action.SCHEDULED;
+                }
+                if (!_transferred)
+                {
+                    _transferred = true;
+                    _stream.transferFrom(_file, _position, _length, this);
+                    return Action.SCHEDULED;
+                }
+                if (_last && !_completed)
+                {
+                    _completed = true;
+                    _stream.send(_requestMetaData, null, true, null, this);
+                    return Action.SCHEDULED;
+                }
+                return Action.SUCCEEDED;
+            }
         }
 
         /**
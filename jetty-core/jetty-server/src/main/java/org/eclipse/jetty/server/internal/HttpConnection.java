@@ -15,6 +15,7 @@ package org.eclipse.jetty.server.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.List;
 import java.util.Objects;
@@ -1421,6 +1422,32 @@ public class HttpConnection extends AbstractMetaDataConnection implements Runnab
                 _sendCallback.iterate();
         }
 
+        @Override
+        public boolean isFileTransferSupported()
+        {
+            return _stream.get() == this && getEndPoint().isFileTransferSupported();
+        }
+
+        @Override
+        public void transferFrom(FileChannel file, long position, long length, Callback callback)
+        {
+            if (_generator.getState() != HttpGenerator.State.COMMITTED || _generator.isChunking())
+            {
+                callback.failed(new IllegalStateException("Cannot transfer file " + _generator));
+                return;
+            }
+
+            // Don't transfer the file if this is a HEAD response, or any other type of response that should have no content.
+            if (length == 0 || _generator.isNoContent() || HttpMethod.HEAD.is(_method))
+            {
+                callback.succeeded();
+                return;
+            }
+
+            bytesOut.add(length);
+            getEndPoint().transferFrom(callback, file, position, length);
+        }
+
         @Override
         public long getIdleTimeout()
         {
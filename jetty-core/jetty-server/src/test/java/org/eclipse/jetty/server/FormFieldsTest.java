@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,8 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.Fields;
 import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.Index;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -39,6 +42,7 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -143,4 +147,92 @@ public class FormFieldsTest
         Throwable cause = assertThrows(ExecutionException.class, futureFields::get).getCause();
         assertThat(cause, instanceOf(expectedException));
     }
+
+    private static class MapVisitor implements FormFields.Visitor
+    {
+        private final Map<String, String> fields = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final StringBuilder value = new StringBuilder();
+
+        @Override
+        public void onName(String name)
+        {
+            names.add(name);
+        }
+
+        @Override
+        public void onValue(CharSequence value, boolean last)
+        {
+            this.value.append(value);
+            values.add(value.toString());
+            if (last)
+            {
+                fields.put(names.get(names.size() - 1), this.value.toString());
+                this.value.setLength(0);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("validData")
+    public void testVisitValidFormFields(List<String> chunks, Charset charset, int maxFields, int maxLength, Map<String, String> expected) throws Exception
+    {
+        AsyncContent source = new AsyncContent();
+        MapVisitor visitor = new MapVisitor();
+        CompletableFuture<Integer> futureFields = FormFields.visit(source, charset, null, maxFields, maxLength, visitor);
+        assertFalse(futureFields.isDone());
+
+        int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++)
+        {
+            source.write(i == last, BufferUtil.toBuffer(chunks.get(i), charset), Callback.NOOP);
+        }
+
+        assertEquals(expected.size(), futureFields.get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(expected, visitor.fields);
+    }
+
+    @ParameterizedTest
+    @MethodSource("invalidData")
+    public void testVisitInvalidFormFields(List<String> chunks, Charset charset, int maxFields, int maxLength, Class<? extends Exception> expectedException)
+    {
+        AsyncContent source = new AsyncContent();
+        CompletableFuture<Integer> futureFields = FormFields.visit(source, charset, null, maxFields, maxLength, new MapVisitor());
+        int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++)
+        {
+            source.write(i == last, BufferUtil.toBuffer(chunks.get(i)), Callback.NOOP);
+        }
+        Throwable cause = assertThrows(ExecutionException.class, futureFields::get).getCause();
+        assertThat(cause, instanceOf(expectedException));
+    }
+
+    @Test
+    public void testVisitStreamsValues() throws Exception
+    {
+        String well = "well";
+        Index<String> names = new Index.Builder<String>()
+            .caseSensitive(true)
+            .with(well)
+            .build();
+
+        AsyncContent source = new AsyncContent();
+        MapVisitor visitor = new MapVisitor();
+        CompletableFuture<Integer> futureFields = FormFields.visit(source, UTF_8, names, -1, -1, visitor);
+
+        // The 3 bytes UTF-8 encoding of the value character is split across chunks.
+        byte[] euro = "\u20AC".getBytes(UTF_8);
+        source.write(false, BufferUtil.toBuffer("we%6Cl=va"), Callback.NOOP);
+        source.write(false, BufferUtil.toBuffer(new byte[]{'l', 'u', 'e', euro[0]}), Callback.NOOP);
+        source.write(false, BufferUtil.toBuffer(new byte[]{euro[1], euro[2]}), Callback.NOOP);
+        source.write(true, BufferUtil.toBuffer("&Well=x"), Callback.NOOP);
+
+        assertEquals(2, futureFields.get(10, TimeUnit.SECONDS).intValue());
+        assertEquals(Map.of("well", "value\u20AC", "Well", "x"), visitor.fields);
+        // Well known names are notified with the indexed instance.
+        assertSame(well, visitor.names.get(0));
+        // Values are notified as they are decoded.
+        assertEquals(List.of("va", "lue", "\u20AC", "", "x"), visitor.values);
+    }
 }
@@ -46,6 +46,8 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
 import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
@@ -268,6 +270,56 @@ public class ServerConnectorTest
         }
     }
 
+    @ParameterizedTest
+    @CsvSource({"2,4", "4,2", "0,3"})
+    @DisabledOnOs(value = OS.WINDOWS, disabledReason = "SO_REUSEPORT not available on windows")
+    public void testReusePortListeners(int acceptors, int selectors) throws Exception
+    {
+        Server server = new Server();
+        try
+        {
+            ServerConnector connector = new ServerConnector(server, acceptors, selectors);
+            connector.setReusePortListeners(true);
+            server.addConnector(connector);
+
+            server.setHandler(new Handler.Abstract.NonBlocking()
+            {
+                @Override
+                public boolean handle(Request request, Response response, Callback callback)
+                {
+                    callback.succeeded();
+                    return true;
+                }
+            });
+
+            server.start();
+
+            assertEquals(acceptors > 0 ? acceptors : selectors, connector.getListenerCount());
+
+            // Each connection may be accepted by a different listening socket.
+            for (int i = 0; i < 16; ++i)
+            {
+                try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+                {
+                    HttpTester.Request request = HttpTester.newRequest();
+                    request.put(HttpHeader.HOST, "localhost");
+                    client.write(request.generate());
+                    HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client));
+                    assertNotNull(response);
+                    assertEquals(HttpStatus.OK_200, response.getStatus());
+                }
+            }
+
+            server.stop();
+
+            assertEquals(0, connector.getListenerCount());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
     @Test
     public void testAddFirstConnectionFactory()
     {
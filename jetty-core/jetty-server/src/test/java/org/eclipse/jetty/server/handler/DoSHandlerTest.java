@@ -0,0 +1,138 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DoSHandlerTest
+{
+    private Server server;
+    private LocalConnector connector;
+
+    private void start(DoSHandler dosHandler) throws Exception
+    {
+        server = new Server();
+        connector = new LocalConnector(server);
+        server.addConnector(connector);
+        dosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        server.setHandler(dosHandler);
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(server);
+    }
+
+    private HttpTester.Response get(String path) throws Exception
+    {
+        return HttpTester.parseResponse(connector.getResponse("""
+            GET %s HTTP/1.1
+            Host: localhost
+
+            """.formatted(path)));
+    }
+
+    @Test
+    public void testRequestsOverRateAreRejected() throws Exception
+    {
+        int maxRequestsPerSecond = 5;
+        AtomicLong nanoTime = new AtomicLong(NanoTime.now());
+        DoSHandler dosHandler = new DoSHandler()
+        {
+            @Override
+            long nanoTime()
+            {
+                return nanoTime.get();
+            }
+        };
+        dosHandler.setMaxRequestsPerSecond(maxRequestsPerSecond);
+        start(dosHandler);
+
+        for (int i = 0; i < maxRequestsPerSecond; ++i)
+        {
+            assertEquals(HttpStatus.OK_200, get("/").getStatus());
+        }
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS_429, get("/").getStatus());
+        assertEquals(1, dosHandler.getRejectedRequestCount());
+
+        // The previous window no longer weighs on the rate after 2 seconds.
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(HttpStatus.OK_200, get("/").getStatus());
+    }
+
+    @Test
+    public void testExcludedRequestsAreNotLimited() throws Exception
+    {
+        DoSHandler dosHandler = new DoSHandler();
+        dosHandler.setMaxRequestsPerSecond(1);
+        dosHandler.excludePath("/static/*");
+        start(dosHandler);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            assertEquals(HttpStatus.OK_200, get("/static/file.css").getStatus());
+        }
+        assertEquals(HttpStatus.OK_200, get("/").getStatus());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS_429, get("/").getStatus());
+    }
+
+    @Test
+    public void testRequestsOverRateAreDelayed() throws Exception
+    {
+        DoSHandler dosHandler = new DoSHandler();
+        dosHandler.setMaxRequestsPerSecond(1);
+        dosHandler.setDelay(Duration.ofMillis(200));
+        dosHandler.setRejectStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+        start(dosHandler);
+
+        assertEquals(HttpStatus.OK_200, get("/").getStatus());
+        assertEquals(HttpStatus.OK_200, get("/").getStatus());
+        assertEquals(HttpStatus.OK_200, get("/").getStatus());
+        assertEquals(2, dosHandler.getDelayedRequestCount());
+        assertEquals(0, dosHandler.getRejectedRequestCount());
+
+        // Requests cannot be delayed anymore, so they are rejected.
+        dosHandler.setMaxDelayedRequestCount(0);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE_503, get("/").getStatus());
+        assertEquals(1, dosHandler.getRejectedRequestCount());
+    }
+}
@@ -0,0 +1,211 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.statistic.MetricsRegistry;
+import org.eclipse.jetty.util.statistic.MetricsSource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OpenMetricsHandlerTest
+{
+    private Server _server;
+    private LocalConnector _connector;
+    private StatisticsHandler _statisticsHandler;
+    private OpenMetricsHandler _metricsHandler;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("qtp");
+        _server = new Server(threadPool);
+        _connector = new LocalConnector(_server);
+        _connector.setName("local");
+        _connector.addBean(new ConnectionStatistics());
+        _server.addConnector(_connector);
+
+        ContextHandler context = new ContextHandler("/ctx");
+        _statisticsHandler = new StatisticsHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        context.setHandler(_statisticsHandler);
+        _metricsHandler = new OpenMetricsHandler(context);
+        _server.setHandler(_metricsHandler);
+        _server.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(_server);
+    }
+
+    private HttpTester.Response scrape() throws Exception
+    {
+        return HttpTester.parseResponse(_connector.getResponse("""
+            GET /metrics HTTP/1.1\r
+            Host: localhost\r
+            \r
+            """));
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        for (int i = 0; i < 10; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse("""
+                GET /ctx/ HTTP/1.1\r
+                Host: localhost\r
+                \r
+                """));
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(_statisticsHandler::getRequestsActive, equalTo(0));
+
+        HttpTester.Response response = scrape();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(OpenMetricsHandler.CONTENT_TYPE, response.get(HttpHeader.CONTENT_TYPE));
+        String content = response.getContent();
+        assertThat(content, endsWith("# EOF\n"));
+
+        assertThat(content, containsString("# TYPE jetty_thread_pool_threads gauge\n"));
+        assertThat(content, containsString("jetty_thread_pool_threads_max{pool=\"qtp\"} " + ((QueuedThreadPool)_server.getThreadPool()).getMaxThreads() + "\n"));
+        assertThat(content, containsString("jetty_buffer_pool_buffers{type=\"direct\"} "));
+        assertThat(content, containsString("# TYPE jetty_connections_opened counter\n"));
+        assertThat(content, containsString("jetty_connections_opened_total{connector=\"local\"} "));
+        assertThat(content, containsString("jetty_requests_total{context=\"/ctx\"} 10\n"));
+        assertThat(content, containsString("jetty_responses_total{context=\"/ctx\",code=\"2xx\"} 10\n"));
+        assertThat(content, containsString("# TYPE jetty_request_duration_seconds summary\n"));
+        assertThat(content, containsString("jetty_request_duration_seconds{context=\"/ctx\",quantile=\"0.99\"} 0."));
+        assertThat(content, containsString("jetty_request_duration_seconds_count{context=\"/ctx\"} 10\n"));
+
+        // The metrics resource is not counted by the StatisticsHandler of the context.
+        content = scrape().getContent();
+        assertThat(content, containsString("jetty_requests_total{context=\"/ctx\"} 10\n"));
+        // The quantiles only account for the requests since the previous scrape.
+        assertThat(content, containsString("jetty_request_duration_seconds{context=\"/ctx\",quantile=\"0.99\"} NaN\n"));
+        assertThat(content, containsString("jetty_request_duration_seconds_count{context=\"/ctx\"} 10\n"));
+        assertThat(_metricsHandler.getSampleCount(), greaterThan(0));
+    }
+
+    @Test
+    public void testValuesAreUpdated() throws Exception
+    {
+        assertThat(scrape().getContent(), containsString("jetty_requests_total{context=\"/ctx\"} 0\n"));
+
+        _connector.getResponse("""
+            GET /ctx/ HTTP/1.1\r
+            Host: localhost\r
+            \r
+            """);
+        await().atMost(5, TimeUnit.SECONDS).until(_statisticsHandler::getRequestsActive, equalTo(0));
+
+        assertThat(scrape().getContent(), containsString("jetty_requests_total{context=\"/ctx\"} 1\n"));
+    }
+
+    @Test
+    public void testOtherRequestsAreForwarded() throws Exception
+    {
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse("""
+            GET /ctx/metrics HTTP/1.1\r
+            Host: localhost\r
+            \r
+            """));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertNull(response.get(HttpHeader.CONTENT_TYPE));
+
+        response = HttpTester.parseResponse(_connector.getResponse("""
+            POST /metrics HTTP/1.1\r
+            Host: localhost\r
+            Content-Length: 0\r
+            \r
+            """));
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED_405, response.getStatus());
+    }
+
+    @Test
+    public void testLargeOutputAndMetricsSource() throws Exception
+    {
+        _server.addBean((MetricsSource)(registry, labels) ->
+        {
+            for (int i = 0; i < 1000; ++i)
+            {
+                registry.gauge("test_gauge", "A test gauge\nwith \\ escapes", MetricsRegistry.labels(labels, "id", "\"" + i + "\""), () -> 42);
+            }
+        });
+        _metricsHandler.rescan();
+
+        String content = scrape().getContent();
+        assertThat(content, containsString("# HELP test_gauge A test gauge\\nwith \\\\ escapes\n"));
+        assertThat(content, containsString("test_gauge{id=\"\\\"999\\\"\"} 42\n"));
+        assertThat(content, endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void testInvalidRegistrations()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("invalid-name", "help", "", () -> 0));
+        registry.gauge("name", "help", "", () -> 0);
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("name", "help", "", () -> 0));
+    }
+
+    @Test
+    public void testDuplicateLabelsAreDistinguished() throws Exception
+    {
+        _server.addBean((MetricsSource)(registry, labels) ->
+        {
+            registry.gauge("test_duplicate", "help", labels, () -> 1);
+            registry.gauge("test_duplicate", "help", labels, () -> 2);
+        });
+        _metricsHandler.rescan();
+
+        String content = scrape().getContent();
+        assertThat(content, containsString("test_duplicate 1\n"));
+        assertThat(content, containsString("test_duplicate{instance=\"1\"} 2\n"));
+    }
+}
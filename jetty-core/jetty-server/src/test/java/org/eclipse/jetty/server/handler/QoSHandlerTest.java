@@ -407,4 +407,210 @@ public class QoSHandlerTest
         assertEquals(HttpStatus.OK_200, response.getStatus());
     }
 
+    @Test
+    public void testRequestRatePerKey() throws Exception
+    {
+        QoSHandler qosHandler = new QoSHandler();
+        qosHandler.setKeyFunction(QoSHandler.Keys.header("X-Key"));
+        // A low rate so that tokens are not refilled during the test.
+        qosHandler.setRequestRate(0.01);
+        qosHandler.setRequestBurst(2);
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        start(qosHandler);
+
+        List<Integer> statuses = new ArrayList<>();
+        for (String key : List.of("A", "A", "A", "B"))
+        {
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse("""
+                GET / HTTP/1.1
+                Host: localhost
+                X-Key: %s
+                                
+                """.formatted(key)));
+            statuses.add(response.getStatus());
+        }
+
+        assertEquals(List.of(HttpStatus.OK_200, HttpStatus.OK_200, HttpStatus.TOO_MANY_REQUESTS_429, HttpStatus.OK_200), statuses);
+        assertEquals(1, qosHandler.getRateLimitedRequestCount());
+        assertEquals(2, qosHandler.getKeyCount());
+    }
+
+    @Test
+    public void testDefaultRequestBurstIsNotConfigured() throws Exception
+    {
+        QoSHandler qosHandler = new QoSHandler();
+        qosHandler.setKeyFunction(QoSHandler.Keys.header("X-Key"));
+        // A low rate so that tokens are not refilled during the test.
+        qosHandler.setRequestRate(0.01);
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        start(qosHandler);
+
+        // The burst defaults to the rate rounded up, without changing the configuration.
+        assertEquals(0, qosHandler.getRequestBurst());
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < 2; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse("""
+                GET / HTTP/1.1
+                Host: localhost
+                X-Key: A
+                                
+                """));
+            statuses.add(response.getStatus());
+        }
+        assertEquals(List.of(HttpStatus.OK_200, HttpStatus.TOO_MANY_REQUESTS_429), statuses);
+
+        server.stop();
+        assertEquals(0, qosHandler.getRequestBurst());
+        qosHandler.setRequestRate(2);
+        server.start();
+
+        statuses.clear();
+        for (int i = 0; i < 3; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse("""
+                GET / HTTP/1.1
+                Host: localhost
+                X-Key: A
+                                
+                """));
+            statuses.add(response.getStatus());
+        }
+        assertEquals(List.of(HttpStatus.OK_200, HttpStatus.OK_200, HttpStatus.TOO_MANY_REQUESTS_429), statuses);
+    }
+
+    @Test
+    public void testNewKeysBeyondMaxKeyCountDoNotShareOneBucket() throws Exception
+    {
+        QoSHandler qosHandler = new QoSHandler();
+        qosHandler.setKeyFunction(QoSHandler.Keys.header("X-Key"));
+        // A low rate so that tokens are not refilled during the test.
+        qosHandler.setRequestRate(0.01);
+        qosHandler.setRequestBurst(1);
+        qosHandler.setMaxKeyCount(1);
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        start(qosHandler);
+
+        List<Integer> statuses = new ArrayList<>();
+        // Key "A" fills the key table, key "B" exhausts its bucket, key "C" is not starved.
+        for (String key : List.of("A", "B", "B", "C"))
+        {
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse("""
+                GET / HTTP/1.1
+                Host: localhost
+                X-Key: %s
+                                
+                """.formatted(key)));
+            statuses.add(response.getStatus());
+        }
+
+        assertEquals(List.of(HttpStatus.OK_200, HttpStatus.OK_200, HttpStatus.TOO_MANY_REQUESTS_429, HttpStatus.OK_200), statuses);
+        assertEquals(1, qosHandler.getKeyCount());
+    }
+
+    @Test
+    public void testTokenBucketsExpire() throws Exception
+    {
+        QoSHandler qosHandler = new QoSHandler();
+        qosHandler.setKeyFunction(QoSHandler.Keys.remoteAddress());
+        // The bucket is full again after 100 ms.
+        qosHandler.setRequestRate(10);
+        qosHandler.setRequestBurst(1);
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                callback.succeeded();
+                return true;
+            }
+        });
+        start(qosHandler);
+
+        HttpTester.Response response = HttpTester.parseResponse(connector.getResponse("""
+            GET / HTTP/1.1
+            Host: localhost
+                            
+            """));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(1, qosHandler.getKeyCount());
+
+        await().atMost(5, TimeUnit.SECONDS).until(qosHandler::getKeyCount, is(0));
+    }
+
+    @Test
+    public void testFairResumeAcrossKeys() throws Exception
+    {
+        QoSHandler qosHandler = new QoSHandler();
+        qosHandler.setMaxRequestCount(1);
+        qosHandler.setKeyFunction(QoSHandler.Keys.header("X-Key"));
+        List<Callback> callbacks = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        qosHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                // Save the callback but do not succeed it yet.
+                paths.add(Request.getPathInContext(request));
+                callbacks.add(callback);
+                return true;
+            }
+        });
+        start(qosHandler);
+
+        List<LocalConnector.LocalEndPoint> endPoints = new ArrayList<>();
+        // The first request takes the only permit, the others are suspended.
+        List<String> requests = List.of("/a0", "/a1", "/a2", "/a3", "/b1", "/c1");
+        for (int i = 0; i < requests.size(); ++i)
+        {
+            String path = requests.get(i);
+            endPoints.add(connector.executeRequest("""
+                GET %s HTTP/1.1
+                Host: localhost
+                X-Key: %s
+                                
+                """.formatted(path, path.substring(1, 2))));
+            if (i == 0)
+                await().atMost(5, TimeUnit.SECONDS).until(callbacks::size, is(1));
+            else
+                await().atMost(5, TimeUnit.SECONDS).until(qosHandler::getSuspendedRequestCount, is((long)i));
+        }
+
+        for (int i = 0; i < requests.size(); ++i)
+        {
+            await().atMost(5, TimeUnit.SECONDS).until(callbacks::size, is(1));
+            callbacks.remove(0).succeeded();
+            String text = endPoints.get(requests.indexOf(paths.get(i))).getResponse(false, 5, TimeUnit.SECONDS);
+            HttpTester.Response response = HttpTester.parseResponse(text);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+
+        // Key "a" cannot starve keys "b" and "c".
+        assertEquals(List.of("/a0", "/a1", "/b1", "/c1", "/a2", "/a3"), paths);
+    }
 }
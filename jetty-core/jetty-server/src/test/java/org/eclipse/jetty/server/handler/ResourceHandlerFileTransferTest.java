@@ -0,0 +1,205 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.resource.FileSystemPool;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceHandlerFileTransferTest
+{
+    private final AtomicBoolean transferSupported = new AtomicBoolean();
+    private byte[] bytes;
+    private Server server;
+    private ServerConnector connector;
+    private ResourceHandler resourceHandler;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        assertThat(FileSystemPool.INSTANCE.mounts(), empty());
+        server = new Server();
+        connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+
+        Path dir = MavenTestingUtils.getTargetTestingPath(ResourceHandlerFileTransferTest.class.getSimpleName());
+        FS.ensureEmpty(dir);
+        bytes = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            bytes[i] = (byte)('a' + i % 26);
+        }
+        Files.write(dir.resolve("big.bin"), bytes);
+
+        resourceHandler = new ResourceHandler()
+        {
+            @Override
+            protected HttpContent.Factory newHttpContentFactory()
+            {
+                // No caching, so that the file is never served from memory.
+                return new ResourceHttpContentFactory(getBaseResource(), getMimeTypes());
+            }
+
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                transferSupported.set(Response.isFileTransferSupported(response));
+                return super.handle(request, response, callback);
+            }
+        };
+        resourceHandler.setBaseResource(ResourceFactory.of(resourceHandler).newResource(dir));
+        resourceHandler.setFileTransferThreshold(0);
+        server.setHandler(resourceHandler);
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(server);
+        assertThat(FileSystemPool.INSTANCE.mounts(), empty());
+    }
+
+    @Test
+    public void testFileTransfer() throws Exception
+    {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            // Two requests on the same connection to verify that it stays usable after a transfer.
+            for (int i = 0; i < 2; ++i)
+            {
+                socket.write(BufferUtil.toBuffer("""
+                    GET /big.bin HTTP/1.1\r
+                    Host: local\r
+                    \r
+                    """));
+
+                HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
+                assertNotNull(response);
+                assertEquals(HttpStatus.OK_200, response.getStatus());
+                assertEquals(String.valueOf(bytes.length), response.get(HttpHeader.CONTENT_LENGTH));
+                assertArrayEquals(bytes, response.getContentBytes());
+                assertTrue(transferSupported.get());
+            }
+        }
+    }
+
+    @Test
+    public void testFileTransferRange() throws Exception
+    {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            socket.write(BufferUtil.toBuffer("""
+                GET /big.bin HTTP/1.1\r
+                Host: local\r
+                Range: bytes=1000-1999999\r
+                Connection: close\r
+                \r
+                """));
+
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
+            assertNotNull(response);
+            assertEquals(HttpStatus.PARTIAL_CONTENT_206, response.getStatus());
+            assertEquals("1999000", response.get(HttpHeader.CONTENT_LENGTH));
+            assertArrayEquals(Arrays.copyOfRange(bytes, 1000, 2000000), response.getContentBytes());
+        }
+    }
+
+    @Test
+    public void testFileTransferHead() throws Exception
+    {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            socket.write(BufferUtil.toBuffer("""
+                HEAD /big.bin HTTP/1.1\r
+                Host: local\r
+                \r
+                GET /big.bin HTTP/1.1\r
+                Host: local\r
+                Connection: close\r
+                \r
+                """));
+
+            HttpTester.Input input = HttpTester.from(socket);
+            HttpTester.Response head = HttpTester.parseResponse(input, true);
+            assertNotNull(head);
+            assertEquals(HttpStatus.OK_200, head.getStatus());
+            assertEquals(String.valueOf(bytes.length), head.get(HttpHeader.CONTENT_LENGTH));
+
+            HttpTester.Response response = HttpTester.parseResponse(input);
+            assertNotNull(response);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertArrayEquals(bytes, response.getContentBytes());
+        }
+    }
+
+    @Test
+    public void testWrappedResponseFallsBack() throws Exception
+    {
+        server.stop();
+        GzipHandler gzipHandler = new GzipHandler(resourceHandler);
+        gzipHandler.setMinGzipSize(Integer.MAX_VALUE);
+        server.setHandler(gzipHandler);
+        server.start();
+
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            socket.write(BufferUtil.toBuffer("""
+                GET /big.bin HTTP/1.1\r
+                Host: local\r
+                Accept-Encoding: gzip\r
+                Connection: close\r
+                \r
+                """));
+
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
+            assertNotNull(response);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertArrayEquals(bytes, response.getContentBytes());
+            assertFalse(transferSupported.get());
+        }
+    }
+}
@@ -48,6 +48,7 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -429,6 +430,50 @@ public class StatisticsHandlerTest
         assertEquals(0, _statsHandler.getFailures());
     }
 
+    @Test
+    public void testRequestTimePercentiles() throws Exception
+    {
+        _statsHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                if (Request.getPathInContext(request).startsWith("/slow"))
+                    Thread.sleep(500);
+                callback.succeeded();
+                return true;
+            }
+        });
+        _server.start();
+
+        for (int i = 0; i < 100; ++i)
+        {
+            String path = i == 0 ? "/slow" : "/fast";
+            String request = """
+                GET %s HTTP/1.1\r
+                Host: localhost\r
+                \r
+                """.formatted(path);
+            String response = _connector.getResponse(request);
+            assertThat(response, containsString(" 200 OK"));
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(_statsHandler::getRequestsActive, equalTo(0));
+
+        assertEquals(100, _statsHandler.getRequestTimeHistogram().getCount());
+        assertThat(_statsHandler.getRequestTimeP50(), lessThan(TimeUnit.MILLISECONDS.toNanos(250)));
+        assertThat(_statsHandler.getRequestTimeP999(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(490)));
+        assertThat(_statsHandler.getRequestTimeP999(), lessThanOrEqualTo(_statsHandler.getRequestTimeMax()));
+        assertThat(_statsHandler.getHandleTimeP99(), lessThanOrEqualTo(_statsHandler.getHandleTimeMax()));
+
+        // The interval snapshot does not reset the cumulative percentiles.
+        assertEquals(100, _statsHandler.getRequestTimeHistogram().intervalSnapshot().getCount());
+        assertEquals(0, _statsHandler.getRequestTimeHistogram().intervalSnapshot().getCount());
+        assertThat(_statsHandler.getRequestTimeP999(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(490)));
+
+        _statsHandler.reset();
+        assertEquals(0, _statsHandler.getRequestTimeP999());
+    }
+
     @Test
     public void testHandlingIncrementThenAcceptingIncrement() throws Exception
     {
@@ -73,6 +73,7 @@ import org.eclipse.jetty.util.Fields;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
@@ -1625,6 +1626,100 @@ public class GzipHandlerTest
         assertEquals(CONTENT, testOut.toString(StandardCharsets.UTF_8));
     }
 
+    public static Stream<Arguments> negotiatedEncodingSource()
+    {
+        return Stream.of(
+            Arguments.of("deflate", "deflate"),
+            Arguments.of("gzip, deflate", "gzip"),
+            Arguments.of("gzip;q=0.4, deflate;q=0.5", "deflate"),
+            Arguments.of("deflate;q=0, *", "gzip"),
+            Arguments.of("gzip;q=0, *", "deflate"),
+            Arguments.of("gzip;q=0, deflate;q=0, *", null),
+            Arguments.of("br", null),
+            Arguments.of("identity, gzip;q=0.5", null)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("negotiatedEncodingSource")
+    public void testNegotiatedEncoding(String acceptEncoding, String expectedEncoding) throws Exception
+    {
+        _gzipHandler.setEncodings("br", "gzip", "deflate");
+        _contextHandler.setHandler(new TestHandler());
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", acceptEncoding);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is(expectedEncoding));
+        assertThat(response.getCSV("Vary", false), hasItems("Accept-Encoding"));
+
+        InputStream testIn = new ByteArrayInputStream(response.getContentBytes());
+        if ("gzip".equals(expectedEncoding))
+        {
+            assertThat(response.get("ETag"), is(CONTENT_ETAG_GZIP));
+            testIn = new GZIPInputStream(testIn);
+        }
+        else if ("deflate".equals(expectedEncoding))
+        {
+            assertThat(response.get("ETag"), is(String.format("W/\"%x--deflate\"", CONTENT.hashCode())));
+            testIn = new InflaterInputStream(testIn);
+        }
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+
+        assertEquals(CONTENT, testOut.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGetDeflaterEntryOverride() throws Exception
+    {
+        AtomicInteger entries = new AtomicInteger();
+        GzipHandler gzipHandler = new GzipHandler()
+        {
+            @Override
+            public DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength)
+            {
+                entries.incrementAndGet();
+                if (request.getHeaders().contains("X-No-Gzip"))
+                    return null;
+                return super.getDeflaterEntry(request, contentLength);
+            }
+        };
+        gzipHandler.setMinGzipSize(16);
+        ContextHandler contextHandler = new ContextHandler("/ctx");
+        contextHandler.setHandler(new TestHandler());
+        gzipHandler.setHandler(contextHandler);
+        _server.setHandler(gzipHandler);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "deflate;q=0.5, *");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        assertThat(entries.get(), is(1));
+
+        request.setHeader("X-No-Gzip", "true");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertEquals(CONTENT, response.getContent());
+        assertThat(entries.get(), is(2));
+    }
+
     @Test
     public void testResponseCustomMimeTypeSVG(WorkDir workDir) throws Exception
     {
@@ -13,9 +13,11 @@
 
 package org.eclipse.jetty.server.ssl;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.security.cert.X509Certificate;
@@ -23,8 +25,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
@@ -33,6 +38,8 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.io.ssl.SslHandshakeStatistics;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
@@ -47,13 +54,16 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -183,6 +193,106 @@ public class SslConnectionFactoryTest
         assertEquals(0, history.size());
     }
 
+    @Test
+    public void testHandshakeExecutor() throws Exception
+    {
+        _server.stop();
+        QueuedThreadPool handshakeExecutor = new QueuedThreadPool(2, 1);
+        handshakeExecutor.setName("handshake");
+        SslConnectionFactory sslConnectionFactory = _connector.getBean(SslConnectionFactory.class);
+        sslConnectionFactory.setHandshakeExecutor(handshakeExecutor);
+        SslHandshakeStatistics statistics = new SslHandshakeStatistics();
+        _connector.addBean(statistics);
+        AtomicReference<String> handshakeThread = new AtomicReference<>();
+        _connector.addBean(new SslHandshakeListener()
+        {
+            @Override
+            public void handshakeSucceeded(Event event)
+            {
+                handshakeThread.set(Thread.currentThread().getName());
+            }
+        });
+        _server.start();
+        _port = _connector.getLocalPort();
+
+        HttpTester.Response response = getResponse("127.0.0.1", null);
+        assertThat(response.getContent(), containsString("host=127.0.0.1"));
+
+        assertThat(handshakeThread.get(), Matchers.startsWith("handshake"));
+        assertEquals(1, statistics.getHandshakesSucceeded());
+        assertEquals(0, statistics.getHandshakesFailed());
+        assertThat(statistics.getHandshakeDurationMax(), greaterThan(0L));
+        await().atMost(5, TimeUnit.SECONDS).until(sslConnectionFactory::getPendingHandshakes, Matchers.equalTo(0));
+    }
+
+    @Test
+    public void testHandshakeRejected() throws Exception
+    {
+        _server.stop();
+        QueuedThreadPool handshakeExecutor = new QueuedThreadPool(2, 1);
+        SslConnectionFactory sslConnectionFactory = _connector.getBean(SslConnectionFactory.class);
+        sslConnectionFactory.setHandshakeExecutor(handshakeExecutor);
+        sslConnectionFactory.setMaxPendingHandshakes(0);
+        SslHandshakeStatistics statistics = new SslHandshakeStatistics();
+        _connector.addBean(statistics);
+        _server.start();
+        _port = _connector.getLocalPort();
+
+        assertThrows(IOException.class, () -> getResponse("127.0.0.1", null));
+
+        await().atMost(5, TimeUnit.SECONDS).until(statistics::getHandshakesRejected, Matchers.equalTo(1L));
+        assertEquals(0, statistics.getHandshakesSucceeded());
+        assertEquals(0, statistics.getHandshakesFailed());
+        assertEquals(1, sslConnectionFactory.getRejectedHandshakes());
+
+        // Once the load is gone, TLS handshakes are accepted again.
+        sslConnectionFactory.setMaxPendingHandshakes(-1);
+        HttpTester.Response response = getResponse("127.0.0.1", null);
+        assertThat(response.getContent(), containsString("host=127.0.0.1"));
+        assertEquals(1, statistics.getHandshakesSucceeded());
+    }
+
+    @Test
+    public void testHandshakeInProgressIsPending() throws Exception
+    {
+        _server.stop();
+        QueuedThreadPool handshakeExecutor = new QueuedThreadPool(2, 1);
+        SslConnectionFactory sslConnectionFactory = _connector.getBean(SslConnectionFactory.class);
+        sslConnectionFactory.setHandshakeExecutor(handshakeExecutor);
+        sslConnectionFactory.setMaxPendingHandshakes(1);
+        _server.start();
+        _port = _connector.getLocalPort();
+
+        SslContextFactory.Client clientContextFactory = new SslContextFactory.Client(true);
+        clientContextFactory.start();
+        SSLEngine clientEngine = clientContextFactory.newSSLEngine();
+        clientEngine.setUseClientMode(true);
+        clientEngine.beginHandshake();
+        ByteBuffer clientHello = ByteBuffer.allocate(clientEngine.getSession().getPacketBufferSize());
+        clientEngine.wrap(BufferUtil.EMPTY_BUFFER, clientHello);
+        clientHello.flip();
+
+        try (Socket socket = new Socket("127.0.0.1", _port))
+        {
+            // Start a TLS handshake, without completing it.
+            socket.getOutputStream().write(BufferUtil.toArray(clientHello));
+            assertThat(socket.getInputStream().read(), greaterThan(0));
+
+            // The TLS handshake is pending while waiting for the client,
+            // so that a new TLS handshake is rejected.
+            assertEquals(1, sslConnectionFactory.getPendingHandshakes());
+            assertThrows(IOException.class, () -> getResponse("127.0.0.1", null));
+            assertEquals(1, sslConnectionFactory.getRejectedHandshakes());
+        }
+
+        // The TLS handshake is no longer pending once its connection is closed.
+        await().atMost(5, TimeUnit.SECONDS).until(sslConnectionFactory::getPendingHandshakes, Matchers.equalTo(0));
+        HttpTester.Response response = getResponse("127.0.0.1", null);
+        assertThat(response.getContent(), containsString("host=127.0.0.1"));
+        assertEquals(0, sslConnectionFactory.getPendingHandshakes());
+        clientContextFactory.stop();
+    }
+
     @Test
     public void testServerWithoutHttpConnectionFactory() throws Exception
     {
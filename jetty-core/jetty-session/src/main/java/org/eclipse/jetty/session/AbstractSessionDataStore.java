@@ -18,11 +18,15 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.ExceptionUtil;
 import org.eclipse.jetty.util.FuturePromise;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -65,6 +69,38 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
      */
     public abstract void doStore(String id, SessionData data, long lastSaveTime) throws Exception;
 
+    /**
+     * Store the data of several sessions persistently.
+     * <p>
+     * Implementations must clean the data of the sessions that have been
+     * stored, and must restore the last save time of the sessions that
+     * could not be stored. The default implementation calls
+     * {@link #doStore(String, SessionData, long)} for each session.
+     *
+     * @param sessions the data of the sessions to store
+     * @param lastSaveTimes the times of the previous save of each session, or 0 if never saved
+     * @throws Exception if unable to store the data of one or more sessions
+     */
+    public void doStoreAll(List<SessionData> sessions, long[] lastSaveTimes) throws Exception
+    {
+        Throwable failure = null;
+        for (int i = 0; i < sessions.size(); ++i)
+        {
+            SessionData data = sessions.get(i);
+            try
+            {
+                doStore(data.getId(), data, lastSaveTimes[i]);
+                data.clean();
+            }
+            catch (Exception e)
+            {
+                data.setLastSaved(lastSaveTimes[i]);
+                failure = ExceptionUtil.combine(failure, e);
+            }
+        }
+        ExceptionUtil.ifExceptionThrow(failure);
+    }
+
     /**
      * Load the session from persistent store.
      *
@@ -172,17 +208,7 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
             return;
 
         long lastSave = data.getLastSaved();
-        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
-
-        if (LOG.isDebugEnabled())
-        {
-            LOG.debug("Store: id={}, mdirty={}, dirty={}, lsave={}, period={}, elapsed={}", id, data.isMetaDataDirty(),
-                data.isDirty(), data.getLastSaved(), savePeriodMs, (System.currentTimeMillis() - lastSave));
-        }
-
-        //save session if attribute changed, never been saved or metadata changed (eg expiry time) and save interval exceeded
-        if (data.isDirty() || (lastSave <= 0) ||
-            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs)))
+        if (isStoreNeeded(id, data))
         {
             //set the last saved time to now
             data.setLastSaved(System.currentTimeMillis());
@@ -209,6 +235,62 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         }
     }
 
+    @Override
+    public void storeAll(Collection<SessionData> sessions) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        List<SessionData> batch = new ArrayList<>(sessions.size());
+        long[] lastSaveTimes = new long[sessions.size()];
+        long now = System.currentTimeMillis();
+        for (SessionData data : sessions)
+        {
+            if (data != null && isStoreNeeded(data.getId(), data))
+            {
+                lastSaveTimes[batch.size()] = data.getLastSaved();
+                //set the last saved time to now
+                data.setLastSaved(now);
+                batch.add(data);
+            }
+        }
+
+        if (batch.isEmpty())
+            return;
+
+        final FuturePromise<Void> result = new FuturePromise<>();
+        Runnable r = () ->
+        {
+            try
+            {
+                doStoreAll(batch, lastSaveTimes);
+                result.succeeded(null);
+            }
+            catch (Exception e)
+            {
+                result.failed(e);
+            }
+        };
+        _context.run(r);
+        result.getOrThrow();
+    }
+
+    private boolean isStoreNeeded(String id, SessionData data)
+    {
+        long lastSave = data.getLastSaved();
+        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
+
+        if (LOG.isDebugEnabled())
+        {
+            LOG.debug("Store: id={}, mdirty={}, dirty={}, lsave={}, period={}, elapsed={}", id, data.isMetaDataDirty(),
+                data.isDirty(), data.getLastSaved(), savePeriodMs, (System.currentTimeMillis() - lastSave));
+        }
+
+        //save session if attribute changed, never been saved or metadata changed (eg expiry time) and save interval exceeded
+        return data.isDirty() || (lastSave <= 0) ||
+            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs));
+    }
+
     @Override
     public boolean exists(String id) throws Exception
     {
@@ -25,6 +25,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jetty.util.StringUtil;
@@ -312,14 +313,19 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
                 " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         }
 
-        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
-            throws SQLException
+        public String getUpdateSessionStatementAsString()
         {
-            String s = "update " + getSchemaTableName() +
+            return "update " + getSchemaTableName() +
                 " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
                 getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
                 getMaxIntervalColumn() + " = ?, " + getMapColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
                 " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            String s = getUpdateSessionStatementAsString();
 
             String cp = context.getCanonicalContextPath();
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
@@ -790,6 +796,104 @@ public class JDBCSessionDataStore extends ObjectStreamSessionDataStore
         }
     }
 
+    /**
+     * Store the data of several sessions with JDBC batches of inserts and updates,
+     * in a single transaction.
+     *
+     * @param sessions the data of the sessions to store
+     * @param lastSaveTimes the times of the previous save of each session, or 0 if never saved
+     * @throws Exception if unable to store the sessions, in which case none of them is stored
+     */
+    @Override
+    public void doStoreAll(List<SessionData> sessions, long[] lastSaveTimes) throws Exception
+    {
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(_sessionTableSchema.getInsertSessionStatementAsString());
+                 PreparedStatement update = connection.prepareStatement(_sessionTableSchema.getUpdateSessionStatementAsString()))
+            {
+                int inserts = 0;
+                int updates = 0;
+                for (int i = 0; i < sessions.size(); ++i)
+                {
+                    SessionData data = sessions.get(i);
+                    byte[] bytes;
+                    try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
+                    {
+                        serializeAttributes(data, baos);
+                        bytes = baos.toByteArray();
+                    }
+
+                    if (lastSaveTimes[i] <= 0)
+                    {
+                        insert.setString(1, data.getId()); //session id
+                        insert.setString(2, cp); //context path
+                        insert.setString(3, _context.getVhost()); //first vhost
+                        insert.setString(4, data.getLastNode()); //my node id
+                        insert.setLong(5, data.getAccessed()); //accessTime
+                        insert.setLong(6, data.getLastAccessed()); //lastAccessTime
+                        insert.setLong(7, data.getCreated()); //time created
+                        insert.setLong(8, data.getCookieSet()); //time cookie was set
+                        insert.setLong(9, data.getLastSaved()); //last saved time
+                        insert.setLong(10, data.getExpiry());
+                        insert.setLong(11, data.getMaxInactiveMs());
+                        insert.setBinaryStream(12, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+                        insert.addBatch();
+                        ++inserts;
+                    }
+                    else
+                    {
+                        update.setString(1, data.getLastNode()); //should be my node id
+                        update.setLong(2, data.getAccessed()); //accessTime
+                        update.setLong(3, data.getLastAccessed()); //lastAccessTime
+                        update.setLong(4, data.getLastSaved()); //last saved time
+                        update.setLong(5, data.getExpiry());
+                        update.setLong(6, data.getMaxInactiveMs());
+                        update.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+                        update.setString(8, data.getId());
+                        update.setString(9, cp);
+                        update.setString(10, _context.getVhost());
+                        update.addBatch();
+                        ++updates;
+                    }
+                }
+
+                if (inserts > 0)
+                    insert.executeBatch();
+                if (updates > 0)
+                    update.executeBatch();
+                connection.commit();
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Batch stored {} sessions, inserted={}, updated={}", sessions.size(), inserts, updates);
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+
+            sessions.forEach(SessionData::clean);
+        }
+        catch (Exception e)
+        {
+            for (int i = 0; i < sessions.size(); ++i)
+            {
+                sessions.get(i).setLastSaved(lastSaveTimes[i]);
+            }
+            throw e;
+        }
+    }
+
     @Override
     public Set<String> doCheckExpired(Set<String> candidates, long time)
     {
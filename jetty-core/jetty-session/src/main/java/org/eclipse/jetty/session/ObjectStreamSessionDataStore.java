@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.session;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -70,6 +71,8 @@ public abstract class ObjectStreamSessionDataStore extends AbstractSessionDataSt
 
     /**
      * Serialize the attribute map of the SessionData into the OutputStream provided.
+     * If the attributes of the SessionData have already been serialized by
+     * {@link #serializeAttributes(SessionData)}, they are written as they are.
      * @param data the SessionData whose attributes are to be serialized
      * @param os the OutputStream to receive the serialized attributes
      * @throws Exception if the attributes cannot be serialized
@@ -78,12 +81,33 @@ public abstract class ObjectStreamSessionDataStore extends AbstractSessionDataSt
     {
         Objects.requireNonNull(data);
         Objects.requireNonNull(os);
+        byte[] serializedAttributes = data.getSerializedAttributes();
+        if (serializedAttributes != null)
+        {
+            os.write(serializedAttributes);
+            return;
+        }
         try (ObjectOutputStream oos = newObjectOutputStream(os))
         {
             SessionData.serializeAttributes(data, oos);
         }
     }
 
+    /**
+     * Serialize the attribute map of the SessionData ahead of the write of the session,
+     * for example to write the session data in another thread.
+     * @param data the SessionData whose attributes are to be serialized
+     * @return the serialized attributes, to be set on the SessionData to write
+     * @throws Exception if the attributes cannot be serialized
+     * @see SessionData#setSerializedAttributes(byte[])
+     */
+    byte[] serializeAttributes(SessionData data) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializeAttributes(data, bytes);
+        return bytes.toByteArray();
+    }
+
     /**
      * Deserialize the attribute map from the InputStream provided and store into the SessionData.
      * @param data the SessionData into which to deserialize the attributes
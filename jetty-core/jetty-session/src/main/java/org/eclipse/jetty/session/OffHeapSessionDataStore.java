@@ -0,0 +1,842 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OffHeapSessionDataStore
+ *
+ * <p>A store of session data that keeps the serialized {@link SessionData}
+ * outside of the java heap, either in direct memory or in a memory-mapped file.</p>
+ * <p>When used with a {@link DefaultSessionCache} configured with the
+ * {@link SessionCache#EVICT_ON_SESSION_EXIT} eviction policy, sessions
+ * are materialized as {@link ManagedSession}s only while they are in use
+ * by requests, so that idle sessions do not retain their attributes in the
+ * heap, reducing the old generation size and the garbage collection pauses.</p>
+ * <p>The serialized session data is stored in fixed size memory segments,
+ * divided by a buddy allocator in blocks whose size is a power of two;
+ * a freed block is merged with its buddy, if it is also free, so that
+ * the freed memory can be reused for larger session data.
+ * The blocks are indexed by a hash table of primitive arrays that also holds
+ * the expiry time of each session, so that the {@link HouseKeeper} can find
+ * expired sessions without deserializing the session data.</p>
+ * <p>The session data is kept while this store is stopped, so that sessions
+ * survive the restart of the context, and it is discarded when this store is
+ * {@link #destroy() destroyed}. The memory segments, once reserved, are only
+ * released when this store is destroyed.</p>
+ */
+@ManagedObject
+public class OffHeapSessionDataStore extends ObjectStreamSessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapSessionDataStore.class);
+    private static final int MIN_BLOCK_SIZE = 128;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SCAN_BATCH_SIZE = 256;
+
+    private final AutoLock _lock = new AutoLock();
+    private File _storeDir;
+    private Path _file;
+    private int _segmentSize = 16 * 1024 * 1024;
+    private long _maxMemory = -1;
+    private FileChannel _channel;
+    private ByteBuffer[] _segments;
+    private int _segmentCount;
+    // The heads of the lists of free blocks, one for each size class;
+    // the free blocks store the addresses of the previous and next ones.
+    private long[] _freeLists;
+    // For each segment, the bitmap of the free blocks of each size class.
+    private long[][] _freeBits;
+    private int[] _freeBitOffsets;
+    private long _memoryUsed;
+    // The index of the sessions, an open addressing hash table.
+    private long[] _hashes;
+    private long[] _addresses;
+    private long[] _expiries;
+    private int _size;
+    // The serialized context path and virtual host of this context.
+    private byte[] _contextBytes;
+
+    /**
+     * @return the directory of the files that are memory-mapped to store the session data,
+     * or {@code null} if the session data is stored in direct memory
+     */
+    @ManagedAttribute(value = "dir where sessions are memory-mapped", readonly = true)
+    public File getStoreDir()
+    {
+        return _storeDir;
+    }
+
+    /**
+     * <p>Sets the directory of the files that are memory-mapped to store the session data.</p>
+     * <p>Each context uses its own file, that is created when this store
+     * is started and deleted when this store is stopped.
+     * If the directory is {@code null}, the session data is stored in direct memory.</p>
+     *
+     * @param storeDir the directory of the files that are memory-mapped to store the session data
+     */
+    public void setStoreDir(File storeDir)
+    {
+        checkConfigurable();
+        _storeDir = storeDir;
+    }
+
+    /**
+     * @return the file that is memory-mapped to store the session data,
+     * or {@code null} if the session data is stored in direct memory
+     */
+    public Path getFile()
+    {
+        return _file;
+    }
+
+    /**
+     * @return the size in bytes of the memory segments
+     */
+    @ManagedAttribute(value = "size in bytes of the memory segments", readonly = true)
+    public int getSegmentSize()
+    {
+        return _segmentSize;
+    }
+
+    /**
+     * <p>Sets the size in bytes of the memory segments, that is also the max
+     * size of the serialized data of a session.</p>
+     * <p>The size is rounded up to a power of two.</p>
+     *
+     * @param segmentSize the size in bytes of the memory segments
+     */
+    public void setSegmentSize(int segmentSize)
+    {
+        checkConfigurable();
+        if (segmentSize < MIN_BLOCK_SIZE)
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+        _segmentSize = Integer.highestOneBit(segmentSize - 1) << 1;
+    }
+
+    /**
+     * @return the max memory in bytes used to store the session data, or -1 for unlimited memory
+     */
+    @ManagedAttribute(value = "max memory used to store sessions", readonly = true)
+    public long getMaxMemory()
+    {
+        return _maxMemory;
+    }
+
+    /**
+     * <p>Sets the max memory in bytes used to store the session data.</p>
+     * <p>When the max memory is exhausted, the sessions cannot be stored.</p>
+     *
+     * @param maxMemory the max memory in bytes used to store the session data, or -1 for unlimited memory
+     */
+    public void setMaxMemory(long maxMemory)
+    {
+        checkConfigurable();
+        _maxMemory = maxMemory;
+    }
+
+    /**
+     * @return the number of sessions in this store
+     */
+    @ManagedAttribute(value = "number of sessions in the store", readonly = true)
+    public int getSessionCount()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return _size;
+        }
+    }
+
+    /**
+     * @return the memory in bytes used by the stored session data
+     */
+    @ManagedAttribute(value = "memory used by sessions", readonly = true)
+    public long getMemoryUsed()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return _memoryUsed;
+        }
+    }
+
+    /**
+     * @return the memory in bytes reserved to store the session data
+     */
+    @ManagedAttribute(value = "memory reserved for sessions", readonly = true)
+    public long getMemoryReserved()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return (long)_segmentCount * _segmentSize;
+        }
+    }
+
+    private void checkConfigurable()
+    {
+        checkStarted();
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_segments != null)
+                throw new IllegalStateException("Sessions are stored, destroy the store first");
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        ByteArrayOutputStream contextBytes = new ByteArrayOutputStream();
+        DataOutputStream contextOutput = new DataOutputStream(contextBytes);
+        contextOutput.writeUTF(_context.getCanonicalContextPath());
+        contextOutput.writeUTF(_context.getVhost());
+        _contextBytes = contextBytes.toByteArray();
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_segments == null)
+            {
+                if (_storeDir != null)
+                {
+                    if (!_storeDir.exists() && !_storeDir.mkdirs())
+                        throw new IllegalStateException("Could not create " + _storeDir);
+                    String contextString = _context.getCanonicalContextPath() + "_" + _context.getVhost();
+                    _file = _storeDir.toPath().resolve(contextString + ".sessions");
+                    _channel = FileChannel.open(_file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                int sizeClasses = Integer.numberOfTrailingZeros(_segmentSize / MIN_BLOCK_SIZE) + 1;
+                _freeLists = new long[sizeClasses];
+                Arrays.fill(_freeLists, -1);
+                _freeBitOffsets = new int[sizeClasses + 1];
+                for (int sizeClass = 0; sizeClass < sizeClasses; ++sizeClass)
+                {
+                    _freeBitOffsets[sizeClass + 1] = _freeBitOffsets[sizeClass] + _segmentSize / blockSize(sizeClass);
+                }
+                _segments = new ByteBuffer[16];
+                _freeBits = new long[16][];
+                _hashes = new long[INITIAL_CAPACITY];
+                _addresses = new long[INITIAL_CAPACITY];
+                _expiries = new long[INITIAL_CAPACITY];
+            }
+            else if (_file != null)
+            {
+                // The sessions stored before the restart are retained,
+                // and the segments already mapped remain valid.
+                _channel = FileChannel.open(_file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        try (AutoLock ignored = _lock.lock())
+        {
+            IO.close(_channel);
+            _channel = null;
+        }
+    }
+
+    /**
+     * <p>Discards the stored session data, releasing the memory segments
+     * and deleting the memory-mapped file, if any.</p>
+     */
+    @Override
+    public void destroy()
+    {
+        super.destroy();
+        try (AutoLock ignored = _lock.lock())
+        {
+            _segments = null;
+            _segmentCount = 0;
+            _freeLists = null;
+            _freeBits = null;
+            _freeBitOffsets = null;
+            _memoryUsed = 0;
+            _hashes = null;
+            _addresses = null;
+            _expiries = null;
+            _size = 0;
+            IO.close(_channel);
+            _channel = null;
+            if (_file != null)
+                IO.delete(_file);
+            _file = null;
+        }
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean doExists(String id) throws Exception
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            int index = indexOf(id);
+            if (index < 0 || !isOwnContext(_addresses[index]))
+                return false;
+            long expiry = _expiries[index];
+            if (expiry <= 0)
+                return true; //never expires
+            return expiry > System.currentTimeMillis(); //hasn't yet expired
+        }
+    }
+
+    /**
+     * @param id the session id
+     * @return whether a record exists for the id, regardless of its expiry and context
+     */
+    boolean contains(String id)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return indexOf(id) >= 0;
+        }
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception
+    {
+        byte[] record;
+        try (AutoLock ignored = _lock.lock())
+        {
+            int index = indexOf(id);
+            if (index < 0 || !isOwnContext(_addresses[index]))
+                return null;
+            record = read(_addresses[index]);
+        }
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            String storedId = in.readUTF();
+            long created = in.readLong();
+            long accessed = in.readLong();
+            long lastAccessed = in.readLong();
+            long maxInactive = in.readLong();
+            SessionData data = newSessionData(storedId, created, accessed, lastAccessed, maxInactive);
+            data.setContextPath(in.readUTF());
+            data.setVhost(in.readUTF());
+            data.setLastNode(in.readUTF());
+            data.setCookieSet(in.readLong());
+            data.setExpiry(in.readLong());
+            data.setLastSaved(in.readLong());
+            deserializeAttributes(data, in);
+            return data;
+        }
+        catch (Exception e)
+        {
+            throw new UnreadableSessionDataException(id, _context, e);
+        }
+    }
+
+    @Override
+    public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+    {
+        byte[] record;
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            // The id must be the first field, see readId().
+            out.writeUTF(id);
+            out.writeLong(data.getCreated());
+            out.writeLong(data.getAccessed());
+            out.writeLong(data.getLastAccessed());
+            out.writeLong(data.getMaxInactiveMs());
+            out.writeUTF(data.getContextPath());
+            out.writeUTF(data.getVhost());
+            out.writeUTF(data.getLastNode());
+            out.writeLong(data.getCookieSet());
+            out.writeLong(data.getExpiry());
+            out.writeLong(data.getLastSaved());
+            serializeAttributes(data, out);
+            record = bytes.toByteArray();
+        }
+        catch (Exception e)
+        {
+            throw new UnwriteableSessionDataException(id, _context, e);
+        }
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            long address = allocate(Integer.BYTES + record.length);
+            write(address, record);
+            int index = indexOf(id);
+            if (index >= 0)
+            {
+                free(_addresses[index]);
+                _addresses[index] = address;
+                _expiries[index] = data.getExpiry();
+            }
+            else
+            {
+                insert(hash(id), address, data.getExpiry());
+            }
+        }
+        catch (Exception e)
+        {
+            throw new UnwriteableSessionDataException(id, _context, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_hashes == null)
+                return false;
+            int index = indexOf(id);
+            if (index < 0)
+                return false;
+            free(_addresses[index]);
+            removeAt(index);
+            return true;
+        }
+    }
+
+    @Override
+    public Set<String> doCheckExpired(Set<String> candidates, long time)
+    {
+        Set<String> expired = new HashSet<>();
+        try (AutoLock ignored = _lock.lock())
+        {
+            for (String id : candidates)
+            {
+                int index = indexOf(id);
+                if (index < 0)
+                {
+                    expired.add(id);
+                }
+                else
+                {
+                    long expiry = _expiries[index];
+                    if (expiry > 0 && expiry <= time)
+                        expired.add(id);
+                }
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public Set<String> doGetExpired(long time)
+    {
+        // The table is scanned in batches, releasing the lock in between,
+        // so that loads and stores are not blocked for the whole scan.
+        // Sessions moved by concurrent updates may be missed, and they
+        // are found by the next scavenge.
+        Set<String> expired = new HashSet<>();
+        int index = 0;
+        while (true)
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_hashes == null || index >= _hashes.length)
+                    return expired;
+                int end = Math.min(index + SCAN_BATCH_SIZE, _hashes.length);
+                for (; index < end; ++index)
+                {
+                    long expiry = _expiries[index];
+                    if (_hashes[index] != 0 && expiry > 0 && expiry <= time)
+                        expired.add(readId(_addresses[index]));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void doCleanOrphans(long time)
+    {
+        // This store is not shared with other contexts, so
+        // the orphans are the sessions of this context that
+        // expired long ago and were never loaded again.
+        // The table is scanned in batches, like in doGetExpired().
+        int index = 0;
+        while (true)
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_hashes == null || index >= _hashes.length)
+                    return;
+                int end = Math.min(index + SCAN_BATCH_SIZE, _hashes.length);
+                while (index < end)
+                {
+                    long expiry = _expiries[index];
+                    if (_hashes[index] != 0 && expiry > 0 && expiry <= time)
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Deleting orphan session {} expired at {}", readId(_addresses[index]), expiry);
+                        free(_addresses[index]);
+                        // Removal may shift another entry into this slot, so check it again.
+                        removeAt(index);
+                    }
+                    else
+                    {
+                        ++index;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long hash(String id)
+    {
+        // 64-bit FNV-1a, with 0 reserved for empty slots.
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < id.length(); ++i)
+        {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int slot(long hash, int mask)
+    {
+        return (int)(hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int indexOf(String id)
+    {
+        long hash = hash(id);
+        int mask = _hashes.length - 1;
+        for (int i = slot(hash, mask); ; i = (i + 1) & mask)
+        {
+            long h = _hashes[i];
+            if (h == 0)
+                return -1;
+            // Different ids may have the same hash, so compare the stored id.
+            if (h == hash && id.equals(readId(_addresses[i])))
+                return i;
+        }
+    }
+
+    private void insert(long hash, long address, long expiry)
+    {
+        if ((_size + 1) * 4L > _hashes.length * 3L)
+            resize();
+        int mask = _hashes.length - 1;
+        int i = slot(hash, mask);
+        while (_hashes[i] != 0)
+        {
+            i = (i + 1) & mask;
+        }
+        _hashes[i] = hash;
+        _addresses[i] = address;
+        _expiries[i] = expiry;
+        ++_size;
+    }
+
+    private void resize()
+    {
+        long[] hashes = _hashes;
+        long[] addresses = _addresses;
+        long[] expiries = _expiries;
+        int capacity = hashes.length * 2;
+        _hashes = new long[capacity];
+        _addresses = new long[capacity];
+        _expiries = new long[capacity];
+        _size = 0;
+        for (int i = 0; i < hashes.length; ++i)
+        {
+            if (hashes[i] != 0)
+                insert(hashes[i], addresses[i], expiries[i]);
+        }
+    }
+
+    private void removeAt(int index)
+    {
+        // Backward shift deletion, so that no tombstones are necessary.
+        int mask = _hashes.length - 1;
+        int i = index;
+        int j = index;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            long hash = _hashes[j];
+            if (hash == 0)
+                break;
+            int k = slot(hash, mask);
+            // Move the entry at j if its ideal slot k is not cyclically in (i, j].
+            boolean stays = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (!stays)
+            {
+                _hashes[i] = hash;
+                _addresses[i] = _addresses[j];
+                _expiries[i] = _expiries[j];
+                i = j;
+            }
+        }
+        _hashes[i] = 0;
+        _addresses[i] = 0;
+        _expiries[i] = 0;
+        --_size;
+    }
+
+    private static long address(int segment, int sizeClass, int offset)
+    {
+        return ((long)segment << 40) | ((long)sizeClass << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long address)
+    {
+        return (int)(address >>> 40);
+    }
+
+    private static int sizeClassOf(long address)
+    {
+        return (int)(address >>> 32) & 0xFF;
+    }
+
+    private static int offsetOf(long address)
+    {
+        return (int)address;
+    }
+
+    private static int blockSize(int sizeClass)
+    {
+        return MIN_BLOCK_SIZE << sizeClass;
+    }
+
+    private long allocate(int size) throws IOException
+    {
+        if (size > _segmentSize)
+            throw new IllegalArgumentException("Session data too large " + size + " > " + _segmentSize);
+        int sizeClass = size <= MIN_BLOCK_SIZE ? 0 : 32 - Integer.numberOfLeadingZeros((size - 1) / MIN_BLOCK_SIZE);
+
+        long address = split(sizeClass);
+        if (address < 0)
+        {
+            newSegment();
+            address = split(sizeClass);
+        }
+        _memoryUsed += blockSize(sizeClass);
+        return address;
+    }
+
+    private long split(int sizeClass)
+    {
+        // Take the smallest free block that is large enough, and
+        // split it in halves, until one is of the right size.
+        for (int larger = sizeClass; larger < _freeLists.length; ++larger)
+        {
+            long address = pop(larger);
+            if (address >= 0)
+            {
+                int segment = segmentOf(address);
+                int offset = offsetOf(address);
+                while (larger > sizeClass)
+                {
+                    --larger;
+                    push(address(segment, larger, offset + blockSize(larger)));
+                }
+                return address(segment, sizeClass, offset);
+            }
+        }
+        return -1;
+    }
+
+    private void newSegment() throws IOException
+    {
+        if (_maxMemory >= 0 && (long)(_segmentCount + 1) * _segmentSize > _maxMemory)
+            throw new IllegalStateException("Max memory exhausted " + _maxMemory);
+
+        ByteBuffer segment = _channel == null
+            ? ByteBuffer.allocateDirect(_segmentSize)
+            : _channel.map(FileChannel.MapMode.READ_WRITE, (long)_segmentCount * _segmentSize, _segmentSize);
+        if (_segmentCount == _segments.length)
+        {
+            _segments = Arrays.copyOf(_segments, _segmentCount * 2);
+            _freeBits = Arrays.copyOf(_freeBits, _segmentCount * 2);
+        }
+        _segments[_segmentCount] = segment;
+        _freeBits[_segmentCount] = new long[(_freeBitOffsets[_freeLists.length] + Long.SIZE - 1) / Long.SIZE];
+        // The whole segment is a free block of the largest size class.
+        push(address(_segmentCount++, _freeLists.length - 1, 0));
+        if (LOG.isDebugEnabled())
+            LOG.debug("Allocated segment #{} of {} bytes for {}", _segmentCount, _segmentSize, this);
+    }
+
+    private void free(long address)
+    {
+        int segment = segmentOf(address);
+        int sizeClass = sizeClassOf(address);
+        int offset = offsetOf(address);
+        _memoryUsed -= blockSize(sizeClass);
+        // Merge the block with its buddy while the buddy is free.
+        while (sizeClass < _freeLists.length - 1)
+        {
+            int buddyOffset = offset ^ blockSize(sizeClass);
+            long buddy = address(segment, sizeClass, buddyOffset);
+            if (!isFree(buddy))
+                break;
+            unlink(buddy);
+            offset = Math.min(offset, buddyOffset);
+            ++sizeClass;
+        }
+        push(address(segment, sizeClass, offset));
+    }
+
+    private int freeBitIndex(long address)
+    {
+        int sizeClass = sizeClassOf(address);
+        return _freeBitOffsets[sizeClass] + offsetOf(address) / blockSize(sizeClass);
+    }
+
+    private boolean isFree(long address)
+    {
+        int index = freeBitIndex(address);
+        return (_freeBits[segmentOf(address)][index / Long.SIZE] & (1L << index)) != 0;
+    }
+
+    private void setFree(long address, boolean free)
+    {
+        int index = freeBitIndex(address);
+        long[] bits = _freeBits[segmentOf(address)];
+        if (free)
+            bits[index / Long.SIZE] |= 1L << index;
+        else
+            bits[index / Long.SIZE] &= ~(1L << index);
+    }
+
+    private void push(long address)
+    {
+        int sizeClass = sizeClassOf(address);
+        long head = _freeLists[sizeClass];
+        setLinks(address, -1, head);
+        if (head >= 0)
+            setLinks(head, address, nextOf(head));
+        _freeLists[sizeClass] = address;
+        setFree(address, true);
+    }
+
+    private long pop(int sizeClass)
+    {
+        long address = _freeLists[sizeClass];
+        if (address >= 0)
+            unlink(address);
+        return address;
+    }
+
+    private void unlink(long address)
+    {
+        long previous = previousOf(address);
+        long next = nextOf(address);
+        if (previous >= 0)
+            setLinks(previous, previousOf(previous), next);
+        else
+            _freeLists[sizeClassOf(address)] = next;
+        if (next >= 0)
+            setLinks(next, previous, nextOf(next));
+        setFree(address, false);
+    }
+
+    private long previousOf(long address)
+    {
+        return _segments[segmentOf(address)].getLong(offsetOf(address));
+    }
+
+    private long nextOf(long address)
+    {
+        return _segments[segmentOf(address)].getLong(offsetOf(address) + Long.BYTES);
+    }
+
+    private void setLinks(long address, long previous, long next)
+    {
+        ByteBuffer segment = _segments[segmentOf(address)];
+        int offset = offsetOf(address);
+        segment.putLong(offset, previous);
+        segment.putLong(offset + Long.BYTES, next);
+    }
+
+    private void write(long address, byte[] record)
+    {
+        ByteBuffer segment = _segments[segmentOf(address)];
+        int offset = offsetOf(address);
+        segment.putInt(offset, record.length);
+        segment.put(offset + Integer.BYTES, record);
+    }
+
+    private byte[] read(long address)
+    {
+        ByteBuffer segment = _segments[segmentOf(address)];
+        int offset = offsetOf(address);
+        byte[] record = new byte[segment.getInt(offset)];
+        segment.get(offset + Integer.BYTES, record);
+        return record;
+    }
+
+    private String readId(long address)
+    {
+        ByteBuffer segment = _segments[segmentOf(address)];
+        int offset = offsetOf(address) + Integer.BYTES;
+        // The id is written with DataOutput.writeUTF(), prefixed by its length.
+        byte[] id = new byte[Short.BYTES + (segment.getShort(offset) & 0xFFFF)];
+        segment.get(offset, id);
+        try
+        {
+            return new DataInputStream(new ByteArrayInputStream(id)).readUTF();
+        }
+        catch (IOException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private boolean isOwnContext(long address)
+    {
+        // Compare the serialized bytes in place, to avoid deserializing the strings.
+        ByteBuffer segment = _segments[segmentOf(address)];
+        int offset = offsetOf(address) + Integer.BYTES;
+        // Skip the id and the 4 timestamps that precede the context path, see doStore().
+        offset += Short.BYTES + (segment.getShort(offset) & 0xFFFF) + 4 * Long.BYTES;
+        for (int i = 0; i < _contextBytes.length; ++i)
+        {
+            if (segment.get(offset + i) != _contextBytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[dir=%s,segmentSize=%d,maxMemory=%d]", super.toString(), _storeDir, _segmentSize, _maxMemory);
+    }
+}
@@ -0,0 +1,88 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.File;
+
+/**
+ * OffHeapSessionDataStoreFactory
+ */
+public class OffHeapSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    File _storeDir;
+    int _segmentSize = 16 * 1024 * 1024;
+    long _maxMemory = -1;
+
+    /**
+     * @return the directory of the files that are memory-mapped to store the session data
+     */
+    public File getStoreDir()
+    {
+        return _storeDir;
+    }
+
+    /**
+     * Set the directory of the files that are memory-mapped to store the session data,
+     * or {@code null} to store the session data in direct memory.
+     * @param storeDir the directory of the files that are memory-mapped to store the session data
+     */
+    public void setStoreDir(File storeDir)
+    {
+        _storeDir = storeDir;
+    }
+
+    /**
+     * @return the size in bytes of the memory segments
+     */
+    public int getSegmentSize()
+    {
+        return _segmentSize;
+    }
+
+    /**
+     * @param segmentSize the size in bytes of the memory segments
+     */
+    public void setSegmentSize(int segmentSize)
+    {
+        _segmentSize = segmentSize;
+    }
+
+    /**
+     * @return the max memory in bytes used to store the session data
+     */
+    public long getMaxMemory()
+    {
+        return _maxMemory;
+    }
+
+    /**
+     * @param maxMemory the max memory in bytes used to store the session data, or -1 for unlimited memory
+     */
+    public void setMaxMemory(long maxMemory)
+    {
+        _maxMemory = maxMemory;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionManager manager)
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        store.setStoreDir(getStoreDir());
+        store.setSegmentSize(getSegmentSize());
+        store.setMaxMemory(getMaxMemory());
+        store.setGracePeriodSec(getGracePeriodSec());
+        store.setSavePeriodSec(getSavePeriodSec());
+        return store;
+    }
+}
@@ -54,6 +54,7 @@ public class SessionData implements Serializable
     protected boolean _dirty;
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
+    private transient byte[] _serializedAttributes; //attributes already serialized by an ObjectStreamSessionDataStore
 
     /**
      * Serialize the attribute map of the session.
@@ -283,6 +284,20 @@ public class SessionData implements Serializable
         return old;
     }
 
+    /**
+     * @return the attributes already serialized by {@link ObjectStreamSessionDataStore#serializeAttributes(SessionData)},
+     * or null if the attributes must be serialized when the session is written
+     */
+    byte[] getSerializedAttributes()
+    {
+        return _serializedAttributes;
+    }
+
+    void setSerializedAttributes(byte[] serializedAttributes)
+    {
+        _serializedAttributes = serializedAttributes;
+    }
+
     /**
      * Clear all dirty flags.
      */
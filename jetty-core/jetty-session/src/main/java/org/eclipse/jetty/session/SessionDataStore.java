@@ -13,8 +13,11 @@
 
 package org.eclipse.jetty.session;
 
+import java.util.Collection;
 import java.util.Set;
 
+import org.eclipse.jetty.util.ExceptionUtil;
+
 /**
  * SessionDataStore
  *
@@ -63,4 +66,33 @@ public interface SessionDataStore extends SessionDataMap
      * @throws Exception if problem checking existence with persistence layer
      */
     public boolean exists(String id) throws Exception;
+
+    /**
+     * Store the data of several sessions, each keyed by its own
+     * {@link SessionData#getId() id}.
+     * <p>
+     * Implementations may write the sessions in a single batch.
+     * The default implementation stores each session in turn, and
+     * throws the first failure, if any, after all the sessions have
+     * been tried.
+     *
+     * @param sessions the data of the sessions to store
+     * @throws Exception if unable to write the data of one or more sessions
+     */
+    public default void storeAll(Collection<SessionData> sessions) throws Exception
+    {
+        Throwable failure = null;
+        for (SessionData data : sessions)
+        {
+            try
+            {
+                store(data.getId(), data);
+            }
+            catch (Exception x)
+            {
+                failure = ExceptionUtil.combine(failure, x);
+            }
+        }
+        ExceptionUtil.ifExceptionThrow(failure);
+    }
 }
@@ -0,0 +1,628 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WriteBehindSessionDataStore
+ *
+ * A SessionDataStore that defers the writes of session data to a delegate
+ * SessionDataStore, so that the requests do not wait for the persistent store.
+ *
+ * When a session is stored, a snapshot of its data is queued, replacing any
+ * snapshot already queued for the same session id, so that repeated writes of
+ * the same session are coalesced into a single write. The queued snapshots are
+ * written in batches via {@link SessionDataStore#storeAll(java.util.Collection)},
+ * every {@link #getFlushPeriodMs() flush period}, or as soon as
+ * {@link #getMaxBatchSize() max batch size} snapshots are queued.
+ *
+ * The snapshot holds the attributes serialized by the thread that stores the
+ * session, so that the application can keep modifying them while the snapshot
+ * is queued. If the delegate is an {@link ObjectStreamSessionDataStore}, the
+ * attributes are serialized by the delegate and it writes them as they are;
+ * otherwise they are deserialized into the snapshot when it is written.
+ *
+ * The flush period bounds the writes that can be lost if the server crashes:
+ * a flush period of 0 or less writes the session data through to the delegate
+ * SessionDataStore synchronously, as if this store was not present.
+ * Queued writes are always flushed when this store is stopped.
+ *
+ * Loading, deleting or checking the expiry of sessions first flushes the queued
+ * writes that may affect the result, so that they are consistent with the
+ * writes performed so far. The outcome of the writes is applied to the session
+ * data the next time the session is stored: if a write fails, the session is
+ * marked dirty again, so that it is written again.
+ */
+@ManagedObject
+public class WriteBehindSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindSessionDataStore.class);
+
+    public static final long DEFAULT_FLUSH_PERIOD_MS = 1000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * The actual store for the session data
+     */
+    protected SessionDataStore _store;
+
+    private final AutoLock _lock = new AutoLock();
+    private final AutoLock _flushLock = new AutoLock();
+    private final Map<String, Pending> _pending = new LinkedHashMap<>();
+    private final Map<String, Long> _lastSaved = new HashMap<>();
+    private final Set<String> _unsaved = new HashSet<>();
+    private final LongAdder _coalesced = new LongAdder();
+    private final LongAdder _batches = new LongAdder();
+    private long _flushPeriodMs = DEFAULT_FLUSH_PERIOD_MS;
+    private int _maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private SessionContext _context;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _task;
+
+    /**
+     * @param store the actual store for the session data
+     */
+    public WriteBehindSessionDataStore(SessionDataStore store)
+    {
+        _store = store;
+        installBean(_store, true);
+    }
+
+    /**
+     * Get the delegate session store.
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    /**
+     * @return the max time in ms that a write is deferred, or 0 or less if writes are not deferred
+     */
+    @ManagedAttribute(value = "max time in ms that writes are deferred", readonly = true)
+    public long getFlushPeriodMs()
+    {
+        return _flushPeriodMs;
+    }
+
+    /**
+     * Set the max time in ms that a write is deferred, which is also the max
+     * time of writes that may be lost if the server crashes.
+     *
+     * @param flushPeriodMs the max time in ms that a write is deferred,
+     * or 0 or less to write the session data synchronously
+     */
+    public void setFlushPeriodMs(long flushPeriodMs)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _flushPeriodMs = flushPeriodMs;
+    }
+
+    /**
+     * @return the max number of sessions written in a single batch
+     */
+    @ManagedAttribute(value = "max number of sessions written in a single batch", readonly = true)
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * Set the max number of sessions written in a single batch; a flush
+     * is triggered as soon as this number of sessions is queued.
+     *
+     * @param maxBatchSize the max number of sessions written in a single batch
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Invalid max batch size: " + maxBatchSize);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the number of sessions whose writes are queued
+     */
+    @ManagedAttribute("number of sessions whose writes are queued")
+    public int getPendingCount()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return _pending.size();
+        }
+    }
+
+    /**
+     * @return the number of writes that were coalesced with a queued write of the same session
+     */
+    @ManagedAttribute("number of writes coalesced with a queued write")
+    public long getCoalescedCount()
+    {
+        return _coalesced.sum();
+    }
+
+    /**
+     * @return the number of batches written to the delegate store
+     */
+    @ManagedAttribute("number of batches written")
+    public long getBatchCount()
+    {
+        return _batches.sum();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        _context = context;
+        _store.initialize(context);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        if (_flushPeriodMs > 0)
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                //try and use a common scheduler, fallback to own
+                if (_context != null && _context.getSessionManager() instanceof AbstractSessionManager sessionManager)
+                {
+                    Server server = sessionManager.getServer();
+                    if (server != null)
+                        _scheduler = server.getScheduler();
+                }
+
+                if (_scheduler == null)
+                {
+                    _scheduler = new ScheduledExecutorScheduler(String.format("Session-WriteBehind-%x", hashCode()), false);
+                    _ownScheduler = true;
+                    _scheduler.start();
+                }
+                else if (!_scheduler.isStarted())
+                {
+                    throw new IllegalStateException("Shared scheduler not started");
+                }
+            }
+            schedule();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler scheduler = null;
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_task != null)
+                _task.cancel();
+            _task = null;
+            if (_ownScheduler)
+                scheduler = _scheduler;
+            _ownScheduler = false;
+            _scheduler = null;
+        }
+        if (scheduler != null)
+            scheduler.stop();
+
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to flush session writes on stop", e);
+        }
+        super.doStop();
+    }
+
+    private void schedule()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_scheduler != null)
+                _task = _scheduler.schedule(this::onFlushTimeout, _flushPeriodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onFlushTimeout()
+    {
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to flush session writes", e);
+        }
+        finally
+        {
+            schedule();
+        }
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        if (data == null)
+            return;
+
+        if (_flushPeriodMs <= 0)
+        {
+            _store.store(id, data);
+            return;
+        }
+
+        //apply the outcome of the previous writes, while the caller holds the session lock
+        Long lastSaved;
+        boolean unsaved;
+        try (AutoLock ignored = _lock.lock())
+        {
+            lastSaved = _lastSaved.remove(id);
+            unsaved = _unsaved.remove(id);
+        }
+        if (lastSaved != null)
+            data.setLastSaved(lastSaved);
+        if (unsaved)
+            data.setDirty(true);
+
+        //nothing to write if unchanged since the last save
+        if (!data.isDirty() && !data.isMetaDataDirty() && data.getLastSaved() > 0)
+            return;
+
+        SessionData snapshot = _store.newSessionData(data.getId(), data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+        snapshot.copy(data);
+        byte[] attributes = null;
+        if (_store instanceof ObjectStreamSessionDataStore objectStreamStore)
+        {
+            //the delegate writes the attributes serialized here, without serializing them again
+            snapshot.setSerializedAttributes(objectStreamStore.serializeAttributes(data));
+        }
+        else
+        {
+            //the attributes are restored from their serialized form when the snapshot is written
+            snapshot.clearAllAttributes();
+            attributes = serializeAttributes(data);
+        }
+        snapshot.setDirty(data.isDirty());
+        snapshot.setMetaDataDirty(data.isMetaDataDirty());
+        //the changes are now owned by the snapshot
+        data.clean();
+
+        Scheduler scheduler = null;
+        try (AutoLock ignored = _lock.lock())
+        {
+            Pending previous = _pending.remove(id);
+            if (previous != null)
+            {
+                _coalesced.increment();
+                //keep the changes of the previous snapshot that have not been written yet
+                if (previous._snapshot.isDirty())
+                    snapshot.setDirty(true);
+                if (previous._snapshot.isMetaDataDirty())
+                    snapshot.setMetaDataDirty(true);
+            }
+            _pending.put(id, new Pending(snapshot, attributes));
+            if (_pending.size() == _maxBatchSize)
+                scheduler = _scheduler;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Queued write of session {}, flush={}", id, scheduler != null);
+
+        if (scheduler != null)
+            scheduler.schedule(this::onFlushSizeReached, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private static byte[] serializeAttributes(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            SessionData.serializeAttributes(data, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void deserializeAttributes(Pending pending) throws Exception
+    {
+        if (pending._attributes == null)
+            return;
+        Exception[] failure = new Exception[1];
+        Runnable deserialize = () ->
+        {
+            try (ClassLoadingObjectInputStream in = new ClassLoadingObjectInputStream(new ByteArrayInputStream(pending._attributes)))
+            {
+                SessionData.deserializeAttributes(pending._snapshot, in);
+            }
+            catch (Exception e)
+            {
+                failure[0] = e;
+            }
+        };
+        //the attributes may only be loadable by the context classloader
+        if (_context != null)
+            _context.run(deserialize);
+        else
+            deserialize.run();
+        if (failure[0] != null)
+            throw failure[0];
+    }
+
+    private void onFlushSizeReached()
+    {
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to flush session writes", e);
+        }
+    }
+
+    /**
+     * Write all the queued session data to the delegate store.
+     *
+     * @throws Exception if the data of one or more sessions could not be written
+     */
+    @ManagedOperation(value = "write all the queued session data", impact = "ACTION")
+    public void flush() throws Exception
+    {
+        try (AutoLock ignored = _flushLock.lock())
+        {
+            List<Pending> pending;
+            try (AutoLock l = _lock.lock())
+            {
+                pending = new ArrayList<>(_pending.values());
+                _pending.clear();
+            }
+
+            Exception failure = null;
+            for (int i = 0; i < pending.size(); i += _maxBatchSize)
+            {
+                try
+                {
+                    write(pending.subList(i, Math.min(pending.size(), i + _maxBatchSize)));
+                }
+                catch (Exception e)
+                {
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+            if (failure != null)
+                throw failure;
+        }
+    }
+
+    private void flush(String id) throws Exception
+    {
+        try (AutoLock ignored = _flushLock.lock())
+        {
+            Pending pending;
+            try (AutoLock l = _lock.lock())
+            {
+                pending = _pending.remove(id);
+            }
+            if (pending != null)
+                write(List.of(pending));
+        }
+    }
+
+    private void write(List<Pending> batch) throws Exception
+    {
+        assert _flushLock.isHeldByCurrentThread();
+
+        Exception failure = null;
+        List<Pending> ready = new ArrayList<>(batch.size());
+        List<SessionData> snapshots = new ArrayList<>(batch.size());
+        long[] lastSaveTimes = new long[batch.size()];
+        for (Pending pending : batch)
+        {
+            SessionData snapshot = pending._snapshot;
+            try
+            {
+                deserializeAttributes(pending);
+            }
+            catch (Exception e)
+            {
+                unsaved(snapshot.getId());
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+                continue;
+            }
+
+            //a previous batch may have saved the session since the snapshot was taken
+            try (AutoLock ignored = _lock.lock())
+            {
+                Long lastSaved = _lastSaved.get(snapshot.getId());
+                if (lastSaved != null)
+                    snapshot.setLastSaved(lastSaved);
+            }
+            lastSaveTimes[ready.size()] = snapshot.getLastSaved();
+            ready.add(pending);
+            snapshots.add(snapshot);
+        }
+
+        _batches.increment();
+        try
+        {
+            if (!snapshots.isEmpty())
+                _store.storeAll(snapshots);
+        }
+        finally
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                for (int i = 0; i < ready.size(); ++i)
+                {
+                    SessionData snapshot = ready.get(i)._snapshot;
+                    //record the outcome, applied to the session the next time it is stored
+                    if (snapshot.getLastSaved() != lastSaveTimes[i])
+                        _lastSaved.put(snapshot.getId(), snapshot.getLastSaved());
+                    else
+                        _unsaved.add(snapshot.getId());
+                }
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wrote batch of {} sessions", ready.size());
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void unsaved(String id)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            _unsaved.add(id);
+        }
+    }
+
+    private void forget(String id)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            _lastSaved.remove(id);
+            _unsaved.remove(id);
+        }
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        //make sure the store has the latest data
+        flush(id);
+        //the loaded data reflects the outcome of the writes
+        forget(id);
+        return _store.load(id);
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        //discard the queued write, and wait for a write in progress
+        try (AutoLock ignored = _flushLock.lock())
+        {
+            Pending pending;
+            try (AutoLock l = _lock.lock())
+            {
+                pending = _pending.remove(id);
+                _lastSaved.remove(id);
+                _unsaved.remove(id);
+            }
+            boolean deleted = _store.delete(id);
+            //a session that was never written is deleted too
+            return deleted || pending != null;
+        }
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        //the delegate store must know all the sessions to check their expiry
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to flush session writes before expiry check", e);
+        }
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            Pending pending = _pending.get(id);
+            if (pending != null)
+                return !pending._snapshot.isExpiredAt(System.currentTimeMillis());
+        }
+        return _store.exists(id);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[flushPeriodMs=%d,maxBatchSize=%d,pending=%d]", getClass().getSimpleName(), hashCode(), getFlushPeriodMs(), getMaxBatchSize(), getPendingCount());
+    }
+
+    /**
+     * A queued write: the snapshot of the session data to write,
+     * and its attributes serialized when the session was stored,
+     * unless the snapshot holds them already serialized for the delegate.
+     */
+    private static class Pending
+    {
+        private final SessionData _snapshot;
+        private final byte[] _attributes;
+
+        private Pending(SessionData snapshot, byte[] attributes)
+        {
+            _snapshot = snapshot;
+            _attributes = attributes;
+        }
+    }
+}
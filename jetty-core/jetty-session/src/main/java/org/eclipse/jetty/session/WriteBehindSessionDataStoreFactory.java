@@ -0,0 +1,83 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+/**
+ * WriteBehindSessionDataStoreFactory
+ */
+public class WriteBehindSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The SessionDataStore that will store session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+
+    protected long _flushPeriodMs = WriteBehindSessionDataStore.DEFAULT_FLUSH_PERIOD_MS;
+
+    protected int _maxBatchSize = WriteBehindSessionDataStore.DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * WriteBehindSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    /**
+     * Get the max time in ms that writes are deferred.
+     * @return the max time in ms that writes are deferred
+     */
+    public long getFlushPeriodMs()
+    {
+        return _flushPeriodMs;
+    }
+
+    /**
+     * Set the max time in ms that writes are deferred.
+     * @param flushPeriodMs the max time in ms that writes are deferred, or 0 or less to write synchronously
+     */
+    public void setFlushPeriodMs(long flushPeriodMs)
+    {
+        _flushPeriodMs = flushPeriodMs;
+    }
+
+    /**
+     * Get the max number of sessions written in a single batch.
+     * @return the max number of sessions written in a single batch
+     */
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * Set the max number of sessions written in a single batch.
+     * @param maxBatchSize the max number of sessions written in a single batch
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        _maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionManager manager) throws Exception
+    {
+        WriteBehindSessionDataStore store = new WriteBehindSessionDataStore(_sessionStoreFactory.getSessionDataStore(manager));
+        store.setFlushPeriodMs(getFlushPeriodMs());
+        store.setMaxBatchSize(getMaxBatchSize());
+        return store;
+    }
+}
@@ -0,0 +1,408 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OffHeapSessionDataStoreTest
+ */
+@ExtendWith(WorkDirExtension.class)
+public class OffHeapSessionDataStoreTest extends AbstractSessionDataStoreTest
+{
+    public WorkDir workDir;
+    private final Set<String> _unreadableIds = ConcurrentHashMap.newKeySet();
+
+    public OffHeapSessionDataStoreTest() throws Exception
+    {
+        super();
+    }
+
+    @Override
+    public SessionDataStoreFactory createSessionDataStoreFactory()
+    {
+        return new OffHeapSessionDataStoreFactory()
+        {
+            @Override
+            public SessionDataStore getSessionDataStore(SessionManager manager)
+            {
+                OffHeapSessionDataStore store = new OffHeapSessionDataStore()
+                {
+                    @Override
+                    protected void serializeAttributes(SessionData data, OutputStream os) throws Exception
+                    {
+                        if (_unreadableIds.contains(data.getId()))
+                            os.write(new byte[]{1, 2, 3, 4});
+                        else
+                            super.serializeAttributes(data, os);
+                    }
+                };
+                store.setGracePeriodSec(getGracePeriodSec());
+                store.setSavePeriodSec(getSavePeriodSec());
+                return store;
+            }
+        };
+    }
+
+    private OffHeapSessionDataStore getStore()
+    {
+        return (OffHeapSessionDataStore)_sessionManager.getSessionCache().getSessionDataStore();
+    }
+
+    @Override
+    public void persistSession(SessionData data) throws Exception
+    {
+        getStore().doStore(data.getId(), data, 0);
+    }
+
+    @Override
+    public void persistUnreadableSession(SessionData data) throws Exception
+    {
+        _unreadableIds.add(data.getId());
+        getStore().doStore(data.getId(), data, 0);
+    }
+
+    @Override
+    public boolean checkSessionExists(SessionData data) throws Exception
+    {
+        // Unlike exists(), the expiry and the context are not checked.
+        return getStore().contains(data.getId());
+    }
+
+    @Override
+    public boolean checkSessionPersisted(SessionData data) throws Exception
+    {
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(_contextClassLoader);
+        try
+        {
+            SessionData stored = getStore().doLoad(data.getId());
+            assertNotNull(stored);
+            assertEquals(data.getId(), stored.getId());
+            assertEquals(data.getContextPath(), stored.getContextPath());
+            assertEquals(data.getVhost(), stored.getVhost());
+            assertEquals(data.getLastNode(), stored.getLastNode());
+            assertEquals(data.getCreated(), stored.getCreated());
+            assertEquals(data.getAccessed(), stored.getAccessed());
+            assertEquals(data.getLastAccessed(), stored.getLastAccessed());
+            assertEquals(data.getCookieSet(), stored.getCookieSet());
+            assertEquals(data.getExpiry(), stored.getExpiry());
+            assertEquals(data.getMaxInactiveMs(), stored.getMaxInactiveMs());
+            assertEquals(data.getKeys(), stored.getKeys());
+            for (String name : data.getKeys())
+            {
+                assertEquals(data.getAttribute(name), stored.getAttribute(name));
+            }
+            return true;
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(old);
+        }
+    }
+
+    private void start(OffHeapSessionDataStore store) throws Exception
+    {
+        _server = new Server();
+        _sessionManager = new TestableSessionManager();
+        _sessionManager.setServer(_server);
+        DefaultSessionCacheFactory cacheFactory = new DefaultSessionCacheFactory();
+        cacheFactory.setEvictionPolicy(SessionCache.EVICT_ON_SESSION_EXIT);
+        SessionCache cache = cacheFactory.getSessionCache(_sessionManager);
+        cache.setSessionDataStore(store);
+        _sessionManager.setSessionCache(cache);
+        _server.addBean(_sessionManager);
+        _server.start();
+    }
+
+    private static SessionData newSessionData(SessionDataStore store, String id, int attributeSize)
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData(id, now, now, now, TimeUnit.MINUTES.toMillis(30));
+        data.setLastNode("node0");
+        data.setAttribute("a", "x".repeat(attributeSize));
+        data.setAttribute("b", id);
+        return data;
+    }
+
+    @Test
+    public void testStoreLoadDelete() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        start(store);
+
+        SessionData data = newSessionData(store, "1234", 10);
+        store.store("1234", data);
+        assertEquals(1, store.getSessionCount());
+        assertTrue(store.exists("1234"));
+
+        SessionData loaded = store.load("1234");
+        assertNotNull(loaded);
+        assertEquals("1234", loaded.getId());
+        assertEquals(data.getCreated(), loaded.getCreated());
+        assertEquals(data.getExpiry(), loaded.getExpiry());
+        assertEquals(data.getMaxInactiveMs(), loaded.getMaxInactiveMs());
+        assertEquals(data.getLastSaved(), loaded.getLastSaved());
+        assertEquals("node0", loaded.getLastNode());
+        assertEquals("x".repeat(10), loaded.getAttribute("a"));
+        assertEquals("1234", loaded.getAttribute("b"));
+
+        assertTrue(store.delete("1234"));
+        assertFalse(store.delete("1234"));
+        assertFalse(store.exists("1234"));
+        assertNull(store.load("1234"));
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemoryUsed());
+    }
+
+    @Test
+    public void testManySessions() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        store.setSegmentSize(64 * 1024);
+        start(store);
+
+        int count = 5000;
+        for (int i = 0; i < count; ++i)
+        {
+            String id = "session" + i;
+            store.store(id, newSessionData(store, id, i % 1000));
+        }
+        assertEquals(count, store.getSessionCount());
+
+        // Update sessions with larger data, and delete others.
+        for (int i = 0; i < count; ++i)
+        {
+            String id = "session" + i;
+            if (i % 3 == 0)
+                assertTrue(store.delete(id));
+            else if (i % 3 == 1)
+                store.store(id, newSessionData(store, id, 2000 + i % 1000));
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            String id = "session" + i;
+            SessionData loaded = store.load(id);
+            if (i % 3 == 0)
+            {
+                assertNull(loaded);
+            }
+            else
+            {
+                assertNotNull(loaded);
+                assertEquals(id, loaded.getAttribute("b"));
+                int size = i % 3 == 1 ? 2000 + i % 1000 : i % 1000;
+                assertEquals(size, ((String)loaded.getAttribute("a")).length());
+            }
+        }
+        assertTrue(store.getMemoryUsed() <= store.getMemoryReserved());
+
+        for (int i = 0; i < count; ++i)
+        {
+            store.delete("session" + i);
+        }
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemoryUsed());
+
+        // Freed memory is reused.
+        long reserved = store.getMemoryReserved();
+        for (int i = 0; i < count; ++i)
+        {
+            String id = "session" + i;
+            store.store(id, newSessionData(store, id, i % 1000));
+        }
+        assertEquals(reserved, store.getMemoryReserved());
+    }
+
+    @Test
+    public void testExpiredSessions() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        start(store);
+
+        long now = System.currentTimeMillis();
+        SessionData expired = newSessionData(store, "expired", 10);
+        expired.setExpiry(now - 1000);
+        store.doStore("expired", expired, 0);
+        SessionData ancient = newSessionData(store, "ancient", 10);
+        ancient.setExpiry(100);
+        store.doStore("ancient", ancient, 0);
+        SessionData immortal = newSessionData(store, "immortal", 10);
+        immortal.setExpiry(0);
+        store.doStore("immortal", immortal, 0);
+        SessionData valid = newSessionData(store, "valid", 10);
+        store.doStore("valid", valid, 0);
+
+        assertEquals(Set.of("expired", "ancient"), store.doGetExpired(now));
+        assertEquals(Set.of("expired", "unknown"), store.doCheckExpired(Set.of("expired", "valid", "immortal", "unknown"), now));
+        assertFalse(store.exists("expired"));
+        assertTrue(store.exists("immortal"));
+
+        store.doCleanOrphans(now - TimeUnit.HOURS.toMillis(1));
+        assertEquals(3, store.getSessionCount());
+        assertNull(store.load("ancient"));
+        assertNotNull(store.load("expired"));
+    }
+
+    @Test
+    public void testMemoryMappedFile() throws Exception
+    {
+        Path storeDir = workDir.getEmptyPathDir();
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        store.setStoreDir(storeDir.toFile());
+        store.setSegmentSize(4096);
+        start(store);
+
+        Path file = store.getFile();
+        assertNotNull(file);
+        assertTrue(Files.exists(file));
+
+        for (int i = 0; i < 100; ++i)
+        {
+            String id = "session" + i;
+            store.store(id, newSessionData(store, id, 100));
+        }
+        for (int i = 0; i < 100; ++i)
+        {
+            String id = "session" + i;
+            assertEquals(id, store.load(id).getAttribute("b"));
+        }
+        assertTrue(store.getMemoryReserved() > 4096);
+        assertEquals(store.getMemoryReserved(), Files.size(file));
+
+        // The sessions survive a restart.
+        _server.stop();
+        assertTrue(Files.exists(file));
+        _server.start();
+        assertEquals("session0", store.load("session0").getAttribute("b"));
+        store.store("another", newSessionData(store, "another", 100));
+        assertEquals("another", store.load("another").getAttribute("b"));
+
+        _server.stop();
+        store.destroy();
+        assertFalse(Files.exists(file));
+        assertEquals(0, store.getSessionCount());
+    }
+
+    @Test
+    public void testMaxMemory() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        store.setSegmentSize(4096);
+        store.setMaxMemory(8192);
+        start(store);
+
+        // Session data larger than a segment cannot be stored.
+        assertThrows(UnwriteableSessionDataException.class, () -> store.store("large", newSessionData(store, "large", 8192)));
+
+        int stored = 0;
+        try
+        {
+            while (stored < 100)
+            {
+                String id = "session" + stored;
+                store.store(id, newSessionData(store, id, 1000));
+                ++stored;
+            }
+        }
+        catch (UnwriteableSessionDataException x)
+        {
+            // Expected when the max memory is exhausted.
+        }
+        assertTrue(stored > 0 && stored < 100, "stored " + stored);
+        assertEquals(8192, store.getMemoryReserved());
+
+        // Deleting a session makes room for another.
+        assertTrue(store.delete("session0"));
+        store.store("another", newSessionData(store, "another", 1000));
+        assertNotNull(store.load("another"));
+    }
+
+    @Test
+    public void testFreedBlocksAreMerged() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        store.setSegmentSize(4096);
+        store.setMaxMemory(4096);
+        start(store);
+
+        // Fill the segment with small blocks.
+        int count = 0;
+        try
+        {
+            while (count < 100)
+            {
+                String id = "session" + count;
+                store.store(id, newSessionData(store, id, 10));
+                ++count;
+            }
+        }
+        catch (UnwriteableSessionDataException x)
+        {
+            // Expected when the segment is full.
+        }
+        assertTrue(count > 4, "stored " + count);
+
+        for (int i = 0; i < count; ++i)
+        {
+            assertTrue(store.delete("session" + i));
+        }
+        assertEquals(0, store.getMemoryUsed());
+
+        // The freed blocks are merged back into a block as large as the segment.
+        store.store("large", newSessionData(store, "large", 3000));
+        assertEquals(3000, ((String)store.load("large").getAttribute("a")).length());
+        assertEquals(4096, store.getMemoryReserved());
+    }
+
+    @Test
+    public void testSessionsAreNotRetainedByCache() throws Exception
+    {
+        OffHeapSessionDataStore store = new OffHeapSessionDataStore();
+        start(store);
+
+        ManagedSession session = _sessionManager.getSessionCache().newSession(newSessionData(store, "1234", 10));
+        _sessionManager.getSessionCache().add("1234", session);
+        session.setAttribute("c", "value");
+        _sessionManager.getSessionCache().release(session);
+
+        // The session is evicted from the cache, and only its data is stored off-heap.
+        assertFalse(_sessionManager.getSessionCache().contains("1234"));
+        assertEquals(1, store.getSessionCount());
+
+        ManagedSession loaded = _sessionManager.getSessionCache().get("1234");
+        assertNotNull(loaded);
+        assertEquals("value", loaded.getAttribute("c"));
+        _sessionManager.getSessionCache().release(loaded);
+    }
+}
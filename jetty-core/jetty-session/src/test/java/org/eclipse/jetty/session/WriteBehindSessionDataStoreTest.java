@@ -0,0 +1,307 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.session;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WriteBehindSessionDataStoreTest
+ */
+public class WriteBehindSessionDataStoreTest
+{
+    private Server _server;
+    private TestableSessionDataStore _delegate;
+    private WriteBehindSessionDataStore _store;
+
+    private void start(long flushPeriodMs, int maxBatchSize) throws Exception
+    {
+        start(flushPeriodMs, maxBatchSize, new TestableSessionDataStore());
+    }
+
+    private void start(long flushPeriodMs, int maxBatchSize, TestableSessionDataStore delegate) throws Exception
+    {
+        _delegate = delegate;
+        start(flushPeriodMs, maxBatchSize, (SessionDataStore)delegate);
+    }
+
+    private void start(long flushPeriodMs, int maxBatchSize, SessionDataStore delegate) throws Exception
+    {
+        _server = new Server();
+        TestableSessionManager sessionManager = new TestableSessionManager();
+        sessionManager.setServer(_server);
+        DefaultSessionCacheFactory cacheFactory = new DefaultSessionCacheFactory();
+        SessionCache cache = cacheFactory.getSessionCache(sessionManager);
+
+        _store = new WriteBehindSessionDataStore(delegate);
+        _store.setFlushPeriodMs(flushPeriodMs);
+        _store.setMaxBatchSize(maxBatchSize);
+        cache.setSessionDataStore(_store);
+        sessionManager.setSessionCache(cache);
+        _server.addBean(sessionManager);
+        _server.start();
+    }
+
+    @AfterEach
+    public void dispose()
+    {
+        LifeCycle.stop(_server);
+    }
+
+    private SessionData newSessionData(String id)
+    {
+        long now = System.currentTimeMillis();
+        return _store.newSessionData(id, now, now, now, TimeUnit.MINUTES.toMillis(10));
+    }
+
+    @Test
+    public void testWritesAreCoalesced() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        SessionData data = newSessionData("1234");
+        for (int i = 0; i < 3; ++i)
+        {
+            data.setAttribute("count", i);
+            _store.store("1234", data);
+        }
+        assertEquals(0, _delegate._numSaves.get());
+        assertEquals(1, _store.getPendingCount());
+        assertEquals(2, _store.getCoalescedCount());
+        assertTrue(_store.exists("1234"));
+
+        _store.flush();
+        assertEquals(1, _delegate._numSaves.get());
+        assertEquals(0, _store.getPendingCount());
+        assertEquals(2, _delegate.load("1234").getAttribute("count"));
+
+        //an unchanged session is not written again
+        _store.store("1234", data);
+        assertEquals(0, _store.getPendingCount());
+        //the outcome of the write is applied when the session is stored
+        assertTrue(data.getLastSaved() > 0);
+    }
+
+    @Test
+    public void testQueuedWriteIsNotAffectedByLaterChanges() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        ArrayList<String> list = new ArrayList<>(List.of("a"));
+        SessionData data = newSessionData("1234");
+        data.setAttribute("list", list);
+        _store.store("1234", data);
+
+        //the application keeps modifying the attribute after the session is stored
+        list.add("b");
+
+        _store.flush();
+        Object stored = _delegate._map.get("1234").getAttribute("list");
+        assertNotSame(list, stored);
+        assertEquals(List.of("a"), stored);
+    }
+
+    @Test
+    public void testAttributesAreSerializedOnceForObjectStreamStore() throws Exception
+    {
+        OffHeapSessionDataStore delegate = new OffHeapSessionDataStore();
+        start(TimeUnit.HOURS.toMillis(1), 100, delegate);
+
+        ArrayList<String> list = new ArrayList<>(List.of("a"));
+        SessionData data = newSessionData("1234");
+        data.setAttribute("counter", new SerializationCounter());
+        data.setAttribute("list", list);
+        data.setLastNode("node0");
+        SerializationCounter.COUNT.set(0);
+        _store.store("1234", data);
+        list.add("b");
+        _store.flush();
+
+        //the delegate writes the attributes serialized when the session was stored
+        assertEquals(1, SerializationCounter.COUNT.get());
+        SessionData stored = delegate.load("1234");
+        assertNotNull(stored.getAttribute("counter"));
+        assertEquals(List.of("a"), stored.getAttribute("list"));
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws Exception
+    {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        start(TimeUnit.HOURS.toMillis(1), 100, new TestableSessionDataStore()
+        {
+            @Override
+            public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+            {
+                if (fail.get())
+                    throw new IOException("test");
+                super.doStore(id, data, lastSaveTime);
+            }
+        });
+
+        SessionData data = newSessionData("1234");
+        data.setAttribute("a", "b");
+        _store.store("1234", data);
+        assertThrows(IOException.class, () -> _store.flush());
+        //the session data is not modified by the flush
+        assertFalse(data.isDirty());
+        assertEquals(0, data.getLastSaved());
+
+        //the session is marked dirty again when it is next stored
+        fail.set(false);
+        _store.store("1234", data);
+        assertEquals(1, _store.getPendingCount());
+        _store.flush();
+        assertEquals(1, _delegate._numSaves.get());
+        assertEquals("b", _delegate._map.get("1234").getAttribute("a"));
+    }
+
+    @Test
+    public void testUsesServerScheduler() throws Exception
+    {
+        start(100, 100);
+
+        Scheduler scheduler = _server.getScheduler();
+        assertNotNull(scheduler);
+        _store.store("1234", newSessionData("1234"));
+
+        long start = NanoTime.now();
+        while (_delegate._numSaves.get() < 1 && NanoTime.secondsSince(start) < 5)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(1, _delegate._numSaves.get());
+        //no scheduler of its own is started
+        assertTrue(Thread.getAllStackTraces().keySet().stream().noneMatch(t -> t.getName().startsWith("Session-WriteBehind-")));
+    }
+
+    @Test
+    public void testLoadFlushesPendingWrite() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        SessionData data = newSessionData("1234");
+        data.setAttribute("a", "b");
+        _store.store("1234", data);
+
+        SessionData loaded = _store.load("1234");
+        assertNotNull(loaded);
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(0, _store.getPendingCount());
+    }
+
+    @Test
+    public void testDeleteDiscardsPendingWrite() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        SessionData data = newSessionData("1234");
+        _store.store("1234", data);
+        assertTrue(_store.delete("1234"));
+
+        _store.flush();
+        assertEquals(0, _delegate._numSaves.get());
+        assertNull(_store.load("1234"));
+        assertFalse(_store.exists("1234"));
+    }
+
+    @Test
+    public void testFlushWhenMaxBatchSizeReached() throws Exception
+    {
+        int maxBatchSize = 4;
+        start(TimeUnit.HOURS.toMillis(1), maxBatchSize);
+
+        for (int i = 0; i < maxBatchSize; ++i)
+        {
+            _store.store(String.valueOf(i), newSessionData(String.valueOf(i)));
+        }
+
+        long start = NanoTime.now();
+        while (_delegate._numSaves.get() < maxBatchSize && NanoTime.secondsSince(start) < 5)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(maxBatchSize, _delegate._numSaves.get());
+        assertEquals(1, _store.getBatchCount());
+    }
+
+    @Test
+    public void testFlushPeriod() throws Exception
+    {
+        start(100, 100);
+
+        _store.store("1234", newSessionData("1234"));
+
+        long start = NanoTime.now();
+        while (_delegate._numSaves.get() < 1 && NanoTime.secondsSince(start) < 5)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(1, _delegate._numSaves.get());
+    }
+
+    @Test
+    public void testWriteThrough() throws Exception
+    {
+        start(0, 100);
+
+        _store.store("1234", newSessionData("1234"));
+        assertEquals(1, _delegate._numSaves.get());
+        assertEquals(0, _store.getPendingCount());
+    }
+
+    @Test
+    public void testStopFlushesPendingWrites() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 100);
+
+        _store.store("1", newSessionData("1"));
+        _store.store("2", newSessionData("2"));
+        _server.stop();
+
+        assertEquals(2, _delegate._numSaves.get());
+    }
+
+    private static class SerializationCounter implements Serializable
+    {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            COUNT.incrementAndGet();
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -16,6 +16,8 @@ package org.eclipse.jetty.util;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
@@ -23,6 +25,9 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -51,6 +56,13 @@ import org.slf4j.LoggerFactory;
  * files and reporting these events via registered Listeners.
  * The scanner operates on the {@link Path#toRealPath(LinkOption...)} of the files scanned and
  * can be configured to follow symlinks.
+ * <p>
+ * By default, the scanned directories are walked every {@link #getScanInterval() scan interval}.
+ * When {@link #setUseWatchService(boolean) configured} to use a {@link WatchService}, the
+ * scanned directories are only walked when the file system notifies a change in them, and
+ * then every scan interval until the changed files have settled. If the file system does
+ * not support watching the scanned directories, the scanner falls back to walk them every
+ * scan interval.
  */
 public class Scanner extends ContainerLifeCycle
 {
@@ -63,6 +75,9 @@ public class Scanner extends ContainerLifeCycle
     public static final int MAX_SCAN_DEPTH = Integer.MAX_VALUE;
     private static final Logger LOG = LoggerFactory.getLogger(Scanner.class);
     private static final AtomicInteger SCANNER_IDS = new AtomicInteger();
+    // Period of the polls of the WatchService, that also coalesces
+    // the notifications of a burst of changes into a single scan.
+    private static final long WATCH_POLL_PERIOD_MS = 100;
 
     private int _scanInterval;
     private final AtomicInteger _scanCount = new AtomicInteger(0);
@@ -74,10 +89,12 @@ public class Scanner extends ContainerLifeCycle
     private boolean _scanningStarted = false;
     private boolean _reportExisting = true;
     private boolean _reportDirs = true;
-    private Scheduler.Task _task;
+    private volatile Scheduler.Task _task;
     private final Scheduler _scheduler;
     private int _scanDepth = DEFAULT_SCAN_DEPTH;
     private final LinkOption[] _linkOptions;
+    private boolean _useWatchService;
+    private volatile Watcher _watcher;
 
     private enum Status
     {
@@ -149,6 +166,74 @@ public class Scanner extends ContainerLifeCycle
         }
     }
 
+    /**
+     * <p>Polls the {@link WatchService} from the scheduler, rather than
+     * blocking a dedicated thread, and scans when changes are notified.</p>
+     */
+    private class Watcher implements Runnable
+    {
+        private final WatchService _watchService;
+        private volatile Scheduler.Task _task;
+
+        private Watcher(WatchService watchService)
+        {
+            _watchService = watchService;
+        }
+
+        private void schedule()
+        {
+            _task = _scheduler.schedule(this, WATCH_POLL_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+
+        private void close()
+        {
+            Scheduler.Task task = _task;
+            if (task != null)
+                task.cancel();
+            IO.close(_watchService);
+        }
+
+        @Override
+        public void run()
+        {
+            if (!isRunning() || _watcher != this)
+                return;
+            boolean changed = false;
+            try
+            {
+                WatchKey key;
+                while ((key = _watchService.poll()) != null)
+                {
+                    // Any event triggers a scan of all the scanned directories,
+                    // so the events themselves are not needed, including overflows.
+                    List<?> events = key.pollEvents();
+                    key.reset();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Watched {} events in {}", events.size(), key.watchable());
+                    changed = true;
+                }
+            }
+            catch (ClosedWatchServiceException x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Stopped watching", x);
+                return;
+            }
+            if (changed)
+            {
+                scan();
+                Scanner.this.schedule();
+            }
+            schedule();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s}", getClass().getSimpleName(), hashCode(), _scannables.keySet());
+        }
+    }
+
     /**
      * Visitor
      *
@@ -177,6 +262,9 @@ public class Scanner extends ContainerLifeCycle
             dir = dir.toRealPath(_linkOptions);
             File f = dir.toFile();
 
+            // The children of this directory are scanned, so watch it.
+            watch(dir);
+
             //if we want to report directories and we haven't already seen it
             if (_reportDirs && !scanInfoMap.containsKey(dir))
             {
@@ -398,6 +486,31 @@ public class Scanner extends ContainerLifeCycle
         _scanInterval = scanInterval;
     }
 
+    /**
+     * @return whether a {@link WatchService} is used to be notified of the changes in the scanned directories
+     */
+    public boolean isUseWatchService()
+    {
+        return _useWatchService;
+    }
+
+    /**
+     * <p>Sets whether a {@link WatchService} is used to be notified of the changes in the
+     * scanned directories, rather than walking them every {@link #getScanInterval() scan interval}.</p>
+     * <p>Files are reported once they have not changed for a scan interval, as when
+     * the scanned directories are walked every scan interval.
+     * A scan interval of {@code 0} disables both modes after the initial scan.</p>
+     *
+     * @param useWatchService whether a {@link WatchService} is used to be notified of the changes in the scanned directories
+     */
+    public void setUseWatchService(boolean useWatchService)
+    {
+        if (isRunning())
+            throw new IllegalStateException("Scanner started");
+
+        _useWatchService = useWatchService;
+    }
+
     public void setScanDirs(List<Path> dirs)
     {
         if (isRunning())
@@ -625,8 +738,8 @@ public class Scanner extends ContainerLifeCycle
     public void doStart() throws Exception
     {
         if (LOG.isDebugEnabled())
-            LOG.debug("Scanner start: autoStartScanning={}, reportExists={}, depth={}, rprtDirs={}, interval={}, filter={}, scannables={}",
-                isAutoStartScanning(), _reportExisting, _scanDepth, _reportDirs, _scanInterval, _filter, _scannables);
+            LOG.debug("Scanner start: autoStartScanning={}, reportExists={}, depth={}, rprtDirs={}, interval={}, watch={}, filter={}, scannables={}",
+                isAutoStartScanning(), _reportExisting, _scanDepth, _reportDirs, _scanInterval, _useWatchService, _filter, _scannables);
 
         // Start the scanner and managed beans (eg: the scheduler)
         super.doStart();
@@ -657,6 +770,10 @@ public class Scanner extends ContainerLifeCycle
         if (LOG.isDebugEnabled())
             LOG.debug("{}.startup()", this.getClass().getSimpleName());
 
+        // Start watching before the initial scan, that registers the scanned directories.
+        if (isUseWatchService() && getScanInterval() > 0)
+            startWatching();
+
         if (_reportExisting)
         {
             // if files exist at startup, report them
@@ -675,10 +792,100 @@ public class Scanner extends ContainerLifeCycle
 
     private void schedule()
     {
-        if (isRunning() && getScanInterval() > 0)
+        if (!isRunning() || getScanInterval() <= 0)
+            return;
+
+        if (_watcher == null)
+        {
+            _task = _scheduler.schedule(new ScanTask(), 1010L * getScanInterval(), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        // When watching, only scan again to let the changed files settle.
+        Scheduler.Task task = _task;
+        _task = null;
+        if (task != null)
+            task.cancel();
+        if (!isSettled())
             _task = _scheduler.schedule(new ScanTask(), 1010L * getScanInterval(), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * @return whether a scan is scheduled
+     */
+    boolean isScanScheduled()
+    {
+        return _task != null;
+    }
+
+    /**
+     * @return whether the files of the last scan have been reported as added or changed
+     */
+    boolean isSettled()
+    {
+        Map<Path, MetaData> prevScan = _prevScan;
+        if (prevScan == null)
+            return true;
+        for (MetaData metaData : prevScan.values())
+        {
+            if (metaData._status == Status.ADDED || metaData._status == Status.CHANGED)
+                return false;
+        }
+        return true;
+    }
+
+    private void startWatching()
+    {
+        try
+        {
+            Path path = _scannables.keySet().stream().findFirst().orElse(null);
+            WatchService watchService = path == null ? FileSystems.getDefault().newWatchService() : path.getFileSystem().newWatchService();
+            Watcher watcher = new Watcher(watchService);
+            _watcher = watcher;
+            // Files scanned by themselves are watched through their parent directory.
+            for (Path scannable : _scannables.keySet())
+            {
+                if (!Files.isDirectory(scannable))
+                    watch(scannable.getParent());
+            }
+            addBean(watcher);
+            watcher.schedule();
+        }
+        catch (Throwable x)
+        {
+            LOG.info("Cannot watch {}, scanning every {}s", _scannables.keySet(), getScanInterval(), x);
+            stopWatching();
+        }
+    }
+
+    private void stopWatching()
+    {
+        Watcher watcher = _watcher;
+        _watcher = null;
+        if (watcher != null)
+        {
+            removeBean(watcher);
+            watcher.close();
+        }
+    }
+
+    private void watch(Path dir)
+    {
+        Watcher watcher = _watcher;
+        if (watcher == null || dir == null)
+            return;
+        try
+        {
+            dir.register(watcher._watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (Throwable x)
+        {
+            // Fall back to scan every scan interval, see schedule().
+            LOG.info("Cannot watch {}, scanning every {}s", dir, getScanInterval(), x);
+            stopWatching();
+        }
+    }
+
     /**
      * Stop the scanning.
      */
@@ -689,6 +896,7 @@ public class Scanner extends ContainerLifeCycle
         _task = null;
         if (task != null)
             task.cancel();
+        stopWatching();
         _scanningStarted = false;
     }
 
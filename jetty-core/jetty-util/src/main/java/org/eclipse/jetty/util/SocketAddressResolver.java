@@ -17,15 +17,23 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.security.Security;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -193,4 +201,288 @@ public interface SocketAddressResolver
             });
         }
     }
+
+    /**
+     * <p>Caches the results of another {@link SocketAddressResolver}.</p>
+     * <p>Successful resolutions are cached for {@link #getTimeToLive()}, while
+     * resolutions that failed because the host is unknown are cached for
+     * {@link #getNegativeTimeToLive()}; other failures such as timeouts are not cached.
+     * Cache hits complete the {@link Promise} in the caller thread, avoiding
+     * the thread dispatch that would be otherwise performed by the delegate
+     * resolver, typically {@link Async}.</p>
+     * <p>Concurrent resolutions of the same host are coalesced, so that only
+     * one resolution is performed by the delegate resolver.</p>
+     * <p>The cache is bounded to {@link #getMaxCacheSize()} hosts, evicting the least
+     * recently used ones.</p>
+     * <p>Since the JDK does not expose the TTL of DNS records, the time to live of the
+     * cached resolutions is configurable, and defaults to the values of the
+     * {@code networkaddress.cache.ttl} and {@code networkaddress.cache.negative.ttl}
+     * security properties, or to 30 and 10 seconds respectively if they are not set.</p>
+     */
+    @ManagedObject("The caching address resolver")
+    public static class Caching implements SocketAddressResolver
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Caching.class);
+
+        private final AutoLock lock = new AutoLock();
+        private final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75F, true);
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final SocketAddressResolver resolver;
+        private Duration timeToLive = securityTimeToLive("networkaddress.cache.ttl", Duration.ofSeconds(30));
+        private Duration negativeTimeToLive = securityTimeToLive("networkaddress.cache.negative.ttl", Duration.ofSeconds(10));
+        private int maxCacheSize = 1024;
+
+        /**
+         * @param resolver the resolver that performs the resolutions that are cached
+         */
+        public Caching(SocketAddressResolver resolver)
+        {
+            this.resolver = resolver;
+        }
+
+        private static Duration securityTimeToLive(String property, Duration defaultValue)
+        {
+            try
+            {
+                String value = Security.getProperty(property);
+                if (value != null)
+                {
+                    long seconds = Long.parseLong(value.trim());
+                    // Negative values mean "cache forever".
+                    return seconds < 0 ? Duration.ofNanos(Long.MAX_VALUE / 2) : Duration.ofSeconds(seconds);
+                }
+            }
+            catch (Throwable x)
+            {
+                LOG.trace("IGNORED", x);
+            }
+            return defaultValue;
+        }
+
+        /**
+         * @return the resolver that performs the resolutions that are cached
+         */
+        public SocketAddressResolver getSocketAddressResolver()
+        {
+            return resolver;
+        }
+
+        /**
+         * @return the duration for which successful resolutions are cached
+         */
+        @ManagedAttribute("The duration for which successful resolutions are cached")
+        public Duration getTimeToLive()
+        {
+            return timeToLive;
+        }
+
+        /**
+         * @param timeToLive the duration for which successful resolutions are cached
+         */
+        public void setTimeToLive(Duration timeToLive)
+        {
+            this.timeToLive = timeToLive;
+        }
+
+        /**
+         * @return the duration for which resolutions of unknown hosts are cached
+         */
+        @ManagedAttribute("The duration for which resolutions of unknown hosts are cached")
+        public Duration getNegativeTimeToLive()
+        {
+            return negativeTimeToLive;
+        }
+
+        /**
+         * @param negativeTimeToLive the duration for which resolutions of unknown hosts are cached
+         */
+        public void setNegativeTimeToLive(Duration negativeTimeToLive)
+        {
+            this.negativeTimeToLive = negativeTimeToLive;
+        }
+
+        /**
+         * @return the max number of hosts whose resolutions are cached
+         */
+        @ManagedAttribute("The max number of hosts whose resolutions are cached")
+        public int getMaxCacheSize()
+        {
+            return maxCacheSize;
+        }
+
+        /**
+         * @param maxCacheSize the max number of hosts whose resolutions are cached
+         */
+        public void setMaxCacheSize(int maxCacheSize)
+        {
+            this.maxCacheSize = maxCacheSize;
+        }
+
+        @ManagedAttribute("The number of hosts whose resolutions are cached")
+        public int getCacheSize()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                return cache.size();
+            }
+        }
+
+        @ManagedAttribute("The number of resolutions served from the cache")
+        public long getCacheHits()
+        {
+            return hits.longValue();
+        }
+
+        @ManagedAttribute("The number of resolutions performed by the delegate resolver")
+        public long getCacheMisses()
+        {
+            return misses.longValue();
+        }
+
+        @ManagedOperation(value = "Clears the cached resolutions", impact = "ACTION")
+        public void clear()
+        {
+            try (AutoLock ignored = lock.lock())
+            {
+                // Pending resolutions are not removed, as they must notify their waiters.
+                cache.values().removeIf(entry -> entry.waiters == null);
+            }
+        }
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            Entry entry;
+            boolean resolve = false;
+            boolean hit = false;
+            try (AutoLock ignored = lock.lock())
+            {
+                entry = cache.get(host);
+                if (entry != null && entry.waiters == null && NanoTime.until(entry.expireNanoTime) <= 0)
+                {
+                    cache.remove(host);
+                    entry = null;
+                }
+                if (entry == null)
+                {
+                    entry = new Entry();
+                    cache.put(host, entry);
+                    resolve = true;
+                    evict();
+                }
+                // The waiters must be read under the lock, as they
+                // are concurrently cleared and notified by complete().
+                if (entry.waiters != null)
+                    entry.waiters.add(new Waiter(port, promise));
+                else
+                    hit = true;
+            }
+
+            if (resolve)
+            {
+                misses.increment();
+                Entry pending = entry;
+                resolver.resolve(host, port, new Promise<>()
+                {
+                    @Override
+                    public void succeeded(List<InetSocketAddress> result)
+                    {
+                        complete(host, pending, result, null);
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        complete(host, pending, null, x);
+                    }
+                });
+            }
+            else if (hit)
+            {
+                hits.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Cache hit for {}: {}", host, entry.addresses != null ? entry.addresses : entry.failure);
+                entry.notify(port, promise);
+            }
+        }
+
+        private void evict()
+        {
+            if (cache.size() <= getMaxCacheSize())
+                return;
+            Iterator<Entry> iterator = cache.values().iterator();
+            while (iterator.hasNext() && cache.size() > getMaxCacheSize())
+            {
+                // Pending resolutions are not evicted, as they must notify their waiters.
+                if (iterator.next().waiters == null)
+                    iterator.remove();
+            }
+        }
+
+        private void complete(String host, Entry entry, List<InetSocketAddress> result, Throwable failure)
+        {
+            List<Waiter> waiters;
+            try (AutoLock ignored = lock.lock())
+            {
+                Duration ttl = null;
+                if (result != null)
+                {
+                    entry.addresses = result;
+                    ttl = getTimeToLive();
+                }
+                else
+                {
+                    entry.failure = failure;
+                    if (failure instanceof UnknownHostException)
+                        ttl = getNegativeTimeToLive();
+                }
+                entry.expireNanoTime = NanoTime.now() + (ttl == null ? 0 : ttl.toNanos());
+                waiters = entry.waiters;
+                entry.waiters = null;
+                if (ttl == null || ttl.isZero() || ttl.isNegative())
+                    cache.remove(host, entry);
+                else
+                    evict();
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Resolved {} for {} waiters: {}", host, waiters.size(), result != null ? result : failure);
+
+            for (Waiter waiter : waiters)
+            {
+                entry.notify(waiter.port, waiter.promise);
+            }
+        }
+
+        private static class Entry
+        {
+            private List<Waiter> waiters = new ArrayList<>(1);
+            private List<InetSocketAddress> addresses;
+            private Throwable failure;
+            private long expireNanoTime;
+
+            private void notify(int port, Promise<List<InetSocketAddress>> promise)
+            {
+                if (addresses == null)
+                {
+                    promise.failed(failure);
+                    return;
+                }
+                List<InetSocketAddress> result = new ArrayList<>(addresses.size());
+                for (InetSocketAddress address : addresses)
+                {
+                    if (address.isUnresolved())
+                        result.add(InetSocketAddress.createUnresolved(address.getHostString(), port));
+                    else
+                        result.add(new InetSocketAddress(address.getAddress(), port));
+                }
+                promise.succeeded(result);
+            }
+        }
+
+        private record Waiter(int port, Promise<List<InetSocketAddress>> promise)
+        {
+        }
+    }
 }
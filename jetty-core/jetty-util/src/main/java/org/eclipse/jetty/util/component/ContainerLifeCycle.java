@@ -14,20 +14,34 @@
 package org.eclipse.jetty.util.component;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.eclipse.jetty.util.ExceptionUtil;
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.TopologicalSort;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +80,12 @@ import org.slf4j.LoggerFactory;
  * added via an {@link #addBean(Object)} method that are also {@link EventListener}s are added as listeners via a
  * call to {@link #addEventListener(EventListener)}.
  * <p>
+ * By default, managed beans are started and stopped sequentially.
+ * If a {@link #setLifeCycleExecutor(Executor) lifecycle executor} is configured, the managed beans
+ * are started and stopped concurrently, with at most {@link #getMaxLifeCycleConcurrency()} beans
+ * at once, except for the beans that {@link #addBeanDependency(Object, Object) depend} on other beans,
+ * which are started after, and stopped before, the beans they depend on.
+ * <p>
  * This class also provides utility methods to dump deep structures of objects.
  * In the dump, the following symbols are used to indicate the type of contained object:
  * <pre>
@@ -82,9 +102,76 @@ public class ContainerLifeCycle extends AbstractLifeCycle implements Container,
     private static final Logger LOG = LoggerFactory.getLogger(ContainerLifeCycle.class);
     private final List<Bean> _beans = new CopyOnWriteArrayList<>();
     private final List<Container.Listener> _listeners = new CopyOnWriteArrayList<>();
+    private Map<Object, List<Object>> _dependencies;
+    private Executor _lifeCycleExecutor;
+    private int _maxLifeCycleConcurrency = ProcessorUtils.availableProcessors();
     private boolean _doStarted;
     private boolean _destroyed;
 
+    /**
+     * @return the executor used to start and stop the managed beans concurrently, or null
+     * if the managed beans are started and stopped sequentially
+     */
+    public Executor getLifeCycleExecutor()
+    {
+        return _lifeCycleExecutor;
+    }
+
+    /**
+     * <p>Sets the executor used to start and stop the managed beans concurrently.</p>
+     * <p>The managed beans must not depend on being started in the order they were added,
+     * unless their dependencies are declared via {@link #addBeanDependency(Object, Object)}.</p>
+     *
+     * @param executor the executor used to start and stop the managed beans concurrently,
+     * or null to start and stop the managed beans sequentially
+     */
+    public void setLifeCycleExecutor(Executor executor)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _lifeCycleExecutor = executor;
+    }
+
+    /**
+     * @return the max number of beans started or stopped concurrently
+     */
+    public int getMaxLifeCycleConcurrency()
+    {
+        return _maxLifeCycleConcurrency;
+    }
+
+    /**
+     * @param maxLifeCycleConcurrency the max number of beans started or stopped concurrently
+     * when a {@link #setLifeCycleExecutor(Executor) lifecycle executor} is configured
+     */
+    public void setMaxLifeCycleConcurrency(int maxLifeCycleConcurrency)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (maxLifeCycleConcurrency < 1)
+            throw new IllegalArgumentException("Invalid max concurrency " + maxLifeCycleConcurrency);
+        _maxLifeCycleConcurrency = maxLifeCycleConcurrency;
+    }
+
+    /**
+     * <p>Declares that a bean depends on another bean, so that when the beans are started
+     * and stopped concurrently, the bean is started after, and stopped before, its dependency.</p>
+     * <p>Dependencies have no effect when the beans are started and stopped sequentially,
+     * in which case the order in which they were added applies.</p>
+     *
+     * @param bean the bean
+     * @param dependency the bean it depends on
+     * @see #setLifeCycleExecutor(Executor)
+     */
+    public void addBeanDependency(Object bean, Object dependency)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        if (_dependencies == null)
+            _dependencies = new IdentityHashMap<>();
+        _dependencies.computeIfAbsent(Objects.requireNonNull(bean), k -> new ArrayList<>()).add(Objects.requireNonNull(dependency));
+    }
+
     /**
      * Starts the managed lifecycle beans in the order they were added.
      */
@@ -100,33 +187,40 @@ public class ContainerLifeCycle extends AbstractLifeCycle implements Container,
         // start our managed and auto beans
         try
         {
-            for (Bean b : _beans)
+            if (_lifeCycleExecutor != null)
             {
-                if (!isStarting())
-                    break;
-                if (b._bean instanceof LifeCycle l)
+                startBeansConcurrently();
+            }
+            else
+            {
+                for (Bean b : _beans)
                 {
-                    switch (b._managed)
+                    if (!isStarting())
+                        break;
+                    if (b._bean instanceof LifeCycle l)
                     {
-                        case MANAGED:
-                            if (l.isStopped() || l.isFailed())
-                                start(l);
-                            break;
-
-                        case AUTO:
-                            if (l.isStopped())
-                            {
-                                manage(b);
-                                start(l);
-                            }
-                            else
-                            {
-                                unmanage(b);
-                            }
-                            break;
-
-                        default:
-                            break;
+                        switch (b._managed)
+                        {
+                            case MANAGED:
+                                if (l.isStopped() || l.isFailed())
+                                    start(l);
+                                break;
+
+                            case AUTO:
+                                if (l.isStopped())
+                                {
+                                    manage(b);
+                                    start(l);
+                                }
+                                else
+                                {
+                                    unmanage(b);
+                                }
+                                break;
+
+                            default:
+                                break;
+                        }
                     }
                 }
             }
@@ -158,6 +252,193 @@ public class ContainerLifeCycle extends AbstractLifeCycle implements Container,
         }
     }
 
+    private void startBeansConcurrently() throws Exception
+    {
+        Map<Bean, Callable<?>> tasks = new LinkedHashMap<>();
+        for (Bean b : _beans)
+        {
+            if (b._bean instanceof LifeCycle l)
+            {
+                switch (b._managed)
+                {
+                    case MANAGED ->
+                    {
+                        if (l.isStopped() || l.isFailed())
+                            tasks.put(b, () -> startBean(l));
+                    }
+                    case AUTO ->
+                    {
+                        if (l.isStopped())
+                        {
+                            manage(b);
+                            tasks.put(b, () -> startBean(l));
+                        }
+                        else
+                        {
+                            unmanage(b);
+                        }
+                    }
+                    default ->
+                    {
+                    }
+                }
+            }
+        }
+        runConcurrently(tasks, this::getBeanDependencies, true);
+    }
+
+    private Void startBean(LifeCycle l) throws Exception
+    {
+        if (isStarting())
+            start(l);
+        return null;
+    }
+
+    private Collection<Bean> getBeanDependencies(Bean bean)
+    {
+        if (_dependencies == null)
+            return List.of();
+        List<Object> dependencies = _dependencies.get(bean._bean);
+        if (dependencies == null)
+            return List.of();
+        List<Bean> result = new ArrayList<>();
+        for (Bean b : _beans)
+        {
+            for (Object dependency : dependencies)
+            {
+                if (b._bean == dependency)
+                    result.add(b);
+            }
+        }
+        return result;
+    }
+
+    private Collection<Bean> getBeanDependents(Bean bean)
+    {
+        if (_dependencies == null)
+            return List.of();
+        List<Bean> result = new ArrayList<>();
+        for (Bean b : _beans)
+        {
+            List<Object> dependencies = _dependencies.get(b._bean);
+            if (dependencies != null && dependencies.contains(bean._bean))
+                result.add(b);
+        }
+        return result;
+    }
+
+    /**
+     * <p>Runs the given tasks concurrently on the {@link #getLifeCycleExecutor() lifecycle executor},
+     * with at most {@link #getMaxLifeCycleConcurrency()} tasks running at once, and waits for
+     * their completion.</p>
+     * <p>A task is run only after the tasks of its dependencies have completed;
+     * dependencies that are not keys of the given map are ignored.
+     * If the task of a dependency failed, the task is skipped and its own failure
+     * is reported, so that its dependents are skipped too.
+     * If the lifecycle executor is null, the tasks are run sequentially in iteration order.</p>
+     *
+     * @param tasks the tasks to run, mapped by the objects they apply to
+     * @param dependencies a function returning the dependencies of an object
+     * @param abortOnFailure whether all the tasks not yet run are skipped after a task failed
+     * @param <T> the type of the objects the tasks apply to
+     * @throws Exception the combination of the failures of the tasks
+     * @throws IllegalStateException if the dependencies contain a cycle, in which case no task is run
+     */
+    protected <T> void runConcurrently(Map<T, Callable<?>> tasks, Function<T, Collection<T>> dependencies, boolean abortOnFailure) throws Exception
+    {
+        Executor executor = _lifeCycleExecutor;
+        Throwable failure = null;
+        if (executor == null)
+        {
+            for (Callable<?> task : tasks.values())
+            {
+                try
+                {
+                    task.call();
+                }
+                catch (Throwable x)
+                {
+                    failure = ExceptionUtil.combine(failure, x);
+                    if (abortOnFailure)
+                        break;
+                }
+            }
+            ExceptionUtil.ifExceptionThrow(failure);
+            return;
+        }
+
+        // Sort the whole graph before submitting any task, so that
+        // a dependency cycle fails before any task is run.
+        TopologicalSort<T> sort = new TopologicalSort<>();
+        for (T item : tasks.keySet())
+        {
+            for (T dependency : dependencies.apply(item))
+            {
+                if (tasks.containsKey(dependency))
+                {
+                    // Avoid the generic array creation of the varargs call;
+                    // the array is only iterated, so its runtime type does not matter.
+                    @SuppressWarnings("unchecked")
+                    T[] dependencyArray = (T[])new Object[]{dependency};
+                    sort.addDependency(item, dependencyArray);
+                }
+            }
+        }
+        List<T> sorted = new ArrayList<>(tasks.keySet());
+        sort.sort(sorted);
+
+        BoundedExecutor boundedExecutor = new BoundedExecutor(executor, _maxLifeCycleConcurrency);
+        AtomicBoolean failed = abortOnFailure ? new AtomicBoolean() : null;
+        Map<T, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        for (T item : sorted)
+        {
+            // The dependencies precede the item in the sorted list, so their futures exist.
+            List<CompletableFuture<Void>> dependencyFutures = new ArrayList<>();
+            for (T dependency : dependencies.apply(item))
+            {
+                CompletableFuture<Void> dependencyFuture = futures.get(dependency);
+                if (dependencyFuture != null)
+                    dependencyFutures.add(dependencyFuture);
+            }
+            futures.put(item, submit(item, tasks.get(item), dependencyFutures, boundedExecutor, failed));
+        }
+        for (T item : tasks.keySet())
+        {
+            try
+            {
+                futures.get(item).join();
+            }
+            catch (CompletionException x)
+            {
+                failure = ExceptionUtil.combine(failure, x.getCause());
+            }
+        }
+        ExceptionUtil.ifExceptionThrow(failure);
+    }
+
+    private static CompletableFuture<Void> submit(Object item, Callable<?> task, List<CompletableFuture<Void>> dependencyFutures, Executor executor, AtomicBoolean failed)
+    {
+        return CompletableFuture.allOf(dependencyFutures.toArray(CompletableFuture[]::new))
+            .handle((r, x) -> x != null)
+            .thenAcceptAsync(dependencyFailed ->
+            {
+                if (failed != null && failed.get())
+                    return;
+                if (dependencyFailed)
+                    throw new CompletionException(new IllegalStateException("Skipped " + item + " after the failure of a dependency"));
+                try
+                {
+                    task.call();
+                }
+                catch (Throwable x)
+                {
+                    if (failed != null)
+                        failed.set(true);
+                    throw new CompletionException(x);
+                }
+            }, executor);
+    }
+
     /**
      * Starts the given lifecycle.
      *
@@ -191,25 +472,53 @@ public class ContainerLifeCycle extends AbstractLifeCycle implements Container,
         List<Bean> reverse = new ArrayList<>(_beans);
         Collections.reverse(reverse);
         Throwable multiException = null;
-        for (Bean b : reverse)
+        if (_lifeCycleExecutor != null)
         {
-            if (!isStopping())
-                break;
-            if (b._managed == Managed.MANAGED && b._bean instanceof LifeCycle l)
+            Map<Bean, Callable<?>> tasks = new LinkedHashMap<>();
+            for (Bean b : reverse)
             {
-                try
-                {
-                    stop(l);
-                }
-                catch (Throwable th)
+                if (b._managed == Managed.MANAGED && b._bean instanceof LifeCycle l)
+                    tasks.put(b, () -> stopBean(l));
+            }
+            try
+            {
+                // Beans are stopped after the beans that depend on them.
+                runConcurrently(tasks, this::getBeanDependents, false);
+            }
+            catch (Throwable th)
+            {
+                multiException = th;
+            }
+        }
+        else
+        {
+            for (Bean b : reverse)
+            {
+                if (!isStopping())
+                    break;
+                if (b._managed == Managed.MANAGED && b._bean instanceof LifeCycle l)
                 {
-                    multiException = ExceptionUtil.combine(multiException, th);
+                    try
+                    {
+                        stop(l);
+                    }
+                    catch (Throwable th)
+                    {
+                        multiException = ExceptionUtil.combine(multiException, th);
+                    }
                 }
             }
         }
         ExceptionUtil.ifExceptionThrow(multiException);
     }
 
+    private Void stopBean(LifeCycle l) throws Exception
+    {
+        if (isStopping())
+            stop(l);
+        return null;
+    }
+
     /**
      * Destroys the managed Destroyable beans in the reverse order they were added.
      */
@@ -791,6 +1100,70 @@ public class ContainerLifeCycle extends AbstractLifeCycle implements Container,
         Dumpable.dumpObjects(out, indent, this, items);
     }
 
+    /**
+     * An {@link Executor} that runs at most a given number of tasks at once on another {@link Executor}.
+     */
+    private static class BoundedExecutor implements Executor
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final Queue<Runnable> _queue = new ArrayDeque<>();
+        private final Executor _executor;
+        private final int _maxConcurrency;
+        private int _active;
+
+        private BoundedExecutor(Executor executor, int maxConcurrency)
+        {
+            _executor = executor;
+            _maxConcurrency = maxConcurrency;
+        }
+
+        @Override
+        public void execute(Runnable task)
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_active >= _maxConcurrency)
+                {
+                    _queue.offer(task);
+                    return;
+                }
+                ++_active;
+            }
+            try
+            {
+                _executor.execute(() -> run(task));
+            }
+            catch (Throwable x)
+            {
+                try (AutoLock ignored = _lock.lock())
+                {
+                    --_active;
+                }
+                throw x;
+            }
+        }
+
+        private void run(Runnable task)
+        {
+            while (task != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    try (AutoLock ignored = _lock.lock())
+                    {
+                        task = _queue.poll();
+                        if (task == null)
+                            --_active;
+                    }
+                }
+            }
+        }
+    }
+
     enum Managed
     {
         POJO, MANAGED, UNMANAGED, AUTO
@@ -0,0 +1,108 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A streaming encoder for a single HTTP content-coding such as {@code gzip},
+ * {@code deflate}, {@code br} or {@code zstd}.</p>
+ * <p>An encoder is obtained from a {@link Factory} for the duration of a single
+ * response body, and it produces the complete framing of its content-coding
+ * (header, compressed blocks and trailer).
+ * Once the body is encoded, {@link #release()} must be called so that any
+ * native compression context can be returned to its pool, typically a
+ * {@link CompressionPool}.</p>
+ * <p>Typical usage is:</p>
+ * <pre>{@code
+ * encoder.setInput(content);
+ * while (!encoder.needsInput())
+ *     encoder.encode(output, false);
+ * encoder.finish();
+ * while (!encoder.isFinished())
+ *     encoder.encode(output, false);
+ * encoder.release();
+ * }</pre>
+ */
+public interface CompressionEncoder
+{
+    /**
+     * @return the content-coding token produced by this encoder, for example {@code gzip}
+     */
+    String getEncoding();
+
+    /**
+     * <p>Sets the input to encode.</p>
+     * <p>The given buffer is consumed by subsequent calls to {@link #encode(ByteBuffer, boolean)}
+     * and must not be modified until {@link #needsInput()} returns {@code true}.</p>
+     *
+     * @param input the bytes to encode
+     */
+    void setInput(ByteBuffer input);
+
+    /**
+     * @return whether all the input has been consumed and more input may be set
+     */
+    boolean needsInput();
+
+    /**
+     * <p>Signals that no more input will be set, so that subsequent calls to
+     * {@link #encode(ByteBuffer, boolean)} produce the remaining compressed
+     * bytes and the content-coding trailer, if any.</p>
+     */
+    void finish();
+
+    /**
+     * <p>Encodes the input into the given buffer.</p>
+     *
+     * @param output the buffer, in fill mode, into which to encode bytes
+     * @param flush whether the encoder should flush the bytes encoded so far
+     * @return the number of bytes written to the output buffer
+     */
+    int encode(ByteBuffer output, boolean flush);
+
+    /**
+     * @return whether {@link #finish()} has been called and all the encoded bytes,
+     * including any trailer, have been produced
+     */
+    boolean isFinished();
+
+    /**
+     * <p>Releases the resources held by this encoder, possibly returning them to a pool.</p>
+     * <p>The encoder must not be used after it has been released.</p>
+     */
+    void release();
+
+    /**
+     * <p>A factory of {@link CompressionEncoder}s for a specific content-coding.</p>
+     * <p>Implementations may be discovered via {@link java.util.ServiceLoader}, so that
+     * optional modules can provide encoders (for example {@code br} or {@code zstd})
+     * backed by third party libraries.
+     * Implementations that are also {@link org.eclipse.jetty.util.component.LifeCycle}s
+     * are started and stopped by the component that uses them, which allows them to
+     * manage a {@link CompressionPool} of encoding contexts.</p>
+     */
+    interface Factory
+    {
+        /**
+         * @return the content-coding token of the encoders created by this factory
+         */
+        String getEncoding();
+
+        /**
+         * @return a new, or pooled, encoder
+         */
+        CompressionEncoder newEncoder();
+    }
+}
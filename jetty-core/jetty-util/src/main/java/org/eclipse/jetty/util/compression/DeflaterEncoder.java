@@ -0,0 +1,217 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * <p>A {@link CompressionEncoder} for the {@code gzip} (RFC 1952) and {@code deflate}
+ * (RFC 1950) content-codings, that uses a {@link Deflater} from a {@link DeflaterPool}.</p>
+ * <p>The {@link Deflater}s must be created with {@code nowrap=true}, as the
+ * content-coding header and trailer are generated by this class.</p>
+ */
+public class DeflaterEncoder implements CompressionEncoder
+{
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    // Per RFC-1952 this is the "unknown" OS value byte.
+    private static final byte OS_UNKNOWN = (byte)0xFF;
+    private static final byte[] GZIP_HEADER = new byte[]{
+        (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, OS_UNKNOWN
+    };
+    // Per RFC-1950, CM=8, CINFO=7, FLEVEL=2 and FCHECK such that the header is a multiple of 31.
+    private static final byte[] ZLIB_HEADER = new byte[]{(byte)0x78, (byte)0x9C};
+    // Per RFC-1952, the GZIP trailer is 8 bytes.
+    private static final int GZIP_TRAILER_SIZE = 8;
+    // Per RFC-1950, the ZLIB trailer is the 4 bytes ADLER32 checksum.
+    private static final int ZLIB_TRAILER_SIZE = 4;
+
+    private final DeflaterPool.Entry _entry;
+    private final boolean _gzip;
+    private final Checksum _checksum;
+    private boolean _headerWritten;
+    private boolean _trailerWritten;
+    private boolean _finishing;
+
+    /**
+     * @param entry the pooled {@link Deflater}, created with {@code nowrap=true}
+     * @param gzip {@code true} to produce the {@code gzip} content-coding,
+     * {@code false} to produce the {@code deflate} content-coding
+     */
+    public DeflaterEncoder(DeflaterPool.Entry entry, boolean gzip)
+    {
+        _entry = Objects.requireNonNull(entry);
+        _gzip = gzip;
+        _checksum = gzip ? new CRC32() : new Adler32();
+    }
+
+    /**
+     * @return the pooled {@link Deflater} entry used by this encoder
+     */
+    public DeflaterPool.Entry getDeflaterEntry()
+    {
+        return _entry;
+    }
+
+    @Override
+    public String getEncoding()
+    {
+        return _gzip ? GZIP : DEFLATE;
+    }
+
+    @Override
+    public void setInput(ByteBuffer input)
+    {
+        _checksum.update(input.slice());
+        _entry.get().setInput(input);
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return _entry.get().needsInput();
+    }
+
+    @Override
+    public void finish()
+    {
+        _finishing = true;
+        _entry.get().finish();
+    }
+
+    @Override
+    public int encode(ByteBuffer output, boolean flush)
+    {
+        int start = output.position();
+        if (!_headerWritten)
+        {
+            byte[] header = _gzip ? GZIP_HEADER : ZLIB_HEADER;
+            if (output.remaining() < header.length)
+                return 0;
+            output.put(header);
+            _headerWritten = true;
+        }
+
+        Deflater deflater = _entry.get();
+        if (!deflater.finished() && (_finishing || !deflater.needsInput()))
+            deflater.deflate(output, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+
+        if (deflater.finished() && !_trailerWritten)
+        {
+            int trailerSize = _gzip ? GZIP_TRAILER_SIZE : ZLIB_TRAILER_SIZE;
+            if (output.remaining() >= trailerSize)
+            {
+                int checksum = (int)_checksum.getValue();
+                if (_gzip)
+                {
+                    // Per RFC-1952, the GZIP trailer is LITTLE_ENDIAN.
+                    putIntLittleEndian(output, checksum);
+                    putIntLittleEndian(output, deflater.getTotalIn());
+                }
+                else
+                {
+                    // Per RFC-1950, the ZLIB trailer is BIG_ENDIAN.
+                    output.put((byte)(checksum >>> 24));
+                    output.put((byte)(checksum >>> 16));
+                    output.put((byte)(checksum >>> 8));
+                    output.put((byte)checksum);
+                }
+                _trailerWritten = true;
+            }
+        }
+        return output.position() - start;
+    }
+
+    private static void putIntLittleEndian(ByteBuffer output, int value)
+    {
+        output.put((byte)value);
+        output.put((byte)(value >>> 8));
+        output.put((byte)(value >>> 16));
+        output.put((byte)(value >>> 24));
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return _trailerWritten;
+    }
+
+    @Override
+    public void release()
+    {
+        _entry.release();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,finishing=%b,finished=%b,%s}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getEncoding(),
+            _finishing,
+            _trailerWritten,
+            _entry.get());
+    }
+
+    /**
+     * <p>A {@link CompressionEncoder.Factory} of {@link DeflaterEncoder}s
+     * that acquires {@link Deflater}s from a {@link DeflaterPool}.</p>
+     */
+    public static class Factory implements CompressionEncoder.Factory
+    {
+        private final DeflaterPool _deflaterPool;
+        private final boolean _gzip;
+
+        /**
+         * @param deflaterPool the pool of {@link Deflater}s, created with {@code nowrap=true}
+         * @param gzip {@code true} to produce the {@code gzip} content-coding,
+         * {@code false} to produce the {@code deflate} content-coding
+         */
+        public Factory(DeflaterPool deflaterPool, boolean gzip)
+        {
+            _deflaterPool = Objects.requireNonNull(deflaterPool);
+            _gzip = gzip;
+        }
+
+        public DeflaterPool getDeflaterPool()
+        {
+            return _deflaterPool;
+        }
+
+        @Override
+        public String getEncoding()
+        {
+            return _gzip ? GZIP : DEFLATE;
+        }
+
+        @Override
+        public CompressionEncoder newEncoder()
+        {
+            return new DeflaterEncoder(_deflaterPool.acquire(), _gzip);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s,%s}", getClass().getSimpleName(), hashCode(), getEncoding(), _deflaterPool);
+        }
+    }
+}
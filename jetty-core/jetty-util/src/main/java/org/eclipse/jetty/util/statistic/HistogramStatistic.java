@@ -0,0 +1,351 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>Statistics on the distribution of a sampled value.</p>
+ * <p>Samples are counted in a fixed number of log-linear buckets, in the style of
+ * <a href="https://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a>:
+ * values smaller than {@code 2^precisionBits} are counted exactly, while larger
+ * values are counted in buckets whose width grows with the magnitude of the value,
+ * so that the relative error of the reported percentiles is bounded by
+ * {@code 2^(1-precisionBits)}, for example less than 2% with the default precision.</p>
+ * <p>The memory used is fixed at construction and depends on the highest trackable
+ * value and on the precision; samples larger than the highest trackable value are
+ * counted in the last bucket.</p>
+ * <p>Recording a sample is lock-free and does not allocate: the bucket counters are
+ * striped to reduce the contention among threads recording concurrently.</p>
+ * <p>A {@link #snapshot() snapshot} returns the distribution of all the samples recorded
+ * since the last {@link #reset()}, while an {@link #intervalSnapshot() interval snapshot}
+ * returns the distribution of the samples recorded since the previous interval snapshot,
+ * without resetting the cumulative distribution.</p>
+ */
+public class HistogramStatistic
+{
+    private static final int DEFAULT_PRECISION_BITS = 7;
+    private static final int STRIPES = Integer.highestOneBit(Math.min(ProcessorUtils.availableProcessors(), 16));
+
+    private final AutoLock _lock = new AutoLock();
+    private final int _precisionBits;
+    private final int _subBucketCount;
+    private final int _halfSubBucketCount;
+    private final long _highestTrackableValue;
+    private final int _bucketCount;
+    private final AtomicLongArray _counts;
+    private final LongAdder _total = new LongAdder();
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+    private Snapshot _lastInterval;
+
+    /**
+     * Creates a histogram that can track any positive {@code long} value.
+     */
+    public HistogramStatistic()
+    {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param highestTrackableValue the highest value that can be tracked
+     */
+    public HistogramStatistic(long highestTrackableValue)
+    {
+        this(highestTrackableValue, DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param highestTrackableValue the highest value that can be tracked
+     * @param precisionBits the number of bits of precision of the bucket values, between 2 and 16
+     */
+    public HistogramStatistic(long highestTrackableValue, int precisionBits)
+    {
+        if (precisionBits < 2 || precisionBits > 16)
+            throw new IllegalArgumentException("Invalid precision bits " + precisionBits);
+        _precisionBits = precisionBits;
+        _subBucketCount = 1 << precisionBits;
+        _halfSubBucketCount = _subBucketCount >> 1;
+        _highestTrackableValue = Math.max(highestTrackableValue, _subBucketCount - 1);
+        _bucketCount = indexOf(_highestTrackableValue) + 1;
+        _counts = new AtomicLongArray(STRIPES * _bucketCount);
+        _lastInterval = new Snapshot(new long[_bucketCount], 0, 0);
+    }
+
+    /**
+     * @return the highest value that can be tracked
+     */
+    public long getHighestTrackableValue()
+    {
+        return _highestTrackableValue;
+    }
+
+    /**
+     * @return the number of buckets of this histogram
+     */
+    public int getBucketCount()
+    {
+        return _bucketCount;
+    }
+
+    /**
+     * Resets the statistics, including the interval statistics.
+     */
+    public void reset()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            for (int i = 0; i < _counts.length(); ++i)
+            {
+                _counts.set(i, 0);
+            }
+            _total.reset();
+            _max.reset();
+            _lastInterval = new Snapshot(new long[_bucketCount], 0, 0);
+        }
+    }
+
+    /**
+     * Records a sample value.
+     *
+     * @param sample the value to record, negative values are recorded as zero.
+     */
+    public void record(long sample)
+    {
+        long value = Math.max(0, sample);
+        int index = indexOf(Math.min(value, _highestTrackableValue));
+        _counts.getAndIncrement(stripe() * _bucketCount + index);
+        _total.add(value);
+        _max.accumulate(value);
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (int i = 0; i < _counts.length(); ++i)
+        {
+            count += _counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the max value of the recorded samples
+     */
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the given percentile of the recorded samples
+     * @see Snapshot#getValueAtPercentile(double)
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the distribution of the samples recorded since the last {@link #reset()}
+     */
+    public Snapshot snapshot()
+    {
+        return new Snapshot(collect(), _total.sum(), _max.get());
+    }
+
+    /**
+     * <p>Returns the distribution of the samples recorded since the previous call
+     * to this method, or since the last {@link #reset()}.</p>
+     * <p>The cumulative distribution returned by {@link #snapshot()} is not reset.</p>
+     *
+     * @return the distribution of the samples recorded in the last interval
+     */
+    public Snapshot intervalSnapshot()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            Snapshot current = snapshot();
+            Snapshot previous = _lastInterval;
+            _lastInterval = current;
+            long[] counts = new long[_bucketCount];
+            int highest = -1;
+            for (int i = 0; i < _bucketCount; ++i)
+            {
+                counts[i] = current._counts[i] - previous._counts[i];
+                if (counts[i] > 0)
+                    highest = i;
+            }
+            long max = highest < 0 ? 0 : Math.min(highestEquivalentValue(highest), current.getMax());
+            long total = current.getTotal() - previous.getTotal();
+            return new Snapshot(counts, total, max);
+        }
+    }
+
+    private long[] collect()
+    {
+        long[] counts = new long[_bucketCount];
+        for (int s = 0; s < STRIPES; ++s)
+        {
+            int offset = s * _bucketCount;
+            for (int i = 0; i < _bucketCount; ++i)
+            {
+                counts[i] += _counts.get(offset + i);
+            }
+        }
+        return counts;
+    }
+
+    private static int stripe()
+    {
+        long id = Thread.currentThread().getId();
+        return (int)(id ^ (id >>> 16)) & (STRIPES - 1);
+    }
+
+    private int indexOf(long value)
+    {
+        if (value < _subBucketCount)
+            return (int)value;
+        // The shift is such that the mantissa is in [subBucketCount/2, subBucketCount).
+        int shift = 64 - Long.numberOfLeadingZeros(value) - _precisionBits;
+        int mantissa = (int)(value >>> shift);
+        return _subBucketCount + (shift - 1) * _halfSubBucketCount + (mantissa - _halfSubBucketCount);
+    }
+
+    private long lowestEquivalentValue(int index)
+    {
+        if (index < _subBucketCount)
+            return index;
+        int shift = (index - _subBucketCount) / _halfSubBucketCount + 1;
+        long mantissa = (index - _subBucketCount) % _halfSubBucketCount + _halfSubBucketCount;
+        return mantissa << shift;
+    }
+
+    private long highestEquivalentValue(int index)
+    {
+        if (index < _subBucketCount)
+            return index;
+        int shift = (index - _subBucketCount) / _halfSubBucketCount + 1;
+        long next = lowestEquivalentValue(index) + (1L << shift);
+        // Avoid overflow for the last bucket of Long.MAX_VALUE.
+        return next < 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x%s", getClass().getSimpleName(), hashCode(), snapshot());
+    }
+
+    /**
+     * <p>An immutable copy of the distribution of the samples of a {@link HistogramStatistic}.</p>
+     */
+    public class Snapshot
+    {
+        private final long[] _counts;
+        private final long _total;
+        private final long _max;
+        private final long _count;
+
+        private Snapshot(long[] counts, long total, long max)
+        {
+            _counts = counts;
+            _total = total;
+            _max = max;
+            long count = 0;
+            for (long c : counts)
+            {
+                count += c;
+            }
+            _count = count;
+        }
+
+        /**
+         * @return the number of samples
+         */
+        public long getCount()
+        {
+            return _count;
+        }
+
+        /**
+         * @return the sum of the samples
+         */
+        public long getTotal()
+        {
+            return _total;
+        }
+
+        /**
+         * @return the max value of the samples
+         */
+        public long getMax()
+        {
+            return _max;
+        }
+
+        /**
+         * @return the average value of the samples, or zero if there are no samples
+         */
+        public double getMean()
+        {
+            return _count > 0 ? (double)_total / _count : 0.0D;
+        }
+
+        /**
+         * <p>Returns the value at the given percentile of the samples,
+         * within the precision of the histogram, or zero if there are no samples.</p>
+         * <p>The value returned is the highest value equivalent to the samples
+         * counted in the same bucket, capped by the max value.</p>
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the value at the given percentile
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            if (_count == 0)
+                return 0;
+            double p = Math.min(Math.max(percentile, 0.0D), 100.0D);
+            long target = Math.max(1, (long)Math.ceil(p / 100.0D * _count));
+            long cumulative = 0;
+            for (int i = 0; i < _counts.length; ++i)
+            {
+                cumulative += _counts[i];
+                if (cumulative >= target)
+                    return Math.min(highestEquivalentValue(i), _max);
+            }
+            return _max;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("{count=%d,max=%d,mean=%f,p50=%d,p99=%d,p999=%d}",
+                getCount(),
+                getMax(),
+                getMean(),
+                getValueAtPercentile(50),
+                getValueAtPercentile(99),
+                getValueAtPercentile(99.9));
+        }
+    }
+}
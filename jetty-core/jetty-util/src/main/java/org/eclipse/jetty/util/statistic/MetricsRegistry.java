@@ -0,0 +1,355 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A registry of metrics, rendered in the OpenMetrics text format.</p>
+ * <p>Metrics are grouped in families with the same name, and each sample of
+ * a family is identified by its labels, in the form {@code name="value"}
+ * separated by commas, as returned by {@link #labels(String, String, String)}.</p>
+ * <p>The metric names, help texts and labels are encoded once at registration,
+ * so that rendering the metrics only reads the sample values.</p>
+ *
+ * @see MetricsSource
+ */
+public class MetricsRegistry
+{
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final byte[] NAN = bytes("NaN");
+
+    private final AutoLock _lock = new AutoLock();
+    private final Map<String, Family> _families = new LinkedHashMap<>();
+    private int _sampleCount;
+
+    /**
+     * <p>Appends a label to the given labels.</p>
+     *
+     * @param labels the labels to append to, possibly empty
+     * @param name the label name
+     * @param value the label value, escaped if necessary
+     * @return the labels with the given label appended
+     */
+    public static String labels(String labels, String name, String value)
+    {
+        StringBuilder builder = new StringBuilder(labels);
+        if (!labels.isEmpty())
+            builder.append(',');
+        builder.append(name).append("=\"");
+        String string = String.valueOf(value);
+        for (int i = 0; i < string.length(); ++i)
+        {
+            char c = string.charAt(i);
+            switch (c)
+            {
+                case '\\' -> builder.append("\\\\");
+                case '"' -> builder.append("\\\"");
+                case '\n' -> builder.append("\\n");
+                default -> builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * <p>Registers a gauge sample, whose value may go up and down.</p>
+     *
+     * @param name the metric name
+     * @param help the metric description
+     * @param labels the sample labels
+     * @param value the supplier of the sample value
+     */
+    public void gauge(String name, String help, String labels, LongSupplier value)
+    {
+        family(name, "gauge", help).add(labels, new LongSample(name, value));
+    }
+
+    /**
+     * <p>Registers a counter sample, whose value only goes up.</p>
+     * <p>The sample name is the metric name with the {@code _total} suffix.</p>
+     *
+     * @param name the metric name, without the {@code _total} suffix
+     * @param help the metric description
+     * @param labels the sample labels
+     * @param value the supplier of the sample value
+     */
+    public void counter(String name, String help, String labels, LongSupplier value)
+    {
+        family(name, "counter", help).add(labels, new LongSample(name + "_total", value));
+    }
+
+    /**
+     * <p>Registers a summary sample, with the quantiles, count and sum of
+     * the samples recorded by the given histogram, converted to seconds.</p>
+     * <p>The count and sum are cumulative, while the quantiles are computed over
+     * the samples recorded since the previous rendering, so that they reflect the
+     * recent durations; they are {@code NaN} if no sample was recorded meanwhile.
+     * The quantiles use {@link HistogramStatistic#intervalSnapshot()}, so the histogram
+     * should not be registered in more than one registry, nor its interval snapshots
+     * taken elsewhere.</p>
+     *
+     * @param name the metric name, which should end with {@code _seconds}
+     * @param help the metric description
+     * @param labels the sample labels
+     * @param histogram the histogram of durations
+     * @param unit the unit of the durations recorded by the histogram
+     */
+    public void summary(String name, String help, String labels, HistogramStatistic histogram, TimeUnit unit)
+    {
+        family(name, "summary", help).add(labels, new SummarySample(name, histogram, unit));
+    }
+
+    /**
+     * @return the number of registered samples
+     */
+    public int getSampleCount()
+    {
+        return _sampleCount;
+    }
+
+    private Family family(String name, String type, String help)
+    {
+        if (!NAME.matcher(name).matches())
+            throw new IllegalArgumentException("Invalid metric name " + name);
+        Family family = _families.computeIfAbsent(name, n -> new Family(n, type, help));
+        if (!family._type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family._type);
+        ++_sampleCount;
+        return family;
+    }
+
+    /**
+     * <p>Renders the registered metrics in the OpenMetrics text format,
+     * without the terminating {@code # EOF} line.</p>
+     * <p>If the buffer is too small, the rendering can be retried with a larger
+     * buffer, and the summaries render the same quantiles as the failed attempt.</p>
+     *
+     * @param buffer the buffer to write into, in fill mode
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public void write(ByteBuffer buffer)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            for (Family family : _families.values())
+            {
+                family.write(buffer);
+            }
+            // The rendering is complete, the next one starts a new interval.
+            for (Family family : _families.values())
+            {
+                family.complete();
+            }
+        }
+    }
+
+    private static byte[] bytes(String string)
+    {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(ByteBuffer buffer, long value)
+    {
+        if (value < 0)
+        {
+            if (value == Long.MIN_VALUE)
+            {
+                buffer.put(bytes(Long.toString(value)));
+                return;
+            }
+            buffer.put((byte)'-');
+            value = -value;
+        }
+        if (value >= 10)
+            writeLong(buffer, value / 10);
+        buffer.put((byte)('0' + value % 10));
+    }
+
+    private static void writeSeconds(ByteBuffer buffer, long value, TimeUnit unit)
+    {
+        long nanos = unit.toNanos(value);
+        writeLong(buffer, nanos / 1_000_000_000L);
+        buffer.put((byte)'.');
+        long fraction = nanos % 1_000_000_000L;
+        for (long divisor = 100_000_000L; divisor > 0; divisor /= 10)
+        {
+            buffer.put((byte)('0' + fraction / divisor % 10));
+        }
+    }
+
+    private static class Family
+    {
+        private final String _type;
+        private final byte[] _header;
+        private final List<Sample> _samples = new ArrayList<>();
+        private final Set<String> _labels = new HashSet<>();
+
+        private Family(String name, String type, String help)
+        {
+            _type = type;
+            String escapedHelp = help.replace("\\", "\\\\").replace("\n", "\\n");
+            _header = bytes("# TYPE " + name + " " + type + "\n# HELP " + name + " " + escapedHelp + "\n");
+        }
+
+        private void add(String labels, Sample sample)
+        {
+            // Samples of the same family must have distinct labels.
+            String unique = labels;
+            for (int i = 1; !_labels.add(unique); ++i)
+            {
+                unique = MetricsRegistry.labels(labels, "instance", String.valueOf(i));
+            }
+            sample.setLabels(unique);
+            _samples.add(sample);
+        }
+
+        private void write(ByteBuffer buffer)
+        {
+            buffer.put(_header);
+            for (Sample sample : _samples)
+            {
+                sample.write(buffer);
+            }
+        }
+
+        private void complete()
+        {
+            for (Sample sample : _samples)
+            {
+                sample.complete();
+            }
+        }
+    }
+
+    private abstract static class Sample
+    {
+        protected abstract void setLabels(String labels);
+
+        protected abstract void write(ByteBuffer buffer);
+
+        protected void complete()
+        {
+        }
+
+        protected static byte[] prefix(String name, String labels, String label)
+        {
+            if (labels.isEmpty() && label == null)
+                return bytes(name + " ");
+            if (label == null)
+                return bytes(name + "{" + labels + "} ");
+            return bytes(name + "{" + (labels.isEmpty() ? "" : labels + ",") + label + "} ");
+        }
+    }
+
+    private static class LongSample extends Sample
+    {
+        private final String _name;
+        private final LongSupplier _value;
+        private byte[] _prefix;
+
+        private LongSample(String name, LongSupplier value)
+        {
+            _name = name;
+            _value = value;
+        }
+
+        @Override
+        protected void setLabels(String labels)
+        {
+            _prefix = prefix(_name, labels, null);
+        }
+
+        @Override
+        protected void write(ByteBuffer buffer)
+        {
+            buffer.put(_prefix);
+            writeLong(buffer, _value.getAsLong());
+            buffer.put((byte)'\n');
+        }
+    }
+
+    private static class SummarySample extends Sample
+    {
+        private final String _name;
+        private final HistogramStatistic _histogram;
+        private final TimeUnit _unit;
+        private final byte[][] _quantilePrefixes = new byte[QUANTILES.length][];
+        private byte[] _countPrefix;
+        private byte[] _sumPrefix;
+        private HistogramStatistic.Snapshot _interval;
+
+        private SummarySample(String name, HistogramStatistic histogram, TimeUnit unit)
+        {
+            _name = name;
+            _histogram = histogram;
+            _unit = unit;
+        }
+
+        @Override
+        protected void setLabels(String labels)
+        {
+            for (int i = 0; i < QUANTILES.length; ++i)
+            {
+                _quantilePrefixes[i] = prefix(_name, labels, "quantile=\"" + QUANTILES[i] + "\"");
+            }
+            _countPrefix = prefix(_name + "_count", labels, null);
+            _sumPrefix = prefix(_name + "_sum", labels, null);
+        }
+
+        @Override
+        protected void write(ByteBuffer buffer)
+        {
+            // Keep the interval across retries of the same rendering.
+            if (_interval == null)
+                _interval = _histogram.intervalSnapshot();
+            HistogramStatistic.Snapshot interval = _interval;
+            HistogramStatistic.Snapshot snapshot = _histogram.snapshot();
+            for (int i = 0; i < QUANTILES.length; ++i)
+            {
+                buffer.put(_quantilePrefixes[i]);
+                if (interval.getCount() == 0)
+                    buffer.put(NAN);
+                else
+                    writeSeconds(buffer, interval.getValueAtPercentile(QUANTILES[i] * 100), _unit);
+                buffer.put((byte)'\n');
+            }
+            buffer.put(_countPrefix);
+            writeLong(buffer, snapshot.getCount());
+            buffer.put((byte)'\n');
+            buffer.put(_sumPrefix);
+            writeSeconds(buffer, snapshot.getTotal(), _unit);
+            buffer.put((byte)'\n');
+        }
+
+        @Override
+        protected void complete()
+        {
+            _interval = null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+/**
+ * <p>A component that registers its own metrics in a {@link MetricsRegistry}.</p>
+ * <p>Components implementing this interface are found by the metrics exporters,
+ * such as {@code OpenMetricsHandler}, when they walk the component tree.</p>
+ */
+public interface MetricsSource
+{
+    /**
+     * <p>Registers the metrics of this component.</p>
+     *
+     * @param registry the registry to register the metrics into
+     * @param labels the labels of this component, to be passed when registering the metrics
+     */
+    void registerMetrics(MetricsRegistry registry, String labels);
+}
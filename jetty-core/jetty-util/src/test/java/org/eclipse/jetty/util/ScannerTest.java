@@ -39,8 +39,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -460,6 +463,69 @@ public class ScannerTest
         }
     }
 
+    @Test
+    @DisabledOnOs(value = OS.MAC, disabledReason = "The WatchService polls the file system, and notifies changes after seconds")
+    public void testWatchService() throws Exception
+    {
+        BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+        Scanner scanner = new Scanner();
+        scanner.setScanInterval(1);
+        scanner.setUseWatchService(true);
+        scanner.setReportDirs(false);
+        scanner.setReportExistingFilesOnStartup(false);
+        scanner.addDirectory(_directory);
+        scanner.addListener(new Scanner.DiscreteListener()
+        {
+            @Override
+            public void fileRemoved(String filename)
+            {
+                queue.add(new Event(filename, Notification.REMOVED));
+            }
+
+            @Override
+            public void fileChanged(String filename)
+            {
+                queue.add(new Event(filename, Notification.CHANGED));
+            }
+
+            @Override
+            public void fileAdded(String filename)
+            {
+                queue.add(new Event(filename, Notification.ADDED));
+            }
+        });
+        try
+        {
+            scanner.start();
+            // The watcher is a bean of the scanner, so it is dumped with it.
+            assertThat(scanner.dump(), Matchers.containsString("Watcher@"));
+
+            touch("watched");
+            Event event = queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals(_directory.resolve("watched").toString(), event._filename);
+            assertEquals(Notification.ADDED, event._notification);
+
+            // Once the files have settled, the directory is not scanned until it changes.
+            await().atMost(5, TimeUnit.SECONDS).until(() -> scanner.isSettled() && !scanner.isScanScheduled());
+
+            Files.writeString(_directory.resolve("watched"), "changed");
+            event = queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals(Notification.CHANGED, event._notification);
+
+            delete("watched");
+            event = queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals(Notification.REMOVED, event._notification);
+        }
+        finally
+        {
+            scanner.stop();
+        }
+        assertThat(scanner.dump(), Matchers.not(Matchers.containsString("Watcher@")));
+    }
+
     private void delete(String string) throws IOException
     {
         Path file = _directory.resolve(string);
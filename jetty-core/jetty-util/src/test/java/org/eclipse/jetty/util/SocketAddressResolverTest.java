@@ -0,0 +1,250 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocketAddressResolverTest
+{
+    private final AtomicInteger resolutions = new AtomicInteger();
+    private final List<Runnable> pending = new ArrayList<>();
+
+    private SocketAddressResolver newResolver(boolean async)
+    {
+        return (host, port, promise) ->
+        {
+            resolutions.incrementAndGet();
+            Runnable task = () ->
+            {
+                try
+                {
+                    if (host.startsWith("unknown"))
+                        throw new UnknownHostException(host);
+                    if (host.startsWith("timeout"))
+                        throw new TimeoutException(host);
+                    InetAddress address = InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1});
+                    promise.succeeded(List.of(new InetSocketAddress(address, port)));
+                }
+                catch (Throwable x)
+                {
+                    promise.failed(x);
+                }
+            };
+            if (async)
+                pending.add(task);
+            else
+                task.run();
+        };
+    }
+
+    private static CompletableFuture<List<InetSocketAddress>> resolve(SocketAddressResolver resolver, String host, int port)
+    {
+        Promise.Completable<List<InetSocketAddress>> promise = new Promise.Completable<>();
+        resolver.resolve(host, port, promise);
+        return promise;
+    }
+
+    @Test
+    public void testCachingResolution() throws Exception
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(false));
+
+        List<InetSocketAddress> result = resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(8080, result.get(0).getPort());
+        // The same host with a different port is served from the cache.
+        result = resolve(resolver, "host", 8443).get(5, TimeUnit.SECONDS);
+        assertEquals(8443, result.get(0).getPort());
+        assertEquals("host", result.get(0).getHostString());
+
+        assertEquals(1, resolutions.get());
+        assertEquals(1, resolver.getCacheHits());
+        assertEquals(1, resolver.getCacheMisses());
+
+        resolver.clear();
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testCachingExpiration() throws Exception
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(false));
+        resolver.setTimeToLive(Duration.ofMillis(100));
+
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(1, resolutions.get());
+
+        Thread.sleep(200);
+
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testCachingDisabled() throws Exception
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(false));
+        resolver.setTimeToLive(Duration.ZERO);
+
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "host", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(2, resolutions.get());
+        assertEquals(0, resolver.getCacheSize());
+    }
+
+    @Test
+    public void testNegativeCaching()
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(false));
+
+        for (int i = 0; i < 2; ++i)
+        {
+            Throwable failure = assertThrows(Exception.class, () -> resolve(resolver, "unknown", 8080).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UnknownHostException.class, failure.getCause());
+        }
+        assertEquals(1, resolutions.get());
+
+        // Other failures are not cached.
+        for (int i = 0; i < 2; ++i)
+        {
+            Throwable failure = assertThrows(Exception.class, () -> resolve(resolver, "timeout", 8080).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, failure.getCause());
+        }
+        assertEquals(3, resolutions.get());
+    }
+
+    @Test
+    public void testConcurrentResolutionsAreCoalesced() throws Exception
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(true));
+
+        List<CompletableFuture<List<InetSocketAddress>>> results = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            results.add(resolve(resolver, "host", 8080 + i));
+        }
+        assertEquals(1, resolutions.get());
+        assertEquals(1, pending.size());
+        for (CompletableFuture<List<InetSocketAddress>> result : results)
+        {
+            assertFalse(result.isDone());
+        }
+
+        pending.remove(0).run();
+
+        for (int i = 0; i < results.size(); ++i)
+        {
+            assertEquals(8080 + i, results.get(i).get(5, TimeUnit.SECONDS).get(0).getPort());
+        }
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void testConcurrentResolutionsAreNotifiedOnce() throws Exception
+    {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try
+        {
+            for (int iteration = 0; iteration < 2000; ++iteration)
+            {
+                AtomicReference<Promise<List<InetSocketAddress>>> delegate = new AtomicReference<>();
+                SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching((host, port, promise) ->
+                {
+                    resolutions.incrementAndGet();
+                    delegate.set(promise);
+                });
+
+                CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+                AtomicInteger notifications = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; ++i)
+                {
+                    futures.add(executor.submit(() ->
+                    {
+                        barrier.await();
+                        resolver.resolve("host", 8080, Promise.from(r -> notifications.incrementAndGet(), x -> notifications.incrementAndGet()));
+                        return null;
+                    }));
+                }
+                // Complete the delegate resolution while the other threads are joining it.
+                futures.add(executor.submit(() ->
+                {
+                    barrier.await();
+                    while (delegate.get() == null)
+                    {
+                        Thread.onSpinWait();
+                    }
+                    InetAddress address = InetAddress.getByAddress("host", new byte[]{127, 0, 0, 1});
+                    delegate.get().succeeded(List.of(new InetSocketAddress(address, 8080)));
+                    return null;
+                }));
+                for (Future<?> future : futures)
+                {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+
+                assertEquals(threads, notifications.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMaxCacheSize() throws Exception
+    {
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(newResolver(false));
+        resolver.setMaxCacheSize(2);
+
+        resolve(resolver, "host1", 8080).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "host2", 8080).get(5, TimeUnit.SECONDS);
+        // Access host1, so that host2 is the least recently used.
+        resolve(resolver, "host1", 8080).get(5, TimeUnit.SECONDS);
+        resolve(resolver, "host3", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(2, resolver.getCacheSize());
+        assertEquals(3, resolutions.get());
+
+        resolve(resolver, "host1", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(3, resolutions.get());
+        resolve(resolver, "host2", 8080).get(5, TimeUnit.SECONDS);
+        assertEquals(4, resolutions.get());
+        assertTrue(resolver.getCacheSize() <= 2);
+    }
+}
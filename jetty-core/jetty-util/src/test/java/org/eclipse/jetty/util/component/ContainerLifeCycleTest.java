@@ -16,8 +16,14 @@ package org.eclipse.jetty.util.component;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -27,6 +33,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -728,4 +735,238 @@ public class ContainerLifeCycleTest
         assertTrue(bean.isFailed());
         assertTrue(container.isUnmanaged(bean));
     }
+
+    @Test
+    public void testConcurrentStartStop() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            int beans = 3;
+            CyclicBarrier barrier = new CyclicBarrier(beans);
+            ContainerLifeCycle container = new ContainerLifeCycle();
+            container.setLifeCycleExecutor(executor);
+            container.setMaxLifeCycleConcurrency(beans);
+            for (int i = 0; i < beans; ++i)
+            {
+                container.addBean(new AbstractLifeCycle()
+                {
+                    @Override
+                    protected void doStart() throws Exception
+                    {
+                        // All the beans must be starting at the same time to pass the barrier.
+                        barrier.await(5, TimeUnit.SECONDS);
+                    }
+
+                    @Override
+                    protected void doStop() throws Exception
+                    {
+                        barrier.await(5, TimeUnit.SECONDS);
+                    }
+                }, true);
+            }
+
+            container.start();
+            for (LifeCycle bean : container.getBeans(LifeCycle.class))
+            {
+                assertTrue(bean.isStarted());
+            }
+
+            container.stop();
+            for (LifeCycle bean : container.getBeans(LifeCycle.class))
+            {
+                assertTrue(bean.isStopped());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentStartStopWithDependencies() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            List<String> events = new CopyOnWriteArrayList<>();
+            ContainerLifeCycle container = new ContainerLifeCycle();
+            container.setLifeCycleExecutor(executor);
+            // The dependent bean is added first, so that the sequential order would be wrong.
+            RecordingLifeCycle dependent = new RecordingLifeCycle("dependent", events);
+            RecordingLifeCycle dependency = new RecordingLifeCycle("dependency", events);
+            container.addBean(dependent, true);
+            container.addBean(dependency, true);
+            container.addBeanDependency(dependent, dependency);
+
+            container.start();
+            assertEquals(List.of("start dependency", "start dependent"), events);
+
+            events.clear();
+            container.stop();
+            assertEquals(List.of("stop dependent", "stop dependency"), events);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentStartFailure() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            ContainerLifeCycle container = new ContainerLifeCycle();
+            container.setLifeCycleExecutor(executor);
+            container.setMaxLifeCycleConcurrency(3);
+            ContainerLifeCycle good = new ContainerLifeCycle();
+            AbstractLifeCycle bad1 = new AbstractLifeCycle()
+            {
+                @Override
+                protected void doStart() throws Exception
+                {
+                    barrier.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("bad1");
+                }
+            };
+            AbstractLifeCycle bad2 = new AbstractLifeCycle()
+            {
+                @Override
+                protected void doStart() throws Exception
+                {
+                    barrier.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("bad2");
+                }
+            };
+            container.addBean(good, true);
+            container.addBean(bad1, true);
+            container.addBean(bad2, true);
+
+            Exception failure = assertThrows(IllegalStateException.class, container::start);
+            // Both beans fail while starting concurrently, and both failures are reported.
+            assertEquals(1, failure.getSuppressed().length);
+            assertTrue(container.isFailed());
+            // The bean that was started successfully is stopped.
+            assertTrue(good.isStopped());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentStopFailureSkipsDependencies() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            List<String> events = new CopyOnWriteArrayList<>();
+            ContainerLifeCycle container = new ContainerLifeCycle();
+            container.setLifeCycleExecutor(executor);
+            AbstractLifeCycle dependent = new AbstractLifeCycle()
+            {
+                @Override
+                protected void doStop()
+                {
+                    throw new IllegalStateException("dependent");
+                }
+            };
+            RecordingLifeCycle dependency = new RecordingLifeCycle("dependency", events);
+            RecordingLifeCycle transitive = new RecordingLifeCycle("transitive", events);
+            RecordingLifeCycle independent = new RecordingLifeCycle("independent", events);
+            container.addBean(dependent, true);
+            container.addBean(dependency, true);
+            container.addBean(transitive, true);
+            container.addBean(independent, true);
+            container.addBeanDependency(dependent, dependency);
+            container.addBeanDependency(dependency, transitive);
+            container.start();
+            events.clear();
+
+            Exception failure = assertThrows(IllegalStateException.class, container::stop);
+            // The beans that the failed bean depends on are not stopped,
+            // and each one of them reports its own failure.
+            assertEquals(List.of("stop independent"), events);
+            assertTrue(dependency.isStarted());
+            assertTrue(transitive.isStarted());
+            assertEquals(2, failure.getSuppressed().length);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentStartDependencyCycle()
+    {
+        ContainerLifeCycle container = new ContainerLifeCycle();
+        container.setLifeCycleExecutor(Runnable::run);
+        ContainerLifeCycle bean1 = new ContainerLifeCycle();
+        ContainerLifeCycle bean2 = new ContainerLifeCycle();
+        container.addBean(bean1, true);
+        container.addBean(bean2, true);
+        container.addBeanDependency(bean1, bean2);
+        container.addBeanDependency(bean2, bean1);
+
+        assertThrows(IllegalStateException.class, container::start);
+        assertTrue(bean1.isStopped());
+        assertTrue(bean2.isStopped());
+    }
+
+    @Test
+    public void testConcurrentStartDependencyCycleAfterIndependentBean()
+    {
+        List<String> events = new CopyOnWriteArrayList<>();
+        ContainerLifeCycle container = new ContainerLifeCycle();
+        container.setLifeCycleExecutor(Runnable::run);
+        // The independent bean comes first, so it would be started before the cycle is found.
+        RecordingLifeCycle independent = new RecordingLifeCycle("independent", events);
+        ContainerLifeCycle bean1 = new ContainerLifeCycle();
+        ContainerLifeCycle bean2 = new ContainerLifeCycle();
+        container.addBean(independent, true);
+        container.addBean(bean1, true);
+        container.addBean(bean2, true);
+        container.addBeanDependency(bean1, bean2);
+        container.addBeanDependency(bean2, bean1);
+
+        assertThrows(IllegalStateException.class, container::start);
+        // No bean is started when the dependencies contain a cycle.
+        assertThat(events, empty());
+        assertTrue(independent.isStopped());
+        assertTrue(bean1.isStopped());
+        assertTrue(bean2.isStopped());
+    }
+
+    private static class RecordingLifeCycle extends AbstractLifeCycle
+    {
+        private final String _name;
+        private final List<String> _events;
+
+        private RecordingLifeCycle(String name, List<String> events)
+        {
+            _name = name;
+            _events = events;
+        }
+
+        @Override
+        protected void doStart() throws Exception
+        {
+            // Give the chance to the other bean to start if it was not waiting.
+            Thread.sleep(100);
+            _events.add("start " + _name);
+        }
+
+        @Override
+        protected void doStop() throws Exception
+        {
+            Thread.sleep(100);
+            _events.add("stop " + _name);
+        }
+    }
 }
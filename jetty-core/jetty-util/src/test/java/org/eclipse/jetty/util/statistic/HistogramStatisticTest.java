@@ -0,0 +1,172 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testEmpty()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        HistogramStatistic.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0.0D, snapshot.getMean());
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        HistogramStatistic histogram = new HistogramStatistic(1000);
+        for (int i = 1; i <= 100; ++i)
+        {
+            histogram.record(i);
+        }
+        HistogramStatistic.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(5050, snapshot.getTotal());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertEquals(50, snapshot.getValueAtPercentile(50));
+        assertEquals(99, snapshot.getValueAtPercentile(99));
+        assertEquals(100, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentilesRelativeError()
+    {
+        HistogramStatistic histogram = new HistogramStatistic(TimeUnit.HOURS.toNanos(1));
+        long[] values = new long[100_000];
+        Random random = new Random(0);
+        for (int i = 0; i < values.length; ++i)
+        {
+            // Log-uniform values between 1 microsecond and 10 seconds.
+            values[i] = (long)Math.pow(10, 3 + random.nextDouble() * 7);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        HistogramStatistic.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99})
+        {
+            long expected = values[(int)Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = snapshot.getValueAtPercentile(percentile);
+            assertThat("p" + percentile, (double)actual, closeTo(expected, expected / 64.0D));
+        }
+    }
+
+    @Test
+    public void testValuesAboveHighestTrackable()
+    {
+        HistogramStatistic histogram = new HistogramStatistic(1000);
+        histogram.record(10);
+        histogram.record(1_000_000);
+        histogram.record(-5);
+
+        HistogramStatistic.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(0));
+        assertThat(snapshot.getValueAtPercentile(100), lessThanOrEqualTo(1_000_000L));
+        assertTrue(snapshot.getValueAtPercentile(100) >= 1000);
+    }
+
+    @Test
+    public void testFullRange()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(Long.MAX_VALUE / 3);
+        HistogramStatistic.Snapshot snapshot = histogram.snapshot();
+        assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+        assertThat((double)snapshot.getValueAtPercentile(50), closeTo(Long.MAX_VALUE / 3.0D, Long.MAX_VALUE / 3.0D / 64));
+    }
+
+    @Test
+    public void testIntervalSnapshot()
+    {
+        HistogramStatistic histogram = new HistogramStatistic(1_000_000);
+        for (int i = 0; i < 100; ++i)
+        {
+            histogram.record(10);
+        }
+        HistogramStatistic.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(100, interval.getCount());
+        assertEquals(10, interval.getValueAtPercentile(99));
+
+        for (int i = 0; i < 10; ++i)
+        {
+            histogram.record(5000);
+        }
+        interval = histogram.intervalSnapshot();
+        assertEquals(10, interval.getCount());
+        assertEquals(50000, interval.getTotal());
+        assertThat((double)interval.getValueAtPercentile(50), closeTo(5000, 5000 / 64.0D));
+        assertThat((double)interval.getMax(), closeTo(5000, 5000 / 64.0D));
+
+        // The cumulative state is not reset by interval snapshots.
+        HistogramStatistic.Snapshot cumulative = histogram.snapshot();
+        assertEquals(110, cumulative.getCount());
+        assertEquals(5000, cumulative.getMax());
+        assertEquals(10, cumulative.getValueAtPercentile(50));
+
+        interval = histogram.intervalSnapshot();
+        assertEquals(0, interval.getCount());
+        assertEquals(0, interval.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        histogram.record(7);
+        assertEquals(1, histogram.intervalSnapshot().getCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception
+    {
+        HistogramStatistic histogram = new HistogramStatistic(1_000_000);
+        int threads = 8;
+        int iterations = 100_000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    histogram.record(i % 1000);
+                }
+                latch.countDown();
+            }).start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals((long)threads * iterations, histogram.getCount());
+        assertEquals(999, histogram.getMax());
+    }
+}
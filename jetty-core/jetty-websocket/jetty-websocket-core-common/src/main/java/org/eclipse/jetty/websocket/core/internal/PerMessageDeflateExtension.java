@@ -14,6 +14,7 @@
 package org.eclipse.jetty.websocket.core.internal;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
@@ -24,6 +25,8 @@ import java.util.zip.Inflater;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
 import org.eclipse.jetty.websocket.core.AbstractExtension;
@@ -44,13 +47,36 @@ import org.slf4j.LoggerFactory;
  * Per Message Deflate Compression extension for WebSocket.
  * <p>
  * Attempts to follow <a href="https://tools.ietf.org/html/rfc7692">Compression Extensions for WebSocket</a>
+ * <p>
+ * The following internal parameters, which are not sent to the remote peer, can be configured:
+ * <ul>
+ * <li>{@code @deflate_buffer_size} and {@code @inflate_buffer_size}, the size of the buffers
+ * used to compress and decompress payloads.</li>
+ * <li>{@code @memory_saving}, to return the {@link Deflater} to the pool at the end of each message,
+ * even when context takeover is used. The last {@code @context_snapshot_size} bytes of the
+ * uncompressed messages are retained, and used as the dictionary of the next {@link Deflater},
+ * so that the remote peer can still decompress the messages with its sliding window.</li>
+ * <li>{@code @preset_dictionary}, the text of a dictionary used to prime both the {@link Deflater}
+ * and the {@link Inflater}, which improves the compression of short and repetitive messages.
+ * RFC 7692 does not negotiate dictionaries, so the remote peer must be configured with the
+ * same dictionary.</li>
+ * </ul>
  */
+@ManagedObject("Per Message Deflate Extension")
 public class PerMessageDeflateExtension extends AbstractExtension implements DemandChain
 {
     private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
     private static final ByteBuffer TAIL_BYTES_BUF = ByteBuffer.wrap(TAIL_BYTES);
     private static final Logger LOG = LoggerFactory.getLogger(PerMessageDeflateExtension.class);
     private static final int DEFAULT_BUF_SIZE = 8 * 1024;
+    private static final int DEFAULT_CONTEXT_SNAPSHOT_SIZE = 8 * 1024;
+    // The max LZ77 sliding window size of the DEFLATE format.
+    private static final int MAX_WINDOW_SIZE = 32 * 1024;
+    // Estimates of the native zlib memory with the default windowBits=15 and memLevel=8:
+    // deflate uses (1 << (windowBits + 2)) + (1 << (memLevel + 9)), inflate uses (1 << windowBits),
+    // each plus a few KiB of internal state.
+    private static final int DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+    private static final int INFLATER_MEMORY = (1 << 15) + 7 * 1024;
 
     private final OutgoingFlusher outgoingFlusher;
     private final IncomingFlusher incomingFlusher;
@@ -64,6 +90,11 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
     private int inflateBufferSize = DEFAULT_BUF_SIZE;
     private boolean incomingContextTakeover = true;
     private boolean outgoingContextTakeover = true;
+    private boolean memorySaving;
+    private int contextSnapshotSize = DEFAULT_CONTEXT_SNAPSHOT_SIZE;
+    private byte[] presetDictionary;
+    private byte[] contextSnapshot;
+    private int contextSnapshotLength;
 
     public PerMessageDeflateExtension()
     {
@@ -136,6 +167,23 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
                     inflateBufferSize = config.getParameter(key, DEFAULT_BUF_SIZE);
                     break;
                 }
+                case "@memory_saving":
+                {
+                    memorySaving = !"false".equalsIgnoreCase(config.getParameter(key, "true"));
+                    break;
+                }
+                case "@context_snapshot_size":
+                {
+                    contextSnapshotSize = Math.max(0, Math.min(MAX_WINDOW_SIZE, config.getParameter(key, DEFAULT_CONTEXT_SNAPSHOT_SIZE)));
+                    break;
+                }
+                case "@preset_dictionary":
+                {
+                    String dictionary = config.getParameter(key, null);
+                    if (dictionary != null && !dictionary.isEmpty())
+                        presetDictionary = dictionary.getBytes(StandardCharsets.UTF_8);
+                    break;
+                }
                 default:
                 {
                     throw new IllegalArgumentException();
@@ -144,7 +192,15 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
         }
 
         configNegotiated = new ExtensionConfig(config.getName(), paramsNegotiated);
-        LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
+        LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={}, memorySaving={} : {}", outgoingContextTakeover, incomingContextTakeover, memorySaving, this);
+
+        if (memorySaving && outgoingContextTakeover)
+        {
+            // The snapshot starts with the preset dictionary, which is the initial content of the sliding window.
+            contextSnapshot = new byte[contextSnapshotSize];
+            if (presetDictionary != null)
+                contextSnapshotLength = slide(contextSnapshot, 0, ByteBuffer.wrap(presetDictionary));
+        }
 
         super.init(configNegotiated, components);
     }
@@ -187,20 +243,95 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
         return true;
     }
 
+    /**
+     * <p>Slides the given data into the given window, so that the window contains
+     * the last bytes of the data previously slid into it, followed by the given data.</p>
+     *
+     * @param window the window
+     * @param windowLength the number of valid bytes in the window
+     * @param data the data to slide into the window, whose position is not modified
+     * @return the new number of valid bytes in the window
+     */
+    private static int slide(byte[] window, int windowLength, ByteBuffer data)
+    {
+        int capacity = window.length;
+        int length = data.remaining();
+        if (length >= capacity)
+        {
+            data.get(data.limit() - capacity, window, 0, capacity);
+            return capacity;
+        }
+        int keep = Math.min(windowLength, capacity - length);
+        System.arraycopy(window, windowLength - keep, window, 0, keep);
+        data.get(data.position(), window, keep, length);
+        return keep + length;
+    }
+
     public Deflater getDeflater()
     {
         if (deflaterHolder == null)
+        {
             deflaterHolder = getDeflaterPool().acquire();
+            Deflater deflater = deflaterHolder.get();
+            if (contextSnapshot != null)
+            {
+                // Restore the context of the previous messages, that the remote
+                // peer retains in its sliding window, see RFC 7692 section 7.2.1.
+                if (contextSnapshotLength > 0)
+                    deflater.setDictionary(contextSnapshot, 0, contextSnapshotLength);
+            }
+            else if (presetDictionary != null)
+            {
+                deflater.setDictionary(presetDictionary);
+            }
+        }
         return deflaterHolder.get();
     }
 
     public Inflater getInflater()
     {
         if (inflaterHolder == null)
+        {
             inflaterHolder = getInflaterPool().acquire();
+            // Inflaters are only released between messages without context takeover,
+            // so the preset dictionary is the only context to restore.
+            if (presetDictionary != null)
+                inflaterHolder.get().setDictionary(presetDictionary);
+        }
         return inflaterHolder.get();
     }
 
+    /**
+     * @return whether the {@link Deflater} is returned to the pool at the end of each message
+     */
+    @ManagedAttribute("Whether the Deflater is returned to the pool at the end of each message")
+    public boolean isMemorySaving()
+    {
+        return memorySaving;
+    }
+
+    /**
+     * <p>Returns an estimate of the memory retained by this extension,
+     * including the native memory of the {@link Deflater} and {@link Inflater}
+     * when they are held, and the context snapshot and preset dictionary.</p>
+     *
+     * @return an estimate of the memory retained by this extension, in bytes
+     */
+    @ManagedAttribute("Estimated bytes retained by the compression state of this session")
+    public long getRetainedMemory()
+    {
+        long memory = 0;
+        if (deflaterHolder != null)
+            memory += DEFLATER_MEMORY;
+        if (inflaterHolder != null)
+            memory += INFLATER_MEMORY;
+        if (contextSnapshot != null)
+            memory += contextSnapshot.length;
+        if (presetDictionary != null)
+            memory += presetDictionary.length;
+        return memory;
+    }
+
     public void releaseInflater()
     {
         if (inflaterHolder != null)
@@ -247,6 +378,11 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
             LOG.debug("Outgoing Context Reset");
             releaseDeflater();
         }
+        else if (frame.isFin() && memorySaving && !frame.isControlFrame())
+        {
+            LOG.debug("Outgoing Context Release");
+            releaseDeflater();
+        }
         super.nextOutgoingFrame(frame, callback, batch);
     }
 
@@ -282,7 +418,10 @@ public class PerMessageDeflateExtension extends AbstractExtension implements Dem
             _batch = batch;
 
             // Provide the frames payload as input to the Deflater.
-            getDeflater().setInput(frame.getPayload().slice());
+            ByteBuffer payload = frame.getPayload();
+            getDeflater().setInput(payload.slice());
+            if (contextSnapshot != null)
+                contextSnapshotLength = slide(contextSnapshot, contextSnapshotLength, payload);
             callback.succeeded();
             return false;
         }
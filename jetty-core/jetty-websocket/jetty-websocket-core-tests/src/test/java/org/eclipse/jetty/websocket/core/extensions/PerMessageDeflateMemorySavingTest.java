@@ -0,0 +1,233 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.extensions;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.ExtensionStack;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.FrameHandler;
+import org.eclipse.jetty.websocket.core.Negotiated;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.OutgoingFramesCapture;
+import org.eclipse.jetty.websocket.core.TestFrameHandler;
+import org.eclipse.jetty.websocket.core.TestMessageHandler;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.WebSocketCoreSession;
+import org.eclipse.jetty.websocket.core.WebSocketServer;
+import org.eclipse.jetty.websocket.core.client.CoreClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.core.server.ServerUpgradeRequest;
+import org.eclipse.jetty.websocket.core.server.ServerUpgradeResponse;
+import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PerMessageDeflateMemorySavingTest
+{
+    private static final String DICTIONARY = "{\"type\":\"update\",\"symbol\":\"\",\"price\":,\"volume\":}";
+
+    private final TestFrameHandler serverHandler = new TestFrameHandler();
+    private WebSocketServer server;
+    private WebSocketCoreClient client;
+
+    private void start(String presetDictionary) throws Exception
+    {
+        server = new WebSocketServer(new WebSocketNegotiator.AbstractNegotiator()
+        {
+            @Override
+            public FrameHandler negotiate(ServerUpgradeRequest request, ServerUpgradeResponse response, Callback callback)
+            {
+                for (ExtensionConfig extensionConfig : response.getExtensions())
+                {
+                    if ("permessage-deflate".equals(extensionConfig.getName()) && presetDictionary != null)
+                        extensionConfig.setParameter("@preset_dictionary", presetDictionary);
+                }
+                return serverHandler;
+            }
+        });
+        server.start();
+
+        client = new WebSocketCoreClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private TestFrameHandler connect(String extension, String presetDictionary) throws Exception
+    {
+        ExtensionConfig config = ExtensionConfig.parse(extension);
+        if (presetDictionary != null)
+            config.setParameter("@preset_dictionary", presetDictionary);
+
+        TestFrameHandler clientHandler = new TestFrameHandler();
+        URI serverUri = new URI("ws://localhost:" + server.getLocalPort());
+        CoreClientUpgradeRequest upgradeRequest = CoreClientUpgradeRequest.from(client, serverUri, clientHandler);
+        upgradeRequest.addExtensions(config);
+        client.connect(upgradeRequest).get(5, TimeUnit.SECONDS);
+        assertTrue(serverHandler.open.await(5, TimeUnit.SECONDS));
+        return clientHandler;
+    }
+
+    private static PerMessageDeflateExtension getExtension(TestFrameHandler handler)
+    {
+        WebSocketCoreSession coreSession = (WebSocketCoreSession)handler.getCoreSession();
+        return (PerMessageDeflateExtension)coreSession.getExtensionStack().getExtensions().get(0);
+    }
+
+    private static String receiveMessage(TestFrameHandler handler) throws Exception
+    {
+        StringBuilder message = new StringBuilder();
+        while (true)
+        {
+            Frame frame = Objects.requireNonNull(handler.getFrames().poll(5, TimeUnit.SECONDS));
+            message.append(frame.getPayloadAsUTF8());
+            if (frame.isFin())
+                return message.toString();
+        }
+    }
+
+    private static String newMessage(int i)
+    {
+        return "{\"type\":\"update\",\"symbol\":\"JTY\",\"price\":" + i + ",\"volume\":" + (i * 1000) + "}";
+    }
+
+    private void close(TestFrameHandler clientHandler) throws Exception
+    {
+        clientHandler.sendClose();
+        assertTrue(serverHandler.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(clientHandler.closed.await(5, TimeUnit.SECONDS));
+        assertNull(serverHandler.getError());
+        assertNull(clientHandler.getError());
+    }
+
+    private int compressedSize(String extension)
+    {
+        WebSocketComponents components = new WebSocketComponents();
+        ExtensionStack extensionStack = new ExtensionStack(components, Behavior.SERVER);
+        extensionStack.negotiate(List.of(), List.of());
+        extensionStack.setLastDemand(() -> {});
+
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse(extension), components);
+        ext.setCoreSession(new WebSocketCoreSession(new TestMessageHandler(), Behavior.SERVER, Negotiated.from(extensionStack), components));
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        for (int i = 0; i < 20; ++i)
+        {
+            ext.sendFrame(new Frame(OpCode.TEXT, newMessage(i)), Callback.NOOP, false);
+        }
+        capture.assertFrameCount(20);
+        return capture.frames.stream().mapToInt(Frame::getPayloadLength).sum();
+    }
+
+    @Test
+    public void testContextSnapshotCompression()
+    {
+        int noContextTakeover = compressedSize("permessage-deflate; server_no_context_takeover");
+        int contextTakeover = compressedSize("permessage-deflate");
+        int memorySaving = compressedSize("permessage-deflate; @memory_saving");
+
+        // The context snapshot retains the compression ratio of context takeover.
+        assertTrue(memorySaving < noContextTakeover, memorySaving + " < " + noContextTakeover);
+        assertTrue(memorySaving <= contextTakeover * 11 / 10, memorySaving + " <= " + contextTakeover);
+    }
+
+    @Test
+    public void testMemorySavingWithContextTakeover() throws Exception
+    {
+        start(null);
+        TestFrameHandler clientHandler = connect("permessage-deflate; @memory_saving; @context_snapshot_size=64", null);
+        PerMessageDeflateExtension extension = getExtension(clientHandler);
+        assertTrue(extension.isMemorySaving());
+
+        // The server decompresses with its sliding window, so every message
+        // relies on the context snapshot restored in the client Deflater.
+        for (int i = 0; i < 20; ++i)
+        {
+            String message = newMessage(i);
+            clientHandler.sendText(message);
+            assertEquals(message, receiveMessage(serverHandler));
+
+            // The Deflater is released at the end of each message.
+            assertEquals(64, extension.getRetainedMemory());
+        }
+
+        // Fragmented messages are deflated with a single Deflater.
+        clientHandler.sendFrame(new Frame(OpCode.TEXT, newMessage(100)).setFin(false));
+        clientHandler.sendFrame(new Frame(OpCode.CONTINUATION, newMessage(101)).setFin(false));
+        clientHandler.sendFrame(new Frame(OpCode.CONTINUATION, newMessage(102)));
+        assertEquals(newMessage(100) + newMessage(101) + newMessage(102), receiveMessage(serverHandler));
+
+        clientHandler.sendText(newMessage(103));
+        assertEquals(newMessage(103), receiveMessage(serverHandler));
+
+        close(clientHandler);
+    }
+
+    @Test
+    public void testPresetDictionary() throws Exception
+    {
+        start(DICTIONARY);
+        TestFrameHandler clientHandler = connect("permessage-deflate; @memory_saving", DICTIONARY);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            String message = newMessage(i);
+            clientHandler.sendText(message);
+            assertEquals(message, receiveMessage(serverHandler));
+            serverHandler.sendText(message);
+            assertEquals(message, receiveMessage(clientHandler));
+        }
+
+        close(clientHandler);
+    }
+
+    @Test
+    public void testPresetDictionaryWithoutContextTakeover() throws Exception
+    {
+        start(DICTIONARY);
+        TestFrameHandler clientHandler = connect("permessage-deflate; client_no_context_takeover; server_no_context_takeover", DICTIONARY);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            String message = newMessage(i);
+            clientHandler.sendText(message);
+            assertEquals(message, receiveMessage(serverHandler));
+            serverHandler.sendText(message);
+            assertEquals(message, receiveMessage(clientHandler));
+        }
+
+        close(clientHandler);
+    }
+}
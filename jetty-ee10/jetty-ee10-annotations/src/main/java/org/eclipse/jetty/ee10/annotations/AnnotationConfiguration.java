@@ -13,7 +13,9 @@
 
 package org.eclipse.jetty.ee10.annotations;
 
+import java.io.File;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -74,6 +76,7 @@ public class AnnotationConfiguration extends AbstractConfiguration
     public static final String CONTAINER_INITIALIZER_STARTER = "org.eclipse.jetty.containerInitializerStarter";
     public static final String MULTI_THREADED = "org.eclipse.jetty.annotations.multiThreaded";
     public static final String MAX_SCAN_WAIT = "org.eclipse.jetty.annotations.maxWait";
+    public static final String SCAN_INDEX = "org.eclipse.jetty.annotations.scanIndex";
     protected static final String STATE = "org.eclipse.jetty.annotations.state";
 
     public static final int DEFAULT_MAX_SCAN_WAIT = 60; /* time in sec */
@@ -511,15 +514,17 @@ public class AnnotationConfiguration extends AbstractConfiguration
         if (target != null)
             javaPlatform = Integer.parseInt(target.toString());
         AnnotationParser parser = createAnnotationParser(javaPlatform);
+        parser.setScanIndexDirectory(getScanIndexDirectory(context));
         state._parserTasks = new ArrayList<>();
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}",
+            LOG.debug("Annotation scanning commencing: webxml={}, metadatacomplete={}, configurationDiscovered={}, multiThreaded={}, maxScanWait={}, scanIndex={}",
                 context.getServletContext().getEffectiveMajorVersion(),
                 context.getMetaData().isMetaDataComplete(),
                 context.isConfigurationDiscovered(),
                 isUseMultiThreading(context),
-                getMaxScanWait(context));
+                getMaxScanWait(context),
+                parser.getScanIndexDirectory());
 
         //scan selected jars on the container classpath first
         parseContainerPath(context, parser);
@@ -634,6 +639,39 @@ public class AnnotationConfiguration extends AbstractConfiguration
         return Integer.getInteger(MAX_SCAN_WAIT, DEFAULT_MAX_SCAN_WAIT);
     }
 
+    /**
+     * Work out the directory of the index of the jar scan results, if any.
+     *
+     * @param context the context of the scan index setting
+     * @return the scan index directory on the context, or server, or via a System property, or null if jars are not indexed
+     * @see #SCAN_INDEX
+     * @see AnnotationParser#setScanIndexDirectory(Path)
+     */
+    protected Path getScanIndexDirectory(WebAppContext context)
+    {
+        //try context attribute to get the scan index directory
+        Path path = toPath(context.getAttribute(SCAN_INDEX));
+        if (path != null)
+            return path;
+        //try server attribute to get the scan index directory
+        path = toPath(context.getServer().getAttribute(SCAN_INDEX));
+        if (path != null)
+            return path;
+        //try system property to get the scan index directory
+        return toPath(System.getProperty(SCAN_INDEX));
+    }
+
+    private static Path toPath(Object o)
+    {
+        if (o instanceof Path path)
+            return path;
+        if (o instanceof File file)
+            return file.toPath();
+        if (o instanceof String s && StringUtil.isNotBlank(s))
+            return Path.of(s);
+        return null;
+    }
+
     public void createServletContainerInitializerAnnotationHandlers(WebAppContext context, List<ServletContainerInitializer> scis)
         throws Exception
     {
@@ -20,6 +20,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -67,6 +68,7 @@ public class AnnotationParser
      */
     protected Map<String, URI> _parsedClassNames = new ConcurrentHashMap<>();
     private final int _asmVersion;
+    private volatile ScanIndex _scanIndex;
 
     /**
      * Determine the runtime version of asm.
@@ -535,6 +537,36 @@ public class AnnotationParser
         _asmVersion = asmVersion;
     }
 
+    int getAsmVersion()
+    {
+        return _asmVersion;
+    }
+
+    /**
+     * @return the directory of the scan index, or null if jars are not indexed
+     * @see #setScanIndexDirectory(Path)
+     */
+    public Path getScanIndexDirectory()
+    {
+        ScanIndex scanIndex = _scanIndex;
+        return scanIndex == null ? null : scanIndex.getDirectory();
+    }
+
+    /**
+     * <p>Set the directory of the scan index.</p>
+     * <p>The results of scanning a jar are saved in the directory, keyed by
+     * the hash of the jar content, of the Java platform version and of the
+     * ASM API version, and are used in place of parsing the
+     * classes of the jar when a jar with the same content is scanned again,
+     * for example when a webapp is redeployed with unchanged jars.</p>
+     *
+     * @param directory the directory of the scan index, or null to not index jars
+     */
+    public void setScanIndexDirectory(Path directory)
+    {
+        _scanIndex = directory == null ? null : new ScanIndex(directory, _asmVersion);
+    }
+
     /**
      * Parse a resource
      *
@@ -638,7 +670,24 @@ public class AnnotationParser
         try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
         {
             Resource insideJarResource = resourceFactory.newJarFileResource(jarResource.getURI());
-            parseDir(handlers, insideJarResource);
+
+            ScanIndex scanIndex = _scanIndex;
+            Path jarPath = jarResource.getPath();
+            if (scanIndex == null || jarPath == null)
+            {
+                parseDir(handlers, insideJarResource);
+                return;
+            }
+
+            String key = scanIndex.getKey(jarPath);
+            if (scanIndex.replay(key, handlers, insideJarResource, this::addParsedClassName))
+                return;
+
+            ScanIndex.Recorder recorder = scanIndex.newRecorder(key, insideJarResource);
+            Set<Handler> recordingHandlers = new HashSet<>(handlers);
+            recordingHandlers.add(recorder);
+            parseDir(recordingHandlers, insideJarResource);
+            recorder.save();
         }
     }
 
@@ -663,9 +712,13 @@ public class AnnotationParser
             reader.accept(new MyClassVisitor(handlers, containingResource, _asmVersion), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 
             String classname = normalize(reader.getClassName());
-            URI existing = _parsedClassNames.putIfAbsent(classname, location);
-            if (existing != null)
-                LOG.warn("{} scanned from multiple locations: {}, {}", classname, existing, location);
+            addParsedClassName(classname, location);
+
+            for (Handler handler : handlers)
+            {
+                if (handler instanceof ScanIndex.Recorder recorder)
+                    recorder.location(location);
+            }
         }
         catch (IllegalArgumentException | IOException e)
         {
@@ -673,6 +726,13 @@ public class AnnotationParser
         }
     }
     
+    private void addParsedClassName(String classname, URI location)
+    {
+        URI existing = _parsedClassNames.putIfAbsent(classname, location);
+        if (existing != null)
+            LOG.warn("{} scanned from multiple locations: {}, {}", classname, existing, location);
+    }
+
     /**
      * Useful mostly for testing to expose the list of parsed classes.
      * @return the map of classnames to their URIs
@@ -0,0 +1,470 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.ee10.annotations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An on-disk index of the results of scanning jars with an {@link AnnotationParser}.</p>
+ * <p>The callbacks that the parser makes on its {@link AnnotationParser.Handler}s while
+ * scanning a jar are recorded in a file named after the SHA-256 hash of the jar content,
+ * of the Java platform version and of the ASM API version, as the classes selected from
+ * multi-release jars and the callbacks made by the parser depend on them.
+ * When a jar with the same content is scanned again, the callbacks are replayed from the
+ * file on the handlers, without parsing the bytecode of the classes in the jar.</p>
+ * <p>The callbacks do not depend on the handlers, so the same index file can be replayed
+ * to any set of handlers. A missing, stale or corrupted index file is ignored, and the jar
+ * is parsed and indexed again.</p>
+ */
+class ScanIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ScanIndex.class);
+    private static final int MAGIC = 0x4A534958; // "JSIX"
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".idx";
+
+    private static final byte CLASS = 1;
+    private static final byte CLASS_ANNOTATION = 2;
+    private static final byte METHOD_ANNOTATION = 3;
+    private static final byte FIELD_ANNOTATION = 4;
+    private static final byte END = 0;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+
+    private final Path _directory;
+    private final int _asmVersion;
+
+    ScanIndex(Path directory, int asmVersion)
+    {
+        _directory = directory;
+        _asmVersion = asmVersion;
+    }
+
+    Path getDirectory()
+    {
+        return _directory;
+    }
+
+    /**
+     * @param jar the jar file
+     * @return the key of the index of the given jar, that is the hex encoded SHA-256 hash
+     * of its content, of the Java platform version and of the ASM API version
+     * @throws IOException if the jar cannot be read
+     */
+    String getKey(Path jar) throws IOException
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(jar))
+            {
+                int read;
+                while ((read = in.read(buffer)) >= 0)
+                {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            String environment = "java=" + Runtime.version().feature() + ",asm=" + _asmVersion;
+            digest.update(environment.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    /**
+     * <p>Replays the callbacks recorded in the index with the given key.</p>
+     *
+     * @param key the key of the index
+     * @param handlers the handlers to call back
+     * @param containingResource the resource of the jar contents
+     * @param classes the consumer of the class names and their locations
+     * @return whether the index exists and has been replayed
+     */
+    boolean replay(String key, Set<? extends AnnotationParser.Handler> handlers, Resource containingResource, BiConsumer<String, URI> classes)
+    {
+        Path file = _directory.resolve(key + SUFFIX);
+        List<Runnable> callbacks = new ArrayList<>();
+        List<String> classNames = new ArrayList<>();
+        List<URI> locations = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                return false;
+
+            String base = containingResource.getURI().toString();
+            AnnotationParser.ClassInfo classInfo = null;
+            while (true)
+            {
+                byte type = in.readByte();
+                if (type == END)
+                    break;
+                switch (type)
+                {
+                    case CLASS ->
+                    {
+                        String className = in.readUTF();
+                        AnnotationParser.ClassInfo info = new AnnotationParser.ClassInfo(containingResource, className,
+                            in.readInt(), in.readInt(), readString(in), readString(in), readStrings(in));
+                        classNames.add(className);
+                        locations.add(URI.create(base + in.readUTF()));
+                        callbacks.add(() -> handlers.forEach(h -> h.handle(info)));
+                        classInfo = info;
+                    }
+                    case CLASS_ANNOTATION ->
+                    {
+                        AnnotationParser.ClassInfo info = classInfo;
+                        String annotation = in.readUTF();
+                        callbacks.add(() -> handlers.forEach(h -> h.handle(info, annotation)));
+                    }
+                    case METHOD_ANNOTATION ->
+                    {
+                        AnnotationParser.MethodInfo info = new AnnotationParser.MethodInfo(classInfo,
+                            in.readUTF(), in.readInt(), in.readUTF(), readString(in), readStrings(in));
+                        String annotation = in.readUTF();
+                        callbacks.add(() -> handlers.forEach(h -> h.handle(info, annotation)));
+                    }
+                    case FIELD_ANNOTATION ->
+                    {
+                        AnnotationParser.FieldInfo info = new AnnotationParser.FieldInfo(classInfo,
+                            in.readUTF(), in.readInt(), in.readUTF(), readString(in), readValue(in));
+                        String annotation = in.readUTF();
+                        callbacks.add(() -> handlers.forEach(h -> h.handle(info, annotation)));
+                    }
+                    default -> throw new IOException("Invalid record type " + type);
+                }
+            }
+        }
+        catch (NoSuchFileException x)
+        {
+            return false;
+        }
+        catch (Exception x)
+        {
+            // Only replay a complete index, so that the handlers are not called twice.
+            if (LOG.isDebugEnabled())
+                LOG.debug("Ignoring invalid scan index {}", file, x);
+            return false;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Replaying scan index {} for {}", file, containingResource);
+        callbacks.forEach(Runnable::run);
+        for (int i = 0; i < classNames.size(); ++i)
+        {
+            classes.accept(classNames.get(i), locations.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * @param key the key of the index to record
+     * @param containingResource the resource of the jar contents
+     * @return a handler that records the callbacks of the parser
+     */
+    Recorder newRecorder(String key, Resource containingResource)
+    {
+        return new Recorder(key, containingResource.getURI().toString());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException
+    {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null)
+        {
+            for (String value : values)
+            {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        String[] values = new String[length];
+        for (int i = 0; i < length; ++i)
+        {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if (value instanceof String s)
+        {
+            out.writeByte(STRING);
+            out.writeUTF(s);
+        }
+        else if (value instanceof Integer i)
+        {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        }
+        else if (value instanceof Long l)
+        {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        }
+        else if (value instanceof Float f)
+        {
+            out.writeByte(FLOAT);
+            out.writeFloat(f);
+        }
+        else if (value instanceof Double d)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        }
+        else
+        {
+            out.writeByte(NULL);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        byte type = in.readByte();
+        return switch (type)
+        {
+            case NULL -> null;
+            case STRING -> in.readUTF();
+            case INTEGER -> in.readInt();
+            case LONG -> in.readLong();
+            case FLOAT -> in.readFloat();
+            case DOUBLE -> in.readDouble();
+            default -> throw new IOException("Invalid value type " + type);
+        };
+    }
+
+    /**
+     * <p>A handler that records the parser callbacks for a single jar,
+     * which are always made by a single thread.</p>
+     */
+    class Recorder extends AnnotationParser.AbstractHandler
+    {
+        private final List<Record> _records = new ArrayList<>();
+        private final String _key;
+        private final String _base;
+        private ClassRecord _class;
+
+        private Recorder(String key, String base)
+        {
+            _key = key;
+            _base = base;
+        }
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo classInfo)
+        {
+            _class = new ClassRecord(classInfo);
+            _records.add(_class);
+        }
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo info, String annotationName)
+        {
+            _records.add(out ->
+            {
+                out.writeByte(CLASS_ANNOTATION);
+                out.writeUTF(annotationName);
+            });
+        }
+
+        @Override
+        public void handle(AnnotationParser.MethodInfo info, String annotationName)
+        {
+            _records.add(out ->
+            {
+                out.writeByte(METHOD_ANNOTATION);
+                out.writeUTF(info.getMethodName());
+                out.writeInt(info.getAccess());
+                out.writeUTF(info.getDesc());
+                writeString(out, info.getSignature());
+                writeStrings(out, info.getExceptions());
+                out.writeUTF(annotationName);
+            });
+        }
+
+        @Override
+        public void handle(AnnotationParser.FieldInfo info, String annotationName)
+        {
+            _records.add(out ->
+            {
+                out.writeByte(FIELD_ANNOTATION);
+                out.writeUTF(info.getFieldName());
+                out.writeInt(info.getAccess());
+                out.writeUTF(info.getFieldType());
+                writeString(out, info.getSignature());
+                writeValue(out, info.getValue());
+                out.writeUTF(annotationName);
+            });
+        }
+
+        /**
+         * @param location the location of the class last parsed
+         */
+        void location(URI location)
+        {
+            String uri = location.toString();
+            if (_class != null)
+                _class._location = uri.startsWith(_base) ? uri.substring(_base.length()) : null;
+        }
+
+        /**
+         * <p>Returns whether the callbacks can be replayed from an index,
+         * that is whether the location of every class is known.</p>
+         * <p>The location of a class is unknown if its parsing failed,
+         * or if it is not in the jar, in which case replaying the
+         * other callbacks would not be equivalent to parsing the jar.</p>
+         *
+         * @return whether the callbacks can be saved to an index
+         */
+        boolean isIndexable()
+        {
+            for (Record record : _records)
+            {
+                if (record instanceof ClassRecord classRecord && classRecord._location == null)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * <p>Writes the index file, atomically so that concurrent
+         * scans of jars with the same content do not conflict.</p>
+         * <p>Nothing is written if the jar is not {@link #isIndexable() indexable}.</p>
+         */
+        void save()
+        {
+            Path file = _directory.resolve(_key + SUFFIX);
+            if (!isIndexable())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Not saving scan index {}, the location of some classes is unknown", file);
+                return;
+            }
+            Path tmp = null;
+            try
+            {
+                Files.createDirectories(_directory);
+                tmp = Files.createTempFile(_directory, _key, ".tmp");
+                try (OutputStream os = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os)))
+                {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    for (Record record : _records)
+                    {
+                        record.write(out);
+                    }
+                    out.writeByte(END);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Saved scan index {}", file);
+            }
+            catch (Exception x)
+            {
+                LOG.warn("Unable to save scan index {}", file, x);
+                try
+                {
+                    if (tmp != null)
+                        Files.deleteIfExists(tmp);
+                }
+                catch (IOException ignored)
+                {
+                    // Best effort.
+                }
+            }
+        }
+    }
+
+    private interface Record
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class ClassRecord implements Record
+    {
+        private final AnnotationParser.ClassInfo _info;
+        private String _location;
+
+        private ClassRecord(AnnotationParser.ClassInfo info)
+        {
+            _info = info;
+        }
+
+        @Override
+        public void write(DataOutputStream out) throws IOException
+        {
+            if (_location == null)
+                throw new IOException("Unknown location of " + _info.getClassName());
+            out.writeByte(CLASS);
+            out.writeUTF(_info.getClassName());
+            out.writeInt(_info.getVersion());
+            out.writeInt(_info.getAccess());
+            writeString(out, _info.getSignature());
+            writeString(out, _info.getSuperName());
+            writeStrings(out, _info.getInterfaces());
+            out.writeUTF(_location);
+        }
+    }
+}
@@ -34,22 +34,29 @@ import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.objectweb.asm.Opcodes;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.in;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(WorkDirExtension.class)
 public class TestAnnotationParser
@@ -98,6 +105,38 @@ public class TestAnnotationParser
         }
     }
 
+    public static class RecordingHandler extends AnnotationParser.AbstractHandler
+    {
+        public final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo info)
+        {
+            events.add(String.join("|", "class", info.getClassName(), String.valueOf(info.getVersion()), String.valueOf(info.getAccess()),
+                info.getSignature(), info.getSuperName(), Arrays.toString(info.getInterfaces())));
+        }
+
+        @Override
+        public void handle(AnnotationParser.ClassInfo info, String annotation)
+        {
+            events.add(String.join("|", "classAnnotation", info.getClassName(), annotation));
+        }
+
+        @Override
+        public void handle(AnnotationParser.MethodInfo info, String annotation)
+        {
+            events.add(String.join("|", "methodAnnotation", info.getClassInfo().getClassName(), info.getMethodName(), String.valueOf(info.getAccess()),
+                info.getDesc(), info.getSignature(), Arrays.toString(info.getExceptions()), annotation));
+        }
+
+        @Override
+        public void handle(AnnotationParser.FieldInfo info, String annotation)
+        {
+            events.add(String.join("|", "fieldAnnotation", info.getClassInfo().getClassName(), info.getFieldName(), String.valueOf(info.getAccess()),
+                info.getFieldType(), info.getSignature(), String.valueOf(info.getValue()), annotation));
+        }
+    }
+
     @Test
     public void testSampleAnnotation(WorkDir workDir) throws Exception
     {
@@ -319,6 +358,127 @@ public class TestAnnotationParser
         }
     }
 
+    @Test
+    public void testScanIndex(WorkDir workDir) throws Exception
+    {
+        Path indexDir = workDir.getEmptyPathDir().resolve("index");
+        Path jar = MavenTestingUtils.getTestResourcePathFile("jdk9/log4j-api-2.9.0.jar");
+
+        try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
+        {
+            // The first scan parses the jar and saves the index.
+            AnnotationParser parser = new AnnotationParser();
+            parser.setScanIndexDirectory(indexDir);
+            RecordingHandler parsed = new RecordingHandler();
+            parser.parse(Collections.singleton(parsed), resourceFactory.newResource(jar));
+            assertThat(parsed.events.size(), greaterThan(0));
+
+            ScanIndex scanIndex = new ScanIndex(indexDir, parser.getAsmVersion());
+            String key = scanIndex.getKey(jar);
+            assertTrue(Files.exists(indexDir.resolve(key + ".idx")));
+
+            // An index recorded with a different ASM API version is not used.
+            assertNotEquals(key, new ScanIndex(indexDir, Opcodes.ASM4).getKey(jar));
+
+            // The second scan replays the index.
+            AnnotationParser indexedParser = new AnnotationParser();
+            indexedParser.setScanIndexDirectory(indexDir);
+            RecordingHandler indexed = new RecordingHandler();
+            indexedParser.parse(Collections.singleton(indexed), resourceFactory.newResource(jar));
+            assertEquals(parsed.events, indexed.events);
+            assertEquals(parser.getParsedClassNames(), indexedParser.getParsedClassNames());
+
+            // A corrupted index is ignored and the jar is parsed again.
+            Files.write(indexDir.resolve(key + ".idx"), new byte[]{1, 2, 3});
+            AnnotationParser reparser = new AnnotationParser();
+            reparser.setScanIndexDirectory(indexDir);
+            RecordingHandler reparsed = new RecordingHandler();
+            reparser.parse(Collections.singleton(reparsed), resourceFactory.newResource(jar));
+            assertEquals(parsed.events, reparsed.events);
+            assertEquals(parser.getParsedClassNames(), reparser.getParsedClassNames());
+        }
+    }
+
+    @Test
+    public void testScanIndexNotSavedForUnknownClassLocation(WorkDir workDir) throws Exception
+    {
+        Path indexDir = workDir.getEmptyPathDir().resolve("index");
+        Path jar = MavenTestingUtils.getTestResourcePathFile("tinytest.jar");
+
+        try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
+        {
+            Resource jarResource = resourceFactory.newJarFileResource(jar.toUri());
+            ScanIndex scanIndex = new ScanIndex(indexDir, Opcodes.ASM9);
+            String key = scanIndex.getKey(jar);
+            ScanIndex.Recorder recorder = scanIndex.newRecorder(key, jarResource);
+
+            recorder.handle(new AnnotationParser.ClassInfo(jarResource, "org.acme.ClassOne", Opcodes.V17, Opcodes.ACC_PUBLIC, null, "java.lang.Object", null));
+            recorder.location(jarResource.resolve("org/acme/ClassOne.class").getURI());
+            assertTrue(recorder.isIndexable());
+
+            // A class outside the jar cannot be replayed from the index of the jar.
+            recorder.handle(new AnnotationParser.ClassInfo(jarResource, "org.acme.Other", Opcodes.V17, Opcodes.ACC_PUBLIC, null, "java.lang.Object", null));
+            recorder.location(workDir.getPath().resolve("Other.class").toUri());
+            assertFalse(recorder.isIndexable());
+
+            recorder.save();
+            assertFalse(Files.exists(indexDir.resolve(key + ".idx")));
+        }
+    }
+
+    @Test
+    @Tag("stress")
+    public void testScanIndexStartupTime(WorkDir workDir) throws Exception
+    {
+        Path indexDir = workDir.getEmptyPathDir().resolve("index");
+        List<Path> jars = List.of(
+            MavenTestingUtils.getTestResourcePathFile("jdk9/log4j-api-2.9.0.jar"),
+            MavenTestingUtils.getTestResourcePathFile("jdk9/slf4j-api-1.8.0-alpha2.jar"),
+            MavenTestingUtils.getTestResourcePathFile("jdk10/multirelease-10.jar"),
+            MavenTestingUtils.getTestResourcePathFile("tinytest.jar"));
+
+        // Warm up both the parsing and the replay of the index.
+        for (int i = 0; i < 5; ++i)
+        {
+            scanJars(jars, null);
+            scanJars(jars, indexDir);
+        }
+
+        int iterations = 20;
+        long parseTime = 0;
+        long indexTime = 0;
+        for (int i = 0; i < iterations; ++i)
+        {
+            long begin = NanoTime.now();
+            List<String> parsed = scanJars(jars, null);
+            parseTime += NanoTime.since(begin);
+
+            begin = NanoTime.now();
+            List<String> indexed = scanJars(jars, indexDir);
+            indexTime += NanoTime.since(begin);
+
+            assertEquals(parsed, indexed);
+        }
+
+        // Replaying the index must be faster than parsing the jars.
+        assertThat(indexTime, lessThan(parseTime));
+    }
+
+    private static List<String> scanJars(List<Path> jars, Path indexDir) throws Exception
+    {
+        AnnotationParser parser = new AnnotationParser();
+        parser.setScanIndexDirectory(indexDir);
+        RecordingHandler handler = new RecordingHandler();
+        try (ResourceFactory.Closeable resourceFactory = ResourceFactory.closeable())
+        {
+            for (Path jar : jars)
+            {
+                parser.parse(Collections.singleton(handler), resourceFactory.newResource(jar));
+            }
+        }
+        return handler.events;
+    }
+
     private void copyClass(Class<?> clazz, Path outputDir) throws IOException, URISyntaxException
     {
         String classRef = TypeUtil.toClassReference(clazz);
@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,8 +39,9 @@ import org.slf4j.LoggerFactory;
 public class ServletContainerInitializerHolder extends BaseHolder<ServletContainerInitializer>
 {
     private static final Logger LOG = LoggerFactory.getLogger(ServletContainerInitializerHolder.class);
-    protected Set<String> _startupClassNames = new HashSet<>();
-    protected Set<Class<?>> _startupClasses = new HashSet<>();
+    //concurrent, as startup classes may be added by multiple annotation scanning threads
+    protected Set<String> _startupClassNames = ConcurrentHashMap.newKeySet();
+    protected Set<Class<?>> _startupClasses = ConcurrentHashMap.newKeySet();
     public static final Pattern __pattern = Pattern.compile("ContainerInitializer\\{([^,]*),interested=(\\[[^\\]]*\\])(,applicable=(\\[[^\\]]*\\]))?(,annotated=(\\[[^\\]]*\\]))?\\}");
 
     protected ServletContainerInitializerHolder(Source source)
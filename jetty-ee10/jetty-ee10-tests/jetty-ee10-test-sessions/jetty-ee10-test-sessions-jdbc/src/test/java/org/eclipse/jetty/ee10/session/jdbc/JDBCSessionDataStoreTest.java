@@ -14,6 +14,7 @@
 package org.eclipse.jetty.ee10.session.jdbc;
 
 import java.io.NotSerializableException;
+import java.util.List;
 
 import org.eclipse.jetty.session.AbstractSessionDataStoreTest;
 import org.eclipse.jetty.session.JdbcTestHelper;
@@ -30,6 +31,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JDBCSessionDataStoreTest
@@ -128,4 +130,36 @@ public class JDBCSessionDataStoreTest extends AbstractSessionDataStoreTest
 
         assertThrows(NotSerializableException.class, () -> store.store("xxx999", data));
     }
+
+    @Test
+    public void testStoreAll() throws Exception
+    {
+        setUp();
+        _server.start();
+
+        SessionDataStore store = _sessionManager.getSessionCache().getSessionDataStore();
+
+        //an existing session to update, and new sessions to insert
+        long now = System.currentTimeMillis();
+        SessionData existing = store.newSessionData("batch1", 100, now, now - 1, -1); //never expires
+        existing.setLastNode(_sessionIdManager.getWorkerName());
+        store.store("batch1", existing);
+        existing.setAttribute("x", "y");
+
+        SessionData data2 = store.newSessionData("batch2", 100, now, now - 1, -1);
+        data2.setLastNode(_sessionIdManager.getWorkerName());
+        data2.setAttribute("a", "b");
+        SessionData data3 = store.newSessionData("batch3", 100, now, now - 1, -1);
+        data3.setLastNode(_sessionIdManager.getWorkerName());
+
+        store.storeAll(List.of(existing, data2, data3));
+
+        for (SessionData data : List.of(existing, data2, data3))
+        {
+            assertTrue(data.getLastSaved() > 0);
+            assertTrue(checkSessionPersisted(data));
+        }
+        assertEquals("y", store.load("batch1").getAttribute("x"));
+        assertEquals("b", store.load("batch2").getAttribute("a"));
+    }
 }
@@ -24,6 +24,10 @@ etc/jetty-ee9-deploy.xml
 ## Monitored directory scan period (seconds)
 # jetty.deploy.scanInterval=0
 
+## Whether the monitored directories are only scanned when the file system
+## notifies a change in them, rather than every scan period.
+# jetty.deploy.useWatchService=false
+
 ## Whether to extract *.war files
 # jetty.deploy.extractWars=true
 
@@ -0,0 +1,138 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.MultiPart;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.util.SearchPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the throughput of the boundary scanning of multipart content,
+ * both with {@link SearchPattern} alone and with the whole {@link MultiPart.Parser}.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class MultiPartBoundaryBenchmark
+{
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @Param({"1024", "65536", "1048576"})
+    int partSize;
+
+    @Param({"binary", "text"})
+    String content;
+
+    private SearchPattern pattern;
+    private byte[] partBytes;
+    private ByteBuffer partBuffer;
+    private ByteBuffer multiPart;
+    private MultiPart.Parser parser;
+
+    @Setup
+    public void setUp()
+    {
+        pattern = SearchPattern.compile("\r\n--" + BOUNDARY);
+
+        partBytes = new byte[partSize];
+        Random random = new Random(partSize);
+        if ("binary".equals(content))
+        {
+            random.nextBytes(partBytes);
+        }
+        else
+        {
+            // Text with frequent CRLF and dashes, the worst case for boundary scanning.
+            byte[] alphabet = "abcdefghijklmnopqrstuvwxyz0123456789-\r\n".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < partBytes.length; ++i)
+            {
+                partBytes[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+        }
+        partBuffer = ByteBuffer.allocateDirect(partSize).put(partBytes).flip();
+
+        byte[] head = ("--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"file\"; filename=\"file.bin\"\r\n" +
+            "Content-Type: application/octet-stream\r\n" +
+            "\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        multiPart = ByteBuffer.allocateDirect(head.length + partSize + tail.length).put(head).put(partBytes).put(tail).flip();
+
+        parser = new MultiPart.Parser(BOUNDARY, new MultiPart.Parser.Listener()
+        {
+        });
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int testSearchPatternBytes()
+    {
+        return pattern.match(partBytes, 0, partBytes.length);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int testSearchPatternByteBuffer()
+    {
+        return pattern.match(partBuffer.slice());
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void testMultiPartParser(Blackhole blackhole)
+    {
+        parser.reset();
+        ByteBuffer buffer = multiPart.slice();
+        parser.parse(Content.Chunk.from(buffer, true));
+        blackhole.consume(buffer);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(MultiPartBoundaryBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .measurementIterations(5)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,219 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.jmh;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.ExtensiblePriorityStreamScheduler;
+import org.eclipse.jetty.http2.StreamScheduler;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * <p>Measures the time to first byte of an urgent stream ({@code u=0})
+ * while the same connection is busy with large, low urgency downloads.</p>
+ */
+@State(Scope.Benchmark)
+public class StreamSchedulerBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        Options opt = new OptionsBuilder()
+            .include(StreamSchedulerBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .forks(1)
+            .threads(1)
+            .build();
+        new Runner(opt).run();
+    }
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int DOWNLOAD_CHUNKS = 1024;
+
+    @Param({"FIFO", "RFC9218"})
+    public String scheduler;
+
+    @Param({"4"})
+    public int downloads;
+
+    private Server server;
+    private ServerConnector connector;
+    private HTTP2Client client;
+    private Session session;
+    private volatile boolean running;
+
+    @Setup
+    public void prepare() throws Exception
+    {
+        server = new Server();
+        RawHTTP2ServerConnectionFactory h2c = new RawHTTP2ServerConnectionFactory(new HttpConfiguration(), new ServerSessionListener()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Request request = (MetaData.Request)frame.getMetaData();
+                int chunks = request.getHttpURI().getPath().startsWith("/download") ? DOWNLOAD_CHUNKS : 1;
+                MetaData.Response response = new MetaData.Response(HttpStatus.OK_200, null, HttpVersion.HTTP_2, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() -> new Content(stream, chunks).iterate()));
+                return null;
+            }
+        });
+        h2c.setStreamScheduler("RFC9218".equals(scheduler) ? new ExtensiblePriorityStreamScheduler() : StreamScheduler.FIFO);
+        connector = new ServerConnector(server, 1, 1, h2c);
+        server.addConnector(connector);
+        server.start();
+
+        client = new HTTP2Client();
+        // Large windows, so that the downloads are not stalled by flow control.
+        client.setInitialSessionRecvWindow(16 * 1024 * 1024);
+        client.setInitialStreamRecvWindow(8 * 1024 * 1024);
+        client.start();
+        session = client.connect(new InetSocketAddress("localhost", connector.getLocalPort()), new Session.Listener() {}).get(5, TimeUnit.SECONDS);
+
+        running = true;
+        for (int i = 0; i < downloads; ++i)
+        {
+            download();
+        }
+    }
+
+    @TearDown
+    public void dispose() throws Exception
+    {
+        running = false;
+        client.stop();
+        server.stop();
+    }
+
+    private void download()
+    {
+        if (!running)
+            return;
+        session.newStream(newRequest("/download", "u=5, i"), new Stream.Listener()
+        {
+            @Override
+            public void onDataAvailable(Stream stream)
+            {
+                while (true)
+                {
+                    Stream.Data data = stream.readData();
+                    if (data == null)
+                    {
+                        stream.demand();
+                        return;
+                    }
+                    boolean last = data.frame().isEndStream();
+                    data.release();
+                    if (last)
+                    {
+                        download();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void timeToFirstByte() throws Exception
+    {
+        CompletableFuture<Void> firstByte = new CompletableFuture<>();
+        session.newStream(newRequest("/critical", "u=0"), new Stream.Listener()
+        {
+            @Override
+            public void onDataAvailable(Stream stream)
+            {
+                Stream.Data data = stream.readData();
+                if (data == null)
+                {
+                    stream.demand();
+                    return;
+                }
+                boolean last = data.frame().isEndStream();
+                data.release();
+                firstByte.complete(null);
+                if (!last)
+                    stream.demand();
+            }
+        });
+        firstByte.get(5, TimeUnit.SECONDS);
+    }
+
+    private HeadersFrame newRequest(String path, String priority)
+    {
+        HttpFields fields = HttpFields.build().put(HttpHeader.PRIORITY, priority);
+        HttpURI uri = HttpURI.from("http", "localhost", connector.getLocalPort(), path);
+        MetaData.Request request = new MetaData.Request("GET", uri, HttpVersion.HTTP_2, fields);
+        return new HeadersFrame(request, null, true);
+    }
+
+    private static class Content extends IteratingCallback
+    {
+        private final Stream stream;
+        private int chunks;
+
+        private Content(Stream stream, int chunks)
+        {
+            this.stream = stream;
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected Action process()
+        {
+            if (chunks == 0)
+                return Action.SUCCEEDED;
+            --chunks;
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(CHUNK_SIZE), chunks == 0), this);
+            return Action.SCHEDULED;
+        }
+    }
+}
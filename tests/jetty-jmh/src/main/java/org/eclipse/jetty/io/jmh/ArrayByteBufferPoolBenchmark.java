@@ -39,17 +39,22 @@ public class ArrayByteBufferPoolBenchmark
     public static void main(String[] args) throws RunnerException
     {
         String asyncProfilerPath = "/home/simon/programs/async-profiler/lib/libasyncProfiler.so";
-        Options opt = new OptionsBuilder()
-            .include(ArrayByteBufferPoolBenchmark.class.getSimpleName())
-            .warmupIterations(10)
-            .warmupTime(TimeValue.milliseconds(500))
-            .measurementIterations(10)
-            .measurementTime(TimeValue.milliseconds(500))
-            .addProfiler(AsyncProfiler.class, "dir=/tmp;output=flamegraph;event=cpu;interval=500000;libPath=" + asyncProfilerPath)
-            .forks(1)
-            .threads(32)
-            .build();
-        new Runner(opt).run();
+        // Run the benchmarks with an increasing number of threads
+        // to show how acquire/release scale, with and without front caches.
+        for (int threads : new int[]{1, 8, 32, 128})
+        {
+            Options opt = new OptionsBuilder()
+                .include(ArrayByteBufferPoolBenchmark.class.getSimpleName())
+                .warmupIterations(10)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(10)
+                .measurementTime(TimeValue.milliseconds(500))
+                .addProfiler(AsyncProfiler.class, "dir=/tmp;output=flamegraph;event=cpu;interval=500000;libPath=" + asyncProfilerPath)
+                .forks(1)
+                .threads(threads)
+                .build();
+            new Runner(opt).run();
+        }
     }
 
     @Param("0")
@@ -64,6 +69,8 @@ public class ArrayByteBufferPoolBenchmark
     long maxMemory;
     @Param({"true"})
     boolean statisticsEnabled;
+    @Param({"0", "4"})
+    int frontCacheSize;
 
     ArrayByteBufferPool pool;
 
@@ -72,6 +79,7 @@ public class ArrayByteBufferPoolBenchmark
     {
         pool = new ArrayByteBufferPool(minCapacity, factor, maxCapacity, maxBucketSize, maxMemory, maxMemory);
         pool.setStatisticsEnabled(statisticsEnabled);
+        pool.setFrontCacheSize(frontCacheSize);
     }
 
     @TearDown
@@ -132,4 +140,19 @@ public class ArrayByteBufferPoolBenchmark
         RetainableByteBuffer buffer = pool.acquire(65535, true);
         buffer.release();
     }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void scalingAcquireRelease()
+    {
+        // Simulate HTTP/2 traffic: a read of the network, the
+        // generation of a frame header and of a DATA frame.
+        RetainableByteBuffer input = pool.acquire(16384, true);
+        RetainableByteBuffer header = pool.acquire(4096, true);
+        RetainableByteBuffer data = pool.acquire(16384, true);
+
+        data.release();
+        header.release();
+        input.release();
+    }
 }
@@ -0,0 +1,269 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the throughput of large writes over TLS, encrypting in the benchmark
+ * thread and writing to a loopback TCP socket that is drained by another thread.</p>
+ * <p>Since encryption and network writes happen in the single benchmark thread,
+ * the throughput multiplied by {@code contentSize} approximates the bytes written
+ * per CPU-second; the {@code networkWrites} counter reports the number of writes
+ * to the socket per operation.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class SslFlushBenchmark
+{
+    @Param({"1", "2", "3"})
+    int maxRecordsPerFlush;
+
+    @Param({"65536", "1048576"})
+    int contentSize;
+
+    private ServerSocketChannel acceptor;
+    private SocketChannel socket;
+    private Thread drainer;
+    private SocketEndPoint endPoint;
+    private SslConnection sslConnection;
+    private ByteBuffer content;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        SslContextFactory.Server serverTLS = new SslContextFactory.Server();
+        serverTLS.setKeyStoreResource(ResourceFactory.root().newMemoryResource(Thread.currentThread().getContextClassLoader().getResource("keystore.p12")));
+        serverTLS.setKeyStorePassword("storepwd");
+        serverTLS.start();
+        SslContextFactory.Client clientTLS = new SslContextFactory.Client(true);
+        clientTLS.start();
+
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress("localhost", 0));
+        socket = SocketChannel.open(acceptor.getLocalAddress());
+        SocketChannel peer = acceptor.accept();
+        drainer = new Thread(() -> drain(peer), "drainer");
+        drainer.start();
+
+        SSLEngine serverEngine = serverTLS.newSSLEngine();
+        serverEngine.setUseClientMode(false);
+        endPoint = new SocketEndPoint();
+        sslConnection = new SslConnection(new ArrayByteBufferPool(), Runnable::run, serverTLS, endPoint, serverEngine, true, true);
+        sslConnection.setMaxRecordsPerFlush(maxRecordsPerFlush);
+        endPoint.setConnection(sslConnection);
+
+        SSLEngine clientEngine = clientTLS.newSSLEngine("localhost", 0);
+        clientEngine.setUseClientMode(true);
+        handshake(clientEngine);
+        // From now on the encrypted bytes are written to the socket.
+        endPoint.channel = socket;
+
+        byte[] bytes = new byte[contentSize];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        content = BufferUtil.toBuffer(bytes);
+    }
+
+    private void handshake(SSLEngine clientEngine) throws Exception
+    {
+        CompletableFuture<Void> handshake = new CompletableFuture<>();
+        sslConnection.addHandshakeListener(new SslHandshakeListener()
+        {
+            @Override
+            public void handshakeSucceeded(Event event)
+            {
+                handshake.complete(null);
+            }
+
+            @Override
+            public void handshakeFailed(Event event, Throwable failure)
+            {
+                handshake.completeExceptionally(failure);
+            }
+        });
+
+        ByteBuffer clientOutput = ByteBuffer.allocate(clientEngine.getSession().getPacketBufferSize());
+        ByteBuffer clientInput = ByteBuffer.allocate(clientEngine.getSession().getApplicationBufferSize());
+        ByteBuffer serverOutput = BufferUtil.EMPTY_BUFFER;
+        clientEngine.beginHandshake();
+        while (!handshake.isDone())
+        {
+            switch (clientEngine.getHandshakeStatus())
+            {
+                case NEED_TASK ->
+                {
+                    Runnable task;
+                    while ((task = clientEngine.getDelegatedTask()) != null)
+                    {
+                        task.run();
+                    }
+                }
+                case NEED_WRAP ->
+                {
+                    clientOutput.clear();
+                    clientEngine.wrap(BufferUtil.EMPTY_BUFFER, clientOutput);
+                    clientOutput.flip();
+                    endPoint.addInput(BufferUtil.copy(clientOutput));
+                }
+                case NEED_UNWRAP ->
+                {
+                    if (!serverOutput.hasRemaining())
+                    {
+                        // Let the server process the client bytes and produce its own.
+                        sslConnection.getSslEndPoint().fill(BufferUtil.EMPTY_BUFFER);
+                        serverOutput = endPoint.takeOutput();
+                    }
+                    clientInput.clear();
+                    SSLEngineResult result = clientEngine.unwrap(serverOutput, clientInput);
+                    if (result.getStatus() != SSLEngineResult.Status.OK)
+                        throw new IllegalStateException("Unexpected " + result);
+                }
+                default ->
+                {
+                    // The client has completed, let the server process the last client bytes.
+                    sslConnection.getSslEndPoint().fill(BufferUtil.EMPTY_BUFFER);
+                }
+            }
+        }
+        handshake.get();
+    }
+
+    private static void drain(SocketChannel channel)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(128 * 1024);
+        try (channel)
+        {
+            while (channel.read(buffer.clear()) >= 0)
+            {
+                // Discard the bytes.
+            }
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        socket.close();
+        drainer.join();
+        acceptor.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void testFlush(Counters counters) throws Exception
+    {
+        long writes = endPoint.writes;
+        ByteBuffer buffer = content.slice();
+        while (!sslConnection.getSslEndPoint().flush(buffer))
+        {
+            Thread.onSpinWait();
+        }
+        counters.networkWrites += endPoint.writes - writes;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters
+    {
+        public long networkWrites;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            networkWrites = 0;
+        }
+    }
+
+    /**
+     * <p>An EndPoint that exchanges the handshake bytes in memory,
+     * and then writes the encrypted bytes to a blocking socket.</p>
+     */
+    private static class SocketEndPoint extends ByteArrayEndPoint
+    {
+        private SocketChannel channel;
+        private long writes;
+
+        private SocketEndPoint()
+        {
+            setGrowOutput(true);
+        }
+
+        @Override
+        public boolean flush(ByteBuffer... buffers) throws IOException
+        {
+            if (channel == null)
+                return super.flush(buffers);
+            for (ByteBuffer buffer : buffers)
+            {
+                while (buffer.hasRemaining())
+                {
+                    ++writes;
+                    channel.write(buffer);
+                }
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SslFlushBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.content.ByteBufferContentSource;
+import org.eclipse.jetty.server.FormFields;
+import org.eclipse.jetty.util.Index;
+import org.eclipse.jetty.util.UrlEncoded;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the decoding of large {@code application/x-www-form-urlencoded} content
+ * into {@link String}s with the streaming decoding of {@link FormFields#visit}.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class FormFieldsBenchmark
+{
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final String[] NAMES = {"id", "name", "email", "address", "comment", "token", "quantity", "price"};
+
+    @Param({"1048576", "10485760"})
+    int size;
+
+    private byte[] form;
+    private List<ByteBuffer> chunks;
+    private Index<String> names;
+
+    @Setup
+    public void setUp()
+    {
+        StringBuilder builder = new StringBuilder(size + 256);
+        int i = 0;
+        while (builder.length() < size)
+        {
+            if (i > 0)
+                builder.append('&');
+            builder.append(NAMES[i % NAMES.length])
+                .append('=')
+                .append(UrlEncoded.encodeString("value " + i + " with some text & symbols: \u00E0\u00E8\u00EC \u20AC"));
+            ++i;
+        }
+        form = builder.toString().getBytes(StandardCharsets.US_ASCII);
+
+        chunks = new ArrayList<>();
+        for (int offset = 0; offset < form.length; offset += CHUNK_SIZE)
+        {
+            int length = Math.min(CHUNK_SIZE, form.length - offset);
+            chunks.add(ByteBuffer.allocateDirect(length).put(form, offset, length).flip());
+        }
+
+        Index.Builder<String> builderIndex = new Index.Builder<String>().caseSensitive(true);
+        for (String name : NAMES)
+        {
+            builderIndex.with(name);
+        }
+        names = builderIndex.build();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void testUrlEncoded(Blackhole blackhole) throws Exception
+    {
+        UrlEncoded.decodeUtf8To(new ByteArrayInputStream(form), (name, value) ->
+        {
+            blackhole.consume(name);
+            blackhole.consume(value);
+        }, -1, -1);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int testFormFieldsVisit(Blackhole blackhole) throws Exception
+    {
+        List<ByteBuffer> content = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks)
+        {
+            content.add(chunk.slice());
+        }
+        return FormFields.visit(new ByteBufferContentSource(content), StandardCharsets.UTF_8, names, -1, -1, new FormFields.Visitor()
+        {
+            @Override
+            public void onName(String name)
+            {
+                blackhole.consume(name);
+            }
+
+            @Override
+            public void onValue(CharSequence value, boolean last)
+            {
+                blackhole.consume(value.length());
+            }
+        }).get();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(FormFieldsBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}